@@ -0,0 +1,64 @@
+package io.improbable.keanu.benchmarks;
+
+import io.improbable.keanu.network.ArrayNetworkState;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.network.KeanuProbabilisticModel;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+public class VertexValueAccess {
+
+    private static final int NUM_VERTICES = 100;
+
+    /**
+     * Whether the values are read with a network state bound to the thread, in which case every vertex looks up the
+     * bound state when it reads its value
+     */
+    @Param({"false", "true"})
+    public boolean stateBound;
+
+    DoubleVertex[] vertices;
+    ArrayNetworkState state;
+
+    @Setup
+    public void setup() {
+        GaussianVertex x = new GaussianVertex(0, 1);
+        x.setValue(DoubleTensor.scalar(0.5));
+        vertices = new DoubleVertex[NUM_VERTICES];
+        DoubleVertex previous = x;
+        for (int i = 0; i < NUM_VERTICES; i++) {
+            previous = previous.plus(1.0);
+            vertices[i] = previous;
+        }
+        GaussianVertex observed = new GaussianVertex(previous, 1);
+        observed.observe(1.0);
+        previous.eval();
+
+        if (stateBound) {
+            KeanuProbabilisticModel model = new KeanuProbabilisticModel(new BayesianNetwork(x.getConnectedGraph()));
+            state = model.newState();
+        }
+    }
+
+    @Benchmark
+    public double benchmark() {
+        return state == null ? sumOfValues() : state.apply(this::sumOfValues);
+    }
+
+    private double sumOfValues() {
+        double result = 0;
+        for (DoubleVertex vertex : vertices) {
+            if (vertex.hasValue()) {
+                result += vertex.getValue().scalar();
+            }
+        }
+        return result;
+    }
+}
@@ -9,7 +9,6 @@ import io.improbable.keanu.tensor.TensorShape;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.tensor.dbl.ScalarDoubleTensor;
 import io.improbable.keanu.tensor.intgr.IntegerTensor;
-import io.improbable.keanu.tensor.intgr.Nd4jIntegerTensor;
 import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.rng.DefaultRandom;
@@ -114,7 +113,7 @@ public class KeanuRandom {
     }
 
     public IntegerTensor nextInt(long[] shape) {
-        return new Nd4jIntegerTensor(doubleNextInt(shape));
+        return IntegerTensor.create(doubleNextInt(shape).data().asInt(), shape);
     }
 
     public IntegerTensor nextPoisson(long[] shape, DoubleTensor mu) {
@@ -1,5 +1,6 @@
 package io.improbable.keanu.algorithms.graphtraversal;
 
+import io.improbable.keanu.vertices.CascadeCutoffVertex;
 import io.improbable.keanu.vertices.NonProbabilistic;
 import io.improbable.keanu.vertices.Probabilistic;
 import io.improbable.keanu.vertices.Vertex;
@@ -33,6 +34,9 @@ public class VertexValuePropagation {
     }
 
     /**
+     * The cascade stops at any {@link CascadeCutoffVertex} whose recalculated value is equal to its previous value,
+     * unless it is one of the vertices cascaded from.
+     *
      * @param cascadeFrom A collection that contains the vertices that have been updated.
      */
     public static void cascadeUpdate(Collection<? extends Vertex> cascadeFrom) {
@@ -40,12 +44,17 @@ public class VertexValuePropagation {
         PriorityQueue<Vertex> priorityQueue = new PriorityQueue<>(Comparator.comparing(Vertex::getId, Comparator.naturalOrder()));
         priorityQueue.addAll(cascadeFrom);
 
+        Set<Vertex> startingVertices = new HashSet<>(cascadeFrom);
         HashSet<Vertex> alreadyQueued = new HashSet<>(cascadeFrom);
 
         while (!priorityQueue.isEmpty()) {
             Vertex<?> visiting = priorityQueue.poll();
 
-            updateVertexValue(visiting);
+            if (startingVertices.contains(visiting)) {
+                updateVertexValue(visiting);
+            } else if (!updateVertexValueIfChanged(visiting)) {
+                continue;
+            }
 
             for (Vertex<?> child : visiting.getChildren()) {
 
@@ -144,6 +153,28 @@ public class VertexValuePropagation {
         return stack;
     }
 
+    /**
+     * Updates the value of a vertex like {@link #updateVertexValue(Vertex)}, except that a {@link CascadeCutoffVertex}
+     * keeps its previous value if it is equal to the recalculated one.
+     *
+     * @param vertex the vertex to update
+     * @param <T>    the type of the value of the vertex
+     * @return false if the vertex is a {@link CascadeCutoffVertex} that kept its previous value
+     */
+    public static <T> boolean updateVertexValueIfChanged(Vertex<T> vertex) {
+        if (vertex instanceof CascadeCutoffVertex && !vertex.isProbabilistic() && !vertex.isObserved() && vertex.hasValue()) {
+            final T value = ((NonProbabilistic<T>) vertex).calculate();
+            if (value.equals(vertex.getValue())) {
+                return false;
+            }
+            vertex.setValue(value);
+            return true;
+        }
+
+        updateVertexValue(vertex);
+        return true;
+    }
+
     private static <T> void updateVertexValue(Vertex<T> vertex) {
         if (vertex.isProbabilistic()) {
             if (!vertex.hasValue()) {
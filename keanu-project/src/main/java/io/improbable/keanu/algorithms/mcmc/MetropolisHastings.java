@@ -8,6 +8,7 @@ import io.improbable.keanu.algorithms.Variable;
 import io.improbable.keanu.algorithms.mcmc.proposal.MHStepVariableSelector;
 import io.improbable.keanu.algorithms.mcmc.proposal.PriorProposalDistribution;
 import io.improbable.keanu.algorithms.mcmc.proposal.ProposalDistribution;
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensorArena;
 import io.improbable.keanu.util.status.StatusBar;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -40,6 +41,9 @@ public class MetropolisHastings implements PosteriorSamplingAlgorithm {
     @NonNull
     private final ProposalRejectionStrategy rejectionStrategy;
 
+    @Getter
+    private final boolean poolTensorBuffers;
+
     public static MetropolisHastingsBuilder builder() {
         return new MetropolisHastingsBuilder();
     }
@@ -75,7 +79,7 @@ public class MetropolisHastings implements PosteriorSamplingAlgorithm {
             random
         );
 
-        return new MetropolisHastingsSampler(model.getLatentVariables(), variablesToSampleFrom, mhStep, variableSelector, model.logProb());
+        return new MetropolisHastingsSampler(model.getLatentVariables(), variablesToSampleFrom, mhStep, variableSelector, model.logProb(), poolTensorBuffers);
     }
 
     public static class MetropolisHastingsBuilder {
@@ -83,6 +87,7 @@ public class MetropolisHastings implements PosteriorSamplingAlgorithm {
         private ProposalDistribution proposalDistribution = new PriorProposalDistribution();
         private MHStepVariableSelector variableSelector = DEFAULT_VARIABLE_SELECTOR;
         private ProposalRejectionStrategy rejectionStrategy = new RollBackToCachedValuesOnRejection();
+        private boolean poolTensorBuffers = false;
 
         public MetropolisHastingsBuilder random(KeanuRandom random) {
             this.random = random;
@@ -104,12 +109,26 @@ public class MetropolisHastings implements PosteriorSamplingAlgorithm {
             return this;
         }
 
+        /**
+         * @param poolTensorBuffers if true each step is run in a {@link JVMDoubleTensorArena.Scope} so that the
+         *                          buffers of tensors discarded during a step are reused by the next one. This
+         *                          requires that the model's variables are vertices, which escape their values,
+         *                          and that proposal listeners don't keep proposed values. If
+         *                          {@link io.improbable.keanu.tensor.Nd4jWorkspaces} are enabled each step also
+         *                          runs in an ND4J workspace. Defaults to false.
+         * @return this builder
+         */
+        public MetropolisHastingsBuilder poolTensorBuffers(boolean poolTensorBuffers) {
+            this.poolTensorBuffers = poolTensorBuffers;
+            return this;
+        }
+
         public MetropolisHastings build() {
-            return new MetropolisHastings(random, proposalDistribution, variableSelector, rejectionStrategy);
+            return new MetropolisHastings(random, proposalDistribution, variableSelector, rejectionStrategy, poolTensorBuffers);
         }
 
         public String toString() {
-            return "MetropolisHastings.MetropolisHastingsBuilder(random=" + this.random + ", proposalDistribution=" + this.proposalDistribution + ", variableSelector=" + this.variableSelector + ", rejectionStrategy=" + this.rejectionStrategy + ")";
+            return "MetropolisHastings.MetropolisHastingsBuilder(random=" + this.random + ", proposalDistribution=" + this.proposalDistribution + ", variableSelector=" + this.variableSelector + ", rejectionStrategy=" + this.rejectionStrategy + ", poolTensorBuffers=" + this.poolTensorBuffers + ")";
         }
     }
 }
@@ -4,6 +4,7 @@ import io.improbable.keanu.algorithms.NetworkSample;
 import io.improbable.keanu.algorithms.Variable;
 import io.improbable.keanu.algorithms.VariableReference;
 import io.improbable.keanu.algorithms.mcmc.proposal.MHStepVariableSelector;
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensorArena;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
@@ -19,6 +20,7 @@ public class MetropolisHastingsSampler implements SamplingAlgorithm {
     private final List<? extends Variable> variablesToSampleFrom;
     private final MetropolisHastingsStep mhStep;
     private final MHStepVariableSelector variableSelector;
+    private final boolean poolTensorBuffers;
 
     private double logProbabilityBeforeStep;
     private int sampleNum;
@@ -28,16 +30,36 @@ public class MetropolisHastingsSampler implements SamplingAlgorithm {
                                      MetropolisHastingsStep mhStep,
                                      MHStepVariableSelector variableSelector,
                                      double logProbabilityBeforeStep) {
+        this(latentVariables, variablesToSampleFrom, mhStep, variableSelector, logProbabilityBeforeStep, false);
+    }
+
+    public MetropolisHastingsSampler(List<? extends Variable> latentVariables,
+                                     List<? extends Variable> variablesToSampleFrom,
+                                     MetropolisHastingsStep mhStep,
+                                     MHStepVariableSelector variableSelector,
+                                     double logProbabilityBeforeStep,
+                                     boolean poolTensorBuffers) {
         this.latentVariables = latentVariables;
         this.variablesToSampleFrom = variablesToSampleFrom;
         this.mhStep = mhStep;
         this.variableSelector = variableSelector;
         this.logProbabilityBeforeStep = logProbabilityBeforeStep;
         this.sampleNum = 0;
+        this.poolTensorBuffers = poolTensorBuffers;
     }
 
     @Override
     public void step() {
+        if (poolTensorBuffers) {
+            try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+                mhStep();
+            }
+        } else {
+            mhStep();
+        }
+    }
+
+    private void mhStep() {
         Set<Variable> chosenVariables = variableSelector.select(latentVariables, sampleNum);
 
         logProbabilityBeforeStep = mhStep.step(
@@ -12,6 +12,7 @@ import io.improbable.keanu.algorithms.VariableReference;
 import io.improbable.keanu.algorithms.mcmc.NetworkSamplesGenerator;
 import io.improbable.keanu.algorithms.mcmc.SamplingAlgorithm;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensorArena;
 import io.improbable.keanu.util.status.StatusBar;
 import io.improbable.keanu.vertices.ProbabilityCalculator;
 import lombok.AccessLevel;
@@ -72,6 +73,8 @@ public class NUTS implements PosteriorSamplingAlgorithm {
 
     private final boolean saveStatistics;
 
+    private final boolean poolTensorBuffers;
+
     private final Statistics statistics = new Statistics(Metrics.values());
 
     /**
@@ -142,7 +145,8 @@ public class NUTS implements PosteriorSamplingAlgorithm {
             initialProposal,
             random,
             statistics,
-            saveStatistics
+            saveStatistics,
+            poolTensorBuffers
         );
     }
 
@@ -163,6 +167,7 @@ public class NUTS implements PosteriorSamplingAlgorithm {
         private double maxEnergyChange = 1000.0;
         private int maxTreeHeight = 10;
         private boolean saveStatistics = false;
+        private boolean poolTensorBuffers = false;
 
         public NUTSBuilder random(KeanuRandom random) {
             this.random = random;
@@ -273,16 +278,30 @@ public class NUTS implements PosteriorSamplingAlgorithm {
             return this;
         }
 
+        /**
+         * @param poolTensorBuffers if true the tree of each sample is built in a {@link JVMDoubleTensorArena.Scope}
+         *                          so that the buffers of tensors discarded while building it are reused for the
+         *                          next sample. If {@link io.improbable.keanu.tensor.Nd4jWorkspaces} are enabled
+         *                          it is also built in an ND4J workspace. This requires that the model's
+         *                          variables are vertices, which escape their values. Defaults to false.
+         * @return the builder for NUTS
+         */
+        public NUTSBuilder poolTensorBuffers(boolean poolTensorBuffers) {
+            this.poolTensorBuffers = poolTensorBuffers;
+            return this;
+        }
+
         public NUTS build() {
             return new NUTS(random, targetAcceptanceProb, adaptCount, adaptStepSizeEnabled, initialStepSize,
-                potential, adaptPotentialEnabled, maxEnergyChange, maxTreeHeight, saveStatistics);
+                potential, adaptPotentialEnabled, maxEnergyChange, maxTreeHeight, saveStatistics, poolTensorBuffers);
         }
 
         public String toString() {
             return "NUTS.NUTSBuilder(random=" + this.random + ", adaptCount=" + this.adaptCount +
                 ", targetAcceptanceProb=" + this.targetAcceptanceProb + ", adaptStepSizeEnabled=" +
                 this.adaptStepSizeEnabled + ", initialStepSize=" + this.initialStepSize + ", maxTreeHeight=" +
-                this.maxTreeHeight + ", saveStatistics=" + this.saveStatistics + ")";
+                this.maxTreeHeight + ", saveStatistics=" + this.saveStatistics + ", poolTensorBuffers=" +
+                this.poolTensorBuffers + ")";
         }
     }
 }
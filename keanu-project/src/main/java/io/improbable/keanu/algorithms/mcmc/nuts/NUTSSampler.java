@@ -8,6 +8,7 @@ import io.improbable.keanu.algorithms.Variable;
 import io.improbable.keanu.algorithms.VariableReference;
 import io.improbable.keanu.algorithms.mcmc.SamplingAlgorithm;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensorArena;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
@@ -46,6 +47,7 @@ class NUTSSampler implements SamplingAlgorithm {
 
     private final Statistics statistics;
     private final boolean saveStatistics;
+    private final boolean poolTensorBuffers;
 
 
     /**
@@ -62,6 +64,7 @@ class NUTSSampler implements SamplingAlgorithm {
      * @param random                    the source of randomness
      * @param statistics                the sampler statistics
      * @param saveStatistics            whether to record statistics
+     * @param poolTensorBuffers         whether to build each tree in a {@link JVMDoubleTensorArena.Scope}
      */
     public NUTSSampler(List<? extends Variable> sampleFromVariables,
                        ProbabilisticModelWithGradient logProbGradientCalculator,
@@ -75,7 +78,8 @@ class NUTSSampler implements SamplingAlgorithm {
                        Proposal initialProposal,
                        KeanuRandom random,
                        Statistics statistics,
-                       boolean saveStatistics) {
+                       boolean saveStatistics,
+                       boolean poolTensorBuffers) {
 
         this.sampleFromVariables = sampleFromVariables;
         this.logProbGradientCalculator = logProbGradientCalculator;
@@ -98,7 +102,7 @@ class NUTSSampler implements SamplingAlgorithm {
         this.random = random;
         this.statistics = statistics;
         this.saveStatistics = saveStatistics;
-
+        this.poolTensorBuffers = poolTensorBuffers;
     }
 
     @Override
@@ -117,6 +121,25 @@ class NUTSSampler implements SamplingAlgorithm {
     @Override
     public void step() {
 
+        if (poolTensorBuffers) {
+            try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+                buildTree();
+                escapeProposal();
+            }
+        } else {
+            buildTree();
+        }
+
+        //the potential keeps what it is updated with so it is updated outside of any scope
+        if (stepCount < adaptCount && this.adaptPotentialEnabled) {
+            potential.update(proposal.getPosition());
+        }
+
+        stepCount++;
+    }
+
+    private void buildTree() {
+
         Map<VariableReference, DoubleTensor> initialMomentum = potential.randomMomentum(random);
 
         LeapfrogState startState = new LeapfrogState(
@@ -157,18 +180,21 @@ class NUTSSampler implements SamplingAlgorithm {
             stepSize.adaptStepSize(tree);
         }
 
-        if (stepCount < adaptCount && this.adaptPotentialEnabled) {
-            potential.update(proposal.getPosition());
-        }
-
         if (stepCount > adaptCount) {
             if (tree.isDiverged()) {
                 statistics.store(NUTS.Metrics.DIVERGENT_SAMPLE, (double) stepCount);
                 log.warn("Divergent NUTS sample after adaption ended. Increase the number or samples to adapt for or the max energy change.");
             }
         }
+    }
 
-        stepCount++;
+    /**
+     * The proposal is where the next tree starts from and holds the sample so it outlives the tree's scope.
+     */
+    private void escapeProposal() {
+        proposal.getPosition().values().forEach(JVMDoubleTensorArena::escape);
+        proposal.getGradient().values().forEach(JVMDoubleTensorArena::escape);
+        proposal.getSample().values().forEach(JVMDoubleTensorArena::escape);
     }
 
     /**
@@ -3,6 +3,7 @@ package io.improbable.keanu.algorithms.mcmc.nuts;
 import com.google.common.base.Preconditions;
 import io.improbable.keanu.algorithms.VariableReference;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensorArena;
 
 import java.util.Map;
 
@@ -37,18 +38,21 @@ public class VarianceCalculator {
             final DoubleTensor sample = sampleForVariable.getValue();
 
             final DoubleTensor oldMean = mean.get(v);
+            final DoubleTensor oldM2 = this.M2.get(v);
 
-            final DoubleTensor delta = sample.minus(oldMean);
+            try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
 
-            final DoubleTensor newMean = oldMean.plus(delta.div(count));
+                final DoubleTensor delta = sample.minus(oldMean);
 
-            final DoubleTensor delta2 = sample.minus(newMean);
+                final DoubleTensor newMean = oldMean.plus(delta.div(count));
 
-            final DoubleTensor oldM2 = this.M2.get(v);
-            final DoubleTensor newM2 = oldM2.plus(delta.times(delta2));
+                final DoubleTensor delta2 = sample.minus(newMean);
+
+                final DoubleTensor newM2 = oldM2.plus(delta.timesInPlace(delta2));
 
-            mean.put(v, newMean);
-            M2.put(v, newM2);
+                mean.put(v, JVMDoubleTensorArena.escape(newMean));
+                M2.put(v, JVMDoubleTensorArena.escape(newM2));
+            }
         }
     }
 
@@ -4,6 +4,7 @@ import io.improbable.keanu.KeanuRandom;
 import io.improbable.keanu.algorithms.Variable;
 import io.improbable.keanu.distributions.continuous.Gaussian;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensorArena;
 import io.improbable.keanu.vertices.Probabilistic;
 import org.nd4j.base.Preconditions;
 
@@ -50,8 +51,10 @@ public class GaussianProposalDistribution implements ProposalDistribution {
             if (!sigmas.containsKey(variable)) {
                 throw new IllegalStateException("A sigma was not specified for variable " + variable);
             }
-            DoubleTensor sample = random.nextGaussian(variable.getShape(), (DoubleTensor) variable.getValue(), sigmas.get(variable));
-            proposal.setProposal(variable, sample);
+            try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+                DoubleTensor sample = random.nextGaussian(variable.getShape(), (DoubleTensor) variable.getValue(), sigmas.get(variable));
+                proposal.setProposal(variable, JVMDoubleTensorArena.escape(sample));
+            }
         }
         proposalNotifier.notifyProposalCreated(proposal);
         return proposal;
@@ -65,8 +68,10 @@ public class GaussianProposalDistribution implements ProposalDistribution {
         if (!sigmas.containsKey(variable)) {
             throw new IllegalStateException("A sigma was not specified for variable " + variable);
         }
-        Gaussian proposalDistribution = (Gaussian) Gaussian.withParameters((DoubleTensor) ofValue, sigmas.get(variable));
-        return proposalDistribution.logProb((DoubleTensor) givenValue).sum();
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            Gaussian proposalDistribution = (Gaussian) Gaussian.withParameters((DoubleTensor) ofValue, sigmas.get(variable));
+            return proposalDistribution.logProb((DoubleTensor) givenValue).sum();
+        }
     }
 
     @Override
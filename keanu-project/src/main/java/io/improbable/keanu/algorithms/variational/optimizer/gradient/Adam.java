@@ -8,6 +8,7 @@ import io.improbable.keanu.algorithms.variational.optimizer.FitnessFunctionGradi
 import io.improbable.keanu.algorithms.variational.optimizer.OptimizedResult;
 import io.improbable.keanu.algorithms.variational.optimizer.RelativeConvergenceChecker;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensorArena;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -66,12 +67,20 @@ public class Adam implements GradientOptimizationAlgorithm {
 
             final double b = (1 - beta1T) / Math.sqrt(1 - beta2T);
 
-            for (int i = 0; i < theta.length; i++) {
+            try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+                for (int i = 0; i < theta.length; i++) {
 
-                m[i] = m[i].times(beta1).plusInPlace(gradients[i].times(1 - beta1));
-                v[i] = v[i].times(beta2).plusInPlace(gradients[i].pow(2).timesInPlace(1 - beta2));
+                    m[i] = JVMDoubleTensorArena.escape(
+                        m[i].timesInPlace(beta1).plusInPlace(gradients[i].times(1 - beta1))
+                    );
+                    v[i] = JVMDoubleTensorArena.escape(
+                        v[i].timesInPlace(beta2).plusInPlace(gradients[i].pow(2).timesInPlace(1 - beta2))
+                    );
 
-                thetaNext[i] = theta[i].plus(m[i].times(alpha).divInPlace(v[i].sqrt().timesInPlace(b).plusInPlace(epsilon)));
+                    thetaNext[i] = JVMDoubleTensorArena.escape(
+                        theta[i].plus(m[i].times(alpha).divInPlace(v[i].sqrt().timesInPlace(b).plusInPlace(epsilon)))
+                    );
+                }
             }
 
             converged = convergenceChecker.hasConverged(theta, thetaNext);
@@ -4,6 +4,7 @@ import io.improbable.keanu.KeanuRandom;
 import io.improbable.keanu.distributions.ContinuousDistribution;
 import io.improbable.keanu.distributions.hyperparam.Diffs;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.MathKernels;
 import io.improbable.keanu.vertices.ConstantVertex;
 import io.improbable.keanu.vertices.LogProbGraph.DoublePlaceholderVertex;
 import io.improbable.keanu.vertices.bool.BooleanVertex;
@@ -42,7 +43,7 @@ public class Dirichlet implements ContinuousDistribution {
         }
         final double sumConcentrationLogged = concentration.minus(1.).timesInPlace(x.log()).sum();
         final double sumLogGammaConcentration = concentration.logGamma().sum();
-        final double logGammaSumConcentration = org.apache.commons.math3.special.Gamma.logGamma(concentration.sum());
+        final double logGammaSumConcentration = MathKernels.logGamma(concentration.sum());
         return DoubleTensor.scalar(sumConcentrationLogged - sumLogGammaConcentration + logGammaSumConcentration);
     }
 
@@ -61,7 +62,7 @@ public class Dirichlet implements ContinuousDistribution {
     public Diffs dLogProb(DoubleTensor x) {
         final DoubleTensor dLogPdc = x.log()
             .minusInPlace(concentration.digamma())
-            .plusInPlace(org.apache.commons.math3.special.Gamma.digamma(concentration.sum()));
+            .plusInPlace(MathKernels.digamma(concentration.sum()));
         final DoubleTensor dLogPdx = concentration.minus(1).divInPlace(x);
 
         return new Diffs()
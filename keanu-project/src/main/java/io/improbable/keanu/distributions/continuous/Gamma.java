@@ -3,7 +3,6 @@ package io.improbable.keanu.distributions.continuous;
 import io.improbable.keanu.KeanuRandom;
 import io.improbable.keanu.distributions.ContinuousDistribution;
 import io.improbable.keanu.distributions.hyperparam.Diffs;
-import io.improbable.keanu.tensor.Tensor;
 import io.improbable.keanu.tensor.TensorShape;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.vertices.LogProbGraph.DoublePlaceholderVertex;
@@ -39,13 +38,13 @@ public class Gamma implements ContinuousDistribution {
 
     @Override
     public DoubleTensor sample(long[] shape, KeanuRandom random) {
-        Tensor.FlattenedView<Double> thetaWrapped = theta.getFlattenedView();
-        Tensor.FlattenedView<Double> kWrapped = k.getFlattenedView();
+        DoubleTensor.DoubleFlattenedView thetaWrapped = theta.getFlattenedView();
+        DoubleTensor.DoubleFlattenedView kWrapped = k.getFlattenedView();
 
         int length = TensorShape.getLengthAsInt(shape);
         double[] samples = new double[length];
         for (int i = 0; i < length; i++) {
-            samples[i] = sample(thetaWrapped.getOrScalar(i), kWrapped.getOrScalar(i), random);
+            samples[i] = sample(thetaWrapped.getDoubleOrScalar(i), kWrapped.getDoubleOrScalar(i), random);
         }
 
         return DoubleTensor.create(samples, shape);
@@ -3,7 +3,6 @@ package io.improbable.keanu.distributions.continuous;
 import io.improbable.keanu.KeanuRandom;
 import io.improbable.keanu.distributions.ContinuousDistribution;
 import io.improbable.keanu.distributions.hyperparam.Diffs;
-import io.improbable.keanu.tensor.Tensor;
 import io.improbable.keanu.tensor.TensorShape;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.vertices.LogProbGraph.DoublePlaceholderVertex;
@@ -34,13 +33,13 @@ public class Laplace implements ContinuousDistribution {
 
     @Override
     public DoubleTensor sample(long[] shape, KeanuRandom random) {
-        Tensor.FlattenedView<Double> muWrapped = mu.getFlattenedView();
-        Tensor.FlattenedView<Double> betaWrapped = beta.getFlattenedView();
+        DoubleTensor.DoubleFlattenedView muWrapped = mu.getFlattenedView();
+        DoubleTensor.DoubleFlattenedView betaWrapped = beta.getFlattenedView();
 
         int length = TensorShape.getLengthAsInt(shape);
         double[] samples = new double[length];
         for (int i = 0; i < length; i++) {
-            samples[i] = sample(muWrapped.getOrScalar(i), betaWrapped.getOrScalar(i), random);
+            samples[i] = sample(muWrapped.getDoubleOrScalar(i), betaWrapped.getDoubleOrScalar(i), random);
         }
 
         return DoubleTensor.create(samples, shape);
@@ -2,7 +2,6 @@ package io.improbable.keanu.distributions.discrete;
 
 import io.improbable.keanu.KeanuRandom;
 import io.improbable.keanu.distributions.DiscreteDistribution;
-import io.improbable.keanu.tensor.Tensor;
 import io.improbable.keanu.tensor.TensorShape;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.tensor.intgr.IntegerTensor;
@@ -27,13 +26,13 @@ public class Binomial implements DiscreteDistribution {
 
     @Override
     public IntegerTensor sample(long[] shape, KeanuRandom random) {
-        Tensor.FlattenedView<Double> pWrapped = p.getFlattenedView();
-        Tensor.FlattenedView<Integer> nWrapped = n.getFlattenedView();
+        DoubleTensor.DoubleFlattenedView pWrapped = p.getFlattenedView();
+        IntegerTensor.IntegerFlattenedView nWrapped = n.getFlattenedView();
 
         int length = TensorShape.getLengthAsInt(shape);
         int[] samples = new int[length];
         for (int i = 0; i < length; i++) {
-            samples[i] = sample(pWrapped.getOrScalar(i), nWrapped.getOrScalar(i), random);
+            samples[i] = sample(pWrapped.getDoubleOrScalar(i), nWrapped.getIntOrScalar(i), random);
         }
 
         return IntegerTensor.create(samples, shape);
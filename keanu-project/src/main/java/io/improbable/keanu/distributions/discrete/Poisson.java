@@ -2,7 +2,6 @@ package io.improbable.keanu.distributions.discrete;
 
 import io.improbable.keanu.KeanuRandom;
 import io.improbable.keanu.distributions.DiscreteDistribution;
-import io.improbable.keanu.tensor.Tensor;
 import io.improbable.keanu.tensor.TensorShape;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.tensor.intgr.IntegerTensor;
@@ -30,12 +29,12 @@ public class Poisson implements DiscreteDistribution {
 
     @Override
     public IntegerTensor sample(long[] shape, KeanuRandom random) {
-        Tensor.FlattenedView<Double> muWrapped = mu.getFlattenedView();
+        DoubleTensor.DoubleFlattenedView muWrapped = mu.getFlattenedView();
 
         int length = TensorShape.getLengthAsInt(shape);
         int[] samples = new int[length];
         for (int i = 0; i < length; i++) {
-            samples[i] = sample(muWrapped.getOrScalar(i), random);
+            samples[i] = sample(muWrapped.getDoubleOrScalar(i), random);
         }
 
         return IntegerTensor.create(samples, shape);
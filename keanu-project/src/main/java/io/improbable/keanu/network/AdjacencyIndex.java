@@ -0,0 +1,290 @@
+package io.improbable.keanu.network;
+
+import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
+import io.improbable.keanu.vertices.Vertex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The parents and children of a set of vertices held as int indexed arrays, built once per
+ * {@link BayesianNetwork} by {@link BayesianNetwork#getIndex()}.
+ * <p>
+ * Vertices are numbered in topological order, and the parents and children of the vertex at index i are ranges of
+ * one array each, so traversals walk int arrays instead of the parent and child sets of each vertex. Only edges
+ * between vertices of the index are held. If no vertex has a parent or child outside of the index then it is
+ * closed, and it holds whole connected graphs.
+ * <p>
+ * A change to the parents or children of any vertex of an index invalidates it, after which {@link #isValid()} is
+ * false and a new index has to be built. Changes to other vertices, such as creating vertices of another network,
+ * leave it valid.
+ */
+public final class AdjacencyIndex {
+
+    /**
+     * The sum of the structure versions of the vertices when this was built. Structure versions only increase, so
+     * the sum is different if any vertex has changed since.
+     */
+    private final long version;
+    private final Vertex[] vertices;
+    private final Map<Vertex, Integer> indices;
+    private final boolean closed;
+
+    /**
+     * The parents of the vertex at index i are parentIndices[parentStart[i]] up to parentIndices[parentStart[i + 1]].
+     */
+    private final int[] parentStart;
+    private final int[] parentIndices;
+
+    /**
+     * The children of the vertex at index i are childIndices[childStart[i]] up to childIndices[childStart[i + 1]].
+     */
+    private final int[] childStart;
+    private final int[] childIndices;
+
+    private AdjacencyIndex(Collection<? extends Vertex> vertices) {
+        this.vertices = TopologicalSort.sort(vertices).toArray(new Vertex[0]);
+        this.version = sumOfStructureVersions(this.vertices);
+        this.indices = new HashMap<>(this.vertices.length * 2);
+        for (int i = 0; i < this.vertices.length; i++) {
+            indices.put(this.vertices[i], i);
+        }
+
+        final int n = this.vertices.length;
+        this.parentStart = new int[n + 1];
+        this.childStart = new int[n + 1];
+        boolean closed = true;
+        for (int i = 0; i < n; i++) {
+            for (Vertex<?> parent : (Set<Vertex>) this.vertices[i].getParents()) {
+                if (indices.containsKey(parent)) {
+                    parentStart[i + 1]++;
+                } else {
+                    closed = false;
+                }
+            }
+            for (Vertex<?> child : (Set<Vertex>) this.vertices[i].getChildren()) {
+                if (indices.containsKey(child)) {
+                    childStart[i + 1]++;
+                } else {
+                    closed = false;
+                }
+            }
+        }
+        this.closed = closed;
+
+        for (int i = 0; i < n; i++) {
+            parentStart[i + 1] += parentStart[i];
+            childStart[i + 1] += childStart[i];
+        }
+
+        this.parentIndices = new int[parentStart[n]];
+        this.childIndices = new int[childStart[n]];
+        for (int i = 0; i < n; i++) {
+            int p = parentStart[i];
+            for (Vertex<?> parent : (Set<Vertex>) this.vertices[i].getParents()) {
+                final Integer index = indices.get(parent);
+                if (index != null) {
+                    parentIndices[p++] = index;
+                }
+            }
+            int c = childStart[i];
+            for (Vertex<?> child : (Set<Vertex>) this.vertices[i].getChildren()) {
+                final Integer index = indices.get(child);
+                if (index != null) {
+                    childIndices[c++] = index;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param vertices the vertices to index
+     * @return an index of the vertices and the edges between them
+     */
+    public static AdjacencyIndex of(Collection<? extends Vertex> vertices) {
+        return new AdjacencyIndex(vertices);
+    }
+
+    /**
+     * This reads the {@link Vertex#getStructureVersion()} of each vertex of the index, which is much cheaper than
+     * building it again.
+     *
+     * @return false if the parents or children of any vertex of this index have changed since it was built
+     */
+    public boolean isValid() {
+        return version == sumOfStructureVersions(vertices);
+    }
+
+    private static long sumOfStructureVersions(Vertex[] vertices) {
+        long sum = 0;
+        for (Vertex<?> vertex : vertices) {
+            sum += vertex.getStructureVersion();
+        }
+        return sum;
+    }
+
+    /**
+     * @return true if no vertex of this index has a parent or child that isn't in it
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    public boolean contains(Vertex<?> vertex) {
+        return indices.containsKey(vertex);
+    }
+
+    /**
+     * @param vertex a vertex
+     * @return the index of the vertex, which is its position in topological order, or -1 if it isn't in this index
+     */
+    public int indexOf(Vertex<?> vertex) {
+        final Integer index = indices.get(vertex);
+        return index == null ? -1 : index;
+    }
+
+    public Vertex getVertex(int index) {
+        return vertices[index];
+    }
+
+    /**
+     * @return the vertices of this index in topological order, which is the same order as
+     * {@link TopologicalSort#sort(Collection)}
+     */
+    public List<Vertex> getTopologicalOrder() {
+        return Collections.unmodifiableList(Arrays.asList(vertices));
+    }
+
+    /**
+     * The same as {@link TopologicalSort#sort(Collection)} for vertices of this index
+     *
+     * @param toSort vertices of this index
+     * @return the vertices in topological order
+     */
+    public List<Vertex> sort(Collection<? extends Vertex> toSort) {
+        final List<Vertex> sorted = sortIfIndexed(toSort);
+        if (sorted == null) {
+            throw new IllegalArgumentException("Cannot sort vertices that are not in this index");
+        }
+        return sorted;
+    }
+
+    /**
+     * @param toSort vertices to sort
+     * @return the vertices in topological order or null if any of them are not in this index
+     */
+    public List<Vertex> sortIfIndexed(Collection<? extends Vertex> toSort) {
+        final int[] sorted = new int[toSort.size()];
+        int count = 0;
+        for (Vertex vertex : toSort) {
+            final Integer index = indices.get(vertex);
+            if (index == null) {
+                return null;
+            }
+            sorted[count++] = index;
+        }
+        Arrays.sort(sorted);
+
+        final List<Vertex> result = new ArrayList<>(count);
+        for (int index : sorted) {
+            result.add(vertices[index]);
+        }
+        return result;
+    }
+
+    /**
+     * The same as {@link io.improbable.keanu.algorithms.graphtraversal.DiscoverGraph#getEntireGraph(Vertex)} for a
+     * vertex of a closed index
+     *
+     * @param vertex a vertex of this index
+     * @return every vertex connected to the vertex
+     */
+    public Set<Vertex> getConnectedGraph(Vertex<?> vertex) {
+        checkIsClosed();
+        final int start = checkedIndexOf(vertex);
+
+        final boolean[] discovered = new boolean[vertices.length];
+        final int[] stack = new int[vertices.length];
+        int stackSize = 0;
+        int count = 1;
+        discovered[start] = true;
+        stack[stackSize++] = start;
+
+        while (stackSize > 0) {
+            final int visiting = stack[--stackSize];
+            for (int c = childStart[visiting]; c < childStart[visiting + 1]; c++) {
+                final int child = childIndices[c];
+                if (!discovered[child]) {
+                    discovered[child] = true;
+                    stack[stackSize++] = child;
+                    count++;
+                }
+            }
+            for (int p = parentStart[visiting]; p < parentStart[visiting + 1]; p++) {
+                final int parent = parentIndices[p];
+                if (!discovered[parent]) {
+                    discovered[parent] = true;
+                    stack[stackSize++] = parent;
+                    count++;
+                }
+            }
+        }
+
+        final Set<Vertex> connected = new HashSet<>(Math.max(16, (int) (count / 0.75f) + 1));
+        for (int i = 0; i < vertices.length; i++) {
+            if (discovered[i]) {
+                connected.add(vertices[i]);
+            }
+        }
+        return connected;
+    }
+
+    int[] getParentStart() {
+        return parentStart;
+    }
+
+    int[] getParentIndices() {
+        return parentIndices;
+    }
+
+    int[] getChildStart() {
+        return childStart;
+    }
+
+    int[] getChildIndices() {
+        return childIndices;
+    }
+
+    Vertex[] getVertices() {
+        return vertices;
+    }
+
+    Map<Vertex, Integer> getIndices() {
+        return indices;
+    }
+
+    private int checkedIndexOf(Vertex<?> vertex) {
+        final Integer index = indices.get(vertex);
+        if (index == null) {
+            throw new IllegalArgumentException("Vertex " + vertex.getId() + " is not in this index");
+        }
+        return index;
+    }
+
+    private void checkIsClosed() {
+        if (!closed) {
+            throw new IllegalStateException("Cannot traverse an index that doesn't hold every connected vertex");
+        }
+    }
+}
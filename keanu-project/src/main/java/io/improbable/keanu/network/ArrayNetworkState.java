@@ -0,0 +1,144 @@
+package io.improbable.keanu.network;
+
+import io.improbable.keanu.algorithms.Variable;
+import io.improbable.keanu.algorithms.VariableReference;
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensor;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexState;
+import io.improbable.keanu.vertices.VertexStateBinding;
+import io.improbable.keanu.vertices.VertexStateStore;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The states of the vertices of a {@link CompiledNetwork}, held in an array indexed by their position in it instead
+ * of in the vertices, created by {@link CompiledNetwork#newState()}.
+ * <p>
+ * Work run by {@link #apply(Supplier)} or {@link #run(Runnable)} reads and writes the values of the network's vertices
+ * in this state, so the network is left as it was. Each state has its own copy of the network's scratch space, so
+ * different states of the same network can be worked on by different threads at the same time, e.g. to run
+ * {@link KeanuProbabilisticModel#logProb(ArrayNetworkState, Map)} for several chains or particles on one network.
+ * A single state must not be used by more than one thread at a time.
+ */
+public final class ArrayNetworkState implements NetworkState, VertexStateStore {
+
+    private final CompiledNetwork network;
+    private final Map<Vertex, Integer> positions;
+    private final Map<VariableReference, Integer> referencePositions;
+    private final VertexState[] states;
+    private final LambdaSectionSnapshot lambdaSectionSnapshot;
+
+    /**
+     * The values in states may also be in other states or in the vertices, so they are prepared to be read by
+     * different threads.
+     */
+    ArrayNetworkState(CompiledNetwork network,
+                      Map<Vertex, Integer> positions,
+                      Map<VariableReference, Integer> referencePositions,
+                      VertexState[] states,
+                      LambdaSectionSnapshot lambdaSectionSnapshot) {
+        this.network = network;
+        this.positions = positions;
+        this.referencePositions = referencePositions;
+        this.states = states;
+        this.lambdaSectionSnapshot = lambdaSectionSnapshot;
+
+        for (VertexState state : states) {
+            JVMDoubleTensor.prepareForConcurrentReads(state.getValue());
+        }
+    }
+
+    /**
+     * Runs work with this state bound to the current thread, so that the vertices of the network read and write
+     * their values in this state.
+     *
+     * @param work the work to run
+     * @param <R>  the result type of the work
+     * @return the result of the work
+     */
+    public <R> R apply(Supplier<R> work) {
+        return VertexStateBinding.bind(this, work);
+    }
+
+    /**
+     * Same as {@link #apply(Supplier)} for work without a result
+     *
+     * @param work the work to run
+     */
+    public void run(Runnable work) {
+        apply(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return a new state with the same values as this one, which can be changed independently of it
+     */
+    public ArrayNetworkState copy() {
+        return new ArrayNetworkState(network.copyForState(), positions, referencePositions, states.clone(), lambdaSectionSnapshot.withSharedCache());
+    }
+
+    /**
+     * @return a copy of the network that this is a state of with its own scratch space, for cascades and evals in
+     * work run with this state bound, e.g. {@code state.run(() -> state.getCompiledNetwork().cascadeUpdate(vertex))}
+     */
+    public CompiledNetwork getCompiledNetwork() {
+        return network;
+    }
+
+    LambdaSectionSnapshot getLambdaSectionSnapshot() {
+        return lambdaSectionSnapshot;
+    }
+
+    boolean isStateOf(CompiledNetwork compiledNetwork) {
+        return network.hasSameStructureAs(compiledNetwork);
+    }
+
+    @Override
+    public <T> VertexState<T> getState(Vertex<T> vertex) {
+        final Integer position = positions.get(vertex);
+        return position == null ? null : (VertexState<T>) states[position];
+    }
+
+    @Override
+    public <T> boolean setState(Vertex<T> vertex, VertexState<T> state) {
+        final Integer position = positions.get(vertex);
+        if (position == null) {
+            return false;
+        }
+        states[position] = state;
+        return true;
+    }
+
+    /**
+     * @param vertex a vertex of the network
+     * @param <T>    the value type of the vertex
+     * @return the value of the vertex in this state, or null if it doesn't have one
+     */
+    public <T> T getValue(Vertex<T> vertex) {
+        final VertexState<T> state = getState(vertex);
+        if (state == null) {
+            throw new IllegalArgumentException("Vertex " + vertex.getId() + " is not in this network");
+        }
+        return state.getValue();
+    }
+
+    @Override
+    public <T> T get(Variable<T, ?> variable) {
+        return get(variable.getReference());
+    }
+
+    @Override
+    public <T> T get(VariableReference variableReference) {
+        final Integer position = referencePositions.get(variableReference);
+        return position == null ? null : (T) states[position].getValue();
+    }
+
+    @Override
+    public Set<VariableReference> getVariableReferences() {
+        return referencePositions.keySet();
+    }
+}
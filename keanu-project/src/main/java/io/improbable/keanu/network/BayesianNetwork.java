@@ -4,14 +4,15 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import io.improbable.keanu.KeanuRandom;
 import io.improbable.keanu.algorithms.VariableReference;
-import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
 import io.improbable.keanu.algorithms.graphtraversal.VertexValuePropagation;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.DoubleTensorFactory;
 import io.improbable.keanu.vertices.NonSaveableVertex;
 import io.improbable.keanu.vertices.Probabilistic;
 import io.improbable.keanu.vertices.ProbabilityCalculator;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.VertexLabel;
+import io.improbable.keanu.vertices.VertexState;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -26,10 +27,14 @@ import java.util.stream.Stream;
 
 public class BayesianNetwork {
 
-    private final List<? extends Vertex> vertices;
-    private final Map<VertexLabel, Vertex> vertexLabels;
+    private List<? extends Vertex> vertices;
+    private Map<VertexLabel, Vertex> vertexLabels;
     private static final int TOP_LEVEL_INDENTATION = 1;
+    public static final long UNBOUNDED_INTERMEDIATE_VALUE_BUDGET = Long.MAX_VALUE;
     private int indentation = TOP_LEVEL_INDENTATION;
+    private AdjacencyIndex index;
+    private IntermediateValueEvictor evictor;
+    private volatile long intermediateValueBudget = UNBOUNDED_INTERMEDIATE_VALUE_BUDGET;
 
     public BayesianNetwork(Set<? extends Vertex> vertices) {
         Preconditions.checkArgument(!vertices.isEmpty(), "A bayesian network must contain at least one vertex");
@@ -82,6 +87,61 @@ public class BayesianNetwork {
         return getVertices().size();
     }
 
+    /**
+     * The index is built on the first call and kept until the parents or children of any of its vertices change,
+     * after which the next call builds it again. It's safe to call from several threads, such as those running the
+     * log probs of a {@link KeanuProbabilisticModel} on different {@link ArrayNetworkState}s.
+     *
+     * @return an index of the parents and children of the vertices of this network
+     */
+    public synchronized AdjacencyIndex getIndex() {
+        if (index == null || !index.isValid()) {
+            index = AdjacencyIndex.of(vertices);
+        }
+        return index;
+    }
+
+    /**
+     * Sets the number of bytes that the values of intermediate non-probabilistic vertices may take up after a call to
+     * {@link #evictIntermediateValues()}, which {@link KeanuProbabilisticModel} makes after each log prob or gradient.
+     *
+     * @param bytes the budget in bytes, or {@link #UNBOUNDED_INTERMEDIATE_VALUE_BUDGET} to keep every value
+     */
+    public void setIntermediateValueBudget(long bytes) {
+        Preconditions.checkArgument(bytes >= 0, "The intermediate value budget must not be negative but was " + bytes);
+        this.intermediateValueBudget = bytes;
+    }
+
+    public long getIntermediateValueBudget() {
+        return intermediateValueBudget;
+    }
+
+    /**
+     * Drops the values of intermediate non-probabilistic vertices, cheapest to calculate again per byte first, until
+     * the values left fit in the budget set by {@link #setIntermediateValueBudget(long)}. An evicted value is
+     * calculated again with {@link Vertex#lazyEval()} the next time it's read. The values of probabilistic, observed
+     * and constant vertices and of vertices without children are never evicted.
+     * <p>
+     * Values are evicted from the state bound to the calling thread if there is one, so threads evaluating different
+     * states can call this at the same time.
+     *
+     * @return the number of bytes evicted
+     */
+    public long evictIntermediateValues() {
+        if (intermediateValueBudget == UNBOUNDED_INTERMEDIATE_VALUE_BUDGET) {
+            return 0;
+        }
+        return getEvictor().evict(intermediateValueBudget);
+    }
+
+    private synchronized IntermediateValueEvictor getEvictor() {
+        final AdjacencyIndex currentIndex = getIndex();
+        if (evictor == null || !evictor.isBuiltFrom(currentIndex)) {
+            evictor = new IntermediateValueEvictor(currentIndex);
+        }
+        return evictor;
+    }
+
     public double getAverageVertexDegree() {
         return getVertices().stream().mapToDouble(Vertex::getDegree).average().getAsDouble();
     }
@@ -94,6 +154,27 @@ public class BayesianNetwork {
         }
     }
 
+    /**
+     * Converts the current value of every vertex in this network that holds a DoubleTensor to the tensor type
+     * created by factory, keeping whether it is observed. For example, a SinglePrecisionDoubleTensorFactory
+     * halves the memory used by observed data in this network without changing the tensors of other networks.
+     * <p>
+     * Operations on DoubleTensors return the type of their left hand operand, so values calculated from converted
+     * values are usually of the same type. New values that aren't calculated, such as samples, use the type of
+     * {@link DoubleTensor#setFactory(DoubleTensorFactory)}.
+     *
+     * @param factory creates the tensor type to convert to
+     */
+    public void convertDoubleTensorValues(DoubleTensorFactory factory) {
+        for (Vertex vertex : vertices) {
+            if (vertex.hasValue() && vertex.getValue() instanceof DoubleTensor) {
+                DoubleTensor value = (DoubleTensor) vertex.getValue();
+                DoubleTensor converted = factory.create(value.asFlatDoubleArray(), value.getShape());
+                vertex.setState(new VertexState<>(converted, vertex.isObserved()));
+            }
+        }
+    }
+
     /**
      * @return A list of all vertices in the network.
      */
@@ -163,6 +244,60 @@ public class BayesianNetwork {
         return ProbabilityCalculator.calculateLogProbFor(getLatentOrObservedVertices());
     }
 
+    /**
+     * Simplifies the graph of this network by replacing the non probabilistic vertices whose parents are all
+     * constants with constants, and merging non probabilistic vertices that are the same operation on the same
+     * parents into one, so that they are not recalculated by evals and cascades.
+     * <p>
+     * Labels are kept, as are the ids of the remaining vertices, which stay in topological order. The vertices
+     * downstream of a replaced vertex are rebuilt with the same ids, labels and values, as vertices can't change
+     * their parents. Vertices that are removed or rebuilt are disconnected from the graph and should not be used
+     * afterwards, so look up vertices by label instead of holding onto them. Only vertices that can be saved are
+     * folded, merged or rebuilt.
+     *
+     * @return the number of vertices removed from this network
+     */
+    public int foldConstantsAndMergeDuplicates() {
+        return replaceVertices(GraphOptimizer.optimize(vertices));
+    }
+
+    /**
+     * Replaces each linear chain of elementwise operator vertices, such as x.times(a).plus(b).exp(), with a single
+     * {@link io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.multiple.FusedOperationVertex}. This
+     * calculates the value of the chain without its intermediate values and has one partial derivative per input
+     * instead of one per operation, so evals, cascades and autodiff visit fewer vertices.
+     * <p>
+     * The vertices inside of a chain must not be labelled or observed and must have no other children. The fused
+     * vertex takes the id and label of the last vertex of the chain, and the vertices downstream of it are rebuilt as
+     * for {@link #foldConstantsAndMergeDuplicates()}. Vertices that are removed or rebuilt are disconnected from the
+     * graph and should not be used afterwards. Vertices without children are never replaced.
+     *
+     * @return the number of vertices removed from this network
+     */
+    public int fuseOperatorChains() {
+        return replaceVertices(OperationFuser.fuse(vertices));
+    }
+
+    private int replaceVertices(List<Vertex> replacements) {
+        int removedCount = vertices.size() - replacements.size();
+
+        this.vertices = ImmutableList.copyOf(replacements);
+        this.vertexLabels = buildLabelMap(new HashSet<>(replacements));
+        this.index = null;
+        this.evictor = null;
+        return removedCount;
+    }
+
+    /**
+     * Freezes the structure of this network into a {@link CompiledNetwork}, which cascades and evaluates values and
+     * calculates log probabilities without walking the parents and children of each vertex on every call.
+     *
+     * @return the compiled network
+     */
+    public CompiledNetwork compile() {
+        return new CompiledNetwork(this);
+    }
+
     public void cascadeObservations() {
         VertexValuePropagation.cascadeUpdate(getObservedVertices());
     }
@@ -183,7 +318,7 @@ public class BayesianNetwork {
 
         if (isInImpossibleState()) {
 
-            List<Vertex> sortedByDependency = TopologicalSort.sort(getLatentVertices());
+            List<Vertex> sortedByDependency = getIndex().sort(getLatentVertices());
             setFromSampleAndCascade(sortedByDependency, random);
 
             probeForNonZeroProbability(sortedByDependency, attempts, random);
@@ -252,7 +387,7 @@ public class BayesianNetwork {
 
     public void save(NetworkSaver networkSaver) {
         if (isSaveable()) {
-            for (Vertex vertex : TopologicalSort.sort(vertices)) {
+            for (Vertex vertex : getIndex().getTopologicalOrder()) {
                 vertex.save(networkSaver);
             }
         } else {
@@ -265,7 +400,7 @@ public class BayesianNetwork {
     }
 
     public void saveValues(NetworkSaver networkSaver) {
-        for (Vertex vertex : TopologicalSort.sort(vertices)) {
+        for (Vertex vertex : getIndex().getTopologicalOrder()) {
             vertex.saveValue(networkSaver);
         }
     }
@@ -0,0 +1,667 @@
+package io.improbable.keanu.network;
+
+import com.google.common.collect.ImmutableList;
+import io.improbable.keanu.algorithms.VariableReference;
+import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
+import io.improbable.keanu.algorithms.graphtraversal.VertexValuePropagation;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensor;
+import io.improbable.keanu.vertices.CascadeCutoffVertex;
+import io.improbable.keanu.vertices.NonProbabilistic;
+import io.improbable.keanu.vertices.Probabilistic;
+import io.improbable.keanu.vertices.ProbabilityCalculator;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexState;
+import io.improbable.keanu.vertices.VertexStateBinding;
+import io.improbable.keanu.vertices.VertexStateStore;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * The topology of a {@link BayesianNetwork} frozen into int indexed arrays by {@link BayesianNetwork#compile()}.
+ * The vertices, their numbering and their parents are shared with the network's {@link AdjacencyIndex} if it holds
+ * every connected vertex.
+ * <p>
+ * Vertices are numbered in topological order, and their parents and non probabilistic children are held as ranges
+ * of one array each. A cascade, eval or lazyEval marks the vertices it reaches in a reused array and updates them in
+ * order of their number, instead of building a priority queue and hash sets on every call like
+ * {@link VertexValuePropagation}. The vertices updated by a cascade from a single vertex, such as a latent vertex
+ * changed by a proposal, are worked out on the first cascade from it and kept.
+ * <p>
+ * A cascade stops at a {@link CascadeCutoffVertex} whose value is unchanged, and only recalculates the vertices that
+ * have a parent whose value changed. {@link #isAffectedByLastCascade(Vertex)} tells which vertices those were, so that
+ * only their log probs need to be recalculated.
+ * <p>
+ * If {@link CompiledNetworkParallelism} is enabled then the vertices updated by a cascade or eval that don't depend on
+ * each other are updated in parallel.
+ * <p>
+ * Changes to the parents or children of vertices after compiling are not seen, so compile again after changing the
+ * structure of the network. The latent and observed vertices used by {@link #logProb()} and
+ * {@link #logLikelihood()} are also those at the time of compiling. A compiled network reuses its scratch arrays, so
+ * it must not be used by more than one thread at a time. To evaluate the network on several threads at once, give
+ * each thread its own {@link #newState()}.
+ */
+public class CompiledNetwork {
+
+    private final Vertex[] vertices;
+    private final Map<Vertex, Integer> positions;
+    private final Map<VariableReference, Integer> referencePositions;
+
+    /**
+     * The non probabilistic children of the vertex at position p are childIndices[childStart[p]] up to
+     * childIndices[childStart[p + 1]].
+     */
+    private final int[] childStart;
+    private final int[] childIndices;
+
+    /**
+     * The parents of the vertex at position p are parentIndices[parentStart[p]] up to parentIndices[parentStart[p + 1]].
+     */
+    private final int[] parentStart;
+    private final int[] parentIndices;
+
+    /**
+     * The positions updated by a cascade from the vertex at each position, in order, or null until the first cascade
+     * from it.
+     */
+    private final int[][] cascadeOrders;
+
+    /**
+     * True if any vertex is a {@link CascadeCutoffVertex}, in which case a cascade checks the parents of each vertex
+     * for changes before recalculating it
+     */
+    private final boolean hasCutoffVertices;
+
+    /**
+     * The cost of updating the vertex at each position, as defined by {@link CompiledNetworkParallelism}
+     */
+    private final long[] costs;
+
+    private final List<Vertex> latentOrObservedVertices;
+    private final List<Vertex> observedVertices;
+
+    private final int[] marks;
+    private final int[] stack;
+    private final int[] reached;
+    private int stackSize;
+    private int epoch;
+
+    /**
+     * The positions whose values were changed by the last cascade are those marked with the cascade epoch
+     */
+    private final int[] changed;
+    private int cascadeEpoch;
+    private boolean lastCascadeTracked;
+
+    /**
+     * Scratch space for grouping the positions being updated into levels
+     */
+    private final int[] levels;
+    private final int[] byLevel;
+
+    CompiledNetwork(BayesianNetwork network) {
+        final AdjacencyIndex index = network.getIndex();
+        if (index.isClosed()) {
+            this.vertices = index.getVertices();
+            this.positions = index.getIndices();
+            this.parentStart = index.getParentStart();
+            this.parentIndices = index.getParentIndices();
+        } else {
+            this.vertices = TopologicalSort.sort(withConnectedVertices(network.getVertices())).toArray(new Vertex[0]);
+            this.positions = new HashMap<>();
+            for (int p = 0; p < vertices.length; p++) {
+                positions.put(vertices[p], p);
+            }
+            this.parentStart = new int[vertices.length + 1];
+            for (int p = 0; p < vertices.length; p++) {
+                parentStart[p + 1] = parentStart[p] + vertices[p].getParents().size();
+            }
+            this.parentIndices = new int[parentStart[vertices.length]];
+            for (int p = 0; p < vertices.length; p++) {
+                int q = parentStart[p];
+                for (Vertex<?> parent : (Set<Vertex>) vertices[p].getParents()) {
+                    parentIndices[q++] = positions.get(parent);
+                }
+            }
+        }
+
+        final Map<VariableReference, Integer> referencePositions = new LinkedHashMap<>();
+        for (int p = 0; p < vertices.length; p++) {
+            referencePositions.put(vertices[p].getReference(), p);
+        }
+        this.referencePositions = Collections.unmodifiableMap(referencePositions);
+
+        this.childStart = new int[vertices.length + 1];
+        for (int p = 0; p < vertices.length; p++) {
+            int nonProbabilisticChildren = 0;
+            for (Vertex<?> child : (Set<Vertex>) vertices[p].getChildren()) {
+                if (!child.isProbabilistic()) {
+                    nonProbabilisticChildren++;
+                }
+            }
+            childStart[p + 1] = childStart[p] + nonProbabilisticChildren;
+        }
+        this.childIndices = new int[childStart[vertices.length]];
+        for (int p = 0; p < vertices.length; p++) {
+            int c = childStart[p];
+            for (Vertex<?> child : (Set<Vertex>) vertices[p].getChildren()) {
+                if (!child.isProbabilistic()) {
+                    childIndices[c++] = positions.get(child);
+                }
+            }
+        }
+
+        this.cascadeOrders = new int[vertices.length][];
+        this.hasCutoffVertices = Arrays.stream(vertices).anyMatch(v -> v instanceof CascadeCutoffVertex);
+        this.costs = Arrays.stream(vertices).mapToLong(CompiledNetwork::costOf).toArray();
+        this.latentOrObservedVertices = ImmutableList.copyOf(network.getLatentOrObservedVertices());
+        this.observedVertices = ImmutableList.copyOf(network.getObservedVertices());
+
+        this.marks = new int[vertices.length];
+        this.stack = new int[vertices.length];
+        this.reached = new int[vertices.length];
+        this.changed = new int[vertices.length];
+        this.levels = new int[vertices.length];
+        this.byLevel = new int[vertices.length];
+    }
+
+    /**
+     * A network with the same structure as the given one but its own scratch space
+     */
+    private CompiledNetwork(CompiledNetwork structure) {
+        this.vertices = structure.vertices;
+        this.positions = structure.positions;
+        this.referencePositions = structure.referencePositions;
+        this.childStart = structure.childStart;
+        this.childIndices = structure.childIndices;
+        this.parentStart = structure.parentStart;
+        this.parentIndices = structure.parentIndices;
+        this.cascadeOrders = structure.cascadeOrders.clone();
+        this.hasCutoffVertices = structure.hasCutoffVertices;
+        this.costs = structure.costs;
+        this.latentOrObservedVertices = structure.latentOrObservedVertices;
+        this.observedVertices = structure.observedVertices;
+
+        this.marks = new int[vertices.length];
+        this.stack = new int[vertices.length];
+        this.reached = new int[vertices.length];
+        this.changed = new int[vertices.length];
+        this.levels = new int[vertices.length];
+        this.byLevel = new int[vertices.length];
+    }
+
+    /**
+     * @return vertices plus every vertex that a cascade, eval or lazyEval from them could reach, which are their
+     * parents and non probabilistic children
+     */
+    private static Set<Vertex> withConnectedVertices(Collection<? extends Vertex> vertices) {
+        Set<Vertex> connected = new LinkedHashSet<>(vertices);
+        Deque<Vertex> toVisit = new ArrayDeque<>(connected);
+
+        while (!toVisit.isEmpty()) {
+            Vertex<?> visiting = toVisit.pop();
+
+            for (Vertex<?> child : visiting.getChildren()) {
+                if (!child.isProbabilistic() && connected.add(child)) {
+                    toVisit.push(child);
+                }
+            }
+
+            for (Vertex<?> parent : visiting.getParents()) {
+                if (connected.add(parent)) {
+                    toVisit.push(parent);
+                }
+            }
+        }
+
+        return connected;
+    }
+
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    /**
+     * Creates a state that holds the values of the vertices of this network apart from the vertices, starting with
+     * their current values. Cascades, evals and log probs run with the state bound, e.g. by
+     * {@link KeanuProbabilisticModel#logProb(ArrayNetworkState, Map)}, change the values in the state and leave the
+     * vertices as they were, so several states can be worked on at the same time by different threads.
+     *
+     * @return a new state of this network
+     */
+    public ArrayNetworkState newState() {
+        return newState(new LambdaSectionSnapshot());
+    }
+
+    ArrayNetworkState newState(LambdaSectionSnapshot lambdaSectionSnapshot) {
+        final VertexState[] states = new VertexState[vertices.length];
+        for (int p = 0; p < vertices.length; p++) {
+            states[p] = vertices[p].getState();
+        }
+        return new ArrayNetworkState(copyForState(), positions, referencePositions, states, lambdaSectionSnapshot);
+    }
+
+    /**
+     * @return a network with the same structure as this one for use by a single {@link ArrayNetworkState}
+     */
+    CompiledNetwork copyForState() {
+        return new CompiledNetwork(this);
+    }
+
+    boolean hasSameStructureAs(CompiledNetwork other) {
+        return vertices == other.vertices;
+    }
+
+    /**
+     * Same as {@link VertexValuePropagation#cascadeUpdate(Vertex)}
+     *
+     * @param vertex the vertex that has been updated
+     */
+    public void cascadeUpdate(Vertex vertex) {
+        final Integer position = positions.get(vertex);
+        if (position == null) {
+            lastCascadeTracked = false;
+            VertexValuePropagation.cascadeUpdate(vertex);
+            return;
+        }
+
+        int[] updates = cascadeOrders[position];
+        if (updates == null) {
+            startTraversal();
+            visit(position);
+            updates = Arrays.copyOf(reached, reachDownstream());
+            Arrays.sort(updates);
+            cascadeOrders[position] = updates;
+        }
+
+        startCascade();
+        changed[position] = cascadeEpoch;
+        cascadeInOrder(updates, updates.length);
+    }
+
+    /**
+     * Same as {@link VertexValuePropagation#cascadeUpdate(Collection)}
+     *
+     * @param cascadeFrom the vertices that have been updated
+     */
+    public void cascadeUpdate(Collection<? extends Vertex> cascadeFrom) {
+        if (cascadeFrom.size() == 1) {
+            cascadeUpdate(cascadeFrom.iterator().next());
+            return;
+        }
+
+        if (!startFrom(cascadeFrom)) {
+            lastCascadeTracked = false;
+            VertexValuePropagation.cascadeUpdate(cascadeFrom);
+            return;
+        }
+
+        startCascade();
+        for (int i = 0; i < stackSize; i++) {
+            changed[stack[i]] = cascadeEpoch;
+        }
+
+        final int count = reachDownstream();
+        Arrays.sort(reached, 0, count);
+        cascadeInOrder(reached, count);
+    }
+
+    /**
+     * @param vertex a vertex of the network
+     * @return false if the last cascade changed neither the value of the vertex nor the values of any of its
+     * parents, in which case its log prob is the same as before the cascade. True if it did or if it is not known.
+     */
+    public boolean isAffectedByLastCascade(Vertex vertex) {
+        final Integer position = positions.get(vertex);
+        return !lastCascadeTracked || position == null || changed[position] == cascadeEpoch || hasChangedParent(position);
+    }
+
+    /**
+     * Same as {@link VertexValuePropagation#eval(Collection)}
+     *
+     * @param toEval the vertices to evaluate
+     */
+    public void eval(Collection<? extends Vertex> toEval) {
+        lastCascadeTracked = false;
+        if (!startFrom(toEval)) {
+            VertexValuePropagation.eval(toEval);
+            return;
+        }
+
+        updateInOrder(reachUpstream(false));
+    }
+
+    /**
+     * Same as {@link VertexValuePropagation#lazyEval(Collection)}
+     *
+     * @param toEval the vertices to evaluate
+     */
+    public void lazyEval(Collection<? extends Vertex> toEval) {
+        lastCascadeTracked = false;
+        if (!startFrom(toEval)) {
+            VertexValuePropagation.lazyEval(toEval);
+            return;
+        }
+
+        updateInOrder(reachUpstream(true));
+    }
+
+    /**
+     * @return the log probability of the latent and observed vertices, like {@link BayesianNetwork#getLogOfMasterP()}
+     */
+    public double logProb() {
+        return ProbabilityCalculator.calculateLogProbFor(latentOrObservedVertices);
+    }
+
+    /**
+     * @return the log probability of the observed vertices
+     */
+    public double logLikelihood() {
+        return ProbabilityCalculator.calculateLogProbFor(observedVertices);
+    }
+
+    private void startTraversal() {
+        stackSize = 0;
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(marks, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * Marks the position of each vertex and puts it on the stack
+     *
+     * @return false if any of the vertices are not in this network
+     */
+    private boolean startFrom(Collection<? extends Vertex> from) {
+        startTraversal();
+        for (Vertex vertex : from) {
+            final Integer position = positions.get(vertex);
+            if (position == null) {
+                return false;
+            }
+            visit(position);
+        }
+        return true;
+    }
+
+    private void visit(int position) {
+        if (marks[position] != epoch) {
+            marks[position] = epoch;
+            stack[stackSize++] = position;
+        }
+    }
+
+    /**
+     * @return the number of positions written to reached, which are those on the stack and their non probabilistic
+     * descendants
+     */
+    private int reachDownstream() {
+        int count = 0;
+        while (stackSize > 0) {
+            final int p = stack[--stackSize];
+            reached[count++] = p;
+
+            for (int c = childStart[p]; c < childStart[p + 1]; c++) {
+                visit(childIndices[c]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of positions written to reached, which are those on the stack and the parents of the non
+     * probabilistic ones, recursively. If lazy then only parents without a value are included.
+     */
+    private int reachUpstream(boolean lazy) {
+        int count = 0;
+        while (stackSize > 0) {
+            final int p = stack[--stackSize];
+            reached[count++] = p;
+
+            if (vertices[p].isProbabilistic()) {
+                continue;
+            }
+
+            for (int q = parentStart[p]; q < parentStart[p + 1]; q++) {
+                final int parent = parentIndices[q];
+                if (!lazy || !vertices[parent].hasValue()) {
+                    visit(parent);
+                }
+            }
+        }
+        return count;
+    }
+
+    private void startCascade() {
+        lastCascadeTracked = true;
+        cascadeEpoch++;
+        if (cascadeEpoch == Integer.MAX_VALUE) {
+            Arrays.fill(changed, 0);
+            cascadeEpoch = 1;
+        }
+    }
+
+    /**
+     * Updates the positions in order, skipping those that have no parent that changed if there are any cutoff
+     * vertices. The positions cascaded from must already be marked as changed.
+     */
+    private void cascadeInOrder(int[] order, int count) {
+        if (isParallel(order, count)) {
+            updateByLevel(order, count, this::cascadeTo);
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            cascadeTo(order[i]);
+        }
+    }
+
+    private void cascadeTo(int p) {
+        if (changed[p] == cascadeEpoch) {
+            updateVertexValue(vertices[p]);
+        } else if (!hasCutoffVertices) {
+            updateVertexValue(vertices[p]);
+            changed[p] = cascadeEpoch;
+        } else if (hasChangedParent(p) && VertexValuePropagation.updateVertexValueIfChanged(vertices[p])) {
+            changed[p] = cascadeEpoch;
+        }
+    }
+
+    private boolean hasChangedParent(int position) {
+        for (int q = parentStart[position]; q < parentStart[position + 1]; q++) {
+            if (changed[parentIndices[q]] == cascadeEpoch) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void updateInOrder(int count) {
+        Arrays.sort(reached, 0, count);
+        if (isParallel(reached, count)) {
+            updateByLevel(reached, count, p -> updateVertexValue(vertices[p]));
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            updateVertexValue(vertices[reached[i]]);
+        }
+    }
+
+    private boolean isParallel(int[] order, int count) {
+        if (!CompiledNetworkParallelism.isEnabled() || count < 2 || CompiledNetworkParallelism.getForkJoinPool().getParallelism() < 2) {
+            return false;
+        }
+        return costOf(order, 0, count) >= CompiledNetworkParallelism.getLevelCostThreshold();
+    }
+
+    private static long costOf(Vertex<?> vertex) {
+        final long[] shape = vertex.getShape();
+        return CompiledNetworkParallelism.VERTEX_COST + (shape == null ? 1 : TensorShape.getLength(shape));
+    }
+
+    private long costOf(int[] positions, int from, int to) {
+        long cost = 0;
+        for (int i = from; i < to; i++) {
+            cost += costs[positions[i]];
+        }
+        return cost;
+    }
+
+    /**
+     * Updates the positions one level at a time, where the level of a position is one more than the highest level of
+     * its parents that are also being updated, so that the positions within a level can be updated in any order.
+     *
+     * @param order  the positions to update in ascending order, which is topological
+     * @param count  the number of positions
+     * @param update updates the vertex at a position
+     */
+    private void updateByLevel(int[] order, int count, IntConsumer update) {
+        startTraversal();
+        for (int i = 0; i < count; i++) {
+            marks[order[i]] = epoch;
+        }
+
+        int levelCount = 0;
+        for (int i = 0; i < count; i++) {
+            final int p = order[i];
+            int level = 0;
+            for (int q = parentStart[p]; q < parentStart[p + 1]; q++) {
+                final int parent = parentIndices[q];
+                if (marks[parent] == epoch) {
+                    level = Math.max(level, levels[parent] + 1);
+                }
+            }
+            levels[p] = level;
+            levelCount = Math.max(levelCount, level + 1);
+        }
+
+        final int[] levelStart = new int[levelCount + 1];
+        for (int i = 0; i < count; i++) {
+            levelStart[levels[order[i]] + 1]++;
+        }
+        for (int level = 0; level < levelCount; level++) {
+            levelStart[level + 1] += levelStart[level];
+        }
+        final int[] next = Arrays.copyOf(levelStart, levelCount);
+        for (int i = 0; i < count; i++) {
+            final int p = order[i];
+            byLevel[next[levels[p]]++] = p;
+        }
+
+        for (int level = 0; level < levelCount; level++) {
+            updateLevel(levelStart[level], levelStart[level + 1], update);
+        }
+    }
+
+    private void updateLevel(int from, int to, IntConsumer update) {
+        if (to - from < 2 || costOf(byLevel, from, to) < CompiledNetworkParallelism.getLevelCostThreshold()) {
+            for (int i = from; i < to; i++) {
+                update.accept(byLevel[i]);
+            }
+            return;
+        }
+
+        int parallelTo = from;
+        for (int i = from; i < to; i++) {
+            final int p = byLevel[i];
+            if (vertices[p].isProbabilistic()) {
+                update.accept(p);
+            } else {
+                prepareParentsForConcurrentReads(p);
+                byLevel[parallelTo++] = p;
+            }
+        }
+
+        final ForkJoinPool pool = CompiledNetworkParallelism.getForkJoinPool();
+        final int grainSize = Math.max(1, (parallelTo - from) / (4 * pool.getParallelism()));
+        pool.invoke(new UpdateAction(byLevel, from, parallelTo, grainSize, update, VertexStateBinding.current()));
+    }
+
+    private void prepareParentsForConcurrentReads(int position) {
+        for (int q = parentStart[position]; q < parentStart[position + 1]; q++) {
+            final Vertex<?> parent = vertices[parentIndices[q]];
+            if (!parent.hasValue() && !parent.isProbabilistic()) {
+                // an evicted value is calculated here so that vertices of the level sharing the parent don't race to
+                parent.lazyEval();
+            }
+            if (parent.hasValue()) {
+                JVMDoubleTensor.prepareForConcurrentReads(parent.getValue());
+            }
+        }
+    }
+
+    private static class UpdateAction extends RecursiveAction {
+
+        private final int[] positions;
+        private final int from;
+        private final int to;
+        private final int grainSize;
+        private final IntConsumer update;
+
+        /**
+         * The store bound to the thread that started the update, which is bound again on the pool's threads
+         */
+        private final VertexStateStore store;
+
+        UpdateAction(int[] positions, int from, int to, int grainSize, IntConsumer update, VertexStateStore store) {
+            this.positions = positions;
+            this.from = from;
+            this.to = to;
+            this.grainSize = grainSize;
+            this.update = update;
+            this.store = store;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grainSize) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(
+                    new UpdateAction(positions, from, middle, grainSize, update, store),
+                    new UpdateAction(positions, middle, to, grainSize, update, store)
+                );
+            } else if (store == null) {
+                updateRange();
+            } else {
+                VertexStateBinding.bind(store, () -> {
+                    updateRange();
+                    return null;
+                });
+            }
+        }
+
+        private void updateRange() {
+            for (int i = from; i < to; i++) {
+                update.accept(positions[i]);
+            }
+        }
+    }
+
+    private static <T> void updateVertexValue(Vertex<T> vertex) {
+        if (vertex.isProbabilistic()) {
+            if (!vertex.hasValue()) {
+                vertex.setValue(((Probabilistic<T>) vertex).sample());
+            }
+        } else {
+            if (!vertex.isObserved()) {
+                vertex.setValue(((NonProbabilistic<T>) vertex).calculate());
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.improbable.keanu.network;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Configures whether a {@link CompiledNetwork} cascades and evaluates independent vertices in parallel.
+ * <p>
+ * The vertices being updated are grouped into levels, where each vertex is one level after the last of its parents
+ * being updated, so the vertices of a level don't depend on each other. A level whose cost is at least the level cost
+ * threshold is updated on a ForkJoinPool and smaller levels are updated on the calling thread. The cost of a vertex
+ * is the length of its value plus a fixed {@link #VERTEX_COST} for the work of visiting it.
+ * <p>
+ * This is off by default because the vertices of a level are then calculated concurrently, so every non probabilistic
+ * vertex in the network must be safe to calculate at the same time as others, which e.g. a lambda vertex that writes
+ * to shared state is not. Probabilistic vertices that are sampled by an eval are always sampled on the calling thread.
+ */
+public final class CompiledNetworkParallelism {
+
+    public static final long DEFAULT_LEVEL_COST_THRESHOLD = 16384;
+    public static final long VERTEX_COST = 256;
+
+    private static volatile boolean enabled = false;
+    private static volatile ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    private static volatile long levelCostThreshold = DEFAULT_LEVEL_COST_THRESHOLD;
+
+    private CompiledNetworkParallelism() {
+    }
+
+    /**
+     * @param enabled true to update the levels of cascades and evals that are costly enough in parallel
+     */
+    public static void setEnabled(boolean enabled) {
+        CompiledNetworkParallelism.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param pool the pool that levels are updated on. Defaults to the common pool.
+     */
+    public static void setForkJoinPool(ForkJoinPool pool) {
+        forkJoinPool = Preconditions.checkNotNull(pool);
+    }
+
+    public static ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    /**
+     * @param threshold the total cost of the vertices of a level at or above which they are updated in parallel
+     */
+    public static void setLevelCostThreshold(long threshold) {
+        Preconditions.checkArgument(threshold > 0, "Level cost threshold must be positive but was " + threshold);
+        levelCostThreshold = threshold;
+    }
+
+    public static long getLevelCostThreshold() {
+        return levelCostThreshold;
+    }
+}
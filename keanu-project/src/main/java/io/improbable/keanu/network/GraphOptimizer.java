@@ -0,0 +1,230 @@
+package io.improbable.keanu.network;
+
+import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
+import io.improbable.keanu.tensor.bool.BooleanTensor;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import io.improbable.keanu.vertices.ConstantVertex;
+import io.improbable.keanu.vertices.NonProbabilistic;
+import io.improbable.keanu.vertices.NonSaveableVertex;
+import io.improbable.keanu.vertices.ProxyVertex;
+import io.improbable.keanu.vertices.SaveVertexParam;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexId;
+import io.improbable.keanu.vertices.generic.nonprobabilistic.PrintVertex;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Folds the non probabilistic vertices whose parents are all constants into constants, and merges non probabilistic
+ * vertices that are the same operation on the same parents, used by
+ * {@link BayesianNetwork#foldConstantsAndMergeDuplicates()}.
+ * <p>
+ * Vertices are compared and copied by their {@link SaveVertexParam}s, so only vertices that can be saved are folded
+ * or merged. The vertices downstream of a replaced vertex are rebuilt with their replaced parents by
+ * {@link VertexReplacement}, so a vertex is only replaced if all of those can be saved too.
+ * A folded vertex is replaced by a constant with its id and label, and a merged vertex by an earlier vertex, so the
+ * ids of the vertices remain in topological order. A label of a merged vertex is moved to the vertex it is merged
+ * into, and two labelled vertices are not merged. Vertices without children, which are usually the outputs of a
+ * model, are never replaced.
+ */
+final class GraphOptimizer {
+
+    private final VertexReplacement replacement;
+    private final Map<Vertex<?>, Vertex<?>> replacements = new IdentityHashMap<>();
+    private final Set<VertexId> hadChildren = new HashSet<>();
+    private final Map<OperationKey, Vertex> operations = new HashMap<>();
+
+    private GraphOptimizer(Collection<? extends Vertex> vertices) {
+        this.replacement = new VertexReplacement(vertices);
+    }
+
+    /**
+     * @param vertices the vertices of a network
+     * @return the vertices of the network after folding constants and merging duplicates
+     */
+    static List<Vertex> optimize(Collection<? extends Vertex> vertices) {
+        return new GraphOptimizer(vertices).optimizeVertices(vertices);
+    }
+
+    private List<Vertex> optimizeVertices(Collection<? extends Vertex> vertices) {
+        for (Vertex<?> vertex : TopologicalSort.sort(vertices)) {
+            if (!vertex.getChildren().isEmpty()) {
+                hadChildren.add(vertex.getId());
+            }
+
+            Vertex<?> current = vertex;
+            final Vertex<?> folded = fold(vertex);
+            if (folded != null) {
+                current = folded;
+            }
+
+            merge(vertex, current);
+        }
+
+        final List<Vertex> optimized = new ArrayList<>();
+        for (Vertex<?> vertex : replacement.apply()) {
+            if (!isUnusedConstant(vertex)) {
+                optimized.add(vertex);
+            }
+        }
+        return optimized;
+    }
+
+    /**
+     * @return the vertex that will take the place of the vertex, which is the vertex itself if it isn't replaced
+     */
+    private Vertex<?> replacementOf(Vertex<?> vertex) {
+        return replacements.getOrDefault(vertex, vertex);
+    }
+
+    /**
+     * @return the constant that will replace the vertex or null if it isn't folded
+     */
+    private Vertex<?> fold(Vertex<?> vertex) {
+        if (!canBeReplaced(vertex) || vertex instanceof ConstantVertex || vertex.getParents().isEmpty() || vertex.getChildren().isEmpty()) {
+            return null;
+        }
+
+        for (Vertex<?> parent : vertex.getParents()) {
+            final Vertex<?> current = replacementOf(parent);
+            if (!(current instanceof ConstantVertex) || current.isObserved()) {
+                return null;
+            }
+        }
+
+        if (!replacement.canReplace(vertex)) {
+            return null;
+        }
+
+        final Vertex<?> constant = constantOf(((NonProbabilistic<?>) vertex).calculate());
+        if (constant == null) {
+            return null;
+        }
+        if (vertex.getLabel() != null) {
+            constant.setLabel(vertex.getLabel());
+        }
+
+        replacement.replace(vertex, rewritten -> constant);
+        replacements.put(vertex, constant);
+        return constant;
+    }
+
+    private static Vertex<?> constantOf(Object value) {
+        if (value instanceof DoubleTensor) {
+            return ConstantVertex.of((DoubleTensor) value);
+        } else if (value instanceof IntegerTensor) {
+            return ConstantVertex.of((IntegerTensor) value);
+        } else if (value instanceof BooleanTensor) {
+            return ConstantVertex.of((BooleanTensor) value);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * @param vertex  a vertex of the network
+     * @param current the vertex itself or the constant it is folded into
+     */
+    private void merge(Vertex<?> vertex, Vertex<?> current) {
+        if (!canBeReplaced(current)) {
+            return;
+        }
+
+        final OperationKey key = OperationKey.of(current, this::replacementOf);
+        final Vertex<?> existing = operations.get(key);
+        if (existing == null) {
+            operations.put(key, current);
+            return;
+        }
+
+        if (vertex.getChildren().isEmpty() || (current.getLabel() != null && existing.getLabel() != null)) {
+            return;
+        }
+
+        if (replacement.canReplace(vertex)) {
+            replacement.replace(vertex, rewritten -> rewritten.apply(existing));
+            replacements.put(vertex, existing);
+            if (current.getLabel() != null) {
+                existing.setLabel(current.getLabel());
+            }
+        }
+    }
+
+    /**
+     * @return true if the vertex is a non probabilistic vertex that can be saved, whose value is only a function of
+     * its {@link SaveVertexParam}s
+     */
+    private static boolean canBeReplaced(Vertex<?> vertex) {
+        return !vertex.isProbabilistic()
+            && !vertex.isObserved()
+            && !(vertex instanceof NonSaveableVertex)
+            && !(vertex instanceof ProxyVertex)
+            && !(vertex instanceof PrintVertex)
+            && !VertexReplacement.saveParamMethods(vertex).isEmpty();
+    }
+
+    private boolean isUnusedConstant(Vertex<?> vertex) {
+        return vertex instanceof ConstantVertex
+            && vertex.getLabel() == null
+            && vertex.getChildren().isEmpty()
+            && hadChildren.contains(vertex.getId());
+    }
+
+    /**
+     * The class and {@link SaveVertexParam}s of a vertex, which are equal for vertices that calculate the same value.
+     * Parents are compared by their ids.
+     */
+    private static class OperationKey {
+
+        private final Object[] parts;
+
+        private OperationKey(Object[] parts) {
+            this.parts = parts;
+        }
+
+        /**
+         * @param vertex        a vertex
+         * @param replacementOf gives the vertex that will take the place of a parent
+         * @return the key of the vertex once its parents are replaced
+         */
+        static OperationKey of(Vertex<?> vertex, UnaryOperator<Vertex<?>> replacementOf) {
+            final List<Method> methods = VertexReplacement.saveParamMethods(vertex);
+            final Object[] parts = new Object[methods.size() + 1];
+            parts[0] = vertex.getClass();
+            for (int i = 0; i < methods.size(); i++) {
+                final Object param = VertexReplacement.invoke(methods.get(i), vertex);
+                if (param instanceof Vertex) {
+                    parts[i + 1] = replacementOf.apply((Vertex<?>) param);
+                } else if (param instanceof Vertex[]) {
+                    parts[i + 1] = Arrays.stream((Vertex<?>[]) param).map(replacementOf).toArray();
+                } else {
+                    parts[i + 1] = param;
+                }
+            }
+            return new OperationKey(parts);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return Arrays.deepEquals(parts, ((OperationKey) o).parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.deepHashCode(parts);
+        }
+    }
+}
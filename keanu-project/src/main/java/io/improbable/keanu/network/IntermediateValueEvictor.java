@@ -0,0 +1,224 @@
+package io.improbable.keanu.network;
+
+import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.bool.BitPackedBooleanTensor;
+import io.improbable.keanu.tensor.bool.BooleanTensor;
+import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import io.improbable.keanu.vertices.CascadeCutoffVertex;
+import io.improbable.keanu.vertices.ConstantVertex;
+import io.improbable.keanu.vertices.NonProbabilistic;
+import io.improbable.keanu.vertices.NonSaveableVertex;
+import io.improbable.keanu.vertices.ProxyVertex;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexState;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.MatrixMultiplicationVertex;
+import io.improbable.keanu.vertices.generic.nonprobabilistic.PrintVertex;
+import io.improbable.keanu.vertices.model.ModelVertex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Drops the values of intermediate non-probabilistic vertices until the values that are left fit in a budget of
+ * bytes, used by {@link BayesianNetwork#evictIntermediateValues()}. An evicted value is calculated again from the
+ * values of the parents of its vertex the next time it's needed, as {@link Vertex#getValue()} calls
+ * {@link Vertex#lazyEval()} on a vertex without a value.
+ * <p>
+ * Only unobserved non-probabilistic vertices with children can be evicted, so the values of latent and observed
+ * vertices and the outputs of a model are always kept. Values are evicted in order of the cost of calculating them
+ * again per byte, where the cost of a vertex is the number of elements it reads and writes (or the number of
+ * multiplications for a matrix multiplication) plus the costs of any of its parents that have been evicted. The
+ * parents of probabilistic vertices and {@link CascadeCutoffVertex}s are evicted last, as the next log prob or
+ * cascade reads these.
+ * <p>
+ * Nothing is changed after construction and {@link #evict(long)} keeps its bookkeeping in locals, so one evictor can
+ * evict from the states bound to several threads at once.
+ */
+final class IntermediateValueEvictor {
+
+    private final AdjacencyIndex index;
+    private final List<Vertex<?>> candidates;
+    private final Map<Vertex<?>, Integer> positions;
+    private final long[] ownCosts;
+    private final boolean[] needed;
+    private final int[][] candidateParents;
+    private final int[][] candidateChildren;
+
+    IntermediateValueEvictor(AdjacencyIndex index) {
+        this.index = index;
+        this.candidates = new ArrayList<>();
+        this.positions = new HashMap<>();
+        for (Vertex<?> vertex : index.getTopologicalOrder()) {
+            if (canEvict(vertex)) {
+                positions.put(vertex, candidates.size());
+                candidates.add(vertex);
+            }
+        }
+
+        final int count = candidates.size();
+        this.ownCosts = new long[count];
+        this.needed = new boolean[count];
+        this.candidateParents = new int[count][];
+        this.candidateChildren = new int[count][];
+        for (int i = 0; i < count; i++) {
+            final Vertex<?> vertex = candidates.get(i);
+            ownCosts[i] = calculationCost(vertex);
+            needed[i] = isNeeded(vertex);
+            candidateParents[i] = positionsOf(vertex.getParents());
+            candidateChildren[i] = positionsOf(vertex.getChildren());
+        }
+    }
+
+    /**
+     * @return true if this was built from the index, so the vertices haven't changed since
+     */
+    boolean isBuiltFrom(AdjacencyIndex index) {
+        return this.index == index;
+    }
+
+    /**
+     * Evicts values in the current state of the vertices, which is the state bound to this thread if there is one.
+     *
+     * @param budget the number of bytes the values of intermediate vertices may take up
+     * @return the number of bytes evicted
+     */
+    long evict(long budget) {
+        final int count = candidates.size();
+        final long[] bytes = new long[count];
+        long retained = 0;
+        for (int i = 0; i < count; i++) {
+            final Vertex<?> vertex = candidates.get(i);
+            bytes[i] = vertex.hasValue() ? sizeInBytes(vertex.getValue()) : 0;
+            retained += bytes[i];
+        }
+
+        if (retained <= budget) {
+            return 0;
+        }
+
+        final long[] recalculationCosts = new long[count];
+        final boolean[] evicted = new boolean[count];
+        final int[] versions = new int[count];
+        final PriorityQueue<Entry> queue = new PriorityQueue<>();
+        for (int i = 0; i < count; i++) {
+            evicted[i] = !candidates.get(i).hasValue();
+            recalculationCosts[i] = ownCosts[i];
+            for (int parent : candidateParents[i]) {
+                if (evicted[parent]) {
+                    recalculationCosts[i] += recalculationCosts[parent];
+                }
+            }
+            if (bytes[i] > 0) {
+                queue.add(new Entry(i, needed[i], recalculationCosts[i], bytes[i], versions[i]));
+            }
+        }
+
+        long evictedBytes = 0;
+        while (retained > budget && !queue.isEmpty()) {
+            final Entry entry = queue.poll();
+            final int i = entry.position;
+            if (evicted[i] || entry.version != versions[i]) {
+                continue;
+            }
+
+            candidates.get(i).setState(VertexState.nullState());
+            evicted[i] = true;
+            retained -= bytes[i];
+            evictedBytes += bytes[i];
+
+            for (int child : candidateChildren[i]) {
+                if (!evicted[child] && bytes[child] > 0) {
+                    recalculationCosts[child] += recalculationCosts[i];
+                    versions[child]++;
+                    queue.add(new Entry(child, needed[child], recalculationCosts[child], bytes[child], versions[child]));
+                }
+            }
+        }
+
+        return evictedBytes;
+    }
+
+    private int[] positionsOf(Collection<? extends Vertex> vertices) {
+        return vertices.stream()
+            .filter(positions::containsKey)
+            .mapToInt(positions::get)
+            .toArray();
+    }
+
+    private static boolean canEvict(Vertex<?> vertex) {
+        return vertex instanceof NonProbabilistic
+            && !vertex.isObserved()
+            && !vertex.getChildren().isEmpty()
+            && !(vertex instanceof ConstantVertex)
+            && !(vertex instanceof NonSaveableVertex)
+            && !(vertex instanceof ProxyVertex)
+            && !(vertex instanceof PrintVertex)
+            && !(vertex instanceof ModelVertex);
+    }
+
+    private static boolean isNeeded(Vertex<?> vertex) {
+        return vertex instanceof CascadeCutoffVertex
+            || vertex.getChildren().stream().anyMatch(Vertex::isProbabilistic);
+    }
+
+    private static long calculationCost(Vertex<?> vertex) {
+        if (vertex instanceof MatrixMultiplicationVertex) {
+            final MatrixMultiplicationVertex multiplication = (MatrixMultiplicationVertex) vertex;
+            final long[] left = multiplication.getLeft().getShape();
+            final long[] right = multiplication.getRight().getShape();
+            if (left.length == 2 && right.length == 2) {
+                return left[0] * left[1] * right[1];
+            }
+        }
+
+        long cost = TensorShape.getLength(vertex.getShape());
+        for (Vertex<?> parent : vertex.getParents()) {
+            cost += TensorShape.getLength(parent.getShape());
+        }
+        return Math.max(1, cost);
+    }
+
+    /**
+     * @return an estimate of the bytes held by the elements of a value, or zero for values other than tensors
+     */
+    static long sizeInBytes(Object value) {
+        if (value instanceof BitPackedBooleanTensor) {
+            return (((Tensor<?>) value).getLength() + Byte.SIZE - 1) / Byte.SIZE;
+        } else if (value instanceof BooleanTensor) {
+            return ((Tensor<?>) value).getLength();
+        } else if (value instanceof IntegerTensor) {
+            return ((Tensor<?>) value).getLength() * Integer.BYTES;
+        } else if (value instanceof Tensor) {
+            return ((Tensor<?>) value).getLength() * Double.BYTES;
+        }
+        return 0;
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final int position;
+        private final boolean needed;
+        private final double costPerByte;
+        private final int version;
+
+        Entry(int position, boolean needed, long cost, long bytes, int version) {
+            this.position = position;
+            this.needed = needed;
+            this.costPerByte = (double) cost / bytes;
+            this.version = version;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            if (needed != other.needed) {
+                return needed ? 1 : -1;
+            }
+            return Double.compare(costPerByte, other.costPerByte);
+        }
+    }
+}
@@ -5,9 +5,7 @@ import com.google.common.collect.ImmutableSet;
 import io.improbable.keanu.algorithms.ProbabilisticModel;
 import io.improbable.keanu.algorithms.Variable;
 import io.improbable.keanu.algorithms.VariableReference;
-import io.improbable.keanu.algorithms.graphtraversal.VertexValuePropagation;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
-import io.improbable.keanu.vertices.ProbabilityCalculator;
 import io.improbable.keanu.vertices.Vertex;
 
 import java.util.ArrayList;
@@ -15,6 +13,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.DoubleSupplier;
 import java.util.stream.Collectors;
 
 import static java.util.stream.Collectors.toMap;
@@ -29,6 +28,8 @@ public class KeanuProbabilisticModel implements ProbabilisticModel {
     private final List<Vertex> observedVertices;
     private final List<Vertex> latentOrObservedVertices;
     private final LambdaSectionSnapshot lambdaSectionSnapshot;
+    private final CompiledNetwork compiledNetwork;
+    private final BayesianNetwork bayesianNetwork;
 
     public KeanuProbabilisticModel(Collection<? extends Vertex> variables) {
         this(new BayesianNetwork(variables));
@@ -42,6 +43,8 @@ public class KeanuProbabilisticModel implements ProbabilisticModel {
         this.observedVertices = ImmutableList.copyOf(bayesianNetwork.getObservedVertices());
         this.latentOrObservedVertices = ImmutableList.copyOf(bayesianNetwork.getLatentOrObservedVertices());
         this.lambdaSectionSnapshot = new LambdaSectionSnapshot();
+        this.compiledNetwork = bayesianNetwork.compile();
+        this.bayesianNetwork = bayesianNetwork;
 
         resetModelToObservedState();
         checkBayesNetInHealthyState();
@@ -49,14 +52,101 @@ public class KeanuProbabilisticModel implements ProbabilisticModel {
 
     @Override
     public double logProb(Map<VariableReference, ?> inputs) {
-        if (!inputs.isEmpty()) {
-            cascadeValues(inputs);
-        }
-        return ProbabilityCalculator.calculateLogProbFor(this.latentOrObservedVertices);
+        return evictingIntermediateValues(() -> logProb(inputs, compiledNetwork));
     }
 
     @Override
     public double logProbAfter(Map<VariableReference, Object> newValues, double logProbBefore) {
+        return evictingIntermediateValues(() -> logProbAfter(newValues, logProbBefore, compiledNetwork, lambdaSectionSnapshot));
+    }
+
+    @Override
+    public double logLikelihood(Map<VariableReference, ?> inputs) {
+        return evictingIntermediateValues(() -> logLikelihood(inputs, compiledNetwork));
+    }
+
+    /**
+     * Creates a state of this model's network that holds the values of its vertices apart from the vertices,
+     * starting with their current values. The methods that take a state calculate against the values in the state
+     * and leave the vertices as they were, so they can be called at the same time by different threads as long as
+     * each thread uses its own state, e.g. to run several chains on one model.
+     *
+     * @return a new state of this model's network
+     */
+    public ArrayNetworkState newState() {
+        return compiledNetwork.newState(lambdaSectionSnapshot.withSharedCache());
+    }
+
+    /**
+     * Same as {@link #logProb(Map)} but against the values in the state
+     *
+     * @param state  a state created by {@link #newState()}
+     * @param inputs the new values of latent variables, which are set in the state
+     * @return the log prob of the model with the values in the state
+     */
+    public double logProb(ArrayNetworkState state, Map<VariableReference, ?> inputs) {
+        checkIsStateOfThisModel(state);
+        return state.apply(() -> evictingIntermediateValues(() -> logProb(inputs, state.getCompiledNetwork())));
+    }
+
+    /**
+     * Same as {@link #logProbAfter(Map, double)} but against the values in the state
+     *
+     * @param state         a state created by {@link #newState()}
+     * @param newValues     the new values of latent variables, which are set in the state
+     * @param logProbBefore the log prob of the model with the values in the state before the new values
+     * @return the log prob of the model with the new values
+     */
+    public double logProbAfter(ArrayNetworkState state, Map<VariableReference, Object> newValues, double logProbBefore) {
+        checkIsStateOfThisModel(state);
+        return state.apply(() -> evictingIntermediateValues(
+            () -> logProbAfter(newValues, logProbBefore, state.getCompiledNetwork(), state.getLambdaSectionSnapshot())
+        ));
+    }
+
+    /**
+     * Same as {@link #logLikelihood(Map)} but against the values in the state
+     *
+     * @param state  a state created by {@link #newState()}
+     * @param inputs the new values of latent variables, which are set in the state
+     * @return the log likelihood of the model with the values in the state
+     */
+    public double logLikelihood(ArrayNetworkState state, Map<VariableReference, ?> inputs) {
+        checkIsStateOfThisModel(state);
+        return state.apply(() -> evictingIntermediateValues(() -> logLikelihood(inputs, state.getCompiledNetwork())));
+    }
+
+    private void checkIsStateOfThisModel(ArrayNetworkState state) {
+        if (!state.isStateOf(compiledNetwork)) {
+            throw new IllegalArgumentException("The state is not a state of this model's network");
+        }
+    }
+
+    /**
+     * Runs the calculation and then evicts intermediate values over the budget of the network, see
+     * {@link BayesianNetwork#evictIntermediateValues()}
+     */
+    private double evictingIntermediateValues(DoubleSupplier calculation) {
+        final double result = calculation.getAsDouble();
+        evictIntermediateValues();
+        return result;
+    }
+
+    protected void evictIntermediateValues() {
+        bayesianNetwork.evictIntermediateValues();
+    }
+
+    private double logProb(Map<VariableReference, ?> inputs, CompiledNetwork network) {
+        if (!inputs.isEmpty()) {
+            cascadeValues(inputs, network);
+        }
+        return network.logProb();
+    }
+
+    private double logProbAfter(Map<VariableReference, Object> newValues,
+                                double logProbBefore,
+                                CompiledNetwork network,
+                                LambdaSectionSnapshot lambdaSectionSnapshot) {
         ImmutableSet.Builder<Vertex> affectedVerticesBuilder = ImmutableSet.builder();
         for (VariableReference reference : newValues.keySet()) {
             Vertex vertex = vertexLookup.get(reference);
@@ -65,18 +155,17 @@ public class KeanuProbabilisticModel implements ProbabilisticModel {
         Set<Vertex> affectedVertices = affectedVerticesBuilder.build();
 
         double lambdaSectionLogProbBefore = lambdaSectionSnapshot.logProb(affectedVertices);
-        cascadeValues(newValues);
-        double lambdaSectionLogProbAfter = lambdaSectionSnapshot.logProb(affectedVertices);
+        cascadeValues(newValues, network);
+        double lambdaSectionLogProbAfter = lambdaSectionSnapshot.logProb(affectedVertices, network::isAffectedByLastCascade);
         double deltaLogProb = lambdaSectionLogProbAfter - lambdaSectionLogProbBefore;
         return logProbBefore + deltaLogProb;
     }
 
-    @Override
-    public double logLikelihood(Map<VariableReference, ?> inputs) {
+    private double logLikelihood(Map<VariableReference, ?> inputs, CompiledNetwork network) {
         if (!inputs.isEmpty()) {
-            cascadeValues(inputs);
+            cascadeValues(inputs, network);
         }
-        return ProbabilityCalculator.calculateLogProbFor(this.observedVertices);
+        return network.logLikelihood();
     }
 
     @Override
@@ -107,10 +196,14 @@ public class KeanuProbabilisticModel implements ProbabilisticModel {
     }
 
     private void resetModelToObservedState() {
-        VertexValuePropagation.cascadeUpdate(this.observedVertices);
+        compiledNetwork.cascadeUpdate(this.observedVertices);
     }
 
     protected void cascadeValues(Map<VariableReference, ?> inputs) {
+        cascadeValues(inputs, compiledNetwork);
+    }
+
+    private void cascadeValues(Map<VariableReference, ?> inputs, CompiledNetwork network) {
 
         List<Vertex> updatedVertices = new ArrayList<>();
         for (Map.Entry<VariableReference, ?> input : inputs.entrySet()) {
@@ -124,7 +217,7 @@ public class KeanuProbabilisticModel implements ProbabilisticModel {
             updatedVertices.add(updatingVertex);
         }
 
-        VertexValuePropagation.cascadeUpdate(updatedVertices);
+        network.cascadeUpdate(updatedVertices);
     }
 
 }
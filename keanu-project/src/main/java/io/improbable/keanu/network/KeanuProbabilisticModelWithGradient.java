@@ -63,7 +63,9 @@ public class KeanuProbabilisticModelWithGradient extends KeanuProbabilisticModel
             cascadeValues(inputs);
         }
 
-        return gradientCalculator.getJointLogProbGradientWrtLatents();
+        final Map gradients = gradientCalculator.getJointLogProbGradientWrtLatents();
+        evictIntermediateValues();
+        return gradients;
     }
 
 }
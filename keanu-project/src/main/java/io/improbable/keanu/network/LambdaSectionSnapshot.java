@@ -1,6 +1,8 @@
 package io.improbable.keanu.network;
 
 import io.improbable.keanu.algorithms.Variable;
+import io.improbable.keanu.vertices.NonProbabilistic;
+import io.improbable.keanu.vertices.Probabilistic;
 import io.improbable.keanu.vertices.ProbabilityCalculator;
 import io.improbable.keanu.vertices.Vertex;
 
@@ -8,6 +10,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 /**
  * A snapshot of {@link LambdaSection}s for a chosen set of {@link Variable}s. It is used to roll back the state of a {@link BayesianNetwork} in a performant way.
@@ -16,13 +20,93 @@ public class LambdaSectionSnapshot {
 
     private final Map<Vertex, LambdaSection> affectedVariablesCache;
 
+    /**
+     * The log prob of each vertex calculated since the last call to {@link #logProb(Set)}
+     */
+    private final Map<Vertex, Double> lastLogProbs;
+
+    /**
+     * Whether {@link #logProb(Set)} has been called since the last call to {@link #logProb(Set, Predicate)}. Values
+     * may have been rolled back since the log probs after a proposal were calculated, without a cascade that would
+     * show which vertices changed, so only the log probs of the last call to {@link #logProb(Set)} are reused.
+     */
+    private boolean hasBaseline;
+
     public LambdaSectionSnapshot() {
-        this.affectedVariablesCache = new HashMap<>();
+        this(new ConcurrentHashMap<>());
+    }
+
+    private LambdaSectionSnapshot(Map<Vertex, LambdaSection> affectedVariablesCache) {
+        this.affectedVariablesCache = affectedVariablesCache;
+        this.lastLogProbs = new HashMap<>();
+    }
+
+    /**
+     * @return a snapshot that shares the lambda sections found by this one, which only depend on the structure of the
+     * network, but keeps its own log probs. The snapshots can be used by different threads at the same time.
+     */
+    public LambdaSectionSnapshot withSharedCache() {
+        return new LambdaSectionSnapshot(affectedVariablesCache);
     }
 
     public double logProb(Set<? extends Variable> variables) {
+        lastLogProbs.clear();
+        final double logProb = sumOfLogProbs(variables, vertex -> true);
+        hasBaseline = true;
+        return logProb;
+    }
+
+    /**
+     * The same as {@link #logProb(Set)} except that the log probs of the vertices that have not changed since they
+     * were calculated by the last call to {@link #logProb(Set)} are not calculated again. Call {@link #logProb(Set)}
+     * first, e.g. before a proposal, so that there are log probs to reuse after it. If it hasn't been called since
+     * the last call to this, e.g. because a rejected proposal was rolled back instead, every log prob is calculated
+     * again.
+     *
+     * @param variables      the variables to calculate the log prob of the lambda sections of
+     * @param mayHaveChanged whether the log prob of a vertex may have changed since it was last calculated, which is
+     *                       the case if its value or the value of one of its parents has changed, e.g.
+     *                       {@link CompiledNetwork#isAffectedByLastCascade(Vertex)}
+     * @return the log prob of the latent and observed vertices affected by the variables
+     */
+    public double logProb(Set<? extends Variable> variables, Predicate<Vertex> mayHaveChanged) {
+        if (!hasBaseline) {
+            lastLogProbs.clear();
+        }
+        hasBaseline = false;
+        return sumOfLogProbs(variables, mayHaveChanged);
+    }
+
+    private double sumOfLogProbs(Set<? extends Variable> variables, Predicate<Vertex> mayHaveChanged) {
         Set<Vertex> lambdaSectionUnion = getAllVerticesAffectedBy(variables);
-        return ProbabilityCalculator.calculateLogProbFor(lambdaSectionUnion);
+
+        double sum = 0.0;
+        for (Vertex vertex : lambdaSectionUnion) {
+            Double logProb = mayHaveChanged.test(vertex) ? null : lastLogProbs.get(vertex);
+            if (logProb == null) {
+                logProb = logProbOf(vertex);
+                lastLogProbs.put(vertex, logProb);
+            }
+
+            if (ProbabilityCalculator.isImpossibleLogProb(logProb)) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            sum += logProb;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the log prob of the vertex as {@link ProbabilityCalculator#calculateLogProbFor} adds it up
+     */
+    private static double logProbOf(Vertex vertex) {
+        if (vertex instanceof Probabilistic) {
+            return ((Probabilistic) vertex).logProbAtValue();
+        } else if (vertex instanceof NonProbabilistic) {
+            return ((NonProbabilistic) vertex).contradictsObservation() ? Double.NEGATIVE_INFINITY : 0.0;
+        } else {
+            throw new IllegalArgumentException("Found a vertex that is neither Probabilistic nor Non-Probabilistic");
+        }
     }
 
     public Set<Vertex> getAllVerticesAffectedBy(Set<? extends Variable> variables) {
@@ -0,0 +1,175 @@
+package io.improbable.keanu.network;
+
+import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.multiple.FusedOperationVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.multiple.FusedOperationVertex.Operation;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.multiple.FusedOperationVertex.Step;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces linear chains of elementwise operator vertices with {@link FusedOperationVertex}s, used by
+ * {@link BayesianNetwork#fuseOperatorChains()}.
+ * <p>
+ * A chain ends at a vertex that does an {@link Operation} and has children, and extends back through the operands of
+ * each vertex in it that also do an operation and whose only child is that vertex. Vertices in a chain other than
+ * its last must not be labelled or observed. Every operand from outside of the chain becomes an input of the fused
+ * vertex, so a chain is shortened until every input has the shape of the last vertex or has a length of one.
+ * <p>
+ * The fused vertex takes the id and label of the last vertex, and the vertices downstream of it are rebuilt with it
+ * as a parent by {@link VertexReplacement}, so a chain is only fused if all of those can be saved. Vertices without
+ * children are left alone, as these are usually the outputs of a model, so a chain that ends at one is fused up to
+ * its operand.
+ */
+final class OperationFuser {
+
+    private static final int MIN_CHAIN_LENGTH = 2;
+
+    private final VertexReplacement replacement;
+
+    private OperationFuser(Collection<? extends Vertex> vertices) {
+        this.replacement = new VertexReplacement(vertices);
+    }
+
+    /**
+     * @param vertices the vertices of a network
+     * @return the vertices of the network after fusing chains of operations
+     */
+    static List<Vertex> fuse(Collection<? extends Vertex> vertices) {
+        return new OperationFuser(vertices).fuseVertices(vertices);
+    }
+
+    private List<Vertex> fuseVertices(Collection<? extends Vertex> vertices) {
+        final List<Vertex> sorted = TopologicalSort.sort(vertices);
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            final Vertex<?> vertex = sorted.get(i);
+            if (replacement.canReplace(vertex) && canEndChain(vertex)) {
+                fuseChainEndingAt(vertex);
+            }
+        }
+        return replacement.apply();
+    }
+
+    private static boolean canEndChain(Vertex<?> vertex) {
+        return Operation.of(vertex) != null && !vertex.isObserved() && !vertex.getChildren().isEmpty();
+    }
+
+    private static boolean canContinueChain(Vertex<?> vertex, Vertex<?> child) {
+        return Operation.of(vertex) != null
+            && !vertex.isObserved()
+            && vertex.getLabel() == null
+            && vertex.getChildren().size() == 1
+            && vertex.getChildren().contains(child);
+    }
+
+    private void fuseChainEndingAt(Vertex<?> last) {
+        final List<Vertex<?>> chain = shortenToFusibleInputs(findChainEndingAt(last));
+        if (chain.size() < MIN_CHAIN_LENGTH) {
+            return;
+        }
+
+        final Map<DoubleVertex, Integer> inputs = new LinkedHashMap<>();
+        final List<Step> steps = new ArrayList<>();
+        Vertex<?> previous = null;
+        for (Vertex<?> vertex : chain) {
+            final Operation operation = Operation.of(vertex);
+            final DoubleVertex[] operands = operation.getOperands(vertex);
+            final int[] operandIndices = new int[operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                if (operands[i] == previous) {
+                    operandIndices[i] = FusedOperationVertex.PREVIOUS_RESULT;
+                } else {
+                    operandIndices[i] = inputs.computeIfAbsent(operands[i], input -> inputs.size());
+                }
+            }
+            steps.add(new Step(operation, operandIndices));
+            previous = vertex;
+        }
+
+        if (!replacement.canReplace(last)) {
+            return;
+        }
+
+        final DoubleVertex[] fusedInputs = inputs.keySet().toArray(new DoubleVertex[0]);
+        replacement.replace(last, rewritten -> {
+            final DoubleVertex[] rewrittenInputs = Arrays.stream(fusedInputs)
+                .map(input -> (DoubleVertex) rewritten.apply(input))
+                .toArray(DoubleVertex[]::new);
+            final FusedOperationVertex fused = new FusedOperationVertex(rewrittenInputs, steps);
+            if (last.getLabel() != null) {
+                fused.setLabel(last.getLabel());
+            }
+            if (last.hasValue()) {
+                fused.setValue(((DoubleVertex) last).getValue());
+            }
+            return fused;
+        });
+
+        for (Vertex<?> vertex : chain) {
+            if (vertex != last) {
+                replacement.remove(vertex);
+            }
+        }
+    }
+
+    /**
+     * @return the vertices of the longest chain ending at the vertex, first to last
+     */
+    private static List<Vertex<?>> findChainEndingAt(Vertex<?> last) {
+        final List<Vertex<?>> chain = new ArrayList<>();
+        Vertex<?> current = last;
+        while (current != null) {
+            chain.add(0, current);
+
+            Vertex<?> next = null;
+            for (DoubleVertex operand : Operation.of(current).getOperands(current)) {
+                if (canContinueChain(operand, current)) {
+                    next = operand;
+                    break;
+                }
+            }
+            current = next;
+        }
+        return chain;
+    }
+
+    /**
+     * @return the longest end of the chain whose inputs all have the shape of the last vertex or a length of one
+     */
+    private static List<Vertex<?>> shortenToFusibleInputs(List<Vertex<?>> chain) {
+        final long[] shape = chain.get(chain.size() - 1).getShape();
+
+        for (int first = 0; first <= chain.size() - MIN_CHAIN_LENGTH; first++) {
+            final List<Vertex<?>> shortened = chain.subList(first, chain.size());
+            final Set<Vertex<?>> members = new HashSet<>(shortened);
+
+            boolean fusible = true;
+            for (Vertex<?> vertex : shortened) {
+                for (DoubleVertex operand : Operation.of(vertex).getOperands(vertex)) {
+                    if (!members.contains(operand) && !canBeInput(operand.getShape(), shape)) {
+                        fusible = false;
+                    }
+                }
+            }
+
+            if (fusible) {
+                return shortened;
+            }
+        }
+        return chain.subList(chain.size() - 1, chain.size());
+    }
+
+    private static boolean canBeInput(long[] inputShape, long[] shape) {
+        return Arrays.equals(inputShape, shape) || TensorShape.getLength(inputShape) == 1;
+    }
+}
@@ -0,0 +1,339 @@
+package io.improbable.keanu.network;
+
+import com.google.common.primitives.Primitives;
+import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
+import io.improbable.keanu.vertices.LoadShape;
+import io.improbable.keanu.vertices.LoadVertexParam;
+import io.improbable.keanu.vertices.NonSaveableVertex;
+import io.improbable.keanu.vertices.ProxyVertex;
+import io.improbable.keanu.vertices.SaveVertexParam;
+import io.improbable.keanu.vertices.Vertex;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Replaces vertices in a graph with others, used by the rewrites of {@link BayesianNetwork}.
+ * <p>
+ * Vertices hold their parents in final fields, so the children of a replaced vertex can't be made to refer to its
+ * replacement. Instead every vertex downstream of a replaced vertex is rebuilt from its {@link SaveVertexParam}s with
+ * the constructor that {@link io.improbable.keanu.util.io.ProtobufLoader} loads it with, using the replacements and
+ * rebuilt vertices as its parents. A rebuilt vertex takes the id, label and value of the vertex it is rebuilt from.
+ * <p>
+ * Replacements are planned with {@link #replace} and {@link #remove}, which don't change the graph, and made by
+ * {@link #apply()}. A vertex can only be replaced if every vertex downstream of it can be rebuilt.
+ */
+final class VertexReplacement {
+
+    /**
+     * Builds the replacement of a vertex
+     */
+    interface Builder {
+
+        /**
+         * @param rewritten gives the vertex that replaces or rebuilds a vertex, or the vertex itself if it is kept
+         * @return the replacement
+         */
+        Vertex<?> build(UnaryOperator<Vertex<?>> rewritten);
+    }
+
+    private final Collection<? extends Vertex> vertices;
+    private final List<Vertex> sorted;
+    private final Set<Vertex<?>> originals = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Vertex<?>, Boolean> downstreamCanBeRebuilt = new IdentityHashMap<>();
+    private final Map<Vertex<?>, Builder> replacements = new IdentityHashMap<>();
+    private final Set<Vertex<?>> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * @param vertices the vertices of a network
+     */
+    VertexReplacement(Collection<? extends Vertex> vertices) {
+        this.vertices = vertices;
+        this.sorted = TopologicalSort.sort(vertices);
+        for (Vertex<?> vertex : vertices) {
+            originals.add(vertex);
+        }
+
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            final Vertex<?> vertex = sorted.get(i);
+            boolean canBeRebuilt = true;
+            for (Vertex<?> child : vertex.getChildren()) {
+                canBeRebuilt &= originals.contains(child) && canBeRebuilt(child) && downstreamCanBeRebuilt.get(child);
+            }
+            downstreamCanBeRebuilt.put(vertex, canBeRebuilt);
+        }
+    }
+
+    /**
+     * @param vertex a vertex of the network
+     * @return true if every vertex downstream of the vertex can be rebuilt, so the vertex can be replaced
+     */
+    boolean canReplace(Vertex<?> vertex) {
+        return downstreamCanBeRebuilt.getOrDefault(vertex, false) && !removed.contains(vertex);
+    }
+
+    /**
+     * Plans to replace a vertex that {@link #canReplace(Vertex)}. A later call for the same vertex takes the place of
+     * an earlier one.
+     *
+     * @param vertex  a vertex of the network
+     * @param builder builds the replacement, which must calculate the same value as the vertex and is given its id
+     *                unless it is another vertex of the network
+     */
+    void replace(Vertex<?> vertex, Builder builder) {
+        replacements.put(vertex, builder);
+    }
+
+    /**
+     * Plans to remove a vertex whose children are all removed or replaced
+     *
+     * @param vertex a vertex of the network
+     */
+    void remove(Vertex<?> vertex) {
+        removed.add(vertex);
+    }
+
+    /**
+     * Builds the replacements and rebuilds the vertices downstream of them, then disconnects the replaced, removed and
+     * rebuilt vertices from the graph. The graph is left as it was if any vertex fails to build.
+     *
+     * @return the vertices of the network in their original order, with replaced and rebuilt vertices swapped for
+     * the vertices that take their place
+     */
+    List<Vertex> apply() {
+        final Map<Vertex<?>, Vertex<?>> rewritten = new IdentityHashMap<>();
+        final UnaryOperator<Vertex<?>> current = vertex -> rewritten.getOrDefault(vertex, vertex);
+        final Set<Vertex<?>> claimed = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<Vertex<?>> built = new ArrayList<>();
+        final List<Vertex<?>> builtFrom = new ArrayList<>();
+
+        try {
+            for (Vertex<?> vertex : sorted) {
+                if (removed.contains(vertex)) {
+                    continue;
+                }
+
+                final Builder builder = replacements.get(vertex);
+                final Vertex<?> result;
+                if (builder != null) {
+                    result = builder.build(current);
+                } else if (vertex.getParents().stream().anyMatch(rewritten::containsKey)) {
+                    result = rebuild(vertex, current);
+                } else {
+                    continue;
+                }
+
+                rewritten.put(vertex, result);
+                if (!originals.contains(result) && claimed.add(result)) {
+                    built.add(result);
+                    builtFrom.add(vertex);
+                }
+            }
+        } catch (RuntimeException e) {
+            built.forEach(VertexReplacement::disconnect);
+            throw e;
+        }
+
+        for (Vertex<?> vertex : rewritten.keySet()) {
+            disconnect(vertex);
+        }
+        for (Vertex<?> vertex : removed) {
+            disconnect(vertex);
+        }
+
+        // Children are ordered by id, so each built vertex leaves the children of its parents while it takes the id
+        // of the vertex it replaces. Parents come first, so their ids are final by the time their children rejoin.
+        for (int i = 0; i < built.size(); i++) {
+            final Vertex<?> vertex = built.get(i);
+            final List<Vertex> parents = new ArrayList<>(vertex.getParents());
+            disconnect(vertex);
+            vertex.getId().setValue(builtFrom.get(i).getId().getValue());
+            vertex.setParents(parents);
+        }
+
+        final List<Vertex> result = new ArrayList<>();
+        final Set<Vertex<?>> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Vertex<?> vertex : vertices) {
+            final Vertex<?> replacement = current.apply(vertex);
+            if (!removed.contains(vertex) && added.add(replacement)) {
+                result.add(replacement);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the vertex from the children of its parents and clears its parents
+     */
+    static void disconnect(Vertex<?> vertex) {
+        for (Vertex<?> parent : vertex.getParents()) {
+            parent.removeChild(vertex);
+        }
+        vertex.setParents();
+    }
+
+    /**
+     * @return the methods that return the {@link SaveVertexParam}s of the vertex, sorted by param name
+     */
+    static List<Method> saveParamMethods(Vertex<?> vertex) {
+        return Arrays.stream(vertex.getClass().getMethods())
+            .filter(method -> method.isAnnotationPresent(SaveVertexParam.class))
+            .sorted(Comparator.comparing(method -> method.getAnnotation(SaveVertexParam.class).value()))
+            .collect(Collectors.toList());
+    }
+
+    static Object invoke(Method method, Vertex<?> vertex) {
+        try {
+            return method.invoke(vertex);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalArgumentException("Invalid parent retrieval function specified", e);
+        }
+    }
+
+    /**
+     * @return true if the vertex has a load constructor whose params are all {@link SaveVertexParam}s of the vertex
+     * that hold any vertices directly or in an array
+     */
+    private static boolean canBeRebuilt(Vertex<?> vertex) {
+        if (vertex instanceof NonSaveableVertex || vertex instanceof ProxyVertex) {
+            return false;
+        }
+
+        final Constructor<?> constructor = loadConstructor(vertex.getClass());
+        if (constructor == null) {
+            return false;
+        }
+
+        final Map<String, Method> params = saveParamMethodsByName(vertex);
+        for (Parameter parameter : constructor.getParameters()) {
+            final LoadVertexParam load = parameter.getAnnotation(LoadVertexParam.class);
+            if (load != null) {
+                final Method method = params.get(load.value());
+                if (method == null) {
+                    if (!load.isNullable()) {
+                        return false;
+                    }
+                } else if (holdsVerticesInACollection(invoke(method, vertex))) {
+                    return false;
+                }
+            } else if (!parameter.isAnnotationPresent(LoadShape.class)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean holdsVerticesInACollection(Object param) {
+        if (param instanceof Collection) {
+            return ((Collection<?>) param).stream().anyMatch(element -> element instanceof Vertex);
+        } else if (param instanceof Map) {
+            return ((Map<?, ?>) param).values().stream().anyMatch(element -> element instanceof Vertex);
+        }
+        return false;
+    }
+
+    /**
+     * Builds a copy of the vertex whose parents are the vertices that rewrite its parents, with its label and value
+     */
+    private static Vertex<?> rebuild(Vertex<?> vertex, UnaryOperator<Vertex<?>> rewritten) {
+        final Constructor<?> constructor = loadConstructor(vertex.getClass());
+        final Map<String, Method> params = saveParamMethodsByName(vertex);
+        final Parameter[] parameters = constructor.getParameters();
+        final Object[] arguments = new Object[parameters.length];
+
+        for (int i = 0; i < parameters.length; i++) {
+            final LoadVertexParam load = parameters[i].getAnnotation(LoadVertexParam.class);
+            if (load != null) {
+                final Method method = params.get(load.value());
+                arguments[i] = method == null ? null : withRewrittenVertices(invoke(method, vertex), rewritten);
+            } else {
+                arguments[i] = vertex.getShape();
+            }
+
+            if (arguments[i] != null && !Primitives.wrap(parameters[i].getType()).isInstance(arguments[i])) {
+                throw new IllegalStateException(
+                    "Cannot rebuild " + vertex + " with a " + arguments[i].getClass() + " for " + parameters[i].getName()
+                );
+            }
+        }
+
+        final Vertex copy;
+        try {
+            copy = (Vertex) constructor.newInstance(arguments);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to rebuild " + vertex, e);
+        }
+
+        final Set<Vertex<?>> expectedParents = Collections.newSetFromMap(new IdentityHashMap<>());
+        vertex.getParents().forEach(parent -> expectedParents.add(rewritten.apply(parent)));
+        final Set<Vertex<?>> parents = Collections.newSetFromMap(new IdentityHashMap<>());
+        parents.addAll(copy.getParents());
+        if (!parents.equals(expectedParents)) {
+            disconnect(copy);
+            throw new IllegalStateException("The parents of " + vertex + " are not all saved params");
+        }
+
+        if (vertex.getLabel() != null) {
+            copy.setLabel(vertex.getLabel());
+        }
+        if (vertex.isObserved()) {
+            copy.observe(vertex.getValue());
+        } else if (vertex.hasValue()) {
+            copy.setValue(vertex.getValue());
+        }
+        return copy;
+    }
+
+    private static Object withRewrittenVertices(Object param, UnaryOperator<Vertex<?>> rewritten) {
+        if (param instanceof Vertex) {
+            return rewritten.apply((Vertex<?>) param);
+        } else if (param instanceof Vertex[]) {
+            final Vertex[] vertices = (Vertex[]) param;
+            final Vertex[] replaced = (Vertex[]) Array.newInstance(vertices.getClass().getComponentType(), vertices.length);
+            for (int i = 0; i < vertices.length; i++) {
+                replaced[i] = rewritten.apply(vertices[i]);
+            }
+            return replaced;
+        }
+        return param;
+    }
+
+    private static Map<String, Method> saveParamMethodsByName(Vertex<?> vertex) {
+        return saveParamMethods(vertex).stream()
+            .collect(Collectors.toMap(
+                method -> method.getAnnotation(SaveVertexParam.class).value(),
+                method -> method,
+                (first, second) -> first
+            ));
+    }
+
+    /**
+     * @return the constructor that {@link io.improbable.keanu.util.io.ProtobufLoader} loads vertices of the class with,
+     * or null if there isn't one
+     */
+    private static Constructor<?> loadConstructor(Class<?> vertexClass) {
+        for (Constructor<?> constructor : vertexClass.getConstructors()) {
+            final Parameter[] parameters = constructor.getParameters();
+            if (parameters.length > 0 &&
+                (parameters[0].isAnnotationPresent(LoadVertexParam.class)
+                    || parameters[0].isAnnotationPresent(LoadShape.class))) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,280 @@
+package io.improbable.keanu.network.codegen;
+
+import com.google.common.collect.ImmutableList;
+import io.improbable.keanu.algorithms.ProbabilisticModelWithGradient;
+import io.improbable.keanu.algorithms.Variable;
+import io.improbable.keanu.algorithms.VariableReference;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.network.KeanuProbabilisticModel;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.diff.LogProbGradientCalculator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A {@link ProbabilisticModelWithGradient} whose log prob and gradient are calculated by a class that is generated for
+ * its network and compiled when the model is created. The generated class calculates each vertex in a field of its
+ * own, in order, with the tensor operations written out where it can, rather than going through the vertices and maps
+ * of partial derivatives. See {@link LogProbSourceWriter} for which vertices are written out.
+ * <p>
+ * The values of the vertices that do not depend on any latent vertex, such as observations, are taken when the model
+ * is created, so create it again after observing something else. Only latent vertices can be given as inputs. Unlike
+ * a {@link KeanuProbabilisticModel}, the values of the vertices in between are only set on them where another vertex
+ * needs them, so call {@link Vertex#eval()} on a vertex to see its value.
+ * <p>
+ * Creating a model needs a Java compiler, so it must run on a JDK. A model must not be used by more than one thread at
+ * a time.
+ */
+public class GeneratedProbabilisticModel implements ProbabilisticModelWithGradient {
+
+    private final List<Vertex> latentVertices;
+    private final Map<VariableReference, Integer> latentIndices;
+    private final List<Vertex<DoubleTensor>> continuousLatentVertices;
+    private final int[] continuousLatentIndices;
+    private final int parameterLength;
+    private final LogProbFunction function;
+
+    /**
+     * Only used if the function has no gradient of its own
+     */
+    private final LogProbGradientCalculator logProbGradientCalculator;
+    private final LogProbGradientCalculator logLikelihoodGradientCalculator;
+
+    private final Object[] latentValues;
+    private final DoubleTensor[] gradients;
+
+    /**
+     * @param model the model to generate a class for
+     * @return a generated model of the same network
+     * @throws IllegalStateException if not running on a JDK
+     */
+    public static GeneratedProbabilisticModel generate(KeanuProbabilisticModel model) {
+        return new GeneratedProbabilisticModel(new BayesianNetwork(model.getLatentOrObservedVertices()));
+    }
+
+    /**
+     * @param bayesianNetwork the network to generate a class for
+     * @throws IllegalStateException if not running on a JDK
+     */
+    public GeneratedProbabilisticModel(BayesianNetwork bayesianNetwork) {
+        if (bayesianNetwork.getLatentOrObservedVertices().isEmpty()) {
+            throw new IllegalArgumentException("Cannot create model without latent or observed variables");
+        }
+
+        bayesianNetwork.cascadeObservations();
+
+        this.latentVertices = ImmutableList.copyOf(bayesianNetwork.getLatentVertices());
+        this.latentIndices = new HashMap<>();
+        for (int i = 0; i < latentVertices.size(); i++) {
+            latentIndices.put(latentVertices.get(i).getId(), i);
+        }
+
+        this.continuousLatentVertices = ImmutableList.copyOf(bayesianNetwork.getContinuousLatentVertices());
+        this.continuousLatentIndices = continuousLatentVertices.stream()
+            .mapToInt(v -> latentIndices.get(v.getId()))
+            .toArray();
+        this.parameterLength = continuousLatentVertices.stream()
+            .mapToInt(v -> TensorShape.getLengthAsInt(v.getShape()))
+            .sum();
+
+        this.function = new LogProbSourceWriter(bayesianNetwork).generate();
+
+        if (function.hasGradient()) {
+            this.logProbGradientCalculator = null;
+            this.logLikelihoodGradientCalculator = null;
+        } else {
+            this.logProbGradientCalculator = new LogProbGradientCalculator(
+                bayesianNetwork.getLatentOrObservedVertices(), continuousLatentVertices
+            );
+            this.logLikelihoodGradientCalculator = new LogProbGradientCalculator(
+                bayesianNetwork.getObservedVertices(), continuousLatentVertices
+            );
+        }
+
+        this.latentValues = new Object[latentVertices.size()];
+        this.gradients = new DoubleTensor[latentVertices.size()];
+    }
+
+    /**
+     * @return true if the gradient is calculated by the generated class, false if it is left to the vertices because
+     * a vertex between a latent vertex and a log prob is not written out
+     */
+    public boolean hasGeneratedGradient() {
+        return function.hasGradient();
+    }
+
+    @Override
+    public double logProb(Map<VariableReference, ?> inputs) {
+        setInputs(inputs);
+        return function.logProb(latentValues);
+    }
+
+    /**
+     * The generated log prob is fast enough to calculate all of it again, so this is the same as
+     * {@link #logProb(Map)}.
+     */
+    @Override
+    public double logProbAfter(Map<VariableReference, Object> newValues, double logProbBefore) {
+        return logProb(newValues);
+    }
+
+    @Override
+    public double logLikelihood(Map<VariableReference, ?> inputs) {
+        setInputs(inputs);
+        return function.logLikelihood(latentValues);
+    }
+
+    @Override
+    public Map<VariableReference, DoubleTensor> logProbGradients(Map<VariableReference, ?> inputs) {
+        setInputs(inputs);
+        if (function.hasGradient()) {
+            Arrays.fill(gradients, null);
+            function.logProbGradient(latentValues, gradients);
+            return gradientsByReference();
+        }
+        function.logProb(latentValues);
+        return (Map) logProbGradientCalculator.getJointLogProbGradientWrtLatents();
+    }
+
+    @Override
+    public Map<VariableReference, DoubleTensor> logProbGradients() {
+        return logProbGradients(null);
+    }
+
+    @Override
+    public Map<VariableReference, DoubleTensor> logLikelihoodGradients(Map<VariableReference, ?> inputs) {
+        setInputs(inputs);
+        if (function.hasGradient()) {
+            Arrays.fill(gradients, null);
+            function.logLikelihoodGradient(latentValues, gradients);
+            return gradientsByReference();
+        }
+        function.logProb(latentValues);
+        return (Map) logLikelihoodGradientCalculator.getJointLogProbGradientWrtLatents();
+    }
+
+    @Override
+    public Map<VariableReference, DoubleTensor> logLikelihoodGradients() {
+        return logLikelihoodGradients(null);
+    }
+
+    /**
+     * @return the total length of the continuous latent vertices, which is the length of the flat parameters
+     */
+    public int getParameterLength() {
+        return parameterLength;
+    }
+
+    /**
+     * @param parameters the values of the continuous latent vertices, flattened and one after the other in the order
+     *                   of {@link #getContinuousLatentVariables()}
+     * @return the log prob with the continuous latent vertices set to the parameters
+     */
+    public double logProb(double[] parameters) {
+        setParameters(parameters);
+        return function.logProb(latentValues);
+    }
+
+    /**
+     * @param parameters the values of the continuous latent vertices as for {@link #logProb(double[])}
+     * @param gradient   where the gradient of the log prob with respect to each parameter is written
+     * @return the log prob with the continuous latent vertices set to the parameters
+     */
+    public double logProbGradient(double[] parameters, double[] gradient) {
+        setParameters(parameters);
+
+        final double logProb;
+        final Map<VariableReference, DoubleTensor> byReference;
+        if (function.hasGradient()) {
+            Arrays.fill(gradients, null);
+            logProb = function.logProbGradient(latentValues, gradients);
+            byReference = gradientsByReference();
+        } else {
+            logProb = function.logProb(latentValues);
+            byReference = (Map) logProbGradientCalculator.getJointLogProbGradientWrtLatents();
+        }
+
+        flatten(byReference, gradient);
+        return logProb;
+    }
+
+    @Override
+    public List<Variable> getLatentVariables() {
+        return (List) latentVertices;
+    }
+
+    @Override
+    public List<Variable<DoubleTensor, ?>> getContinuousLatentVariables() {
+        return continuousLatentVertices.stream()
+            .map(v -> (Variable<DoubleTensor, ?>) v)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Sets the inputs on their vertices and reads the values of all of the latent vertices, which may also have been
+     * set directly by an algorithm such as {@link io.improbable.keanu.algorithms.mcmc.MetropolisHastings}.
+     */
+    private void setInputs(Map<VariableReference, ?> inputs) {
+        if (inputs != null) {
+            for (Map.Entry<VariableReference, ?> input : inputs.entrySet()) {
+                final Integer index = latentIndices.get(input.getKey());
+                if (index == null) {
+                    throw new IllegalArgumentException("Cannot set value of input that is not latent: " + input.getKey());
+                }
+                latentVertices.get(index).setValue(input.getValue());
+            }
+        }
+
+        for (int i = 0; i < latentValues.length; i++) {
+            latentValues[i] = latentVertices.get(i).getValue();
+        }
+    }
+
+    private void setParameters(double[] parameters) {
+        if (parameters.length != parameterLength) {
+            throw new IllegalArgumentException(
+                "Expected " + parameterLength + " parameters but got " + parameters.length
+            );
+        }
+
+        int from = 0;
+        for (Vertex<DoubleTensor> vertex : continuousLatentVertices) {
+            final long[] shape = vertex.getShape();
+            final int length = TensorShape.getLengthAsInt(shape);
+            vertex.setValue(DoubleTensor.create(Arrays.copyOfRange(parameters, from, from + length), shape));
+            from += length;
+        }
+
+        setInputs(null);
+    }
+
+    private Map<VariableReference, DoubleTensor> gradientsByReference() {
+        Map<VariableReference, DoubleTensor> byReference = new HashMap<>();
+        for (int i : continuousLatentIndices) {
+            if (gradients[i] != null) {
+                byReference.put(latentVertices.get(i).getId(), gradients[i]);
+            }
+        }
+        return byReference;
+    }
+
+    private void flatten(Map<VariableReference, DoubleTensor> byReference, double[] gradient) {
+        int from = 0;
+        for (Vertex<DoubleTensor> vertex : continuousLatentVertices) {
+            final int length = TensorShape.getLengthAsInt(vertex.getShape());
+            final DoubleTensor vertexGradient = byReference.get(vertex.getId());
+            if (vertexGradient == null) {
+                Arrays.fill(gradient, from, from + length, 0.0);
+            } else {
+                System.arraycopy(vertexGradient.asFlatDoubleArray(), 0, gradient, from, length);
+            }
+            from += length;
+        }
+    }
+}
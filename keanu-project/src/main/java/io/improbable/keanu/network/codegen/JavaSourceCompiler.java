@@ -0,0 +1,156 @@
+package io.improbable.keanu.network.codegen;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compiles a single Java source file in memory with the compiler of the running JDK and loads the class.
+ */
+class JavaSourceCompiler {
+
+    private JavaSourceCompiler() {
+    }
+
+    /**
+     * @param className the fully qualified name of the class
+     * @param source    the source of the class, which can use any class on the class path of this one
+     * @return the class, loaded by a new class loader whose parent is the class loader of this class
+     * @throws IllegalStateException if there is no Java compiler, which is the case when running on a JRE, or if the
+     *                               source does not compile
+     */
+    static Class<?> compile(String className, String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("Generating code needs a Java compiler, which is only available when running on a JDK");
+        }
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        InMemoryFileManager fileManager = new InMemoryFileManager(standardFileManager);
+
+        List<String> options = Arrays.asList("-classpath", classPath(), "-g:none", "-proc:none");
+        boolean compiled = compiler.getTask(
+            null, fileManager, diagnostics, options, null, Arrays.asList(new SourceFile(className, source))
+        ).call();
+
+        if (!compiled) {
+            StringBuilder message = new StringBuilder("Could not compile generated class " + className + ":");
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    message.append('\n').append(diagnostic.getLineNumber()).append(": ").append(diagnostic.getMessage(null));
+                }
+            }
+            throw new IllegalStateException(message.toString());
+        }
+
+        try {
+            return new ByteArrayClassLoader(fileManager.classFile.toByteArray()).loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The class path of the JVM plus the location of Keanu itself, which is not on the former when Keanu is loaded by
+     * an application's own class loader.
+     */
+    private static String classPath() {
+        Set<String> entries = new LinkedHashSet<>(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+
+        CodeSource codeSource = JavaSourceCompiler.class.getProtectionDomain().getCodeSource();
+        if (codeSource != null) {
+            try {
+                entries.add(new File(codeSource.getLocation().toURI()).getPath());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                // the location is not a file so the class path of the JVM is all there is to go on
+            }
+        }
+
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static class SourceFile extends SimpleJavaFileObject {
+
+        private final String source;
+
+        SourceFile(String className, String source) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static class ClassFile extends SimpleJavaFileObject {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        ClassFile(String className) {
+            super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    private static class InMemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+        private ClassFile classFile;
+
+        InMemoryFileManager(JavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+            if (kind != JavaFileObject.Kind.CLASS) {
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+            classFile = new ClassFile(className);
+            return classFile;
+        }
+    }
+
+    private static class ByteArrayClassLoader extends ClassLoader {
+
+        private final byte[] classBytes;
+
+        ByteArrayClassLoader(byte[] classBytes) {
+            super(JavaSourceCompiler.class.getClassLoader());
+            this.classBytes = classBytes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) {
+            return defineClass(name, classBytes, 0, classBytes.length);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.improbable.keanu.network.codegen;
+
+import io.improbable.keanu.distributions.continuous.Gaussian;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.MathKernels;
+import io.improbable.keanu.vertices.Vertex;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The super class of the log prob functions generated by {@link LogProbSourceWriter}. A generated function holds the
+ * value of each vertex it calculates in a field of its own, so it must not be used by more than one thread at a time.
+ * <p>
+ * The latent values given to each method are in the order of {@link io.improbable.keanu.network.BayesianNetwork#getLatentVertices()}
+ * and must also be the values of the latent vertices, because vertices that are not written out read their parents.
+ * Gradients are written to the same positions, and are left null for latent vertices that are not continuous or that
+ * the log prob does not depend on.
+ */
+public abstract class LogProbFunction {
+
+    /**
+     * The vertices of the network, numbered as the fields of the generated class are
+     */
+    protected final Vertex[] vertices;
+
+    /**
+     * The values of the vertices that do not depend on any latent vertex, captured when the function was generated
+     */
+    protected final Object[] constants;
+
+    protected final long[][] shapes;
+
+    /**
+     * The vertices each probabilistic vertex that has no generated gradient is differentiated with respect to
+     */
+    protected final Set<Vertex>[] withRespectTo;
+
+    protected LogProbFunction(Vertex[] vertices, Object[] constants, long[][] shapes, Set<Vertex>[] withRespectTo) {
+        this.vertices = vertices;
+        this.constants = constants;
+        this.shapes = shapes;
+        this.withRespectTo = withRespectTo;
+    }
+
+    /**
+     * @return true if the gradient methods are generated, false if the network has a vertex on the way from a latent
+     * to a log prob that can only be differentiated by the vertices themselves
+     */
+    public abstract boolean hasGradient();
+
+    public abstract double logProb(Object[] latents);
+
+    public abstract double logLikelihood(Object[] latents);
+
+    /**
+     * @param latents   the latent values
+     * @param gradients where the gradient of the log prob with respect to each latent is written
+     * @return the log prob
+     */
+    public abstract double logProbGradient(Object[] latents, DoubleTensor[] gradients);
+
+    /**
+     * @param latents   the latent values
+     * @param gradients where the gradient of the log likelihood with respect to each latent is written
+     * @return the log likelihood
+     */
+    public abstract double logLikelihoodGradient(Object[] latents, DoubleTensor[] gradients);
+
+    /**
+     * Adds a contribution to a gradient, summing it over any dimensions that were broadcast to get from the shape of
+     * the vertex to the shape of the contribution.
+     *
+     * @param gradient     the gradient so far or null if there is none yet
+     * @param contribution the contribution or null if there is none
+     * @param shape        the shape of the vertex the gradient is with respect to
+     * @return the sum, which is never one of the arguments modified in place
+     */
+    protected static DoubleTensor accumulate(DoubleTensor gradient, DoubleTensor contribution, long[] shape) {
+        if (contribution == null) {
+            return gradient;
+        }
+
+        final DoubleTensor shaped = Arrays.equals(contribution.getShape(), shape) ? contribution : sumToShape(contribution, shape);
+        return gradient == null ? shaped : gradient.plus(shaped);
+    }
+
+    private static DoubleTensor sumToShape(DoubleTensor tensor, long[] shape) {
+        final long[] tensorShape = tensor.getShape();
+        final int rankDifference = tensorShape.length - shape.length;
+
+        int[] broadcastDimensions = new int[tensorShape.length];
+        int count = 0;
+        for (int i = 0; i < tensorShape.length; i++) {
+            if (i < rankDifference || (shape[i - rankDifference] == 1 && tensorShape[i] != 1)) {
+                broadcastDimensions[count++] = i;
+            }
+        }
+
+        final DoubleTensor summed = count == 0 ? tensor : tensor.sum(Arrays.copyOf(broadcastDimensions, count));
+        return summed.reshape(shape);
+    }
+
+    /**
+     * Spreads the gradient of a sum back over the dimensions that were summed.
+     *
+     * @param gradient       the gradient with respect to the sum
+     * @param inputShape     the shape of what was summed
+     * @param overDimensions the dimensions that were summed over
+     * @return the gradient with respect to what was summed
+     */
+    protected static DoubleTensor unsum(DoubleTensor gradient, long[] inputShape, int[] overDimensions) {
+        long[] shapeWithoutRankLoss = Arrays.copyOf(inputShape, inputShape.length);
+        for (int dimension : overDimensions) {
+            shapeWithoutRankLoss[dimension] = 1;
+        }
+        return DoubleTensor.zeros(inputShape).plus(gradient.reshape(shapeWithoutRankLoss));
+    }
+
+    /**
+     * @param contribution a contribution to the gradient of a scalar, which may be null
+     * @return the sum of the contribution, or zero if there is none
+     */
+    protected static double sumOf(DoubleTensor contribution) {
+        return contribution == null ? 0.0 : contribution.sum();
+    }
+
+    /**
+     * The log prob of a scalar Gaussian, as {@link Gaussian#logProb(DoubleTensor)} calculates it
+     *
+     * @param x     the value
+     * @param mu    the mean
+     * @param sigma the standard deviation
+     * @return the log of the density of the Gaussian at x
+     */
+    protected static double gaussianLogProb(double x, double mu, double sigma) {
+        final double xMinusMu = x - mu;
+        return -(xMinusMu * xMinusMu / (sigma * sigma * 2) + MathKernels.log(sigma) + Gaussian.LN_SQRT_2PI);
+    }
+}
@@ -0,0 +1,757 @@
+package io.improbable.keanu.network.codegen;
+
+import com.google.common.collect.ImmutableMap;
+import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.AdditionVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DifferenceVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DivisionVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DoubleBinaryOpVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.MultiplicationVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.PowerVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.CosVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.DoubleUnaryOpVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.ExpVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.LogVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.SigmoidVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.SinVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.SumVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes the source of a {@link LogProbFunction} for a {@link BayesianNetwork}.
+ * <p>
+ * Every vertex that the log prob depends on gets a field and a statement that sets it. Vertices that do not depend on
+ * any latent vertex are read once from {@link LogProbFunction#constants}. The double operations in {@link #BINARY_OPS},
+ * {@link #UNARY_OPS} and sums, and the log prob of Gaussians, are written out along with their reverse mode gradient.
+ * Scalar double vertices are held in double fields, so their operations and gradients are plain arithmetic rather
+ * than calls on tensors. Other vertices are calculated by the vertex itself, so the values of their parents are also
+ * set on the parent vertices. The gradient methods are only generated if none of these other vertices are between a
+ * continuous latent vertex and a log prob.
+ * <p>
+ * The statements are split over many small methods because the JIT does not compile very large methods.
+ */
+class LogProbSourceWriter {
+
+    private static final int STATEMENTS_PER_METHOD = 40;
+    private static final AtomicInteger CLASS_COUNT = new AtomicInteger();
+
+    private enum Kind {
+        LATENT, CONSTANT, CALCULATED
+    }
+
+    /**
+     * Writes an operation, or the contribution it makes to the gradient of an operand. The arguments are expressions
+     * for the operands, the result and the gradient with respect to the result.
+     */
+    private interface BinarySource {
+        String write(String left, String right, String result, String gradient);
+    }
+
+    private interface UnarySource {
+        String write(String input, String result, String gradient);
+    }
+
+    /**
+     * The sources of an operation on tensors, and of the same operation on doubles for when all of it is scalar
+     */
+    private static class BinaryOp {
+        final BinarySource value;
+        final BinarySource toLeft;
+        final BinarySource toRight;
+        final BinarySource scalarValue;
+        final BinarySource scalarToLeft;
+        final BinarySource scalarToRight;
+
+        BinaryOp(BinarySource value, BinarySource toLeft, BinarySource toRight,
+                 BinarySource scalarValue, BinarySource scalarToLeft, BinarySource scalarToRight) {
+            this.value = value;
+            this.toLeft = toLeft;
+            this.toRight = toRight;
+            this.scalarValue = scalarValue;
+            this.scalarToLeft = scalarToLeft;
+            this.scalarToRight = scalarToRight;
+        }
+    }
+
+    private static class UnaryOp {
+        final UnarySource value;
+        final UnarySource toInput;
+        final UnarySource scalarValue;
+        final UnarySource scalarToInput;
+
+        UnaryOp(UnarySource value, UnarySource toInput, UnarySource scalarValue, UnarySource scalarToInput) {
+            this.value = value;
+            this.toInput = toInput;
+            this.scalarValue = scalarValue;
+            this.scalarToInput = scalarToInput;
+        }
+    }
+
+    private static final Map<Class<?>, BinaryOp> BINARY_OPS = ImmutableMap.<Class<?>, BinaryOp>builder()
+        .put(AdditionVertex.class, new BinaryOp(
+            (l, r, o, g) -> l + ".plus(" + r + ")",
+            (l, r, o, g) -> g,
+            (l, r, o, g) -> g,
+            (l, r, o, g) -> l + " + " + r,
+            (l, r, o, g) -> g,
+            (l, r, o, g) -> g
+        ))
+        .put(DifferenceVertex.class, new BinaryOp(
+            (l, r, o, g) -> l + ".minus(" + r + ")",
+            (l, r, o, g) -> g,
+            (l, r, o, g) -> g + ".unaryMinus()",
+            (l, r, o, g) -> l + " - " + r,
+            (l, r, o, g) -> g,
+            (l, r, o, g) -> "-" + g
+        ))
+        .put(MultiplicationVertex.class, new BinaryOp(
+            (l, r, o, g) -> l + ".times(" + r + ")",
+            (l, r, o, g) -> g + ".times(" + r + ")",
+            (l, r, o, g) -> g + ".times(" + l + ")",
+            (l, r, o, g) -> l + " * " + r,
+            (l, r, o, g) -> g + " * " + r,
+            (l, r, o, g) -> g + " * " + l
+        ))
+        .put(DivisionVertex.class, new BinaryOp(
+            (l, r, o, g) -> l + ".div(" + r + ")",
+            (l, r, o, g) -> g + ".div(" + r + ")",
+            (l, r, o, g) -> g + ".times(" + o + ").divInPlace(" + r + ").unaryMinusInPlace()",
+            (l, r, o, g) -> l + " / " + r,
+            (l, r, o, g) -> g + " / " + r,
+            (l, r, o, g) -> "-" + g + " * " + o + " / " + r
+        ))
+        .put(PowerVertex.class, new BinaryOp(
+            (l, r, o, g) -> l + ".pow(" + r + ")",
+            (l, r, o, g) -> g + ".times(" + r + ".times(" + l + ".pow(" + r + ".minus(1))))",
+            (l, r, o, g) -> g + ".times(" + o + ".times(" + l + ".log()))",
+            (l, r, o, g) -> "Math.pow(" + l + ", " + r + ")",
+            (l, r, o, g) -> g + " * " + r + " * Math.pow(" + l + ", " + r + " - 1)",
+            (l, r, o, g) -> g + " * " + o + " * MathKernels.log(" + l + ")"
+        ))
+        .build();
+
+    private static final Map<Class<?>, UnaryOp> UNARY_OPS = ImmutableMap.<Class<?>, UnaryOp>builder()
+        .put(ExpVertex.class, new UnaryOp(
+            (x, o, g) -> x + ".exp()",
+            (x, o, g) -> g + ".times(" + o + ")",
+            (x, o, g) -> "MathKernels.exp(" + x + ")",
+            (x, o, g) -> g + " * " + o
+        ))
+        .put(LogVertex.class, new UnaryOp(
+            (x, o, g) -> x + ".log()",
+            (x, o, g) -> g + ".div(" + x + ")",
+            (x, o, g) -> "MathKernels.log(" + x + ")",
+            (x, o, g) -> g + " / " + x
+        ))
+        .put(SinVertex.class, new UnaryOp(
+            (x, o, g) -> x + ".sin()",
+            (x, o, g) -> g + ".times(" + x + ".cos())",
+            (x, o, g) -> "Math.sin(" + x + ")",
+            (x, o, g) -> g + " * Math.cos(" + x + ")"
+        ))
+        .put(CosVertex.class, new UnaryOp(
+            (x, o, g) -> x + ".cos()",
+            (x, o, g) -> g + ".times(" + x + ".sin()).unaryMinusInPlace()",
+            (x, o, g) -> "Math.cos(" + x + ")",
+            (x, o, g) -> "-" + g + " * Math.sin(" + x + ")"
+        ))
+        .put(SigmoidVertex.class, new UnaryOp(
+            (x, o, g) -> x + ".unaryMinus().expInPlace().plusInPlace(1).reciprocalInPlace()",
+            (x, o, g) -> g + ".times(" + o + ").timesInPlace(" + o + ".unaryMinus().plusInPlace(1))",
+            (x, o, g) -> "1.0 / (MathKernels.exp(-" + x + ") + 1)",
+            (x, o, g) -> g + " * " + o + " * (1 - " + o + ")"
+        ))
+        .build();
+
+    private final String className;
+    private final Vertex[] vertices;
+    private final Map<Vertex, Integer> positions;
+    private final Kind[] kinds;
+    private final int[] latentIndices;
+    private final boolean[] scalar;
+    private final boolean[] carriesGradient;
+    private final boolean[] setOnVertex;
+    private final List<Integer> logProbTerms;
+    private final List<Integer> logLikelihoodTerms;
+    private final boolean hasGradient;
+
+    LogProbSourceWriter(BayesianNetwork network) {
+        this.className = LogProbFunction.class.getPackage().getName() + ".GeneratedLogProb" + CLASS_COUNT.incrementAndGet();
+
+        List<Vertex> latentVertices = network.getLatentVertices();
+        List<? extends Vertex> latentOrObservedVertices = network.getLatentOrObservedVertices();
+
+        this.vertices = TopologicalSort.sort(withDependencies(latentOrObservedVertices)).toArray(new Vertex[0]);
+        this.positions = new HashMap<>();
+        for (int p = 0; p < vertices.length; p++) {
+            positions.put(vertices[p], p);
+        }
+
+        Map<Vertex, Integer> latentIndexLookup = new HashMap<>();
+        for (int i = 0; i < latentVertices.size(); i++) {
+            latentIndexLookup.put(latentVertices.get(i), i);
+        }
+
+        this.kinds = new Kind[vertices.length];
+        this.latentIndices = new int[vertices.length];
+        this.scalar = new boolean[vertices.length];
+        this.carriesGradient = new boolean[vertices.length];
+        for (int p = 0; p < vertices.length; p++) {
+            final Vertex<?> vertex = vertices[p];
+            final Integer latentIndex = latentIndexLookup.get(vertex);
+            scalar[p] = vertex instanceof DoubleVertex && vertex.getShape().length == 0;
+
+            if (latentIndex != null) {
+                kinds[p] = Kind.LATENT;
+                latentIndices[p] = latentIndex;
+                carriesGradient[p] = vertex.getValue() instanceof DoubleTensor;
+            } else if (vertex.isObserved() || vertex.isProbabilistic()) {
+                kinds[p] = Kind.CONSTANT;
+            } else {
+                kinds[p] = Kind.CONSTANT;
+                for (Vertex<?> parent : (Set<Vertex>) vertex.getParents()) {
+                    final int parentPosition = positions.get(parent);
+                    if (kinds[parentPosition] != Kind.CONSTANT) {
+                        kinds[p] = Kind.CALCULATED;
+                    }
+                    carriesGradient[p] |= carriesGradient[parentPosition];
+                    if (vertex.getClass() != SumVertex.class) {
+                        scalar[p] &= scalar[parentPosition];
+                    }
+                }
+            }
+        }
+
+        this.logProbTerms = new ArrayList<>();
+        this.logLikelihoodTerms = new ArrayList<>();
+        for (Vertex vertex : TopologicalSort.sort(latentOrObservedVertices)) {
+            logProbTerms.add(positions.get(vertex));
+            if (vertex.isObserved()) {
+                logLikelihoodTerms.add(positions.get(vertex));
+            }
+        }
+
+        boolean allDifferentiable = true;
+        for (int p = 0; p < vertices.length; p++) {
+            if (kinds[p] == Kind.CALCULATED && carriesGradient[p] && !isWrittenOut(vertices[p])) {
+                allDifferentiable = false;
+            }
+        }
+        this.hasGradient = allDifferentiable;
+        this.setOnVertex = setOnVertex(new HashSet<>(logProbTerms));
+    }
+
+    /**
+     * @return for each position, whether the calculated value has to be set on its vertex because a vertex reads it.
+     * That is every calculated value if there is no generated gradient, as the vertices are then differentiated
+     * themselves, and otherwise only the parents of the vertices that are not written out.
+     */
+    private boolean[] setOnVertex(Set<Integer> terms) {
+        boolean[] readByVertex = new boolean[vertices.length];
+        for (int p = 0; p < vertices.length; p++) {
+            final boolean readsParents = terms.contains(p) ? !isGaussian(p) : kinds[p] == Kind.CALCULATED && !isWrittenOut(vertices[p]);
+            if (readsParents) {
+                for (Vertex<?> parent : (Set<Vertex>) vertices[p].getParents()) {
+                    readByVertex[positions.get(parent)] = true;
+                }
+            }
+        }
+
+        boolean[] setOnVertex = new boolean[vertices.length];
+        for (int p = 0; p < vertices.length; p++) {
+            setOnVertex[p] = kinds[p] == Kind.CALCULATED && (readByVertex[p] || !hasGradient);
+        }
+        return setOnVertex;
+    }
+
+    /**
+     * @return the latent or observed vertices and their parents, recursively, except for the parents of other observed
+     * or probabilistic vertices, whose values are taken as they are.
+     */
+    private static Set<Vertex> withDependencies(Collection<? extends Vertex> latentOrObservedVertices) {
+        Set<Vertex> terms = new HashSet<>(latentOrObservedVertices);
+        Set<Vertex> dependencies = new LinkedHashSet<>(latentOrObservedVertices);
+        Deque<Vertex> toVisit = new ArrayDeque<>(dependencies);
+
+        while (!toVisit.isEmpty()) {
+            Vertex<?> visiting = toVisit.pop();
+
+            if ((visiting.isObserved() || visiting.isProbabilistic()) && !terms.contains(visiting)) {
+                continue;
+            }
+
+            for (Vertex<?> parent : visiting.getParents()) {
+                if (dependencies.add(parent)) {
+                    toVisit.push(parent);
+                }
+            }
+        }
+
+        return dependencies;
+    }
+
+    private static boolean isWrittenOut(Vertex<?> vertex) {
+        return BINARY_OPS.containsKey(vertex.getClass())
+            || UNARY_OPS.containsKey(vertex.getClass())
+            || vertex.getClass() == SumVertex.class;
+    }
+
+    private boolean isGaussian(int p) {
+        return vertices[p].getClass() == GaussianVertex.class;
+    }
+
+    private boolean isScalarGaussian(int p) {
+        final GaussianVertex gaussian = (GaussianVertex) vertices[p];
+        return scalar[p] && scalar[positions.get(gaussian.getMu())] && scalar[positions.get(gaussian.getSigma())];
+    }
+
+    /**
+     * @return a new instance of the generated class
+     * @throws IllegalStateException if the class cannot be compiled
+     */
+    LogProbFunction generate() {
+        Class<?> generatedClass = JavaSourceCompiler.compile(className, write());
+
+        Object[] constants = new Object[vertices.length];
+        long[][] shapes = new long[vertices.length][];
+        Set<Vertex>[] withRespectTo = new Set[vertices.length];
+        for (int p = 0; p < vertices.length; p++) {
+            if (kinds[p] == Kind.CONSTANT) {
+                constants[p] = vertices[p].getValue();
+            }
+            shapes[p] = vertices[p].getShape();
+            withRespectTo[p] = withRespectTo(p);
+        }
+
+        try {
+            return (LogProbFunction) generatedClass
+                .getConstructor(Vertex[].class, Object[].class, long[][].class, Set[].class)
+                .newInstance(vertices, constants, shapes, withRespectTo);
+        } catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the parents of the probabilistic vertex at a position, and the vertex itself, that gradients flow to
+     */
+    private Set<Vertex> withRespectTo(int position) {
+        if (!vertices[position].isProbabilistic()) {
+            return null;
+        }
+
+        Set<Vertex> withRespectTo = new HashSet<>();
+        for (Vertex<?> parent : (Set<Vertex>) vertices[position].getParents()) {
+            if (carriesGradient[positions.get(parent)]) {
+                withRespectTo.add(parent);
+            }
+        }
+        if (carriesGradient[position]) {
+            withRespectTo.add(vertices[position]);
+        }
+        return withRespectTo;
+    }
+
+    /**
+     * @return for each position, whether the log prob of the terms depends on it through vertices that carry gradients
+     */
+    private boolean[] receivesGradient(List<Integer> terms) {
+        boolean[] receives = new boolean[vertices.length];
+        for (int p : terms) {
+            for (Vertex vertex : withRespectTo(p)) {
+                receives[positions.get(vertex)] = true;
+            }
+        }
+        for (int p = vertices.length - 1; p >= 0; p--) {
+            if (receives[p] && kinds[p] == Kind.CALCULATED) {
+                for (Vertex<?> parent : (Set<Vertex>) vertices[p].getParents()) {
+                    final int parentPosition = positions.get(parent);
+                    receives[parentPosition] |= carriesGradient[parentPosition];
+                }
+            }
+        }
+        return receives;
+    }
+
+    String write() {
+        final String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        StringBuilder source = new StringBuilder();
+        StringBuilder methods = new StringBuilder();
+
+        source.append("package ").append(LogProbFunction.class.getPackage().getName()).append(";\n\n")
+            .append("import io.improbable.keanu.distributions.continuous.Gaussian;\n")
+            .append("import io.improbable.keanu.distributions.hyperparam.Diffs;\n")
+            .append("import io.improbable.keanu.tensor.dbl.DoubleTensor;\n")
+            .append("import io.improbable.keanu.tensor.dbl.MathKernels;\n")
+            .append("import io.improbable.keanu.vertices.NonProbabilistic;\n")
+            .append("import io.improbable.keanu.vertices.Probabilistic;\n")
+            .append("import io.improbable.keanu.vertices.Vertex;\n\n")
+            .append("import java.util.Map;\n")
+            .append("import java.util.Set;\n\n")
+            .append("@SuppressWarnings(\"unchecked\")\n")
+            .append("public final class ").append(simpleName).append(" extends LogProbFunction {\n\n");
+
+        for (int p = 0; p < vertices.length; p++) {
+            source.append("    private ").append(typeOf(p)).append(' ').append(value(p)).append(";\n");
+            if (hasGradient && carriesGradient[p]) {
+                source.append("    private ").append(scalar[p] ? "double " : "DoubleTensor ").append(gradient(p)).append(";\n");
+            }
+            if (kinds[p] == Kind.CALCULATED && vertices[p].getClass() == SumVertex.class) {
+                source.append("    private static final int[] ").append(dimensions(p)).append(" = ")
+                    .append(Arrays.toString(((SumVertex) vertices[p]).getOverDimensions()).replace('[', '{').replace(']', '}'))
+                    .append(";\n");
+            }
+        }
+
+        source.append("\n    public ").append(simpleName).append("(Vertex[] vertices, Object[] constants, long[][] shapes, Set[] withRespectTo) {\n")
+            .append("        super(vertices, constants, shapes, withRespectTo);\n");
+        writeCalls(source, writeMethods(methods, "readConstants", "", constantStatements(), false), "");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n    public boolean hasGradient() {\n        return ").append(hasGradient).append(";\n    }\n\n");
+
+        List<String> forward = writeMethods(methods, "forward", "Object[] latents", forwardStatements(), false);
+        List<String> logProbTerms = writeMethods(methods, "logProbTerms", "", termStatements(this.logProbTerms), true);
+        List<String> logLikelihoodTerms = writeMethods(methods, "logLikelihoodTerms", "", termStatements(this.logLikelihoodTerms), true);
+
+        writeLogProbMethod(source, "logProb", forward, logProbTerms);
+        writeLogProbMethod(source, "logLikelihood", forward, logLikelihoodTerms);
+
+        if (hasGradient) {
+            List<String> clear = writeMethods(methods, "clearGradients", "", clearGradientStatements(), false);
+            List<String> reverse = writeMethods(methods, "reverse", "", reverseStatements(), false);
+            List<String> logProbTermGradients = writeMethods(methods, "logProbTermGradients", "", termGradientStatements(this.logProbTerms), false);
+            List<String> logLikelihoodTermGradients = writeMethods(methods, "logLikelihoodTermGradients", "", termGradientStatements(this.logLikelihoodTerms), false);
+            List<String> logProbCollect = writeMethods(methods, "collectLogProbGradients", "DoubleTensor[] gradients", collectGradientStatements(this.logProbTerms), false);
+            List<String> logLikelihoodCollect = writeMethods(methods, "collectLogLikelihoodGradients", "DoubleTensor[] gradients", collectGradientStatements(this.logLikelihoodTerms), false);
+
+            writeGradientMethod(source, "logProbGradient", forward, logProbTerms, clear, logProbTermGradients, reverse, logProbCollect);
+            writeGradientMethod(source, "logLikelihoodGradient", forward, logLikelihoodTerms, clear, logLikelihoodTermGradients, reverse, logLikelihoodCollect);
+        } else {
+            writeUnsupportedGradientMethod(source, "logProbGradient");
+            writeUnsupportedGradientMethod(source, "logLikelihoodGradient");
+        }
+
+        return source.append(methods).append("}\n").toString();
+    }
+
+    private void writeLogProbMethod(StringBuilder source, String name, List<String> forward, List<String> terms) {
+        source.append("    @Override\n    public double ").append(name).append("(Object[] latents) {\n");
+        writeCalls(source, forward, "latents");
+        writeSum(source, terms);
+        source.append("    }\n\n");
+    }
+
+    private void writeGradientMethod(StringBuilder source, String name,
+                                     List<String> forward, List<String> terms, List<String> clear,
+                                     List<String> termGradients, List<String> reverse, List<String> collect) {
+        source.append("    @Override\n    public double ").append(name).append("(Object[] latents, DoubleTensor[] gradients) {\n");
+        writeCalls(source, forward, "latents");
+        writeCalls(source, clear, "");
+        writeCalls(source, termGradients, "");
+        writeCalls(source, reverse, "");
+        writeCalls(source, collect, "gradients");
+        writeSum(source, terms);
+        source.append("    }\n\n");
+    }
+
+    private static void writeUnsupportedGradientMethod(StringBuilder source, String name) {
+        source.append("    @Override\n    public double ").append(name).append("(Object[] latents, DoubleTensor[] gradients) {\n")
+            .append("        throw new UnsupportedOperationException();\n")
+            .append("    }\n\n");
+    }
+
+    private static void writeCalls(StringBuilder source, List<String> methods, String arguments) {
+        for (String method : methods) {
+            source.append("        ").append(method).append('(').append(arguments).append(");\n");
+        }
+    }
+
+    private static void writeSum(StringBuilder source, List<String> methods) {
+        source.append("        double sum = 0.0;\n");
+        for (String method : methods) {
+            source.append("        sum += ").append(method).append("();\n");
+        }
+        source.append("        return sum;\n");
+    }
+
+    /**
+     * Writes the statements as private methods of at most {@link #STATEMENTS_PER_METHOD} statements each
+     *
+     * @param summing if true then each statement is an expression and the methods return the sum of them
+     * @return the names of the methods, in the order to call them
+     */
+    private static List<String> writeMethods(StringBuilder source, String name, String parameters, List<String> statements, boolean summing) {
+        List<String> methods = new ArrayList<>();
+
+        for (int from = 0; from < statements.size(); from += STATEMENTS_PER_METHOD) {
+            final String method = name + methods.size();
+            methods.add(method);
+
+            source.append("    private ").append(summing ? "double " : "void ").append(method).append('(').append(parameters).append(") {\n");
+            if (summing) {
+                source.append("        double sum = 0.0;\n");
+            }
+            for (String statement : statements.subList(from, Math.min(from + STATEMENTS_PER_METHOD, statements.size()))) {
+                source.append(summing ? "        sum += " + statement + ";\n" : statement);
+            }
+            if (summing) {
+                source.append("        return sum;\n");
+            }
+            source.append("    }\n\n");
+        }
+
+        return methods;
+    }
+
+    private List<String> constantStatements() {
+        List<String> statements = new ArrayList<>();
+        for (int p = 0; p < vertices.length; p++) {
+            if (kinds[p] == Kind.CONSTANT) {
+                statements.add("        " + value(p) + " = " + unbox(p, "constants[" + p + "]") + ";\n");
+            }
+        }
+        return statements;
+    }
+
+    private List<String> forwardStatements() {
+        List<String> statements = new ArrayList<>();
+        for (int p = 0; p < vertices.length; p++) {
+            if (kinds[p] == Kind.LATENT) {
+                statements.add("        " + value(p) + " = " + unbox(p, "latents[" + latentIndices[p] + "]") + ";\n");
+            } else if (kinds[p] == Kind.CALCULATED) {
+                String statement = "        " + value(p) + " = " + calculation(p) + ";\n";
+                if (setOnVertex[p]) {
+                    statement += "        vertices[" + p + "].setValue(" + tensor(p) + ");\n";
+                }
+                statements.add(statement);
+            }
+        }
+        return statements;
+    }
+
+    private String calculation(int p) {
+        final Vertex<?> vertex = vertices[p];
+        final BinaryOp binaryOp = BINARY_OPS.get(vertex.getClass());
+        if (binaryOp != null) {
+            final int left = positions.get(((DoubleBinaryOpVertex) vertex).getLeft());
+            final int right = positions.get(((DoubleBinaryOpVertex) vertex).getRight());
+            return scalar[p]
+                ? binaryOp.scalarValue.write(value(left), value(right), value(p), null)
+                : binaryOp.value.write(tensor(left), tensor(right), value(p), null);
+        }
+
+        final UnaryOp unaryOp = UNARY_OPS.get(vertex.getClass());
+        if (unaryOp != null) {
+            final int input = positions.get(((DoubleUnaryOpVertex) vertex).getInputVertex());
+            return scalar[p]
+                ? unaryOp.scalarValue.write(value(input), value(p), null)
+                : unaryOp.value.write(tensor(input), value(p), null);
+        }
+
+        if (vertex.getClass() == SumVertex.class) {
+            final int input = positions.get(((SumVertex) vertex).getInputVertex());
+            if (scalar[input]) {
+                return scalar[p] ? value(input) : tensor(input);
+            }
+            return scalar[p] ? value(input) + ".sum()" : value(input) + ".sum(" + dimensions(p) + ")";
+        }
+
+        return unbox(p, "((NonProbabilistic) vertices[" + p + "]).calculate()");
+    }
+
+    private List<String> termStatements(List<Integer> terms) {
+        List<String> statements = new ArrayList<>();
+        for (int p : terms) {
+            if (isGaussian(p)) {
+                final int mu = positions.get(((GaussianVertex) vertices[p]).getMu());
+                final int sigma = positions.get(((GaussianVertex) vertices[p]).getSigma());
+                statements.add(isScalarGaussian(p)
+                    ? "gaussianLogProb(" + value(p) + ", " + value(mu) + ", " + value(sigma) + ")"
+                    : "Gaussian.withParameters(" + tensor(mu) + ", " + tensor(sigma) + ").logProb(" + tensor(p) + ").sum()"
+                );
+            } else {
+                statements.add("((Probabilistic) vertices[" + p + "]).logProb(" + tensor(p) + ")");
+            }
+        }
+        return statements;
+    }
+
+    private List<String> termGradientStatements(List<Integer> terms) {
+        List<String> statements = new ArrayList<>();
+        for (int p : terms) {
+            final Set<Vertex> withRespectTo = withRespectTo(p);
+            if (withRespectTo.isEmpty()) {
+                continue;
+            }
+
+            StringBuilder statement = new StringBuilder("        {\n");
+            if (isGaussian(p)) {
+                final int mu = positions.get(((GaussianVertex) vertices[p]).getMu());
+                final int sigma = positions.get(((GaussianVertex) vertices[p]).getSigma());
+                if (isScalarGaussian(p)) {
+                    statement.append("            final double xMinusMu = ").append(value(p)).append(" - ").append(value(mu)).append(";\n")
+                        .append("            final double variance = ").append(value(sigma)).append(" * ").append(value(sigma)).append(";\n")
+                        .append("            final double dLogPdmu = xMinusMu / variance;\n");
+                    appendAccumulate(statement, mu, "dLogPdmu", true);
+                    appendAccumulate(statement, sigma, "xMinusMu * xMinusMu / (variance * " + value(sigma) + ") - 1.0 / " + value(sigma), true);
+                    appendAccumulate(statement, p, "-dLogPdmu", true);
+                } else {
+                    statement.append("            final Diffs d = Gaussian.withParameters(").append(tensor(mu)).append(", ")
+                        .append(tensor(sigma)).append(").dLogProb(").append(tensor(p)).append(");\n");
+                    appendAccumulate(statement, mu, "d.get(Diffs.MU).getValue()", false);
+                    appendAccumulate(statement, sigma, "d.get(Diffs.SIGMA).getValue()", false);
+                    appendAccumulate(statement, p, "d.get(Diffs.X).getValue()", false);
+                }
+            } else {
+                statement.append("            final Map<Vertex, DoubleTensor> d = ((Probabilistic) vertices[").append(p)
+                    .append("]).dLogProb(").append(tensor(p)).append(", withRespectTo[").append(p).append("]);\n");
+                for (Vertex vertex : withRespectTo) {
+                    final int q = positions.get(vertex);
+                    appendAccumulate(statement, q, "d.get(vertices[" + q + "])", false);
+                }
+            }
+            statements.add(statement.append("        }\n").toString());
+        }
+        return statements;
+    }
+
+    private List<String> reverseStatements() {
+        List<String> statements = new ArrayList<>();
+        for (int p = vertices.length - 1; p >= 0; p--) {
+            if (kinds[p] != Kind.CALCULATED || !carriesGradient[p]) {
+                continue;
+            }
+
+            final Vertex<?> vertex = vertices[p];
+            StringBuilder statement = new StringBuilder(scalar[p] ? "        {\n" : "        if (" + gradient(p) + " != null) {\n");
+
+            final BinaryOp binaryOp = BINARY_OPS.get(vertex.getClass());
+            final UnaryOp unaryOp = UNARY_OPS.get(vertex.getClass());
+            if (binaryOp != null) {
+                final int left = positions.get(((DoubleBinaryOpVertex) vertex).getLeft());
+                final int right = positions.get(((DoubleBinaryOpVertex) vertex).getRight());
+                if (scalar[p]) {
+                    appendAccumulate(statement, left, binaryOp.scalarToLeft.write(value(left), value(right), value(p), gradient(p)), true);
+                    appendAccumulate(statement, right, binaryOp.scalarToRight.write(value(left), value(right), value(p), gradient(p)), true);
+                } else {
+                    appendAccumulate(statement, left, binaryOp.toLeft.write(tensor(left), tensor(right), value(p), gradient(p)), false);
+                    appendAccumulate(statement, right, binaryOp.toRight.write(tensor(left), tensor(right), value(p), gradient(p)), false);
+                }
+            } else if (unaryOp != null) {
+                final int input = positions.get(((DoubleUnaryOpVertex) vertex).getInputVertex());
+                if (scalar[p]) {
+                    appendAccumulate(statement, input, unaryOp.scalarToInput.write(value(input), value(p), gradient(p)), true);
+                } else {
+                    appendAccumulate(statement, input, unaryOp.toInput.write(tensor(input), value(p), gradient(p)), false);
+                }
+            } else {
+                final int input = positions.get(((SumVertex) vertex).getInputVertex());
+                if (scalar[input]) {
+                    appendAccumulate(statement, input, gradient(p), scalar[p]);
+                } else {
+                    final String sumGradient = scalar[p] ? "DoubleTensor.scalar(" + gradient(p) + ")" : gradient(p);
+                    appendAccumulate(statement, input, "unsum(" + sumGradient + ", shapes[" + input + "], " + dimensions(p) + ")", false);
+                }
+            }
+
+            statements.add(statement.append("        }\n").toString());
+        }
+        return statements;
+    }
+
+    /**
+     * @param isDouble whether the contribution is a double rather than a tensor, which it can only be if the vertex
+     *                 it is to is scalar
+     */
+    private void appendAccumulate(StringBuilder statement, int to, String contribution, boolean isDouble) {
+        if (!carriesGradient[to]) {
+            return;
+        }
+
+        statement.append("            ").append(gradient(to));
+        if (scalar[to]) {
+            statement.append(" += ").append(isDouble ? contribution : "sumOf(" + contribution + ")").append(";\n");
+        } else {
+            statement.append(" = accumulate(").append(gradient(to)).append(", ").append(contribution)
+                .append(", shapes[").append(to).append("]);\n");
+        }
+    }
+
+    private List<String> clearGradientStatements() {
+        List<String> statements = new ArrayList<>();
+        for (int p = 0; p < vertices.length; p++) {
+            if (carriesGradient[p]) {
+                statements.add("        " + gradient(p) + (scalar[p] ? " = 0.0;\n" : " = null;\n"));
+            }
+        }
+        return statements;
+    }
+
+    private List<String> collectGradientStatements(List<Integer> terms) {
+        final boolean[] receivesGradient = receivesGradient(terms);
+
+        List<String> statements = new ArrayList<>();
+        for (int p = 0; p < vertices.length; p++) {
+            if (kinds[p] == Kind.LATENT && receivesGradient[p]) {
+                statements.add("        gradients[" + latentIndices[p] + "] = " + tensor(gradient(p), p) + ";\n");
+            }
+        }
+        return statements;
+    }
+
+    private String typeOf(int p) {
+        if (scalar[p]) {
+            return "double";
+        }
+        return vertices[p] instanceof DoubleVertex ? "DoubleTensor" : "Object";
+    }
+
+    /**
+     * @return an expression for the field at a position from an expression for the value of its vertex
+     */
+    private String unbox(int p, String value) {
+        return scalar[p] ? "((DoubleTensor) " + value + ").scalar()" : "(" + typeOf(p) + ") " + value;
+    }
+
+    /**
+     * @return an expression for the value of the field at a position as a tensor, even if it is a double
+     */
+    private String tensor(int p) {
+        return tensor(value(p), p);
+    }
+
+    private String tensor(String field, int p) {
+        return scalar[p] ? "DoubleTensor.scalar(" + field + ")" : field;
+    }
+
+    private static String value(int p) {
+        return "v" + p;
+    }
+
+    private static String gradient(int p) {
+        return "g" + p;
+    }
+
+    private static String dimensions(int p) {
+        return "dimensions" + p;
+    }
+}
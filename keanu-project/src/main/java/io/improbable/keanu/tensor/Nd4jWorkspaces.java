@@ -0,0 +1,87 @@
+package io.improbable.keanu.tensor;
+
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensorArena;
+import io.improbable.keanu.tensor.dbl.Nd4jDoubleTensor;
+import io.improbable.keanu.tensor.intgr.Nd4jIntegerTensor;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.api.memory.enums.AllocationPolicy;
+import org.nd4j.linalg.api.memory.enums.LearningPolicy;
+import org.nd4j.linalg.api.memory.enums.ResetPolicy;
+import org.nd4j.linalg.api.memory.enums.SpillPolicy;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Runs the ND4J operations of each iteration of an algorithm in a reusable ND4J memory workspace.
+ * <p>
+ * Without a workspace every ND4J operation allocates off heap memory that is only given back once the garbage
+ * collector has found its INDArray to be unreachable. When enabled, the outermost
+ * {@link JVMDoubleTensorArena.Scope} open on a thread also activates that thread's iteration workspace, so
+ * arrays created during the scope are carved out of a single block that is reset when the scope closes and is
+ * reused by the next one. The block grows to fit the largest iteration it has seen.
+ * <p>
+ * Anything escaped from the scope with {@link JVMDoubleTensorArena#escape(Object)}, which includes every vertex
+ * value, is detached from the workspace so that it keeps its values once the scope is closed. As with the arena,
+ * tensors kept by an algorithm between iterations must be escaped.
+ * <p>
+ * Workspaces are disabled by default.
+ */
+public final class Nd4jWorkspaces {
+
+    public static final String ITERATION_WORKSPACE_ID = "KEANU_ITERATION_WORKSPACE";
+
+    private static volatile boolean enabled = false;
+
+    private Nd4jWorkspaces() {
+    }
+
+    /**
+     * @param enabled true to run arena scopes in an ND4J workspace. This only affects scopes opened afterwards.
+     */
+    public static void setEnabled(boolean enabled) {
+        Nd4jWorkspaces.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Activates the iteration workspace of the current thread.
+     *
+     * @return the workspace, which must be closed on the same thread
+     */
+    public static MemoryWorkspace openIterationWorkspace() {
+        return Nd4j.getWorkspaceManager().getAndActivateWorkspace(Configuration.ITERATION, ITERATION_WORKSPACE_ID);
+    }
+
+    /**
+     * Detaches the values of ND4J backed tensors from any workspace. Other values are ignored.
+     *
+     * @param value a value that outlives the current workspace
+     * @param <T>   the type of the value
+     * @return value
+     */
+    public static <T> T detach(T value) {
+        if (value instanceof Nd4jDoubleTensor) {
+            ((Nd4jDoubleTensor) value).detach();
+        } else if (value instanceof Nd4jIntegerTensor) {
+            ((Nd4jIntegerTensor) value).detach();
+        }
+        return value;
+    }
+
+    /**
+     * Holds the configuration so ND4J is only loaded once a workspace is used.
+     */
+    private static final class Configuration {
+
+        private static final WorkspaceConfiguration ITERATION = WorkspaceConfiguration.builder()
+            .initialSize(0)
+            .policyAllocation(AllocationPolicy.OVERALLOCATE)
+            .policyLearning(LearningPolicy.FIRST_LOOP)
+            .policyReset(ResetPolicy.BLOCK_LEFT)
+            .policySpill(SpillPolicy.REALLOCATE)
+            .build();
+    }
+}
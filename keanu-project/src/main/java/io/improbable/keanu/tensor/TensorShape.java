@@ -199,6 +199,36 @@ public class TensorShape {
         return (shape1.length >= shape2.length) ? shape1 : shape2;
     }
 
+    /**
+     * Finds the shape that results from broadcasting two shapes together. Lower rank shapes are
+     * implicitly padded with leading ones. E.g. [3, 1] and [5] gives [3, 5].
+     *
+     * @param leftShape  shape of the left operand
+     * @param rightShape shape of the right operand
+     * @return the broadcast result shape
+     * @throws IllegalArgumentException if the shapes cannot be broadcast together
+     */
+    public static long[] getBroadcastResultShape(long[] leftShape, long[] rightShape) {
+        int resultRank = Math.max(leftShape.length, rightShape.length);
+        long[] paddedLeftShape = shapeToDesiredRankByPrependingOnes(leftShape, resultRank);
+        long[] paddedRightShape = shapeToDesiredRankByPrependingOnes(rightShape, resultRank);
+
+        long[] resultShape = new long[resultRank];
+        for (int i = 0; i < resultRank; i++) {
+            if (paddedLeftShape[i] == paddedRightShape[i] || paddedRightShape[i] == 1) {
+                resultShape[i] = paddedLeftShape[i];
+            } else if (paddedLeftShape[i] == 1) {
+                resultShape[i] = paddedRightShape[i];
+            } else {
+                throw new IllegalArgumentException(
+                    "Broadcasting of shape " + Arrays.toString(leftShape) + " and " + Arrays.toString(rightShape) + " not supported."
+                );
+            }
+        }
+
+        return resultShape;
+    }
+
     private static long[] increaseRankByPaddingValue(long[] lowRankTensorShape, int desiredRank, boolean append) {
         long[] paddedShape = new long[desiredRank];
         if (lowRankTensorShape.length > desiredRank) {
@@ -277,15 +277,39 @@ public class TensorShapeValidation {
             Arrays.toString(dimsLeft) + " and right dimensions " + Arrays.toString(dimsRight);
     }
 
+    /**
+     * @param left  shape of the left operand, which is a matrix in its last two dimensions
+     * @param right shape of the right operand, which is a matrix in its last two dimensions
+     * @return the shape of the matrix product. Any dimensions before the last two are batch dimensions that are
+     * broadcast against each other, e.g. [3, 2, 4] X [4, 5] is [3, 2, 5].
+     */
     public static long[] getMatrixMultiplicationResultingShape(long[] left, long[] right) {
-        if (left.length != 2 || right.length != 2) {
+        if (left.length < 2 || right.length < 2) {
             throw new IllegalArgumentException("Matrix multiply must be used on matrices");
         }
 
-        if (left[1] != right[0]) {
+        final int leftRank = left.length;
+        final int rightRank = right.length;
+
+        if (left[leftRank - 1] != right[rightRank - 2]) {
             throw new IllegalArgumentException("Can not multiply matrices of shapes " + Arrays.toString(left) + " X " + Arrays.toString(right));
         }
 
-        return new long[]{left[0], right[1]};
+        final int resultRank = Math.max(leftRank, rightRank);
+        final long[] leftBatch = TensorShape.shapeToDesiredRankByPrependingOnes(Arrays.copyOf(left, leftRank - 2), resultRank - 2);
+        final long[] rightBatch = TensorShape.shapeToDesiredRankByPrependingOnes(Arrays.copyOf(right, rightRank - 2), resultRank - 2);
+
+        final long[] resultShape = new long[resultRank];
+        for (int i = 0; i < resultRank - 2; i++) {
+            if (leftBatch[i] != rightBatch[i] && leftBatch[i] != 1 && rightBatch[i] != 1) {
+                throw new IllegalArgumentException("Can not multiply matrices of shapes " + Arrays.toString(left) + " X " + Arrays.toString(right));
+            }
+            resultShape[i] = leftBatch[i] == 1 ? rightBatch[i] : leftBatch[i];
+        }
+
+        resultShape[resultRank - 2] = left[leftRank - 2];
+        resultShape[resultRank - 1] = right[rightRank - 1];
+
+        return resultShape;
     }
 }
@@ -0,0 +1,670 @@
+package io.improbable.keanu.tensor.bool;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.Arrays;
+
+import static io.improbable.keanu.tensor.TensorShape.getFlatIndex;
+import static java.util.Arrays.copyOf;
+
+/**
+ * A BooleanTensor that packs 64 values into each long word. Logical operations and reductions work
+ * a word at a time so a mask uses 1/8th of the memory of a boolean[] and allTrue, allFalse and countTrue
+ * are popcount based.
+ * <p>
+ * Bits beyond the length of the tensor in the last word are always kept clear.
+ */
+public class BitPackedBooleanTensor implements BooleanTensor {
+
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+    private static final long ALL_BITS_SET = -1L;
+
+    private long[] words;
+    private long[] shape;
+    private long[] stride;
+    private long length;
+
+    private BitPackedBooleanTensor(long[] words, long[] shape) {
+        this.words = words;
+        this.shape = shape;
+        this.stride = TensorShape.getRowFirstStride(shape);
+        this.length = TensorShape.getLength(shape);
+    }
+
+    /**
+     * @param data  tensor data using c ordering
+     * @param shape desired shape of tensor
+     * @return a new tensor with the data packed into bits
+     */
+    public static BitPackedBooleanTensor create(boolean[] data, long[] shape) {
+        Preconditions.checkArgument(
+            TensorShape.getLength(shape) == data.length,
+            "Shape " + Arrays.toString(shape) + " does not match data length " + data.length
+        );
+        return new BitPackedBooleanTensor(pack(data), copyOf(shape, shape.length));
+    }
+
+    /**
+     * @param constant constant boolean value to fill shape
+     * @param shape    desired shape of tensor
+     * @return a new tensor with every bit set to the constant
+     */
+    public static BitPackedBooleanTensor create(boolean constant, long[] shape) {
+        long[] words = filledWords(constant, TensorShape.getLength(shape));
+        return new BitPackedBooleanTensor(words, copyOf(shape, shape.length));
+    }
+
+    public static BitPackedBooleanTensor scalar(boolean value) {
+        return new BitPackedBooleanTensor(new long[]{value ? 1L : 0L}, Tensor.SCALAR_SHAPE);
+    }
+
+    /**
+     * Concatenates by copying contiguous blocks of bits from each tensor.
+     *
+     * @param dimension the dimension along which the tensors will be joined
+     * @param toConcat  an array of BooleanTensor
+     * @return a BooleanTensor with toConcat joined along an existing dimension
+     */
+    public static BitPackedBooleanTensor concat(int dimension, BooleanTensor... toConcat) {
+        Preconditions.checkArgument(toConcat.length > 0);
+
+        long[][] shapes = new long[toConcat.length][];
+        BitPackedBooleanTensor[] packed = new BitPackedBooleanTensor[toConcat.length];
+        for (int i = 0; i < toConcat.length; i++) {
+            long[] shape = toConcat[i].getShape();
+            shapes[i] = shape.length == 0 ? new long[]{1} : shape;
+            packed[i] = asBitPacked(toConcat[i]);
+        }
+
+        long[] concatShape = getConcatResultShape(dimension, shapes);
+
+        long outerLength = 1;
+        for (int i = 0; i < dimension; i++) {
+            outerLength *= concatShape[i];
+        }
+
+        long innerLength = 1;
+        for (int i = dimension + 1; i < concatShape.length; i++) {
+            innerLength *= concatShape[i];
+        }
+
+        long[] concatWords = new long[wordsRequired(TensorShape.getLength(concatShape))];
+        long position = 0;
+
+        for (long outer = 0; outer < outerLength; outer++) {
+            for (int i = 0; i < packed.length; i++) {
+                long blockLength = shapes[i][dimension] * innerLength;
+                long blockStart = outer * blockLength;
+                for (long j = 0; j < blockLength; j++) {
+                    if (packed[i].get(blockStart + j)) {
+                        concatWords[wordIndex(position)] |= bitMask(position);
+                    }
+                    position++;
+                }
+            }
+        }
+
+        return new BitPackedBooleanTensor(concatWords, concatShape);
+    }
+
+    private static long[] getConcatResultShape(int dimension, long[][] shapes) {
+
+        long[] firstShape = shapes[0];
+
+        if (dimension < 0 || dimension >= firstShape.length) {
+            throw new IllegalArgumentException("Cannot concat shape " + Arrays.toString(firstShape) + " on dimension " + dimension);
+        }
+
+        long[] concatShape = copyOf(firstShape, firstShape.length);
+
+        for (int i = 1; i < shapes.length; i++) {
+            long[] cShape = shapes[i];
+
+            if (cShape.length != concatShape.length) {
+                throw new IllegalArgumentException("Cannot concat shape " + Arrays.toString(cShape));
+            }
+
+            for (int dim = 0; dim < concatShape.length; dim++) {
+                if (dim == dimension) {
+                    concatShape[dimension] += cShape[dimension];
+                } else if (cShape[dim] != concatShape[dim]) {
+                    throw new IllegalArgumentException("Cannot concat shape " + Arrays.toString(cShape));
+                }
+            }
+        }
+
+        return concatShape;
+    }
+
+    private static BitPackedBooleanTensor asBitPacked(BooleanTensor tensor) {
+        if (tensor instanceof BitPackedBooleanTensor) {
+            return (BitPackedBooleanTensor) tensor;
+        }
+        return create(tensor.asFlatBooleanArray(), tensor.getShape());
+    }
+
+    private static int wordsRequired(long length) {
+        return Ints.checkedCast((length + BITS_PER_WORD - 1) >>> ADDRESS_BITS_PER_WORD);
+    }
+
+    private static int wordIndex(long bitIndex) {
+        return (int) (bitIndex >>> ADDRESS_BITS_PER_WORD);
+    }
+
+    /**
+     * Shifts of a long only use the lowest 6 bits of the shift distance, so this is the bit
+     * within the word found by wordIndex.
+     */
+    private static long bitMask(long bitIndex) {
+        return 1L << bitIndex;
+    }
+
+    /**
+     * @return a mask of the bits that are in use in the last word of a tensor of the given length
+     */
+    private static long lastWordMask(long length) {
+        int usedBits = (int) (length & (BITS_PER_WORD - 1));
+        return usedBits == 0 ? ALL_BITS_SET : (1L << usedBits) - 1;
+    }
+
+    private static long[] pack(boolean[] data) {
+        long[] words = new long[wordsRequired(data.length)];
+        for (int i = 0; i < data.length; i++) {
+            if (data[i]) {
+                words[i >>> ADDRESS_BITS_PER_WORD] |= bitMask(i);
+            }
+        }
+        return words;
+    }
+
+    private static long[] filledWords(boolean value, long length) {
+        long[] words = new long[wordsRequired(length)];
+        if (value && words.length > 0) {
+            Arrays.fill(words, ALL_BITS_SET);
+            words[words.length - 1] &= lastWordMask(length);
+        }
+        return words;
+    }
+
+    private boolean get(long index) {
+        return (words[wordIndex(index)] & bitMask(index)) != 0;
+    }
+
+    private void set(long index, boolean value) {
+        if (value) {
+            words[wordIndex(index)] |= bitMask(index);
+        } else {
+            words[wordIndex(index)] &= ~bitMask(index);
+        }
+    }
+
+    private void clearUnusedBits() {
+        if (words.length > 0) {
+            words[words.length - 1] &= lastWordMask(length);
+        }
+    }
+
+    /**
+     * Finds the words of the right operand of a logical operation. A length one tensor on the left is first
+     * broadcast to the shape of a longer right operand, which makes the in place operation take that shape.
+     *
+     * @param that the right operand
+     * @return words of that, packed if that is not already bit packed
+     */
+    private long[] getOperandWords(BooleanTensor that) {
+        if (length == 1 && that.getLength() > 1) {
+            boolean value = get(0);
+            this.shape = that.getShape();
+            this.stride = TensorShape.getRowFirstStride(shape);
+            this.length = that.getLength();
+            this.words = filledWords(value, length);
+        } else if (that.getLength() != length) {
+            throw new IllegalArgumentException(
+                "Cannot apply boolean operation to shapes " + Arrays.toString(shape) + " and " + Arrays.toString(that.getShape())
+            );
+        }
+
+        if (that instanceof BitPackedBooleanTensor) {
+            return ((BitPackedBooleanTensor) that).words;
+        } else {
+            return pack(that.asFlatBooleanArray());
+        }
+    }
+
+    @Override
+    public BooleanTensor reshape(long... newShape) {
+        if (length != TensorShape.getLength(newShape)) {
+            throw new IllegalArgumentException("Cannot reshape a tensor to a shape of different length. Failed to reshape: "
+                + Arrays.toString(shape) + " to: " + Arrays.toString(newShape));
+        }
+        return new BitPackedBooleanTensor(copyOf(words, words.length), copyOf(newShape, newShape.length));
+    }
+
+    @Override
+    public BooleanTensor and(BooleanTensor that) {
+        return duplicate().andInPlace(that);
+    }
+
+    @Override
+    public BooleanTensor or(BooleanTensor that) {
+        return duplicate().orInPlace(that);
+    }
+
+    @Override
+    public BooleanTensor xor(BooleanTensor that) {
+        return duplicate().xorInPlace(that);
+    }
+
+    @Override
+    public BooleanTensor not() {
+        return duplicate().notInPlace();
+    }
+
+    @Override
+    public DoubleTensor doubleWhere(DoubleTensor trueValue, DoubleTensor falseValue) {
+        DoubleTensor.DoubleFlattenedView trueValuesFlattened = trueValue.getFlattenedView();
+        DoubleTensor.DoubleFlattenedView falseValuesFlattened = falseValue.getFlattenedView();
+
+        double[] result = new double[Ints.checkedCast(length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = get(i) ? trueValuesFlattened.getDoubleOrScalar(i) : falseValuesFlattened.getDoubleOrScalar(i);
+        }
+
+        return DoubleTensor.create(result, copyOf(shape, shape.length));
+    }
+
+    @Override
+    public IntegerTensor integerWhere(IntegerTensor trueValue, IntegerTensor falseValue) {
+        IntegerTensor.IntegerFlattenedView trueValuesFlattened = trueValue.getFlattenedView();
+        IntegerTensor.IntegerFlattenedView falseValuesFlattened = falseValue.getFlattenedView();
+
+        int[] result = new int[Ints.checkedCast(length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = get(i) ? trueValuesFlattened.getIntOrScalar(i) : falseValuesFlattened.getIntOrScalar(i);
+        }
+
+        return IntegerTensor.create(result, copyOf(shape, shape.length));
+    }
+
+    @Override
+    public BooleanTensor booleanWhere(BooleanTensor trueValue, BooleanTensor falseValue) {
+        if (trueValue.getLength() == length && falseValue.getLength() == length) {
+            long[] trueWords = asBitPacked(trueValue).words;
+            long[] falseWords = asBitPacked(falseValue).words;
+
+            long[] result = new long[words.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (words[i] & trueWords[i]) | (~words[i] & falseWords[i]);
+            }
+            return new BitPackedBooleanTensor(result, copyOf(shape, shape.length));
+        }
+
+        BooleanFlattenedView trueValuesFlattened = trueValue.getFlattenedView();
+        BooleanFlattenedView falseValuesFlattened = falseValue.getFlattenedView();
+
+        BitPackedBooleanTensor result = create(false, shape);
+        for (long i = 0; i < length; i++) {
+            result.set(i, get(i) ? trueValuesFlattened.getBooleanOrScalar(i) : falseValuesFlattened.getBooleanOrScalar(i));
+        }
+
+        return result;
+    }
+
+    @Override
+    public <T, TENSOR extends Tensor<T>> TENSOR where(TENSOR trueValue, TENSOR falseValue) {
+        if (trueValue instanceof DoubleTensor && falseValue instanceof DoubleTensor) {
+            return (TENSOR) doubleWhere((DoubleTensor) trueValue, (DoubleTensor) falseValue);
+        } else if (trueValue instanceof IntegerTensor && falseValue instanceof IntegerTensor) {
+            return (TENSOR) integerWhere((IntegerTensor) trueValue, (IntegerTensor) falseValue);
+        } else if (trueValue instanceof BooleanTensor && falseValue instanceof BooleanTensor) {
+            return (TENSOR) booleanWhere((BooleanTensor) trueValue, (BooleanTensor) falseValue);
+        } else {
+            FlattenedView<T> trueValuesFlattened = trueValue.getFlattenedView();
+            FlattenedView<T> falseValuesFlattened = falseValue.getFlattenedView();
+
+            T[] result = (T[]) (new Object[Ints.checkedCast(length)]);
+            for (int i = 0; i < result.length; i++) {
+                result[i] = get(i) ? trueValuesFlattened.getOrScalar(i) : falseValuesFlattened.getOrScalar(i);
+            }
+
+            return Tensor.create(result, copyOf(shape, shape.length));
+        }
+    }
+
+    @Override
+    public BooleanTensor andInPlace(BooleanTensor that) {
+        if (that.getLength() == 1 && length > 1) {
+            if (!that.scalar()) {
+                Arrays.fill(words, 0L);
+            }
+            return this;
+        }
+
+        long[] thatWords = getOperandWords(that);
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= thatWords[i];
+        }
+        return this;
+    }
+
+    @Override
+    public BooleanTensor orInPlace(BooleanTensor that) {
+        if (that.getLength() == 1 && length > 1) {
+            if (that.scalar()) {
+                Arrays.fill(words, ALL_BITS_SET);
+                clearUnusedBits();
+            }
+            return this;
+        }
+
+        long[] thatWords = getOperandWords(that);
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= thatWords[i];
+        }
+        return this;
+    }
+
+    @Override
+    public BooleanTensor xorInPlace(BooleanTensor that) {
+        if (that.getLength() == 1 && length > 1) {
+            if (that.scalar()) {
+                notInPlace();
+            }
+            return this;
+        }
+
+        long[] thatWords = getOperandWords(that);
+        for (int i = 0; i < words.length; i++) {
+            words[i] ^= thatWords[i];
+        }
+        return this;
+    }
+
+    @Override
+    public BooleanTensor notInPlace() {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = ~words[i];
+        }
+        clearUnusedBits();
+        return this;
+    }
+
+    @Override
+    public boolean allTrue() {
+        if (words.length == 0) {
+            return true;
+        }
+
+        int lastWord = words.length - 1;
+        for (int i = 0; i < lastWord; i++) {
+            if (words[i] != ALL_BITS_SET) {
+                return false;
+            }
+        }
+        return words[lastWord] == lastWordMask(length);
+    }
+
+    @Override
+    public boolean allFalse() {
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long countTrue() {
+        long count = 0;
+        for (int i = 0; i < words.length; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        return count;
+    }
+
+    @Override
+    public DoubleTensor toDoubleMask() {
+        return DoubleTensor.create(asFlatDoubleArray(), copyOf(shape, shape.length));
+    }
+
+    @Override
+    public IntegerTensor toIntegerMask() {
+        return IntegerTensor.create(asFlatIntegerArray(), copyOf(shape, shape.length));
+    }
+
+    @Override
+    public BooleanTensor slice(int dimension, long index) {
+        Preconditions.checkArgument(dimension < shape.length && index < shape[dimension]);
+        long[] resultShape = ArrayUtils.remove(shape, dimension);
+
+        long outerLength = 1;
+        for (int i = 0; i < dimension; i++) {
+            outerLength *= shape[i];
+        }
+        long innerLength = stride[dimension];
+
+        BitPackedBooleanTensor result = create(false, resultShape);
+        long position = 0;
+        for (long outer = 0; outer < outerLength; outer++) {
+            long from = (outer * shape[dimension] + index) * innerLength;
+            for (long inner = 0; inner < innerLength; inner++) {
+                if (get(from + inner)) {
+                    result.set(position, true);
+                }
+                position++;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public int getRank() {
+        return shape.length;
+    }
+
+    @Override
+    public long[] getShape() {
+        return copyOf(shape, shape.length);
+    }
+
+    @Override
+    public long[] getStride() {
+        return copyOf(stride, stride.length);
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public Boolean getValue(long... index) {
+        return get(getFlatIndex(shape, stride, index));
+    }
+
+    @Override
+    public boolean getBoolean(long... index) {
+        return get(getFlatIndex(shape, stride, index));
+    }
+
+    @Override
+    public BooleanTensor setValue(Boolean value, long... index) {
+        set(getFlatIndex(shape, stride, index), value);
+        return this;
+    }
+
+    @Override
+    public Boolean scalar() {
+        if (length > 1) {
+            throw new IllegalArgumentException("Not a scalar");
+        }
+        return get(0);
+    }
+
+    @Override
+    public BooleanTensor duplicate() {
+        return new BitPackedBooleanTensor(copyOf(words, words.length), copyOf(shape, shape.length));
+    }
+
+    @Override
+    public BooleanTensor elementwiseEquals(Tensor that) {
+        if (that instanceof BooleanTensor && hasSameShapeAs(that)) {
+            return xor((BooleanTensor) that).notInPlace();
+        }
+        return Tensor.elementwiseEquals(this, that);
+    }
+
+    @Override
+    public BooleanTensor elementwiseEquals(Boolean value) {
+        return value ? duplicate() : not();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (o instanceof BitPackedBooleanTensor) {
+            BitPackedBooleanTensor that = (BitPackedBooleanTensor) o;
+            return Arrays.equals(that.shape, shape) && Arrays.equals(that.words, words);
+        }
+
+        if (o instanceof Tensor) {
+            Tensor that = (Tensor) o;
+            if (!Arrays.equals(that.getShape(), shape)) return false;
+            return Arrays.equals(
+                that.asFlatArray(),
+                this.asFlatArray()
+            );
+        }
+
+        return false;
+    }
+
+    /**
+     * Hashes the same way as {@link SimpleBooleanTensor#hashCode()}, as the two are equal when their shape and values
+     * are.
+     */
+    @Override
+    public int hashCode() {
+        int dataHash = 1;
+        for (long i = 0; i < length; i++) {
+            dataHash = 31 * dataHash + Boolean.hashCode(get(i));
+        }
+        int result = dataHash;
+        result = 31 * result + Arrays.hashCode(shape);
+        result = 31 * result + Arrays.hashCode(stride);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder dataString = new StringBuilder();
+        if (length > 20) {
+            dataString.append(Arrays.toString(getRange(0, 10)));
+            dataString.append("...");
+            dataString.append(Arrays.toString(getRange(length - 10, length)));
+        } else {
+            dataString.append(Arrays.toString(asFlatBooleanArray()));
+        }
+
+        return "{\n" +
+            "shape = " + Arrays.toString(shape) +
+            "\ndata = " + dataString.toString() +
+            "\n}";
+    }
+
+    private boolean[] getRange(long from, long to) {
+        boolean[] range = new boolean[Ints.checkedCast(to - from)];
+        for (int i = 0; i < range.length; i++) {
+            range[i] = get(from + i);
+        }
+        return range;
+    }
+
+    @Override
+    public BooleanFlattenedView getFlattenedView() {
+        return new BitPackedBooleanFlattenedView();
+    }
+
+    private class BitPackedBooleanFlattenedView implements BooleanFlattenedView {
+
+        @Override
+        public long size() {
+            return length;
+        }
+
+        @Override
+        public boolean getBoolean(long index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+            }
+            return BitPackedBooleanTensor.this.get(index);
+        }
+
+        @Override
+        public boolean getBooleanOrScalar(long index) {
+            if (length == 1) {
+                return getBoolean(0);
+            } else {
+                return getBoolean(index);
+            }
+        }
+
+        @Override
+        public void setBoolean(long index, boolean value) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+            }
+            BitPackedBooleanTensor.this.set(index, value);
+        }
+    }
+
+    @Override
+    public double[] asFlatDoubleArray() {
+        double[] doubles = new double[Ints.checkedCast(length)];
+        for (int i = 0; i < doubles.length; i++) {
+            doubles[i] = get(i) ? 1.0 : 0.0;
+        }
+
+        return doubles;
+    }
+
+    @Override
+    public int[] asFlatIntegerArray() {
+        int[] integers = new int[Ints.checkedCast(length)];
+        for (int i = 0; i < integers.length; i++) {
+            integers[i] = get(i) ? 1 : 0;
+        }
+
+        return integers;
+    }
+
+    @Override
+    public Boolean[] asFlatArray() {
+        return ArrayUtils.toObject(asFlatBooleanArray());
+    }
+
+    /**
+     * @return a copy of the values unpacked to one boolean per element
+     */
+    @Override
+    public boolean[] asFlatBooleanArray() {
+        boolean[] booleans = new boolean[Ints.checkedCast(length)];
+        for (int i = 0; i < booleans.length; i++) {
+            booleans[i] = get(i);
+        }
+
+        return booleans;
+    }
+
+}
@@ -11,11 +11,11 @@ import static io.improbable.keanu.tensor.TensorShape.getAbsoluteDimension;
 public interface BooleanTensor extends Tensor<Boolean>, BooleanOperators<BooleanTensor> {
 
     static BooleanTensor create(boolean value, long[] shape) {
-        return new SimpleBooleanTensor(value, shape);
+        return BitPackedBooleanTensor.create(value, shape);
     }
 
     static BooleanTensor create(boolean[] values, long... shape) {
-        return new SimpleBooleanTensor(values, shape);
+        return BitPackedBooleanTensor.create(values, shape);
     }
 
     static BooleanTensor create(boolean... values) {
@@ -23,7 +23,7 @@ public interface BooleanTensor extends Tensor<Boolean>, BooleanOperators<Boolean
     }
 
     static BooleanTensor scalar(boolean scalarValue) {
-        return new SimpleBooleanTensor(scalarValue);
+        return BitPackedBooleanTensor.scalar(scalarValue);
     }
 
     static BooleanTensor vector(boolean... values) {
@@ -31,11 +31,11 @@ public interface BooleanTensor extends Tensor<Boolean>, BooleanOperators<Boolean
     }
 
     static BooleanTensor trues(long... shape) {
-        return new SimpleBooleanTensor(true, shape);
+        return BitPackedBooleanTensor.create(true, shape);
     }
 
     static BooleanTensor falses(long... shape) {
-        return new SimpleBooleanTensor(false, shape);
+        return BitPackedBooleanTensor.create(false, shape);
     }
 
     /**
@@ -68,21 +68,7 @@ public interface BooleanTensor extends Tensor<Boolean>, BooleanOperators<Boolean
     }
 
     static BooleanTensor concat(int dimension, BooleanTensor[] toConcat) {
-        DoubleTensor[] toDoubles = new DoubleTensor[toConcat.length];
-
-        for (int i = 0; i < toConcat.length; i++) {
-            toDoubles[i] = toConcat[i].toDoubleMask();
-        }
-
-        DoubleTensor concat = DoubleTensor.concat(dimension, toDoubles);
-        double[] concatFlat = concat.asFlatDoubleArray();
-        boolean[] data = new boolean[concat.asFlatDoubleArray().length];
-
-        for (int i = 0; i < data.length; i++) {
-            data[i] = concatFlat[i] == 1.0;
-        }
-
-        return new SimpleBooleanTensor(data, concat.getShape());
+        return BitPackedBooleanTensor.concat(dimension, toConcat);
     }
 
     @Override
@@ -91,6 +77,46 @@ public interface BooleanTensor extends Tensor<Boolean>, BooleanOperators<Boolean
     @Override
     BooleanTensor duplicate();
 
+    /**
+     * Like {@link #getValue(long...)} but without boxing the value.
+     *
+     * @param index the index of the element, or its flat index if a single index is given
+     * @return the value of the element
+     */
+    default boolean getBoolean(long... index) {
+        return getValue(index);
+    }
+
+    @Override
+    BooleanFlattenedView getFlattenedView();
+
+    /**
+     * A {@link FlattenedView} that reads and writes elements as primitive booleans.
+     */
+    interface BooleanFlattenedView extends FlattenedView<Boolean> {
+
+        boolean getBoolean(long index);
+
+        boolean getBooleanOrScalar(long index);
+
+        void setBoolean(long index, boolean value);
+
+        @Override
+        default Boolean get(long index) {
+            return getBoolean(index);
+        }
+
+        @Override
+        default Boolean getOrScalar(long index) {
+            return getBooleanOrScalar(index);
+        }
+
+        @Override
+        default void set(long index, Boolean value) {
+            setBoolean(index, value);
+        }
+    }
+
     BooleanTensor and(BooleanTensor that);
 
     default BooleanTensor and(boolean that) {
@@ -127,6 +153,15 @@ public interface BooleanTensor extends Tensor<Boolean>, BooleanOperators<Boolean
 
     boolean allFalse();
 
+    default boolean anyTrue() {
+        return !allFalse();
+    }
+
+    /**
+     * @return the number of elements that are true
+     */
+    long countTrue();
+
     DoubleTensor toDoubleMask();
 
     IntegerTensor toIntegerMask();
@@ -115,12 +115,12 @@ public class SimpleBooleanTensor implements BooleanTensor {
 
     @Override
     public IntegerTensor integerWhere(IntegerTensor trueValue, IntegerTensor falseValue) {
-        FlattenedView<Integer> trueValuesFlattened = trueValue.getFlattenedView();
-        FlattenedView<Integer> falseValuesFlattened = falseValue.getFlattenedView();
+        IntegerTensor.IntegerFlattenedView trueValuesFlattened = trueValue.getFlattenedView();
+        IntegerTensor.IntegerFlattenedView falseValuesFlattened = falseValue.getFlattenedView();
 
         int[] result = new int[data.length];
         for (int i = 0; i < result.length; i++) {
-            result[i] = data[i] ? trueValuesFlattened.getOrScalar(i) : falseValuesFlattened.getOrScalar(i);
+            result[i] = data[i] ? trueValuesFlattened.getIntOrScalar(i) : falseValuesFlattened.getIntOrScalar(i);
         }
 
         return IntegerTensor.create(result, copyOf(shape, shape.length));
@@ -128,12 +128,12 @@ public class SimpleBooleanTensor implements BooleanTensor {
 
     @Override
     public BooleanTensor booleanWhere(BooleanTensor trueValue, BooleanTensor falseValue) {
-        FlattenedView<Boolean> trueValuesFlattened = trueValue.getFlattenedView();
-        FlattenedView<Boolean> falseValuesFlattened = falseValue.getFlattenedView();
+        BooleanFlattenedView trueValuesFlattened = trueValue.getFlattenedView();
+        BooleanFlattenedView falseValuesFlattened = falseValue.getFlattenedView();
 
         boolean[] result = new boolean[data.length];
         for (int i = 0; i < result.length; i++) {
-            result[i] = data[i] ? trueValuesFlattened.getOrScalar(i) : falseValuesFlattened.getOrScalar(i);
+            result[i] = data[i] ? trueValuesFlattened.getBooleanOrScalar(i) : falseValuesFlattened.getBooleanOrScalar(i);
         }
 
         return BooleanTensor.create(result, copyOf(shape, shape.length));
@@ -215,6 +215,17 @@ public class SimpleBooleanTensor implements BooleanTensor {
         return true;
     }
 
+    @Override
+    public long countTrue() {
+        long count = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     @Override
     public DoubleTensor toDoubleMask() {
         double[] doubles = asFlatDoubleArray();
@@ -263,6 +274,11 @@ public class SimpleBooleanTensor implements BooleanTensor {
         return data[checkedCast(getFlatIndex(shape, stride, index))];
     }
 
+    @Override
+    public boolean getBoolean(long... index) {
+        return data[checkedCast(getFlatIndex(shape, stride, index))];
+    }
+
     @Override
     public BooleanTensor setValue(Boolean value, long... index) {
         data[checkedCast(getFlatIndex(shape, stride, index))] = value;
@@ -325,7 +341,7 @@ public class SimpleBooleanTensor implements BooleanTensor {
     }
 
     @Override
-    public FlattenedView<Boolean> getFlattenedView() {
+    public BooleanFlattenedView getFlattenedView() {
         return new SimpleBooleanFlattenedView(data);
     }
 
@@ -334,7 +350,7 @@ public class SimpleBooleanTensor implements BooleanTensor {
         return Tensor.elementwiseEquals(this, BooleanTensor.create(value, this.getShape()));
     }
 
-    private static class SimpleBooleanFlattenedView implements FlattenedView<Boolean> {
+    private static class SimpleBooleanFlattenedView implements BooleanFlattenedView {
 
         private boolean[] data;
 
@@ -348,7 +364,7 @@ public class SimpleBooleanTensor implements BooleanTensor {
         }
 
         @Override
-        public Boolean get(long index) {
+        public boolean getBoolean(long index) {
             if (index > Integer.MAX_VALUE) {
                 throw new IllegalArgumentException("Only integer based indexing supported for boolean tensors");
             }
@@ -356,16 +372,16 @@ public class SimpleBooleanTensor implements BooleanTensor {
         }
 
         @Override
-        public Boolean getOrScalar(long index) {
+        public boolean getBooleanOrScalar(long index) {
             if (data.length == 1) {
-                return get(0);
+                return getBoolean(0);
             } else {
-                return get(index);
+                return getBoolean(index);
             }
         }
 
         @Override
-        public void set(long index, Boolean value) {
+        public void setBoolean(long index, boolean value) {
             if (index > Integer.MAX_VALUE) {
                 throw new IllegalArgumentException("Only integer based indexing supported for generic tensors");
             }
@@ -0,0 +1,208 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.tensor.TensorShape;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * A DoubleTensorFactory that picks a backend for each tensor it creates from the tensor's length.
+ * <p>
+ * Tensors shorter than the Nd4j threshold are JVMDoubleTensors, which avoid the fixed cost of calling into
+ * native code. Tensors from the Nd4j threshold up to the off heap threshold are Nd4jDoubleTensors, and longer
+ * ones are OffHeapDoubleTensors, which keeps them off the garbage collected heap and allows more than
+ * Integer.MAX_VALUE elements. Operations between tensors of different backends already convert the right
+ * operand, so tensors from this factory can be freely mixed. The result of an operation has the backend of its
+ * left operand.
+ * <p>
+ * The thresholds can be set directly or measured with {@link #calibrate(UnaryOperator)}, which times a
+ * representative workload on both on heap backends at increasing lengths.
+ */
+public class AdaptiveDoubleTensorFactory implements DoubleTensorFactory {
+
+    /**
+     * Use as a threshold to never pick that backend.
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    public static final long DEFAULT_ND4J_THRESHOLD = 1L << 20;
+    public static final long DEFAULT_OFF_HEAP_THRESHOLD = Integer.MAX_VALUE - 8;
+
+    private static final int MIN_CALIBRATION_BITS = 8;
+    private static final int MAX_CALIBRATION_BITS = 20;
+    private static final int CALIBRATION_WARMUPS = 3;
+    private static final int CALIBRATION_REPETITIONS = 5;
+
+    private static final DoubleTensorFactory JVM = new JVMDoubleTensorFactory();
+    private static final DoubleTensorFactory ND4J = new Nd4jDoubleTensorFactory();
+    private static final DoubleTensorFactory OFF_HEAP = new OffHeapDoubleTensorFactory();
+
+    private final long nd4jThreshold;
+    private final long offHeapThreshold;
+
+    public AdaptiveDoubleTensorFactory() {
+        this(DEFAULT_ND4J_THRESHOLD, DEFAULT_OFF_HEAP_THRESHOLD);
+    }
+
+    /**
+     * @param nd4jThreshold    the length at or above which tensors are Nd4jDoubleTensors
+     * @param offHeapThreshold the length at or above which tensors are OffHeapDoubleTensors. Must be no more than
+     *                         {@link #DEFAULT_OFF_HEAP_THRESHOLD} as longer tensors don't fit in a Java array.
+     */
+    public AdaptiveDoubleTensorFactory(long nd4jThreshold, long offHeapThreshold) {
+        Preconditions.checkArgument(
+            nd4jThreshold >= 0,
+            "Nd4j threshold must not be negative but was " + nd4jThreshold
+        );
+        Preconditions.checkArgument(
+            offHeapThreshold >= 0 && offHeapThreshold <= DEFAULT_OFF_HEAP_THRESHOLD,
+            "Off heap threshold must be between 0 and " + DEFAULT_OFF_HEAP_THRESHOLD + " but was " + offHeapThreshold
+        );
+        this.nd4jThreshold = nd4jThreshold;
+        this.offHeapThreshold = offHeapThreshold;
+    }
+
+    public long getNd4jThreshold() {
+        return nd4jThreshold;
+    }
+
+    public long getOffHeapThreshold() {
+        return offHeapThreshold;
+    }
+
+    /**
+     * Same as {@link #calibrate(UnaryOperator)} with an elementwise workload of times, plus and log.
+     *
+     * @return a factory with the measured Nd4j threshold, which is {@link #NEVER} if Nd4j wasn't faster
+     */
+    public static AdaptiveDoubleTensorFactory calibrate() {
+        return calibrate(tensor -> tensor.times(tensor).plusInPlace(1.0).logInPlace());
+    }
+
+    /**
+     * Times workload on JVMDoubleTensors and Nd4jDoubleTensors of lengths from 2^8 to 2^20 and sets the Nd4j
+     * threshold to the shortest of those lengths from which Nd4j is faster at every longer length. The off heap
+     * threshold is left at its default.
+     *
+     * @param workload the operations that tensors are expected to go through, which is applied to a vector of
+     *                 values between zero and one
+     * @return a factory with the measured Nd4j threshold, which is {@link #NEVER} if Nd4j wasn't faster
+     */
+    public static AdaptiveDoubleTensorFactory calibrate(UnaryOperator<DoubleTensor> workload) {
+        long nd4jThreshold = NEVER;
+
+        for (int bits = MAX_CALIBRATION_BITS; bits >= MIN_CALIBRATION_BITS; bits -= 2) {
+            final int length = 1 << bits;
+            final double[] values = new double[length];
+            for (int i = 0; i < length; i++) {
+                values[i] = (i + 0.5) / length;
+            }
+
+            final long jvmNanos = timeWorkload(workload, JVM, values);
+            final long nd4jNanos = timeWorkload(workload, ND4J, values);
+
+            if (nd4jNanos < jvmNanos) {
+                nd4jThreshold = length;
+            } else {
+                break;
+            }
+        }
+
+        return new AdaptiveDoubleTensorFactory(nd4jThreshold, DEFAULT_OFF_HEAP_THRESHOLD);
+    }
+
+    /**
+     * @return the median time in nanoseconds to create a tensor of values and apply workload to it
+     */
+    private static long timeWorkload(UnaryOperator<DoubleTensor> workload, DoubleTensorFactory factory, double[] values) {
+        for (int i = 0; i < CALIBRATION_WARMUPS; i++) {
+            workload.apply(factory.create(values)).sum();
+        }
+
+        final long[] nanos = new long[CALIBRATION_REPETITIONS];
+        for (int i = 0; i < CALIBRATION_REPETITIONS; i++) {
+            final long start = System.nanoTime();
+            //summing forces any deferred operations to be evaluated
+            workload.apply(factory.create(values)).sum();
+            nanos[i] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(nanos);
+        return nanos[CALIBRATION_REPETITIONS / 2];
+    }
+
+    /**
+     * @param length the number of elements of a tensor
+     * @return the factory of the backend that tensors of length are created with
+     */
+    public DoubleTensorFactory factoryFor(long length) {
+        if (length >= offHeapThreshold) {
+            return OFF_HEAP;
+        } else if (length >= nd4jThreshold) {
+            return ND4J;
+        } else {
+            return JVM;
+        }
+    }
+
+    @Override
+    public DoubleTensor create(double value, long[] shape) {
+        return factoryFor(TensorShape.getLength(shape)).create(value, shape);
+    }
+
+    @Override
+    public DoubleTensor create(double[] values, long[] shape) {
+        return factoryFor(values.length).create(values, shape);
+    }
+
+    @Override
+    public DoubleTensor create(double[] values) {
+        return factoryFor(values.length).create(values);
+    }
+
+    @Override
+    public DoubleTensor ones(long[] shape) {
+        return factoryFor(TensorShape.getLength(shape)).ones(shape);
+    }
+
+    @Override
+    public DoubleTensor zeros(long[] shape) {
+        return factoryFor(TensorShape.getLength(shape)).zeros(shape);
+    }
+
+    @Override
+    public DoubleTensor eye(long n) {
+        return factoryFor(n * n).eye(n);
+    }
+
+    @Override
+    public DoubleTensor linspace(double start, double end, int numberOfPoints) {
+        return factoryFor(numberOfPoints).linspace(start, end, numberOfPoints);
+    }
+
+    @Override
+    public DoubleTensor arange(double start, double end) {
+        return arange(start, end, 1.0);
+    }
+
+    @Override
+    public DoubleTensor arange(double start, double end, double stepSize) {
+        final long length = Math.max(0L, (long) Math.ceil((end - start) / stepSize));
+        return factoryFor(length).arange(start, end, stepSize);
+    }
+
+    @Override
+    public DoubleTensor scalar(double scalarValue) {
+        return JVM.scalar(scalarValue);
+    }
+
+    @Override
+    public DoubleTensor concat(int dimension, DoubleTensor... toConcat) {
+        long length = 0;
+        for (DoubleTensor tensor : toConcat) {
+            length += tensor.getLength();
+        }
+        return factoryFor(length).concat(dimension, toConcat);
+    }
+}
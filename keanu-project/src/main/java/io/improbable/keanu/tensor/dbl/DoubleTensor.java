@@ -3,12 +3,15 @@ package io.improbable.keanu.tensor.dbl;
 import io.improbable.keanu.kotlin.DoubleOperators;
 import io.improbable.keanu.tensor.NumberTensor;
 import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.TensorShape;
 import io.improbable.keanu.tensor.bool.BooleanTensor;
 import org.apache.commons.lang3.ArrayUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 
 import static io.improbable.keanu.tensor.TensorShape.getAbsoluteDimension;
 
@@ -153,6 +156,96 @@ public abstract class DoubleTensor implements NumberTensor<Double, DoubleTensor>
     @Override
     public abstract DoubleTensor setValue(Double value, long... index);
 
+    /**
+     * Like {@link #getValue(long...)} but without boxing the value.
+     *
+     * @param index the index of the element, or its flat index if a single index is given
+     * @return the value of the element
+     */
+    public double getDouble(long... index) {
+        return getValue(index);
+    }
+
+    @Override
+    public abstract DoubleFlattenedView getFlattenedView();
+
+    /**
+     * A {@link FlattenedView} that reads and writes elements as primitive doubles.
+     */
+    public interface DoubleFlattenedView extends FlattenedView<Double> {
+
+        double getDouble(long index);
+
+        double getDoubleOrScalar(long index);
+
+        void setDouble(long index, double value);
+
+        @Override
+        default Double get(long index) {
+            return getDouble(index);
+        }
+
+        @Override
+        default Double getOrScalar(long index) {
+            return getDoubleOrScalar(index);
+        }
+
+        @Override
+        default void set(long index, Double value) {
+            setDouble(index, value);
+        }
+    }
+
+    /**
+     * Like {@link #apply(java.util.function.Function)} but without boxing each element. This isn't an overload of
+     * apply as a lambda such as x -&gt; x * 2 would then be ambiguous.
+     *
+     * @param function the function to apply to each element
+     * @return a new tensor of the function applied to each element of this tensor
+     */
+    public DoubleTensor applyDouble(DoubleUnaryOperator function) {
+        return duplicate().applyDoubleInPlace(function);
+    }
+
+    public DoubleTensor applyDoubleInPlace(DoubleUnaryOperator function) {
+        final DoubleFlattenedView values = getFlattenedView();
+        final long length = values.size();
+
+        for (long i = 0; i < length; i++) {
+            values.setDouble(i, function.applyAsDouble(values.getDouble(i)));
+        }
+
+        return this;
+    }
+
+    /**
+     * Applies a function to each pair of elements of this tensor and that, where the tensors are broadcast
+     * together in the same way as for {@link #timesInPlace(NumberTensor)}.
+     *
+     * @param that     the right operand
+     * @param function the function to apply, which is passed the element of this tensor first
+     * @return a new tensor of the broadcast shape
+     */
+    public DoubleTensor applyDouble(DoubleTensor that, DoubleBinaryOperator function) {
+        final long[] resultShape = TensorShape.getBroadcastResultShape(getShape(), that.getShape());
+        final DoubleTensor result = Arrays.equals(getShape(), resultShape) ?
+            duplicate() :
+            DoubleTensor.ones(resultShape).timesInPlace(this);
+        final DoubleTensor right = Arrays.equals(that.getShape(), resultShape) ?
+            that :
+            DoubleTensor.ones(resultShape).timesInPlace(that);
+
+        final DoubleFlattenedView resultValues = result.getFlattenedView();
+        final DoubleFlattenedView rightValues = right.getFlattenedView();
+        final long length = resultValues.size();
+
+        for (long i = 0; i < length; i++) {
+            resultValues.setDouble(i, function.applyAsDouble(resultValues.getDouble(i), rightValues.getDouble(i)));
+        }
+
+        return result;
+    }
+
     @Override
     public abstract DoubleTensor reshape(long... newShape);
 
@@ -167,6 +260,84 @@ public abstract class DoubleTensor implements NumberTensor<Double, DoubleTensor>
 
     public abstract DoubleTensor sum(int... overDimensions);
 
+    /**
+     * @param overDimensions the dimensions to take the mean over
+     * @return the mean over overDimensions, which are removed from the shape as they are by {@link #sum(int...)}
+     */
+    public DoubleTensor mean(int... overDimensions) {
+        final long[] shape = getShape();
+        final int[] dimensions = TensorShape.getAbsoluteDimensions(shape.length, Arrays.copyOf(overDimensions, overDimensions.length));
+
+        long count = 1;
+        for (int dimension : dimensions) {
+            count *= shape[dimension];
+        }
+
+        return sum(dimensions).divInPlace(count);
+    }
+
+    /**
+     * Calculates log(sum(exp(x))) without overflowing by subtracting the maximum before taking exp.
+     *
+     * @param overDimensions the dimensions to sum over
+     * @return the log of the sum of exp of the values over overDimensions, which are removed from the shape as they
+     * are by {@link #sum(int...)}
+     */
+    public DoubleTensor logSumExp(int... overDimensions) {
+        final long[] shape = getShape();
+        final int[] dimensions = TensorShape.getAbsoluteDimensions(shape.length, Arrays.copyOf(overDimensions, overDimensions.length));
+        final long[] resultShape = TensorShape.getSummationResultShape(shape, dimensions);
+
+        final int[] kept = ArrayUtils.removeElements(TensorShape.dimensionRange(0, shape.length), dimensions);
+        final int reducedLength = Math.toIntExact(TensorShape.getLength(shape) / Math.max(TensorShape.getLength(resultShape), 1));
+        final DoubleFlattenedView values = permute(ArrayUtils.addAll(kept, dimensions)).getFlattenedView();
+
+        final double[] result = new double[TensorShape.getLengthAsInt(resultShape)];
+        for (int i = 0; i < result.length; i++) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < reducedLength; j++) {
+                max = Math.max(max, values.getDouble((long) i * reducedLength + j));
+            }
+
+            final double shift = Double.isInfinite(max) ? 0.0 : max;
+            double sum = 0.0;
+            for (int j = 0; j < reducedLength; j++) {
+                sum += MathKernels.exp(values.getDouble((long) i * reducedLength + j) - shift);
+            }
+            result[i] = shift + MathKernels.log(sum);
+        }
+
+        return DoubleTensor.create(result, resultShape);
+    }
+
+    /**
+     * @param dimension the dimension to sum along
+     * @return a tensor of the same shape where each value is the sum of the values up to and including it along
+     * dimension
+     */
+    public DoubleTensor cumSum(int dimension) {
+        final long[] shape = getShape();
+        final int axis = getAbsoluteDimension(dimension, shape.length);
+
+        final long n = shape[axis];
+        long inner = 1;
+        for (int d = axis + 1; d < shape.length; d++) {
+            inner *= shape[d];
+        }
+
+        final DoubleTensor result = duplicate();
+        final DoubleFlattenedView values = result.getFlattenedView();
+        final long length = values.size();
+
+        for (long i = 0; i < length; i++) {
+            if ((i / inner) % n > 0) {
+                values.setDouble(i, values.getDouble(i - inner) + values.getDouble(i));
+            }
+        }
+
+        return result;
+    }
+
     //New tensor Ops and transforms
 
     public abstract DoubleTensor reciprocal();
@@ -258,6 +429,30 @@ public abstract class DoubleTensor implements NumberTensor<Double, DoubleTensor>
 
     public abstract double determinant();
 
+    /**
+     * @return the determinant of each square matrix in the last two dimensions of this tensor, in a tensor of
+     * the shape of the leading dimensions. The determinant of a rank 2 tensor is a scalar.
+     */
+    public DoubleTensor matrixDeterminant() {
+        final long[] shape = getShape();
+        final int rank = shape.length;
+
+        if (rank < 2 || shape[rank - 1] != shape[rank - 2]) {
+            throw new IllegalArgumentException("Determinant must be calculated on square matrices but shape was " + Arrays.toString(shape));
+        }
+
+        final long[] batchShape = Arrays.copyOf(shape, rank - 2);
+        final int batchLength = TensorShape.getLengthAsInt(batchShape);
+        final DoubleTensor matrices = reshape(batchLength, shape[rank - 2], shape[rank - 1]);
+
+        final double[] determinants = new double[batchLength];
+        for (int i = 0; i < batchLength; i++) {
+            determinants[i] = matrices.slice(0, i).determinant();
+        }
+
+        return DoubleTensor.create(determinants, batchShape);
+    }
+
     public abstract double product();
 
     @Override
@@ -4,13 +4,11 @@ import com.google.common.base.Preconditions;
 import com.google.common.primitives.Ints;
 import io.improbable.keanu.tensor.Tensor;
 import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.TensorShapeValidation;
 import io.improbable.keanu.tensor.bool.BooleanTensor;
 import io.improbable.keanu.tensor.intgr.IntegerTensor;
 import io.improbable.keanu.tensor.validate.TensorValidator;
 import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.math3.analysis.function.Sigmoid;
-import org.apache.commons.math3.linear.SingularMatrixException;
-import org.apache.commons.math3.special.Gamma;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.apache.commons.math3.util.FastMath;
 import org.nd4j.linalg.api.shape.Shape;
@@ -18,8 +16,10 @@ import org.nd4j.linalg.api.shape.Shape;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.function.BiFunction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
 
 import static io.improbable.keanu.tensor.TensorShape.getAbsoluteDimension;
 import static io.improbable.keanu.tensor.TensorShape.invertedPermute;
@@ -36,26 +36,85 @@ import static io.improbable.keanu.tensor.dbl.JVMDoubleTensorBroadcast.broadcastF
 import static io.improbable.keanu.tensor.dbl.JVMDoubleTensorBroadcast.broadcastFromRight;
 import static io.improbable.keanu.tensor.dbl.JVMDoubleTensorBroadcast.scalarLeft;
 import static io.improbable.keanu.tensor.dbl.JVMDoubleTensorBroadcast.scalarRight;
-import static io.improbable.keanu.tensor.dbl.KeanuLapack.dgetrf;
-import static io.improbable.keanu.tensor.dbl.KeanuLapack.dgetri;
-import static io.improbable.keanu.tensor.dbl.KeanuLapack.dpotrf;
+import static io.improbable.keanu.tensor.dbl.JVMDoubleTensorParallelism.forEachChunk;
+import static io.improbable.keanu.tensor.dbl.JVMDoubleTensorParallelism.reduceChunks;
 import static java.util.Arrays.copyOf;
 import static org.bytedeco.javacpp.openblas.CblasNoTrans;
 import static org.bytedeco.javacpp.openblas.CblasRowMajor;
 import static org.bytedeco.javacpp.openblas.cblas_dgemm;
 
+/**
+ * A DoubleTensor backed by a double[] in row first order.
+ * <p>
+ * slice, permute, transpose, split and reshape return views that share the buffer of the tensor they came from
+ * rather than copying it. A view addresses the shared buffer with an offset and a stride per dimension and is only
+ * copied into a row first buffer of its own when an operation needs one. A tensor whose buffer may be referenced
+ * by another tensor copies it before the first in place operation (copy on write).
+ * <p>
+ * Tensors with at least {@link #getLazyEvaluationThreshold()} elements defer elementwise operations. Unary
+ * operations, operations with a scalar and operations with a tensor of the same shape are recorded as an
+ * expression and evaluated in a single pass the first time the values are needed, so a chain such as
+ * x.pow(2).timesInPlace(-0.5).expInPlace() neither allocates intermediate buffers nor makes a pass over memory
+ * per operation.
+ * <p>
+ * While a {@link JVMDoubleTensorArena.Scope} is open, buffers for new tensors are taken from the arena's pool.
+ */
 public class JVMDoubleTensor extends DoubleTensor {
 
+    public static final int DEFAULT_LAZY_EVALUATION_THRESHOLD = 16384;
+
+    /**
+     * Pending operations are evaluated once there are this many so that expressions stay shallow.
+     */
+    private static final int MAX_PENDING_OPERATIONS = 32;
+
+    private static int lazyEvaluationThreshold = DEFAULT_LAZY_EVALUATION_THRESHOLD;
+
     private long[] shape;
     private long[] stride;
     private double[] buffer;
 
+    /**
+     * Stride of each dimension in the shared buffer, or null if this is not a view and buffer is
+     * row first with the same length as this tensor.
+     */
+    private long[] viewStride;
+    private int viewOffset;
+
+    /**
+     * True if buffer may be referenced by another tensor and so must be copied before it is written to.
+     */
+    private boolean bufferShared;
+
+    /**
+     * Value of each element after the deferred operations, or null if buffer is up to date. Only tensors
+     * that are not views have pending operations.
+     */
+    private IntToDoubleFunction pending;
+    private int pendingOperations;
+
+    /**
+     * The arena scope that was innermost when this tensor was created, or null if there was none or this tensor
+     * has escaped. Only tensors of the innermost scope can use pooled buffers for their own storage as others may
+     * outlive it.
+     */
+    private JVMDoubleTensorArena.Scope arenaScope = JVMDoubleTensorArena.getInnermostScope();
+
     private JVMDoubleTensor(double value) {
         this.shape = new long[0];
         this.stride = new long[0];
         this.buffer = new double[]{value};
     }
 
+    private JVMDoubleTensor(double[] sharedBuffer, long[] shape, long[] viewStride, int viewOffset) {
+        this.shape = shape;
+        this.stride = TensorShape.getRowFirstStride(shape);
+        this.buffer = sharedBuffer;
+        this.viewStride = viewStride;
+        this.viewOffset = viewOffset;
+        this.bufferShared = true;
+    }
+
     private JVMDoubleTensor(double[] data, long[] shape) {
 
         if (data.length != TensorShape.getLength(shape)) {
@@ -76,10 +135,13 @@ public class JVMDoubleTensor extends DoubleTensor {
     }
 
     public static JVMDoubleTensor create(double value, long... shape) {
-        long length = TensorShape.getLength(shape);
-        double[] buffer = new double[Ints.checkedCast(length)];
+        int length = Ints.checkedCast(TensorShape.getLength(shape));
+        double[] buffer;
 
-        if (value != 0) {
+        if (value == 0) {
+            buffer = JVMDoubleTensorArena.allocateZeros(length);
+        } else {
+            buffer = JVMDoubleTensorArena.allocate(length);
             Arrays.fill(buffer, value);
         }
 
@@ -96,7 +158,7 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     public static JVMDoubleTensor eye(long n) {
 
-        double[] buffer = new double[Ints.checkedCast(n * n)];
+        double[] buffer = JVMDoubleTensorArena.allocateZeros(Ints.checkedCast(n * n));
         int nInt = Ints.checkedCast(n);
         for (int i = 0; i < n; i++) {
             buffer[i * nInt + i] = 1;
@@ -134,15 +196,245 @@ public class JVMDoubleTensor extends DoubleTensor {
         return new JVMDoubleTensor(buffer, new long[]{buffer.length});
     }
 
-    private double[] newBufferOfSameLength() {
-        return new double[buffer.length];
+    /**
+     * @param threshold the length at or above which elementwise operations are deferred.
+     *                  Use Integer.MAX_VALUE to always evaluate eagerly.
+     */
+    public static void setLazyEvaluationThreshold(int threshold) {
+        Preconditions.checkArgument(threshold > 0, "Lazy evaluation threshold must be positive but was " + threshold);
+        lazyEvaluationThreshold = threshold;
+    }
+
+    public static int getLazyEvaluationThreshold() {
+        return lazyEvaluationThreshold;
+    }
+
+    /**
+     * Reading a JVMDoubleTensor evaluates its pending operations and gives a view a buffer of its own, which is not
+     * safe to do from many threads at once. This does it up front so that the value can then be read concurrently.
+     *
+     * @param value a value that is about to be read by many threads. Values that are not JVMDoubleTensors are ignored.
+     */
+    public static void prepareForConcurrentReads(Object value) {
+        if (value instanceof JVMDoubleTensor) {
+            ((JVMDoubleTensor) value).materialize();
+        }
+    }
+
+    private boolean isView() {
+        return viewStride != null;
+    }
+
+    /**
+     * @return the stride of each dimension in buffer
+     */
+    private long[] getBufferStride() {
+        return isView() ? viewStride : stride;
     }
 
+    /**
+     * Creates a tensor that shares this tensor's buffer.
+     *
+     * @param viewShape  shape of the view
+     * @param viewStride stride in the buffer of each dimension of viewShape
+     * @param viewOffset position in the buffer of the first element of the view
+     * @return a view of this tensor's buffer
+     */
+    private JVMDoubleTensor createView(long[] viewShape, long[] viewStride, long viewOffset) {
+        evaluatePending();
+        bufferShared = true;
+
+        boolean coversBuffer = viewOffset == 0 && TensorShape.getLength(viewShape) == buffer.length;
+        if (coversBuffer && Arrays.equals(viewStride, TensorShape.getRowFirstStride(viewShape))) {
+            return new JVMDoubleTensor(buffer, viewShape, null, 0);
+        } else {
+            return new JVMDoubleTensor(buffer, viewShape, viewStride, Ints.checkedCast(viewOffset));
+        }
+    }
+
+    /**
+     * Copies the elements of this view in row first order.
+     *
+     * @param result where to copy the elements to
+     * @return result
+     */
+    private double[] gatherView(double[] result) {
+        final int rank = shape.length;
+        final long[] index = new long[rank];
+        long position = viewOffset;
+
+        for (int i = 0; i < result.length; i++) {
+
+            result[i] = buffer[(int) position];
+
+            for (int d = rank - 1; d >= 0; d--) {
+                index[d]++;
+                position += viewStride[d];
+
+                if (index[d] < shape[d]) {
+                    break;
+                }
+
+                position -= viewStride[d] * index[d];
+                index[d] = 0;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Makes buffer hold the values of this tensor in row first order. Views are given a buffer of their own
+     * and pending operations are evaluated. This must be done before an operation reads the buffer directly.
+     */
+    private void materialize() {
+        if (isView()) {
+            buffer = gatherView(newStorage(TensorShape.getLengthAsInt(shape)));
+            viewStride = null;
+            viewOffset = 0;
+            bufferShared = false;
+        } else {
+            evaluatePending();
+        }
+    }
+
+    /**
+     * Must be called before writing to buffer so that tensors sharing it are not changed.
+     */
+    private void copyOnWrite() {
+        materialize();
+        if (bufferShared) {
+            double[] copy = newStorage(buffer.length);
+            System.arraycopy(buffer, 0, copy, 0, buffer.length);
+            buffer = copy;
+            bufferShared = false;
+        }
+    }
+
+    /**
+     * @return a copy of the values of this tensor for a new tensor
+     */
     private double[] bufferCopy() {
-        return copyOf(buffer, buffer.length);
+        evaluatePending();
+        final double[] copy = JVMDoubleTensorArena.allocate(TensorShape.getLengthAsInt(shape));
+
+        if (isView()) {
+            return gatherView(copy);
+        }
+
+        System.arraycopy(buffer, 0, copy, 0, buffer.length);
+        return copy;
+    }
+
+    /**
+     * @return a buffer to replace this tensor's own storage with
+     */
+    private double[] newStorage(int length) {
+        if (arenaScope != null && arenaScope == JVMDoubleTensorArena.getInnermostScope()) {
+            return JVMDoubleTensorArena.allocate(length);
+        }
+        return new double[length];
+    }
+
+    /**
+     * An in place operation on a tensor that doesn't belong to the innermost arena scope must not defer reading
+     * a buffer that will be given back to the pool when the scope is closed.
+     */
+    private boolean canDeferReading(JVMDoubleTensor that) {
+        if (arenaScope != null && arenaScope == JVMDoubleTensorArena.getInnermostScope()) {
+            return true;
+        }
+        return that.pending == null && !JVMDoubleTensorArena.isPooled(that.buffer);
+    }
+
+    /**
+     * See {@link JVMDoubleTensorArena#escape(Object)}
+     */
+    void escapeFromArena() {
+        if (!isView()) {
+            evaluatePending();
+        }
+        JVMDoubleTensorArena.escapeBuffer(buffer);
+        arenaScope = null;
+    }
+
+    private boolean isLazy() {
+        return pending != null || getLength() >= lazyEvaluationThreshold;
+    }
+
+    /**
+     * @return the value of each element of this tensor by flat index, including any pending operations
+     */
+    private IntToDoubleFunction getElementExpression() {
+        if (pending != null) {
+            return pending;
+        }
+
+        materialize();
+        final double[] source = buffer;
+        return i -> source[i];
+    }
+
+    private JVMDoubleTensor deferInPlace(DoubleUnaryOperator op) {
+        final IntToDoubleFunction element = getElementExpression();
+
+        return setPending(i -> op.applyAsDouble(element.applyAsDouble(i)), pendingOperations + 1);
+    }
+
+    private JVMDoubleTensor deferInPlace(DoubleBinaryOperator op, JVMDoubleTensor that) {
+        final IntToDoubleFunction left = getElementExpression();
+        final IntToDoubleFunction right = that.getElementExpression();
+        that.bufferShared = true;
+
+        return setPending(
+            i -> op.applyAsDouble(left.applyAsDouble(i), right.applyAsDouble(i)),
+            pendingOperations + that.pendingOperations + 1
+        );
+    }
+
+    private JVMDoubleTensor setPending(IntToDoubleFunction expression, int operations) {
+        pending = expression;
+        pendingOperations = operations;
+
+        if (pendingOperations >= MAX_PENDING_OPERATIONS) {
+            evaluatePending();
+        }
+
+        return this;
+    }
+
+    /**
+     * Writes the result of the pending operations to buffer in one pass. The buffer is reused unless it is shared.
+     *
+     * @return the sum of the evaluated elements, which lets sum() be done in the same pass
+     */
+    private double evaluatePending() {
+        if (pending == null) {
+            return 0;
+        }
+
+        final IntToDoubleFunction expression = pending;
+        final double[] result = bufferShared ? newStorage(buffer.length) : buffer;
+
+        final double sum = reduceChunks(result.length, (from, to) -> {
+            double chunkSum = 0;
+            for (int i = from; i < to; i++) {
+                result[i] = expression.applyAsDouble(i);
+                chunkSum += result[i];
+            }
+            return chunkSum;
+        }, Double::sum);
+
+        buffer = result;
+        bufferShared = false;
+        pending = null;
+        pendingOperations = 0;
+
+        return sum;
     }
 
     private int[] bufferAsInteger() {
+        materialize();
         int[] intBuffer = new int[buffer.length];
         for (int i = 0; i < buffer.length; i++) {
             intBuffer[i] = (int) buffer[i];
@@ -171,22 +463,59 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public long getLength() {
-        return buffer.length;
+        return isView() ? TensorShape.getLength(shape) : buffer.length;
     }
 
     @Override
     public Double getValue(long... index) {
+        if (isView()) {
+            return buffer[getViewBufferIndex(index)];
+        }
+        evaluatePending();
         long flatIndex = getFlatIndex(index);
         return buffer[Ints.checkedCast(flatIndex)];
     }
 
+    @Override
+    public double getDouble(long... index) {
+        if (isView()) {
+            return buffer[getViewBufferIndex(index)];
+        }
+        evaluatePending();
+        return buffer[Ints.checkedCast(getFlatIndex(index))];
+    }
+
     @Override
     public DoubleTensor setValue(Double value, long... index) {
+        copyOnWrite();
         long flatIndex = getFlatIndex(index);
         buffer[Ints.checkedCast(flatIndex)] = value;
         return this;
     }
 
+    private int getViewBufferIndex(long... index) {
+        long[] shapeIndices;
+        if (index.length == 1 && shape.length != 1) {
+            shapeIndices = TensorShape.getShapeIndices(shape, stride, index[0]);
+        } else {
+            if (index.length != shape.length) {
+                throw new IllegalArgumentException("Cannot get index " + Arrays.toString(index) + " for shape " + Arrays.toString(shape));
+            }
+            shapeIndices = index;
+        }
+
+        long position = viewOffset;
+        for (int i = 0; i < shapeIndices.length; i++) {
+            if (shapeIndices[i] >= shape[i]) {
+                throw new IllegalArgumentException(
+                    "Invalid index " + Arrays.toString(index) + " for shape " + Arrays.toString(shape)
+                );
+            }
+            position += shapeIndices[i] * viewStride[i];
+        }
+        return Ints.checkedCast(position);
+    }
+
     private long getFlatIndex(long... index) {
         long flatIndex;
         if (index.length == 1) {
@@ -202,7 +531,8 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public Double scalar() {
-        return buffer[0];
+        evaluatePending();
+        return buffer[viewOffset];
     }
 
     @Override
@@ -226,15 +556,20 @@ public class JVMDoubleTensor extends DoubleTensor {
             }
         }
 
-        if (newLength != buffer.length || negativeDimension >= 0) {
+        final long length = getLength();
+        if (newLength != length || negativeDimension >= 0) {
             if (negativeDimension < 0) {
                 throw new IllegalArgumentException("Cannot reshape " + Arrays.toString(shape) + " to " + Arrays.toString(newShapeCopy));
             } else {
-                newShapeCopy[negativeDimension] = buffer.length / newLength;
+                newShapeCopy[negativeDimension] = length / newLength;
             }
         }
 
-        return new JVMDoubleTensor(bufferCopy(), newShapeCopy);
+        if (!isView() || Arrays.equals(viewStride, stride)) {
+            return createView(newShapeCopy, TensorShape.getRowFirstStride(newShapeCopy), viewOffset);
+        } else {
+            return new JVMDoubleTensor(gatherView(JVMDoubleTensorArena.allocate(TensorShape.getLengthAsInt(shape))), newShapeCopy);
+        }
     }
 
     @Override
@@ -245,7 +580,7 @@ public class JVMDoubleTensor extends DoubleTensor {
             } else if (that.isScalar()) {
                 return elementwiseEquals(((DoubleTensor) that).scalar());
             } else {
-                DoubleTensor equalsMask = broadcastableBinaryDoubleOp((l, r) -> l.equals(r) ? 1.0 : 0.0, (DoubleTensor) that);
+                DoubleTensor equalsMask = broadcastableBinaryDoubleOp((l, r) -> Double.doubleToLongBits(l) == Double.doubleToLongBits(r) ? 1.0 : 0.0, (DoubleTensor) that);
 
                 return maskToBooleanTensor(equalsMask);
             }
@@ -256,6 +591,7 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public BooleanTensor elementwiseEquals(Double value) {
+        materialize();
         boolean[] newBuffer = new boolean[buffer.length];
 
         for (int i = 0; i < buffer.length; i++) {
@@ -269,27 +605,21 @@ public class JVMDoubleTensor extends DoubleTensor {
     public DoubleTensor permute(int... rearrange) {
         Preconditions.checkArgument(rearrange.length == shape.length);
         long[] resultShape = TensorShape.getPermutedResultShape(shape, rearrange);
-        long[] resultStride = TensorShape.getRowFirstStride(resultShape);
-        double[] newBuffer = newBufferOfSameLength();
-
-        for (int i = 0; i < buffer.length; i++) {
-            long[] shapeIndices = TensorShape.getShapeIndices(shape, stride, i);
-            long[] permutedIndex = new long[shapeIndices.length];
-
-            for (int p = 0; p < permutedIndex.length; p++) {
-                permutedIndex[p] = shapeIndices[rearrange[p]];
-            }
-
-            int j = Ints.checkedCast(TensorShape.getFlatIndex(resultShape, resultStride, permutedIndex));
+        long[] resultViewStride = TensorShape.getPermutedResultShape(getBufferStride(), rearrange);
 
-            newBuffer[j] = buffer[i];
-        }
-
-        return new JVMDoubleTensor(newBuffer, resultShape);
+        return createView(resultShape, resultViewStride, viewOffset);
     }
 
     @Override
     public DoubleTensor duplicate() {
+        if (isLazy() && !isView()) {
+            bufferShared = true;
+            JVMDoubleTensor duplicate = new JVMDoubleTensor(buffer, shapeCopy(), null, 0);
+            duplicate.pending = pending;
+            duplicate.pendingOperations = pendingOperations;
+            return duplicate;
+        }
+
         return new JVMDoubleTensor(bufferCopy(), shapeCopy());
     }
 
@@ -305,8 +635,9 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor diag() {
+        materialize();
         int n = buffer.length;
-        double[] newBuffer = new double[Ints.checkedCast((long)n * n)];
+        double[] newBuffer = JVMDoubleTensorArena.allocateZeros(Ints.checkedCast((long) n * n));
         for (int i = 0; i < n; i++) {
             newBuffer[i * n + i] = buffer[i];
         }
@@ -324,34 +655,63 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public Double sum() {
-        double result = 0;
-        for (int i = 0; i < buffer.length; i++) {
-            result += buffer[i];
+        if (pending != null) {
+            return evaluatePending();
         }
-        return result;
+
+        materialize();
+        return reduceChunks(buffer.length, (from, to) -> {
+            double result = 0;
+            for (int i = from; i < to; i++) {
+                result += buffer[i];
+            }
+            return result;
+        }, Double::sum);
     }
 
     @Override
     public DoubleTensor sum(int... overDimensions) {
 
+        materialize();
         overDimensions = TensorShape.getAbsoluteDimensions(this.shape.length, overDimensions);
 
-        long[] resultShape = TensorShape.getSummationResultShape(shape, overDimensions);
-        long[] resultStride = TensorShape.getRowFirstStride(resultShape);
-        double[] newBuffer = new double[Ints.checkedCast(TensorShape.getLength(resultShape))];
+        final long[] resultShape = TensorShape.getSummationResultShape(shape, overDimensions);
 
-        for (int i = 0; i < buffer.length; i++) {
+        if (resultShape.length == 0 && shape.length > 0) {
+            return new JVMDoubleTensor(sum());
+        }
 
-            long[] shapeIndices = ArrayUtils.removeAll(TensorShape.getShapeIndices(shape, stride, i), overDimensions);
+        final double[] newBuffer = JVMDoubleTensorArena.allocate(TensorShape.getLengthAsInt(resultShape));
+        JVMDoubleTensorReduction.sum(buffer, shape, overDimensions, newBuffer);
 
-            int j = Ints.checkedCast(TensorShape.getFlatIndex(resultShape, resultStride, shapeIndices));
+        return new JVMDoubleTensor(newBuffer, resultShape);
+    }
 
-            newBuffer[j] += buffer[i];
-        }
+    @Override
+    public DoubleTensor logSumExp(int... overDimensions) {
+
+        materialize();
+        final int[] dimensions = TensorShape.getAbsoluteDimensions(shape.length, Arrays.copyOf(overDimensions, overDimensions.length));
+        final long[] resultShape = TensorShape.getSummationResultShape(shape, dimensions);
+
+        final double[] newBuffer = JVMDoubleTensorArena.allocate(TensorShape.getLengthAsInt(resultShape));
+        JVMDoubleTensorReduction.logSumExp(buffer, shape, dimensions, newBuffer);
 
         return new JVMDoubleTensor(newBuffer, resultShape);
     }
 
+    @Override
+    public DoubleTensor cumSum(int dimension) {
+
+        materialize();
+        final int axis = getAbsoluteDimension(dimension, shape.length);
+
+        final double[] newBuffer = JVMDoubleTensorArena.allocate(buffer.length);
+        JVMDoubleTensorReduction.cumSum(buffer, shape, axis, newBuffer);
+
+        return new JVMDoubleTensor(newBuffer, shapeCopy());
+    }
+
     @Override
     public DoubleTensor reciprocal() {
         return duplicate().reciprocalInPlace();
@@ -360,105 +720,88 @@ public class JVMDoubleTensor extends DoubleTensor {
     @Override
     public DoubleTensor choleskyDecomposition() {
 
-        if (shape.length != 2 || shape[0] != shape[1]) {
+        if (!isBatchOfSquareMatrices()) {
             throw new IllegalArgumentException("Cholesky decomposition must be performed on square matrix.");
         }
 
-        int N = Ints.checkedCast(shape[0]);
-        double[] newBuffer = bufferCopy();
-
-        int result = dpotrf(KeanuLapack.Triangular.LOWER, N, newBuffer);
-
-        if (result != 0) {
-            throw new IllegalStateException("Cholesky decomposition failed");
-        }
-
-        zeroOutUpperTriangle(N, newBuffer);
+        final double[] newBuffer = bufferCopy();
+        JVMDoubleTensorBatchedLinearAlgebra.choleskyDecomposition(newBuffer, Ints.checkedCast(shape[shape.length - 1]));
 
         return new JVMDoubleTensor(newBuffer, shapeCopy());
     }
 
-    private void zeroOutUpperTriangle(int N, double[] buffer) {
-        if (N > 1) {
-            for (int i = 0; i < N; i++) {
-                for (int j = i + 1; j < N; j++) {
-                    buffer[i * N + j] = 0;
-                }
-            }
-        }
+    private boolean isBatchOfSquareMatrices() {
+        return shape.length >= 2 && shape[shape.length - 1] == shape[shape.length - 2];
     }
 
     @Override
     public double determinant() {
 
         final int m = Ints.checkedCast(shape[0]);
-        final int n = Ints.checkedCast(shape[1]);
         final double[] newBuffer = bufferCopy();
-        final int[] ipiv = new int[newBuffer.length];
 
-        final int factorizationResult = dgetrf(m, n, newBuffer, ipiv);
+        return JVMDoubleTensorBatchedLinearAlgebra.determinant(newBuffer, m, new int[m]);
+    }
 
-        if (factorizationResult < 0) {
-            throw new IllegalStateException("Matrix factorization failed");
-        } else if (factorizationResult > 0) {
-            return 0;
-        }
+    @Override
+    public DoubleTensor matrixDeterminant() {
 
-        //credit: https://stackoverflow.com/questions/47315471/compute-determinant-from-lu-decomposition-in-lapack
-        int j;
-        double detp = 1.;
-        for (j = 0; j < n; j++) {
-            if (j + 1 != ipiv[j]) {
-                detp = -detp;
-            }
+        if (!isBatchOfSquareMatrices()) {
+            throw new IllegalArgumentException("Determinant must be calculated on square matrices but shape was " + Arrays.toString(shape));
         }
 
-        double detU = 1.0;
-        for (int i = 0; i < m; i++) {
-            detU *= newBuffer[i * m + i];
-        }
+        final double[] determinants = JVMDoubleTensorBatchedLinearAlgebra.determinant(
+            bufferCopy(), Ints.checkedCast(shape[shape.length - 1])
+        );
 
-        return detU * detp;
+        return new JVMDoubleTensor(determinants, Arrays.copyOf(shape, shape.length - 2));
     }
 
     @Override
     public DoubleTensor matrixInverse() {
 
-        final int m = Ints.checkedCast(shape[0]);
-        final int n = Ints.checkedCast(shape[1]);
-        final double[] newBuffer = bufferCopy();
-        final int[] ipiv = new int[newBuffer.length];
-
-        final int factorizationResult = dgetrf(m, n, newBuffer, ipiv);
-
-        if (factorizationResult < 0) {
-            throw new IllegalStateException("Matrix factorization failed");
-        } else if (factorizationResult > 0) {
-            throw new SingularMatrixException();
+        if (!isBatchOfSquareMatrices()) {
+            throw new IllegalArgumentException("Matrix inverse must be performed on square matrix.");
         }
 
-        int inverseResult = dgetri(m, newBuffer, ipiv);
-
-        if (inverseResult != 0) {
-            throw new IllegalStateException("Matrix inverse failed");
-        }
+        final double[] newBuffer = bufferCopy();
+        JVMDoubleTensorBatchedLinearAlgebra.matrixInverse(newBuffer, Ints.checkedCast(shape[shape.length - 1]));
 
         return new JVMDoubleTensor(newBuffer, shapeCopy());
     }
 
+    /**
+     * Matrix multiplies the matrices in the last two dimensions. Tensors of rank greater than two are batches of
+     * matrices indexed by their leading dimensions, which are broadcast against each other, so a [B, M, K] tensor
+     * times a [K, N] or [B, K, N] tensor gives a [B, M, N] result.
+     */
     @Override
     public DoubleTensor matrixMultiply(DoubleTensor that) {
 
+        if (that instanceof SparseDoubleTensor) {
+            return ((SparseDoubleTensor) that).leftMatrixMultiply(this);
+        }
+
         final long[] thatShape = that.getShape();
-        if (this.shape.length != 2 || thatShape.length != 2 || shape[1] != thatShape[0]) {
+        if (this.shape.length < 2 || thatShape.length < 2 || shape[shape.length - 1] != thatShape[thatShape.length - 2]) {
             throw new IllegalArgumentException("Cannot matrix multiply shape " + Arrays.toString(shape) + " shape " + Arrays.toString(thatShape));
         }
 
+        final double[] A = getRawBufferIfJVMTensor(this);
+        final double[] B = getRawBufferIfJVMTensor(that);
+
+        if (this.shape.length > 2 || thatShape.length > 2) {
+            final long[] resultShape = TensorShapeValidation.getMatrixMultiplicationResultingShape(shape, thatShape);
+            final double[] C = JVMDoubleTensorArena.allocate(TensorShape.getLengthAsInt(resultShape));
+
+            JVMDoubleTensorBatchedLinearAlgebra.matrixMultiply(A, shape, B, thatShape, resultShape, C);
+
+            return new JVMDoubleTensor(C, resultShape);
+        }
+
         //C = alpha*A*B + beta*C
         //(M,N) = (M,k)(k,N) + (M,N)
-        final double[] A = buffer;
-        final double[] B = getRawBufferIfJVMTensor(that);
-        final double[] C = new double[Ints.checkedCast(this.shape[0] * thatShape[1])];
+        final double[] C = JVMDoubleTensorArena.allocate(Ints.checkedCast(this.shape[0] * thatShape[1]));
 
         final int N = Ints.checkedCast(thatShape[1]);
         final int M = Ints.checkedCast(this.shape[0]);
@@ -469,9 +812,39 @@ public class JVMDoubleTensor extends DoubleTensor {
         return new JVMDoubleTensor(C, new long[]{this.shape[0], thatShape[1]});
     }
 
+    /**
+     * Contracts the strided buffers of this and that directly, see {@link JVMDoubleTensorContraction}, rather than
+     * permuting and reshaping them into matrices.
+     */
     @Override
     public DoubleTensor tensorMultiply(DoubleTensor that, int[] dimsLeft, int[] dimsRight) {
-        return TensorMulByMatrixMul.tensorMmul(this, that, dimsLeft, dimsRight);
+
+        if (that instanceof SparseDoubleTensor) {
+            return ((SparseDoubleTensor) that).tensorMultiplyFromLeft(this, dimsLeft, dimsRight);
+        }
+
+        final long[] thatShape = that.getShape();
+        final int[] absoluteDimsLeft = TensorShape.getAbsoluteDimensions(shape.length, Arrays.copyOf(dimsLeft, dimsLeft.length));
+        final int[] absoluteDimsRight = TensorShape.getAbsoluteDimensions(thatShape.length, Arrays.copyOf(dimsRight, dimsRight.length));
+        final long[] resultShape = TensorShapeValidation.getTensorMultiplyResultShape(shape, thatShape, absoluteDimsLeft, absoluteDimsRight);
+
+        final JVMDoubleTensor right = that instanceof JVMDoubleTensor ?
+            (JVMDoubleTensor) that :
+            new JVMDoubleTensor(that.asFlatDoubleArray(), thatShape);
+
+        evaluatePending();
+        right.evaluatePending();
+
+        final double[] result = JVMDoubleTensorArena.allocate(TensorShape.getLengthAsInt(resultShape));
+
+        JVMDoubleTensorContraction.contract(
+            buffer, viewOffset, shape, getBufferStride(),
+            right.buffer, right.viewOffset, thatShape, right.getBufferStride(),
+            absoluteDimsLeft, absoluteDimsRight,
+            result
+        );
+
+        return new JVMDoubleTensor(result, resultShape);
     }
 
     @Override
@@ -481,17 +854,19 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public int argMax() {
-
-        double max = -Double.MAX_VALUE;
-        int argMax = 0;
-        for (int i = 0; i < buffer.length; i++) {
-            if (buffer[i] > max) {
-                max = buffer[i];
-                argMax = i;
+        materialize();
+
+        return reduceChunks(buffer.length, (from, to) -> {
+            double max = -Double.MAX_VALUE;
+            int argMax = from;
+            for (int i = from; i < to; i++) {
+                if (buffer[i] > max) {
+                    max = buffer[i];
+                    argMax = i;
+                }
             }
-        }
-
-        return argMax;
+            return argMax;
+        }, (left, right) -> buffer[right] > buffer[left] ? right : left);
     }
 
     @Override
@@ -501,28 +876,12 @@ public class JVMDoubleTensor extends DoubleTensor {
             throw new IllegalArgumentException("Cannot take arg max of axis " + axis + " on a " + shape.length + " rank tensor.");
         }
 
-        int[] rearrange = shiftDimensionToDimensionZero(axis, shape);
-
-        JVMDoubleTensor permuted = (JVMDoubleTensor) permute(rearrange);
-        double[] permutedBuffer = permuted.buffer;
-
-        int dimLength = (int)(buffer.length / shape[axis]);
-
-        double[] maxBuffer = new double[dimLength];
-        int[] maxIndex = new int[dimLength];
-
-        for (int i = 0; i < permutedBuffer.length; i++) {
-
-            final int bufferIndex = i % dimLength;
+        materialize();
+        final long[] resultShape = ArrayUtils.remove(shape, axis);
+        final int[] maxIndex = new int[TensorShape.getLengthAsInt(resultShape)];
+        JVMDoubleTensorReduction.argMax(buffer, shape, axis, maxIndex);
 
-            if (permutedBuffer[i] > maxBuffer[bufferIndex]) {
-                maxBuffer[bufferIndex] = permutedBuffer[i];
-                maxIndex[bufferIndex] = i / dimLength;
-            }
-
-        }
-
-        return IntegerTensor.create(maxIndex, ArrayUtils.remove(shape, axis));
+        return IntegerTensor.create(maxIndex, resultShape);
     }
 
     @Override
@@ -537,32 +896,82 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor unaryMinusInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = -buffer[i];
+        if (isLazy()) {
+            return deferInPlace(v -> -v);
         }
 
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = -buffer[i];
+            }
+        });
+
         return this;
     }
 
     @Override
     public DoubleTensor absInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = Math.abs(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(Math::abs);
         }
 
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = Math.abs(buffer[i]);
+            }
+        });
+
         return this;
     }
 
     @Override
     public DoubleTensor applyInPlace(Function<Double, Double> function) {
+        copyOnWrite();
 
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = function.apply(buffer[i]);
-        }
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = function.apply(buffer[i]);
+            }
+        });
+
+        return this;
+    }
+
+    @Override
+    public DoubleTensor applyDouble(DoubleUnaryOperator function) {
+        materialize();
+        final double[] source = buffer;
+        final double[] result = JVMDoubleTensorArena.allocate(source.length);
+
+        forEachChunk(result.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = function.applyAsDouble(source[i]);
+            }
+        });
+
+        return new JVMDoubleTensor(result, shapeCopy());
+    }
+
+    @Override
+    public DoubleTensor applyDoubleInPlace(DoubleUnaryOperator function) {
+        copyOnWrite();
+
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = function.applyAsDouble(buffer[i]);
+            }
+        });
 
         return this;
     }
 
+    @Override
+    public DoubleTensor applyDouble(DoubleTensor that, DoubleBinaryOperator function) {
+        return broadcastableBinaryDoubleOp(function, that);
+    }
+
     @Override
     public DoubleTensor getGreaterThanMask(DoubleTensor greaterThanThis) {
         return broadcastableBinaryDoubleOp(GT_MASK, greaterThanThis);
@@ -585,15 +994,18 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor setWithMaskInPlace(DoubleTensor mask, Double value) {
+        copyOnWrite();
         checkMaskLengthMatches(mask);
 
         double[] maskBuffer = getRawBufferIfJVMTensor(mask);
 
-        for (int i = 0; i < buffer.length; i++) {
-            if (maskBuffer[i] == 1.0) {
-                buffer[i] = value;
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (maskBuffer[i] == 1.0) {
+                    buffer[i] = value;
+                }
             }
-        }
+        });
 
         return this;
     }
@@ -609,9 +1021,10 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor setWithMask(DoubleTensor mask, Double value) {
+        materialize();
         checkShapesMatch(shape, mask.getShape());
 
-        double[] newBuffer = new double[buffer.length];
+        double[] newBuffer = JVMDoubleTensorArena.allocate(buffer.length);
         double[] maskBuffer = getRawBufferIfJVMTensor(mask);
 
         for (int i = 0; i < buffer.length; i++) {
@@ -654,6 +1067,7 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public BooleanTensor lessThan(double value) {
+        materialize();
         boolean[] newBuffer = new boolean[buffer.length];
 
         for (int i = 0; i < buffer.length; i++) {
@@ -665,6 +1079,7 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public BooleanTensor lessThanOrEqual(double value) {
+        materialize();
         boolean[] newBuffer = new boolean[buffer.length];
 
         for (int i = 0; i < buffer.length; i++) {
@@ -676,6 +1091,7 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public BooleanTensor greaterThan(double value) {
+        materialize();
         boolean[] newBuffer = new boolean[buffer.length];
 
         for (int i = 0; i < buffer.length; i++) {
@@ -687,6 +1103,7 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public BooleanTensor greaterThanOrEqual(double value) {
+        materialize();
         boolean[] newBuffer = new boolean[buffer.length];
 
         for (int i = 0; i < buffer.length; i++) {
@@ -708,9 +1125,16 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor powInPlace(double exponent) {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.pow(buffer[i], exponent);
+        if (isLazy()) {
+            return deferInPlace(v -> FastMath.pow(v, exponent));
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.pow(buffer[i], exponent);
+            }
+        });
         return this;
     }
 
@@ -771,9 +1195,16 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor atan2InPlace(double y) {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.atan2(y, buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(v -> FastMath.atan2(y, v));
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.atan2(y, buffer[i]);
+            }
+        });
         return this;
     }
 
@@ -804,11 +1235,13 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public double average() {
+        materialize();
         return sum() / buffer.length;
     }
 
     @Override
     public double standardDeviation() {
+        materialize();
 
         SummaryStatistics stats = new SummaryStatistics();
         for (int i = 0; i < buffer.length; i++) {
@@ -824,6 +1257,8 @@ public class JVMDoubleTensor extends DoubleTensor {
             return false;
         }
 
+        materialize();
+
         double[] otherBuffer = getRawBufferIfJVMTensor(other);
 
         for (int i = 0; i < buffer.length; i++) {
@@ -875,17 +1310,18 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor sigmoidInPlace() {
-
-        Sigmoid sigmoid = new Sigmoid();
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = sigmoid.value(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(MathKernels::sigmoid);
         }
 
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> MathKernels.sigmoid(buffer, from, to));
         return this;
     }
 
     @Override
     public double product() {
+        materialize();
         double result = 1.0;
         for (int i = 0; i < buffer.length; i++) {
             result *= buffer[i];
@@ -896,20 +1332,11 @@ public class JVMDoubleTensor extends DoubleTensor {
     @Override
     public DoubleTensor slice(int dimension, long index) {
         Preconditions.checkArgument(dimension < shape.length && index < shape[dimension]);
+        long[] bufferStride = getBufferStride();
         long[] resultShape = ArrayUtils.remove(shape, dimension);
-        long[] resultStride = TensorShape.getRowFirstStride(resultShape);
-        double[] newBuffer = new double[Ints.checkedCast(TensorShape.getLength(resultShape))];
-
-        for (int i = 0; i < newBuffer.length; i++) {
-
-            long[] shapeIndices = ArrayUtils.insert(dimension, TensorShape.getShapeIndices(resultShape, resultStride, i), index);
-
-            int j = Ints.checkedCast(TensorShape.getFlatIndex(shape, stride, shapeIndices));
+        long[] resultViewStride = ArrayUtils.remove(bufferStride, dimension);
 
-            newBuffer[i] += buffer[j];
-        }
-
-        return new JVMDoubleTensor(newBuffer, resultShape);
+        return createView(resultShape, resultViewStride, viewOffset + index * bufferStride[dimension]);
     }
 
     public static DoubleTensor concat(int dimension, DoubleTensor... toConcat) {
@@ -1000,12 +1427,15 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public double[] asFlatDoubleArray() {
-        return bufferCopy();
+        evaluatePending();
+        return isView() ? gatherView(new double[TensorShape.getLengthAsInt(shape)]) : copyOf(buffer, buffer.length);
     }
 
     private static double[] getRawBufferIfJVMTensor(DoubleTensor tensor) {
         if (tensor instanceof JVMDoubleTensor) {
-            return ((JVMDoubleTensor) tensor).buffer;
+            JVMDoubleTensor jvmTensor = (JVMDoubleTensor) tensor;
+            jvmTensor.materialize();
+            return jvmTensor.buffer;
         } else {
             return tensor.asFlatDoubleArray();
         }
@@ -1018,6 +1448,7 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public Double[] asFlatArray() {
+        materialize();
         Double[] boxedBuffer = new Double[buffer.length];
         for (int i = 0; i < buffer.length; i++) {
             boxedBuffer[i] = buffer[i];
@@ -1055,38 +1486,25 @@ public class JVMDoubleTensor extends DoubleTensor {
             throw new IllegalArgumentException("Invalid dimension to split on " + dimension);
         }
 
-        int[] moveDimToZero = TensorShape.slideDimension(dimension, 0, shape.length);
-        int[] moveZeroToDim = TensorShape.slideDimension(0, dimension, shape.length);
-
-        JVMDoubleTensor permutedTensor = (JVMDoubleTensor) this.permute(moveDimToZero).reshape(buffer.length);
-
-        double[] rawBuffer = permutedTensor.buffer;
-
+        long[] bufferStride = getBufferStride();
         List<DoubleTensor> splitTensor = new ArrayList<>();
 
         long previousSplitAtIndex = 0;
-        int rawBufferPosition = 0;
         for (long splitAtIndex : splitAtIndices) {
 
             long[] subTensorShape = shapeCopy();
             long subTensorLengthInDimension = splitAtIndex - previousSplitAtIndex;
 
-            if (subTensorLengthInDimension > shape[dimension] || subTensorLengthInDimension <= 0) {
+            if (splitAtIndex > shape[dimension] || subTensorLengthInDimension <= 0) {
                 throw new IllegalArgumentException("Invalid index to split on " + splitAtIndex + " at " + dimension + " for tensor of shape " + Arrays.toString(shape));
             }
 
             subTensorShape[dimension] = subTensorLengthInDimension;
-            int subTensorLength = Ints.checkedCast(TensorShape.getLength(subTensorShape));
+            long subTensorOffset = viewOffset + previousSplitAtIndex * bufferStride[dimension];
 
-            double[] buffer = new double[subTensorLength];
-            System.arraycopy(rawBuffer, rawBufferPosition, buffer, 0, buffer.length);
-
-            long[] subTensorPermutedShape = TensorShape.getPermutedResultShape(subTensorShape, moveDimToZero);
-            DoubleTensor subTensor = DoubleTensor.create(buffer, subTensorPermutedShape).permute(moveZeroToDim);
-            splitTensor.add(subTensor);
+            splitTensor.add(createView(subTensorShape, copyOf(bufferStride, bufferStride.length), subTensorOffset));
 
             previousSplitAtIndex = splitAtIndex;
-            rawBufferPosition += buffer.length;
         }
 
         return splitTensor;
@@ -1094,26 +1512,43 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor reciprocalInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = 1.0 / buffer[i];
+        if (isLazy()) {
+            return deferInPlace(v -> 1.0 / v);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = 1.0 / buffer[i];
+            }
+        });
         return this;
     }
 
 
     @Override
     public DoubleTensor sqrtInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.sqrt(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(FastMath::sqrt);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.sqrt(buffer[i]);
+            }
+        });
         return this;
     }
 
     @Override
     public DoubleTensor logInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.log(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(MathKernels::log);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> MathKernels.log(buffer, from, to));
         return this;
     }
 
@@ -1127,83 +1562,137 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor logGammaInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = Gamma.logGamma(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(MathKernels::logGamma);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> MathKernels.logGamma(buffer, from, to));
         return this;
     }
 
     @Override
     public DoubleTensor digammaInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = Gamma.digamma(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(MathKernels::digamma);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> MathKernels.digamma(buffer, from, to));
         return this;
     }
 
     @Override
     public DoubleTensor sinInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.sin(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(FastMath::sin);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.sin(buffer[i]);
+            }
+        });
         return this;
     }
 
     @Override
     public DoubleTensor cosInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.cos(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(FastMath::cos);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.cos(buffer[i]);
+            }
+        });
         return this;
     }
 
     @Override
     public DoubleTensor tanInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.tan(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(FastMath::tan);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.tan(buffer[i]);
+            }
+        });
         return this;
     }
 
     @Override
     public DoubleTensor atanInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.atan(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(FastMath::atan);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.atan(buffer[i]);
+            }
+        });
         return this;
     }
 
     @Override
     public DoubleTensor asinInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.asin(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(FastMath::asin);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.asin(buffer[i]);
+            }
+        });
         return this;
     }
 
     @Override
     public DoubleTensor acosInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.acos(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(FastMath::acos);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.acos(buffer[i]);
+            }
+        });
         return this;
     }
 
     @Override
     public DoubleTensor expInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.exp(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(MathKernels::exp);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> MathKernels.exp(buffer, from, to));
         return this;
     }
 
     @Override
     public double min() {
-        double result = Double.MAX_VALUE;
-        for (int i = 0; i < buffer.length; i++) {
-            result = Math.min(result, buffer[i]);
-        }
-        return result;
+        materialize();
+        return reduceChunks(buffer.length, (from, to) -> {
+            double result = Double.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                result = Math.min(result, buffer[i]);
+            }
+            return result;
+        }, Math::min);
     }
 
     @Override
@@ -1213,11 +1702,14 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public double max() {
-        double result = -Double.MAX_VALUE;
-        for (int i = 0; i < buffer.length; i++) {
-            result = Math.max(result, buffer[i]);
-        }
-        return result;
+        materialize();
+        return reduceChunks(buffer.length, (from, to) -> {
+            double result = -Double.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                result = Math.max(result, buffer[i]);
+            }
+            return result;
+        }, Math::max);
     }
 
     @Override
@@ -1234,30 +1726,51 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor ceilInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.ceil(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(FastMath::ceil);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.ceil(buffer[i]);
+            }
+        });
         return this;
     }
 
     @Override
     public DoubleTensor floorInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = FastMath.floor(buffer[i]);
+        if (isLazy()) {
+            return deferInPlace(FastMath::floor);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.floor(buffer[i]);
+            }
+        });
         return this;
     }
 
     @Override
     public DoubleTensor roundInPlace() {
-        for (int i = 0; i < buffer.length; i++) {
-            if (buffer[i] >= 0.0) {
-                buffer[i] = FastMath.floor(buffer[i] + 0.5);
-            } else {
-                buffer[i] = FastMath.ceil(buffer[i] - 0.5);
-            }
+        if (isLazy()) {
+            return deferInPlace(v -> v >= 0.0 ? FastMath.floor(v + 0.5) : FastMath.ceil(v - 0.5));
         }
 
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (buffer[i] >= 0.0) {
+                    buffer[i] = FastMath.floor(buffer[i] + 0.5);
+                } else {
+                    buffer[i] = FastMath.ceil(buffer[i] - 0.5);
+                }
+            }
+        });
+
         return this;
     }
 
@@ -1268,14 +1781,22 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor replaceNaNInPlace(double value) {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] = Double.isNaN(buffer[i]) ? value : buffer[i];
+        if (isLazy()) {
+            return deferInPlace(v -> Double.isNaN(v) ? value : v);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] = Double.isNaN(buffer[i]) ? value : buffer[i];
+            }
+        });
         return this;
     }
 
     @Override
     public DoubleTensor setAllInPlace(double value) {
+        copyOnWrite();
         Arrays.fill(buffer, value);
 
         return this;
@@ -1283,6 +1804,7 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public BooleanTensor notNaN() {
+        materialize();
         boolean[] newBuffer = new boolean[buffer.length];
 
         for (int i = 0; i < buffer.length; i++) {
@@ -1294,9 +1816,16 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor minusInPlace(double value) {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] -= value;
+        if (isLazy()) {
+            return deferInPlace(v -> v - value);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] -= value;
+            }
+        });
         return this;
     }
 
@@ -1317,9 +1846,16 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor plusInPlace(double value) {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] += value;
+        if (isLazy()) {
+            return deferInPlace(v -> v + value);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] += value;
+            }
+        });
         return this;
     }
 
@@ -1340,9 +1876,16 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor timesInPlace(double value) {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] *= value;
+        if (isLazy()) {
+            return deferInPlace(v -> v * value);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] *= value;
+            }
+        });
         return this;
     }
 
@@ -1363,9 +1906,16 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor divInPlace(double value) {
-        for (int i = 0; i < buffer.length; i++) {
-            buffer[i] /= value;
+        if (isLazy()) {
+            return deferInPlace(v -> v / value);
         }
+
+        copyOnWrite();
+        forEachChunk(buffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                buffer[i] /= value;
+            }
+        });
         return this;
     }
 
@@ -1384,17 +1934,32 @@ public class JVMDoubleTensor extends DoubleTensor {
         return duplicate().divInPlace(that);
     }
 
-    private DoubleTensor broadcastableBinaryDoubleOp(BiFunction<Double, Double, Double> op, DoubleTensor that) {
+    private DoubleTensor broadcastableBinaryDoubleOp(DoubleBinaryOperator op, DoubleTensor that) {
         return binaryDoubleOpWithAutoBroadcast(that, op, false);
     }
 
-    private DoubleTensor broadcastableBinaryDoubleOpInPlace(BiFunction<Double, Double, Double> op, DoubleTensor that) {
+    private DoubleTensor broadcastableBinaryDoubleOpInPlace(DoubleBinaryOperator op, DoubleTensor that) {
         return binaryDoubleOpWithAutoBroadcast(that, op, true);
     }
 
     private JVMDoubleTensor binaryDoubleOpWithAutoBroadcast(DoubleTensor right,
-                                                            BiFunction<Double, Double, Double> op,
+                                                            DoubleBinaryOperator op,
                                                             boolean inPlace) {
+        if (inPlace && isLazy()) {
+            if (right instanceof JVMDoubleTensor && Arrays.equals(shape, right.getShape()) && canDeferReading((JVMDoubleTensor) right)) {
+                return deferInPlace(op, (JVMDoubleTensor) right);
+            } else if (right.getRank() == 0) {
+                final double rightValue = right.scalar();
+                return deferInPlace(v -> op.applyAsDouble(v, rightValue));
+            }
+        }
+
+        if (inPlace) {
+            copyOnWrite();
+        } else {
+            materialize();
+        }
+
         final double[] rightBuffer = getRawBufferIfJVMTensor(right);
         final long[] rightShape = right.getShape();
 
@@ -1410,12 +1975,12 @@ public class JVMDoubleTensor extends DoubleTensor {
                 final long[] resultStride;
 
                 if (shape.length == 0) {
-                    outputBuffer = new double[rightBuffer.length];
+                    outputBuffer = inPlace ? newStorage(rightBuffer.length) : JVMDoubleTensorArena.allocate(rightBuffer.length);
                     resultShape = Arrays.copyOf(rightShape, rightShape.length);
                     resultStride = Arrays.copyOf(right.getStride(), rightShape.length);
                     scalarLeft(buffer[0], rightBuffer, outputBuffer, op);
                 } else {
-                    outputBuffer = inPlace ? buffer : new double[buffer.length];
+                    outputBuffer = inPlace ? buffer : JVMDoubleTensorArena.allocate(buffer.length);
                     resultShape = Arrays.copyOf(shape, shape.length);
                     resultStride = stride;
                     scalarRight(buffer, rightBuffer[0], outputBuffer, op);
@@ -1456,16 +2021,13 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     private JVMDoubleTensor broadcastBinaryDoubleOp(JVMDoubleTensor left, double[] leftBuffer, long[] leftShape,
                                                     double[] rightBuffer, long[] rightShape,
-                                                    BiFunction<Double, Double, Double> op,
+                                                    DoubleBinaryOperator op,
                                                     boolean inPlace) {
 
         //implicitly pad lower ranks with 1s. E.g. [3, 3] & [3] -> [3, 3] -> [1, 3]
         int resultRank = Math.max(leftShape.length, rightShape.length);
         long[] paddedLeftShape = getShapeOrPadToRank(leftShape, resultRank);
-        long[] paddedLeftStride = TensorShape.getRowFirstStride(paddedLeftShape);
-
         long[] paddedRightShape = getShapeOrPadToRank(rightShape, resultRank);
-        long[] paddedRightStride = TensorShape.getRowFirstStride(paddedRightShape);
 
         long[] resultShape = Shape.broadcastOutputShape(paddedLeftShape, paddedRightShape);
         boolean resultShapeIsLeftSideShape = Arrays.equals(resultShape, paddedLeftShape);
@@ -1481,19 +2043,20 @@ public class JVMDoubleTensor extends DoubleTensor {
                 );
             }
 
-            outputBuffer = new double[Ints.checkedCast(TensorShape.getLength(resultShape))];
+            final int resultLength = Ints.checkedCast(TensorShape.getLength(resultShape));
+            outputBuffer = inPlace ? left.newStorage(resultLength) : JVMDoubleTensorArena.allocate(resultLength);
 
         } else {
-            outputBuffer = inPlace ? leftBuffer : new double[leftBuffer.length];
+            outputBuffer = inPlace ? leftBuffer : JVMDoubleTensorArena.allocate(leftBuffer.length);
         }
 
         //Allow broadcasting from left and right
         if (paddedLeftShape.length > paddedRightShape.length || leftBuffer.length > rightBuffer.length) {
             //e.g. [2, 2] * [1, 2]
-            broadcastFromRight(leftBuffer, paddedLeftShape, paddedLeftStride, rightBuffer, paddedRightShape, paddedRightStride, outputBuffer, op);
+            broadcastFromRight(leftBuffer, paddedLeftShape, rightBuffer, paddedRightShape, outputBuffer, op);
         } else {
             //e.g. [2] / [2, 2]
-            broadcastFromLeft(leftBuffer, paddedLeftShape, paddedLeftStride, rightBuffer, paddedRightShape, paddedRightStride, outputBuffer, op);
+            broadcastFromLeft(leftBuffer, paddedLeftShape, rightBuffer, paddedRightShape, outputBuffer, op);
         }
 
         if (inPlace) {
@@ -1509,14 +2072,16 @@ public class JVMDoubleTensor extends DoubleTensor {
     }
 
     private JVMDoubleTensor elementwiseBinaryOp(JVMDoubleTensor left, double[] leftBuffer, double[] rightBuffer, long[] shape,
-                                                BiFunction<Double, Double, Double> op,
+                                                DoubleBinaryOperator op,
                                                 boolean inPlace) {
 
-        final double[] outputBuffer = inPlace ? leftBuffer : new double[leftBuffer.length];
+        final double[] outputBuffer = inPlace ? leftBuffer : JVMDoubleTensorArena.allocate(leftBuffer.length);
 
-        for (int i = 0; i < outputBuffer.length; i++) {
-            outputBuffer[i] = op.apply(leftBuffer[i], rightBuffer[i]);
-        }
+        forEachChunk(outputBuffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                outputBuffer[i] = op.applyAsDouble(leftBuffer[i], rightBuffer[i]);
+            }
+        });
 
         if (inPlace) {
             left.buffer = outputBuffer;
@@ -1527,7 +2092,8 @@ public class JVMDoubleTensor extends DoubleTensor {
     }
 
     @Override
-    public FlattenedView<Double> getFlattenedView() {
+    public DoubleFlattenedView getFlattenedView() {
+        materialize();
         if (buffer.length == 1) {
             return new ScalarJVMFlattenedView();
         } else {
@@ -1535,32 +2101,38 @@ public class JVMDoubleTensor extends DoubleTensor {
         }
     }
 
-    private class JVMDoubleFlattenedView {
+    private abstract class JVMDoubleFlattenedView implements DoubleFlattenedView {
+        @Override
         public long size() {
             return buffer.length;
         }
 
-        public Double get(long index) {
+        @Override
+        public double getDouble(long index) {
+            evaluatePending();
             return buffer[Ints.checkedCast(index)];
         }
 
-        public void set(long index, Double value) {
+        @Override
+        public void setDouble(long index, double value) {
+            copyOnWrite();
             buffer[Ints.checkedCast(index)] = value;
         }
 
     }
 
-    private class TensorJVMDoubleFlattenedView extends JVMDoubleFlattenedView implements FlattenedView<Double> {
+    private class TensorJVMDoubleFlattenedView extends JVMDoubleFlattenedView {
         @Override
-        public Double getOrScalar(long index) {
-                return get(index);
+        public double getDoubleOrScalar(long index) {
+            return getDouble(index);
         }
 
     }
 
-    private class ScalarJVMFlattenedView extends JVMDoubleFlattenedView implements FlattenedView<Double> {
+    private class ScalarJVMFlattenedView extends JVMDoubleFlattenedView {
         @Override
-        public Double getOrScalar(long index) {
+        public double getDoubleOrScalar(long index) {
+            evaluatePending();
             return buffer[0];
         }
 
@@ -1571,12 +2143,15 @@ public class JVMDoubleTensor extends DoubleTensor {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         JVMDoubleTensor that = (JVMDoubleTensor) o;
+        this.materialize();
+        that.materialize();
         return Arrays.equals(shape, that.shape) &&
             Arrays.equals(buffer, that.buffer);
     }
 
     @Override
     public String toString() {
+        materialize();
         return "JVMDoubleTensor{" +
             "shape=" + Arrays.toString(shape) +
             ", buffer=" + Arrays.toString(buffer) +
@@ -1585,6 +2160,7 @@ public class JVMDoubleTensor extends DoubleTensor {
 
     @Override
     public int hashCode() {
+        materialize();
         int result = Arrays.hashCode(shape);
         result = 31 * result + Arrays.hashCode(buffer);
         return result;
@@ -0,0 +1,252 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.tensor.Nd4jWorkspaces;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A per thread pool of JVMDoubleTensor buffers that is drawn from while a {@link Scope} is open.
+ * <p>
+ * Iterative algorithms create many short lived tensors of the same shapes on every iteration. While a scope is
+ * open on a thread, the buffers of new JVMDoubleTensors created on that thread are taken from the pool, and when
+ * the scope is closed they are given back to it, so the next iteration can reuse them instead of allocating.
+ * <p>
+ * Any tensor that is created inside a scope and is still used after it has been closed must be passed to
+ * {@link #escape(Object)} after its last modification in the scope, otherwise its values will be overwritten.
+ * Values of vertices are escaped when they are set, so samples taken from vertices are always safe to keep.
+ * Tensors from outside the scope that are modified in place inside it should also be escaped.
+ * <pre>
+ * try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+ *     result = JVMDoubleTensorArena.escape(x.minus(mu).divInPlace(sigma).powInPlace(2));
+ * }
+ * </pre>
+ * Buffers shorter than the minimum pooled length are never pooled as they are cheaper to allocate than to track.
+ * <p>
+ * If {@link Nd4jWorkspaces} are enabled, the outermost scope on a thread also runs ND4J operations in a reused
+ * workspace and escaping a value detaches it from that workspace.
+ */
+public final class JVMDoubleTensorArena {
+
+    public static final int DEFAULT_MIN_POOLED_LENGTH = 64;
+    public static final long DEFAULT_MAX_POOLED_BYTES = 64L * 1024 * 1024;
+
+    private static volatile int minPooledLength = DEFAULT_MIN_POOLED_LENGTH;
+    private static volatile long maxPooledBytes = DEFAULT_MAX_POOLED_BYTES;
+
+    /**
+     * Number of scopes open across all threads, which lets escape return straight away in the common case of
+     * no scopes being open without looking up the thread's pool.
+     */
+    private static final AtomicInteger OPEN_SCOPES = new AtomicInteger();
+
+    private static final ThreadLocal<ThreadPool> POOL = ThreadLocal.withInitial(ThreadPool::new);
+
+    private JVMDoubleTensorArena() {
+    }
+
+    /**
+     * @param length the length below which buffers are always allocated rather than pooled
+     */
+    public static void setMinPooledLength(int length) {
+        Preconditions.checkArgument(length > 0, "Minimum pooled length must be positive but was " + length);
+        minPooledLength = length;
+    }
+
+    public static int getMinPooledLength() {
+        return minPooledLength;
+    }
+
+    /**
+     * @param bytes the most memory each thread keeps in its pool between scopes. Buffers returned once the
+     *              pool is full are left to the garbage collector.
+     */
+    public static void setMaxPooledBytes(long bytes) {
+        Preconditions.checkArgument(bytes >= 0, "Maximum pooled bytes must not be negative but was " + bytes);
+        maxPooledBytes = bytes;
+    }
+
+    public static long getMaxPooledBytes() {
+        return maxPooledBytes;
+    }
+
+    /**
+     * Opens a scope on the current thread. Scopes can be nested and must be closed on the thread that opened
+     * them in the reverse order to which they were opened.
+     *
+     * @return the new scope
+     */
+    public static Scope open() {
+        ThreadPool pool = POOL.get();
+        MemoryWorkspace workspace = pool.innermost == null && Nd4jWorkspaces.isEnabled() ?
+            Nd4jWorkspaces.openIterationWorkspace() :
+            null;
+
+        Scope scope = new Scope(pool, pool.innermost, workspace);
+        pool.innermost = scope;
+        OPEN_SCOPES.incrementAndGet();
+        return scope;
+    }
+
+    /**
+     * @return true if a scope is open on the current thread
+     */
+    public static boolean isOpen() {
+        return getInnermostScope() != null;
+    }
+
+    /**
+     * Stops the buffer of a tensor created in a scope from being reused when the scope is closed. Pending
+     * lazy operations are evaluated so that the tensor doesn't depend on any other buffer from the scope.
+     * ND4J backed tensors are detached from the scope's workspace and any other values are ignored.
+     *
+     * @param value the value that outlives the current scope
+     * @param <T>   the type of the value
+     * @return value
+     */
+    public static <T> T escape(T value) {
+        if (OPEN_SCOPES.get() == 0) {
+            return value;
+        }
+
+        if (value instanceof JVMDoubleTensor) {
+            ((JVMDoubleTensor) value).escapeFromArena();
+        } else if (Nd4jWorkspaces.isEnabled()) {
+            Nd4jWorkspaces.detach(value);
+        }
+        return value;
+    }
+
+    /**
+     * @return the innermost open scope of the current thread or null if there is none
+     */
+    static Scope getInnermostScope() {
+        return OPEN_SCOPES.get() == 0 ? null : POOL.get().innermost;
+    }
+
+    /**
+     * @return a buffer whose contents are undefined and must all be written by the caller
+     */
+    static double[] allocate(int length) {
+        if (length < minPooledLength || OPEN_SCOPES.get() == 0) {
+            return new double[length];
+        }
+
+        ThreadPool pool = POOL.get();
+        if (pool.innermost == null) {
+            return new double[length];
+        }
+
+        return pool.take(length);
+    }
+
+    /**
+     * @return a buffer of zeros
+     */
+    static double[] allocateZeros(int length) {
+        if (length < minPooledLength || OPEN_SCOPES.get() == 0) {
+            return new double[length];
+        }
+
+        double[] buffer = allocate(length);
+        Arrays.fill(buffer, 0.0);
+        return buffer;
+    }
+
+    /**
+     * @return true if buffer is from the pool and will be reused when its scope is closed
+     */
+    static boolean isPooled(double[] buffer) {
+        return OPEN_SCOPES.get() > 0 && POOL.get().inUse.contains(buffer);
+    }
+
+    static void escapeBuffer(double[] buffer) {
+        if (OPEN_SCOPES.get() > 0) {
+            POOL.get().inUse.remove(buffer);
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final ThreadPool pool;
+        private final Scope enclosing;
+        private final MemoryWorkspace workspace;
+        private final List<double[]> taken = new ArrayList<>();
+        private boolean closed;
+
+        private Scope(ThreadPool pool, Scope enclosing, MemoryWorkspace workspace) {
+            this.pool = pool;
+            this.enclosing = enclosing;
+            this.workspace = workspace;
+        }
+
+        /**
+         * Gives every buffer taken in this scope that has not escaped back to the pool and resets its ND4J
+         * workspace, if it has one.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            if (POOL.get() != pool || pool.innermost != this) {
+                throw new IllegalStateException("Scopes must be closed on the thread that opened them, innermost first");
+            }
+
+            for (double[] buffer : taken) {
+                if (pool.inUse.remove(buffer)) {
+                    pool.give(buffer);
+                }
+            }
+
+            taken.clear();
+            if (workspace != null) {
+                workspace.close();
+            }
+            pool.innermost = enclosing;
+            closed = true;
+            OPEN_SCOPES.decrementAndGet();
+        }
+    }
+
+    private static final class ThreadPool {
+
+        private final Map<Integer, ArrayDeque<double[]>> freeByLength = new HashMap<>();
+        private final Set<double[]> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+        private long freeBytes;
+        private Scope innermost;
+
+        double[] take(int length) {
+            ArrayDeque<double[]> free = freeByLength.get(length);
+            double[] buffer = free == null ? null : free.pollLast();
+
+            if (buffer == null) {
+                buffer = new double[length];
+            } else {
+                freeBytes -= (long) length * Double.BYTES;
+            }
+
+            inUse.add(buffer);
+            innermost.taken.add(buffer);
+            return buffer;
+        }
+
+        void give(double[] buffer) {
+            long bytes = (long) buffer.length * Double.BYTES;
+            if (freeBytes + bytes <= maxPooledBytes) {
+                freeByLength.computeIfAbsent(buffer.length, length -> new ArrayDeque<>()).addLast(buffer);
+                freeBytes += bytes;
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.primitives.Ints;
+import io.improbable.keanu.tensor.TensorShape;
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+import java.util.Arrays;
+
+import static io.improbable.keanu.tensor.dbl.JVMDoubleTensorParallelism.forEachChunk;
+import static io.improbable.keanu.tensor.dbl.KeanuLapack.dgetrf;
+import static io.improbable.keanu.tensor.dbl.KeanuLapack.dgetri;
+import static io.improbable.keanu.tensor.dbl.KeanuLapack.dpotrf;
+import static org.bytedeco.javacpp.openblas.CblasNoTrans;
+import static org.bytedeco.javacpp.openblas.CblasRowMajor;
+import static org.bytedeco.javacpp.openblas.cblas_dgemm;
+
+/**
+ * Linear algebra on row first buffers that hold a batch of matrices in their last two dimensions, where the
+ * leading dimensions index the matrices. Every matrix is worked on in place in the buffer or through a scratch
+ * array that is reused for the whole batch, so no tensor is allocated per matrix. Batches are split across
+ * threads with {@link JVMDoubleTensorParallelism}.
+ */
+final class JVMDoubleTensorBatchedLinearAlgebra {
+
+    /**
+     * Matrices with fewer multiply adds than this are multiplied by a loop in Java as copying them in and out
+     * of scratch arrays for cblas_dgemm costs more than it saves.
+     */
+    private static final long GEMM_THRESHOLD = 32 * 32 * 32;
+
+    private JVMDoubleTensorBatchedLinearAlgebra() {
+    }
+
+    /**
+     * @param left        row first buffer of shape [..., M, K]
+     * @param leftShape   shape of left
+     * @param right       row first buffer of shape [..., K, N]
+     * @param rightShape  shape of right
+     * @param resultShape the broadcast batch shape followed by [M, N]
+     * @param result      buffer of resultShape that is written to
+     */
+    static void matrixMultiply(double[] left, long[] leftShape,
+                               double[] right, long[] rightShape,
+                               long[] resultShape, double[] result) {
+
+        final int rank = resultShape.length;
+        final int M = Ints.checkedCast(resultShape[rank - 2]);
+        final int N = Ints.checkedCast(resultShape[rank - 1]);
+        final int K = Ints.checkedCast(leftShape[leftShape.length - 1]);
+
+        final long[] batchShape = Arrays.copyOf(resultShape, rank - 2);
+        final int batchLength = TensorShape.getLengthAsInt(batchShape);
+        final int[] leftMatrices = broadcastMatrixIndices(leftShape, batchShape, batchLength);
+        final int[] rightMatrices = broadcastMatrixIndices(rightShape, batchShape, batchLength);
+        final boolean useGemm = (long) M * N * K >= GEMM_THRESHOLD;
+
+        forEachChunk(batchLength, M * N, (from, to) -> {
+            final double[] leftScratch = useGemm ? new double[M * K] : null;
+            final double[] rightScratch = useGemm ? new double[K * N] : null;
+            final double[] resultScratch = useGemm ? new double[M * N] : null;
+
+            for (int b = from; b < to; b++) {
+                final int leftOffset = leftMatrices[b] * M * K;
+                final int rightOffset = rightMatrices[b] * K * N;
+                final int resultOffset = b * M * N;
+
+                if (useGemm) {
+                    System.arraycopy(left, leftOffset, leftScratch, 0, M * K);
+                    System.arraycopy(right, rightOffset, rightScratch, 0, K * N);
+
+                    //C = alpha*A*B + beta*C
+                    //(M,N) = (M,k)(k,N) + (M,N)
+                    cblas_dgemm(CblasRowMajor, CblasNoTrans, CblasNoTrans, M, N, K, 1, leftScratch, K, rightScratch, N, 0, resultScratch, N);
+                    System.arraycopy(resultScratch, 0, result, resultOffset, M * N);
+                } else {
+                    multiply(left, leftOffset, right, rightOffset, result, resultOffset, M, N, K);
+                }
+            }
+        });
+    }
+
+    private static void multiply(double[] left, int leftOffset,
+                                 double[] right, int rightOffset,
+                                 double[] result, int resultOffset,
+                                 int M, int N, int K) {
+        for (int i = 0; i < M; i++) {
+            final int resultRow = resultOffset + i * N;
+            Arrays.fill(result, resultRow, resultRow + N, 0.0);
+
+            for (int k = 0; k < K; k++) {
+                final double leftValue = left[leftOffset + i * K + k];
+                final int rightRow = rightOffset + k * N;
+                for (int j = 0; j < N; j++) {
+                    result[resultRow + j] += leftValue * right[rightRow + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return for each matrix of the batch, the index of the matrix of an operand of operandShape that it
+     * multiplies, where operand batch dimensions that are missing or of length one are broadcast.
+     */
+    private static int[] broadcastMatrixIndices(long[] operandShape, long[] batchShape, int batchLength) {
+        final long[] operandBatchShape = TensorShape.shapeToDesiredRankByPrependingOnes(
+            Arrays.copyOf(operandShape, operandShape.length - 2), batchShape.length
+        );
+        final long[] operandBatchStride = TensorShape.getRowFirstStride(operandBatchShape);
+
+        final int[] indices = new int[batchLength];
+        final long[] index = new long[batchShape.length];
+        int matrix = 0;
+
+        for (int b = 0; b < batchLength; b++) {
+            indices[b] = matrix;
+
+            for (int d = batchShape.length - 1; d >= 0; d--) {
+                index[d]++;
+                if (operandBatchShape[d] != 1) {
+                    matrix += operandBatchStride[d];
+                }
+
+                if (index[d] < batchShape[d]) {
+                    break;
+                }
+
+                if (operandBatchShape[d] != 1) {
+                    matrix -= operandBatchStride[d] * index[d];
+                }
+                index[d] = 0;
+            }
+        }
+
+        return indices;
+    }
+
+    /**
+     * Replaces each N by N matrix in buffer with its lower triangular Cholesky factor.
+     */
+    static void choleskyDecomposition(double[] buffer, int N) {
+        forEachMatrix(buffer, N, matrix -> {
+            int result = dpotrf(KeanuLapack.Triangular.LOWER, N, matrix);
+
+            if (result != 0) {
+                throw new IllegalStateException("Cholesky decomposition failed");
+            }
+
+            zeroOutUpperTriangle(N, matrix);
+        });
+    }
+
+    static void zeroOutUpperTriangle(int N, double[] buffer) {
+        if (N > 1) {
+            for (int i = 0; i < N; i++) {
+                for (int j = i + 1; j < N; j++) {
+                    buffer[i * N + j] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces each N by N matrix in buffer with its inverse.
+     */
+    static void matrixInverse(double[] buffer, int N) {
+        final int[] ipiv = new int[N];
+
+        forEachMatrix(buffer, N, matrix -> {
+            final int factorizationResult = dgetrf(N, N, matrix, ipiv);
+
+            if (factorizationResult < 0) {
+                throw new IllegalStateException("Matrix factorization failed");
+            } else if (factorizationResult > 0) {
+                throw new SingularMatrixException();
+            }
+
+            int inverseResult = dgetri(N, matrix, ipiv);
+
+            if (inverseResult != 0) {
+                throw new IllegalStateException("Matrix inverse failed");
+            }
+        });
+    }
+
+    /**
+     * LU factorizes each N by N matrix of buffer in place.
+     *
+     * @return the determinant of each matrix
+     */
+    static double[] determinant(double[] buffer, int N) {
+        final int matrixLength = N * N;
+        final double[] determinants = new double[matrixLength == 0 ? 1 : buffer.length / matrixLength];
+        final int[] ipiv = new int[N];
+        final int[] matrixIndex = new int[1];
+
+        forEachMatrix(buffer, N, matrix -> determinants[matrixIndex[0]++] = determinant(matrix, N, ipiv));
+
+        return determinants;
+    }
+
+    static double determinant(double[] matrix, int N, int[] ipiv) {
+        final int factorizationResult = dgetrf(N, N, matrix, ipiv);
+
+        if (factorizationResult < 0) {
+            throw new IllegalStateException("Matrix factorization failed");
+        } else if (factorizationResult > 0) {
+            return 0;
+        }
+
+        //credit: https://stackoverflow.com/questions/47315471/compute-determinant-from-lu-decomposition-in-lapack
+        double detp = 1.;
+        for (int j = 0; j < N; j++) {
+            if (j + 1 != ipiv[j]) {
+                detp = -detp;
+            }
+        }
+
+        double detU = 1.0;
+        for (int i = 0; i < N; i++) {
+            detU *= matrix[i * N + i];
+        }
+
+        return detU * detp;
+    }
+
+    @FunctionalInterface
+    private interface MatrixConsumer {
+        void accept(double[] matrix);
+    }
+
+    /**
+     * Calls matrixConsumer in order on each N by N matrix of buffer, which it can modify in place. A buffer
+     * that holds a single matrix is passed straight through and otherwise a reused scratch array is.
+     */
+    private static void forEachMatrix(double[] buffer, int N, MatrixConsumer matrixConsumer) {
+        final int matrixLength = N * N;
+
+        if (buffer.length == matrixLength) {
+            matrixConsumer.accept(buffer);
+            return;
+        }
+
+        final double[] scratch = new double[matrixLength];
+        for (int offset = 0; offset < buffer.length; offset += matrixLength) {
+            System.arraycopy(buffer, offset, scratch, 0, matrixLength);
+            matrixConsumer.accept(scratch);
+            System.arraycopy(scratch, 0, buffer, offset, matrixLength);
+        }
+    }
+}
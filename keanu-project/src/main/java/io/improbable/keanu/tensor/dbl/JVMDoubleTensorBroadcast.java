@@ -2,31 +2,33 @@ package io.improbable.keanu.tensor.dbl;
 
 import com.google.common.base.Preconditions;
 import com.google.common.primitives.Ints;
-import io.improbable.keanu.tensor.TensorShape;
 
-import java.util.function.BiFunction;
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+
+import static io.improbable.keanu.tensor.dbl.JVMDoubleTensorParallelism.forEachChunk;
 
 public class JVMDoubleTensorBroadcast {
 
-    public enum BroadcastableDoubleOperation implements BiFunction<Double, Double, Double> {
+    public enum BroadcastableDoubleOperation implements DoubleBinaryOperator {
 
         ADD {
             @Override
-            public Double apply(Double left, Double right) {
+            public double applyAsDouble(double left, double right) {
                 return left + right;
             }
         },
 
         SUB {
             @Override
-            public Double apply(Double left, Double right) {
+            public double applyAsDouble(double left, double right) {
                 return left - right;
             }
         },
 
         MUL {
             @Override
-            public Double apply(Double left, Double right) {
+            public double applyAsDouble(double left, double right) {
                 return left * right;
             }
         },
@@ -34,124 +36,200 @@ public class JVMDoubleTensorBroadcast {
 
         DIV {
             @Override
-            public Double apply(Double left, Double right) {
+            public double applyAsDouble(double left, double right) {
                 return left / right;
             }
         },
 
         GT_MASK {
             @Override
-            public Double apply(Double left, Double right) {
+            public double applyAsDouble(double left, double right) {
                 return left > right ? 1.0 : 0.0;
             }
         },
 
         GTE_MASK {
             @Override
-            public Double apply(Double left, Double right) {
+            public double applyAsDouble(double left, double right) {
                 return left >= right ? 1.0 : 0.0;
             }
         },
 
         LT_MASK {
             @Override
-            public Double apply(Double left, Double right) {
+            public double applyAsDouble(double left, double right) {
                 return left < right ? 1.0 : 0.0;
             }
         },
 
         LTE_MASK {
             @Override
-            public Double apply(Double left, Double right) {
+            public double applyAsDouble(double left, double right) {
                 return left <= right ? 1.0 : 0.0;
             }
         }
 
     }
 
-    static void scalarLeft(double left, double[] rightBuffer, double[] outputBuffer, BiFunction<Double, Double, Double> op) {
+    static void scalarLeft(double left, double[] rightBuffer, double[] outputBuffer, DoubleBinaryOperator op) {
 
-        for (int i = 0; i < outputBuffer.length; i++) {
-            outputBuffer[i] = op.apply(left, rightBuffer[i]);
-        }
+        forEachChunk(outputBuffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                outputBuffer[i] = op.applyAsDouble(left, rightBuffer[i]);
+            }
+        });
 
     }
 
-    static void scalarRight(double[] leftBuffer, double right, double[] outputBuffer, BiFunction<Double, Double, Double> op) {
+    static void scalarRight(double[] leftBuffer, double right, double[] outputBuffer, DoubleBinaryOperator op) {
 
-        for (int i = 0; i < leftBuffer.length; i++) {
-            outputBuffer[i] = op.apply(leftBuffer[i], right);
-        }
+        forEachChunk(leftBuffer.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                outputBuffer[i] = op.applyAsDouble(leftBuffer[i], right);
+            }
+        });
 
     }
 
     /**
-     * Right buffer is shorter than left
-     *
-     * @param leftBuffer
-     * @param leftShape
-     * @param leftStride
-     * @param rightBuffer
-     * @param rightShape
-     * @param rightStride
-     * @param outputBuffer
-     * @param op
-     * @return
+     * Right buffer is shorter than left. Both shapes have the same rank and each dimension of right is either
+     * the same as that of left or one.
      */
-    static void broadcastFromRight(double[] leftBuffer, long[] leftShape, long[] leftStride,
-                                   double[] rightBuffer, long[] rightShape, long[] rightStride,
-                                   double[] outputBuffer, BiFunction<Double, Double, Double> op) {
+    static void broadcastFromRight(double[] leftBuffer, long[] leftShape,
+                                   double[] rightBuffer, long[] rightShape,
+                                   double[] outputBuffer, DoubleBinaryOperator op) {
         Preconditions.checkArgument(leftBuffer.length >= rightBuffer.length);
-        for (int i = 0; i < outputBuffer.length; i++) {
-
-            long[] shapeIndices = TensorShape.getShapeIndices(leftShape, leftStride, i);
 
-            long[] mappedShapeIndices = new long[shapeIndices.length];
-
-            for (int s = 0; s < shapeIndices.length; s++) {
-                mappedShapeIndices[s] = shapeIndices[s] % rightShape[s];
-            }
-
-            int j = Ints.checkedCast(TensorShape.getFlatIndex(rightShape, rightStride, mappedShapeIndices));
-
-            outputBuffer[i] = op.apply(leftBuffer[i], rightBuffer[j]);
+        if (outputBuffer.length == 0) {
+            return;
         }
 
+        final Layout layout = new Layout(leftShape, rightShape);
+        final int width = layout.width;
+
+        forEachChunk(outputBuffer.length / width, width, (from, to) -> {
+            for (int row = from; row < to; row++) {
+                final int i = row * width;
+                final int j = layout.smallOffset(row);
+
+                if (layout.isInnerBroadcast) {
+                    final double right = rightBuffer[j];
+                    for (int c = 0; c < width; c++) {
+                        outputBuffer[i + c] = op.applyAsDouble(leftBuffer[i + c], right);
+                    }
+                } else {
+                    for (int c = 0; c < width; c++) {
+                        outputBuffer[i + c] = op.applyAsDouble(leftBuffer[i + c], rightBuffer[j + c]);
+                    }
+                }
+            }
+        });
     }
 
     /**
-     * Left buffer is shorter than right
-     *
-     * @param leftBuffer
-     * @param leftShape
-     * @param leftStride
-     * @param rightBuffer
-     * @param rightShape
-     * @param rightStride
-     * @param outputBuffer
-     * @param op
-     * @return
+     * Left buffer is shorter than right. Both shapes have the same rank and each dimension of left is either
+     * the same as that of right or one.
      */
-    static void broadcastFromLeft(double[] leftBuffer, long[] leftShape, long[] leftStride,
-                                  double[] rightBuffer, long[] rightShape, long[] rightStride,
-                                  double[] outputBuffer, BiFunction<Double, Double, Double> op) {
+    static void broadcastFromLeft(double[] leftBuffer, long[] leftShape,
+                                  double[] rightBuffer, long[] rightShape,
+                                  double[] outputBuffer, DoubleBinaryOperator op) {
         Preconditions.checkArgument(leftBuffer.length <= rightBuffer.length);
-        for (int i = 0; i < outputBuffer.length; i++) {
 
-            long[] shapeIndices = TensorShape.getShapeIndices(rightShape, rightStride, i);
+        if (outputBuffer.length == 0) {
+            return;
+        }
 
-            long[] mappedShapeIndices = new long[shapeIndices.length];
+        final Layout layout = new Layout(rightShape, leftShape);
+        final int width = layout.width;
+
+        forEachChunk(outputBuffer.length / width, width, (from, to) -> {
+            for (int row = from; row < to; row++) {
+                final int i = row * width;
+                final int j = layout.smallOffset(row);
+
+                if (layout.isInnerBroadcast) {
+                    final double left = leftBuffer[j];
+                    for (int c = 0; c < width; c++) {
+                        outputBuffer[i + c] = op.applyAsDouble(left, rightBuffer[i + c]);
+                    }
+                } else {
+                    for (int c = 0; c < width; c++) {
+                        outputBuffer[i + c] = op.applyAsDouble(leftBuffer[j + c], rightBuffer[i + c]);
+                    }
+                }
+            }
+        });
+    }
 
-            for (int s = 0; s < shapeIndices.length; s++) {
-                mappedShapeIndices[s] = shapeIndices[s] % leftShape[s];
+    /**
+     * Groups neighbouring dimensions that are either all broadcast or all the same length in the smaller
+     * operand, ignoring dimensions of length one in the larger operand. The larger operand is then rows of its
+     * innermost group, and each row is combined with either a contiguous row of the smaller operand or a single
+     * value of it.
+     */
+    private static final class Layout {
+
+        private final boolean isInnerBroadcast;
+
+        /**
+         * The length of the innermost group.
+         */
+        private final int width;
+
+        private final long[] outerShape;
+
+        /**
+         * Stride of each outer group in the smaller operand, which is zero where it's broadcast.
+         */
+        private final long[] outerSmallStride;
+
+        Layout(long[] largeShape, long[] smallShape) {
+            final long[] groupShape = new long[largeShape.length + 1];
+            final boolean[] isGroupBroadcast = new boolean[largeShape.length + 1];
+            int groups = 0;
+            for (int d = 0; d < largeShape.length; d++) {
+                if (largeShape[d] == 1) {
+                    continue;
+                }
+                final boolean isBroadcast = smallShape[d] == 1;
+                if (groups > 0 && isGroupBroadcast[groups - 1] == isBroadcast) {
+                    groupShape[groups - 1] *= largeShape[d];
+                } else {
+                    groupShape[groups] = largeShape[d];
+                    isGroupBroadcast[groups] = isBroadcast;
+                    groups++;
+                }
             }
 
-            int j = Ints.checkedCast(TensorShape.getFlatIndex(leftShape, leftStride, mappedShapeIndices));
+            if (groups == 0) {
+                groupShape[0] = 1;
+                groups = 1;
+            }
 
-            outputBuffer[i] = op.apply(leftBuffer[j], rightBuffer[i]);
+            this.isInnerBroadcast = isGroupBroadcast[groups - 1];
+            this.width = Ints.checkedCast(groupShape[groups - 1]);
+            this.outerShape = Arrays.copyOf(groupShape, groups - 1);
+            this.outerSmallStride = new long[groups - 1];
+
+            long smallStride = isInnerBroadcast ? 1 : width;
+            for (int g = groups - 2; g >= 0; g--) {
+                if (!isGroupBroadcast[g]) {
+                    outerSmallStride[g] = smallStride;
+                    smallStride *= groupShape[g];
+                }
+            }
         }
 
+        /**
+         * @return the position in the smaller operand of the first element combined with a row of the larger one
+         */
+        int smallOffset(int row) {
+            long offset = 0;
+            for (int g = outerShape.length - 1; g >= 0; g--) {
+                offset += (row % outerShape[g]) * outerSmallStride[g];
+                row /= outerShape[g];
+            }
+            return (int) offset;
+        }
     }
-
-
 }
@@ -0,0 +1,283 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.primitives.Ints;
+
+import java.util.Arrays;
+
+import static io.improbable.keanu.tensor.dbl.JVMDoubleTensorParallelism.forEachChunk;
+import static org.bytedeco.javacpp.openblas.CblasNoTrans;
+import static org.bytedeco.javacpp.openblas.CblasRowMajor;
+import static org.bytedeco.javacpp.openblas.CblasTrans;
+import static org.bytedeco.javacpp.openblas.cblas_dgemm;
+
+/**
+ * Contracts two strided buffers along pairs of dimensions, which is a tensor multiply (tensordot), without
+ * permuting or reshaping them first.
+ * <p>
+ * Each operand is seen as a matrix whose rows and columns are its kept and contracted dimensions. Small
+ * contractions are looped over in Java through tables of offsets into the buffers. Larger ones call cblas_dgemm:
+ * an operand whose rows and columns each collapse to a single stride, which includes operands whose contracted
+ * dimensions are all leading or all trailing, is passed straight to it with a transpose flag and leading
+ * dimension, and any other operand is packed into a matrix first.
+ */
+final class JVMDoubleTensorContraction {
+
+    /**
+     * Contractions with fewer multiply adds than this are looped over in Java.
+     */
+    private static final long GEMM_THRESHOLD = 32 * 32 * 32;
+
+    private JVMDoubleTensorContraction() {
+    }
+
+    /**
+     * @param left        buffer of the left operand
+     * @param leftOffset  position of the first element of the left operand in its buffer
+     * @param leftShape   shape of the left operand
+     * @param leftStride  stride of each dimension of the left operand in its buffer
+     * @param right       buffer of the right operand
+     * @param rightOffset position of the first element of the right operand in its buffer
+     * @param rightShape  shape of the right operand
+     * @param rightStride stride of each dimension of the right operand in its buffer
+     * @param dimsLeft    absolute dimensions of the left operand to contract
+     * @param dimsRight   absolute dimensions of the right operand to contract, paired with dimsLeft
+     * @param result      row first buffer that is written with the kept left dimensions followed by the kept
+     *                    right dimensions
+     */
+    static void contract(double[] left, int leftOffset, long[] leftShape, long[] leftStride,
+                         double[] right, int rightOffset, long[] rightShape, long[] rightStride,
+                         int[] dimsLeft, int[] dimsRight,
+                         double[] result) {
+
+        final MatrixView leftMatrix = new MatrixView(
+            left, leftOffset, leftShape, leftStride, keptDimensions(leftShape.length, dimsLeft), dimsLeft
+        );
+        final MatrixView rightMatrix = new MatrixView(
+            right, rightOffset, rightShape, rightStride, dimsRight, keptDimensions(rightShape.length, dimsRight)
+        );
+
+        final int M = leftMatrix.rows;
+        final int N = rightMatrix.columns;
+        final int K = leftMatrix.columns;
+
+        if (M == 0 || N == 0) {
+            return;
+        }
+
+        if (K > 0 && (long) M * N * K >= GEMM_THRESHOLD) {
+            gemm(leftMatrix.packedIfNotGemmable(), rightMatrix.packedIfNotGemmable(), result);
+        } else {
+            loop(leftMatrix, rightMatrix, result);
+        }
+    }
+
+    private static int[] keptDimensions(int rank, int[] contracted) {
+        final int[] kept = new int[rank - contracted.length];
+        for (int d = 0, k = 0; d < rank; d++) {
+            if (!Ints.contains(contracted, d)) {
+                kept[k++] = d;
+            }
+        }
+        return kept;
+    }
+
+    private static void gemm(MatrixView left, MatrixView right, double[] result) {
+        final int M = left.rows;
+        final int N = right.columns;
+        final int K = left.columns;
+
+        //C = alpha*op(A)*op(B) + beta*C
+        //(M,N) = (M,k)(k,N) + (M,N)
+        cblas_dgemm(
+            CblasRowMajor, left.transposeFlag(), right.transposeFlag(), M, N, K,
+            1, left.buffer, left.leadingDimension(), right.buffer, right.leadingDimension(),
+            0, result, N
+        );
+    }
+
+    /**
+     * Multiplies through offset tables. When the columns of right are contiguous each row of the result is
+     * accumulated a row of right at a time, otherwise each element of the result is a dot product.
+     */
+    private static void loop(MatrixView left, MatrixView right, double[] result) {
+        final int M = left.rows;
+        final int N = right.columns;
+        final int K = left.columns;
+
+        final double[] A = left.buffer;
+        final double[] B = right.buffer;
+        final int[] leftRows = left.rowOffsets();
+        final int[] leftColumns = left.columnOffsets();
+        final int[] rightRows = right.rowOffsets();
+        final int[] rightColumns = right.columnOffsets();
+        final boolean rightColumnsAreContiguous = right.columns == 1 || right.columnStride == 1;
+
+        forEachChunk(M, Ints.saturatedCast((long) N * Math.max(K, 1)), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                final int resultRow = i * N;
+
+                if (rightColumnsAreContiguous) {
+                    Arrays.fill(result, resultRow, resultRow + N, 0.0);
+
+                    for (int k = 0; k < K; k++) {
+                        final double leftValue = A[leftRows[i] + leftColumns[k]];
+                        final int rightRow = rightRows[k];
+                        for (int j = 0; j < N; j++) {
+                            result[resultRow + j] += leftValue * B[rightRow + j];
+                        }
+                    }
+                } else {
+                    for (int j = 0; j < N; j++) {
+                        double sum = 0;
+                        for (int k = 0; k < K; k++) {
+                            sum += A[leftRows[i] + leftColumns[k]] * B[rightRows[k] + rightColumns[j]];
+                        }
+                        result[resultRow + j] = sum;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * An operand seen as a matrix whose rows and columns are each a group of its dimensions.
+     */
+    private static final class MatrixView {
+
+        private final double[] buffer;
+        private final int offset;
+        private final long[] shape;
+        private final long[] stride;
+        private final int[] rowDimensions;
+        private final int[] columnDimensions;
+
+        private final int rows;
+        private final int columns;
+
+        /**
+         * Distance between consecutive rows or columns in buffer, or -1 if the dimensions don't collapse to a
+         * single stride.
+         */
+        private final long rowStride;
+        private final long columnStride;
+
+        MatrixView(double[] buffer, int offset, long[] shape, long[] stride, int[] rowDimensions, int[] columnDimensions) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.shape = shape;
+            this.stride = stride;
+            this.rowDimensions = rowDimensions;
+            this.columnDimensions = columnDimensions;
+            this.rows = length(rowDimensions);
+            this.columns = length(columnDimensions);
+            this.rowStride = collapsedStride(rowDimensions);
+            this.columnStride = collapsedStride(columnDimensions);
+        }
+
+        private int length(int[] dimensions) {
+            long length = 1;
+            for (int d : dimensions) {
+                length *= shape[d];
+            }
+            return Ints.checkedCast(length);
+        }
+
+        private long collapsedStride(int[] dimensions) {
+            long collapsed = -1;
+            long extent = 1;
+
+            for (int i = dimensions.length - 1; i >= 0; i--) {
+                final int d = dimensions[i];
+                if (shape[d] == 1) {
+                    continue;
+                }
+
+                if (collapsed == -1) {
+                    collapsed = stride[d];
+                } else if (stride[d] != collapsed * extent) {
+                    return -1;
+                }
+                extent *= shape[d];
+            }
+
+            return collapsed == -1 ? 1 : collapsed;
+        }
+
+        private boolean isRowMajor() {
+            return (columns == 1 || columnStride == 1) && rowStride != -1 && (rows == 1 || rowStride >= columns);
+        }
+
+        private boolean isColumnMajor() {
+            return (rows == 1 || rowStride == 1) && columnStride != -1 && (columns == 1 || columnStride >= rows);
+        }
+
+        boolean isGemmable() {
+            return offset == 0 && (isRowMajor() || isColumnMajor());
+        }
+
+        int transposeFlag() {
+            return isRowMajor() ? CblasNoTrans : CblasTrans;
+        }
+
+        int leadingDimension() {
+            if (isRowMajor()) {
+                return rows == 1 ? Math.max(columns, 1) : Ints.checkedCast(rowStride);
+            } else {
+                return columns == 1 ? Math.max(rows, 1) : Ints.checkedCast(columnStride);
+            }
+        }
+
+        /**
+         * @return this if it can be passed to cblas_dgemm as it is, otherwise a row first copy
+         */
+        MatrixView packedIfNotGemmable() {
+            if (isGemmable()) {
+                return this;
+            }
+
+            final double[] packed = new double[rows * columns];
+            final int[] rowOffsets = rowOffsets();
+            final int[] columnOffsets = columnOffsets();
+
+            for (int i = 0, position = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    packed[position++] = buffer[rowOffsets[i] + columnOffsets[j]];
+                }
+            }
+
+            return new MatrixView(packed, 0, new long[]{rows, columns}, new long[]{columns, 1}, new int[]{0}, new int[]{1});
+        }
+
+        /**
+         * @return the position in buffer of the first element of each row
+         */
+        int[] rowOffsets() {
+            return offsets(rowDimensions, offset);
+        }
+
+        /**
+         * @return the distance of each column from the start of a row
+         */
+        int[] columnOffsets() {
+            return offsets(columnDimensions, 0);
+        }
+
+        private int[] offsets(int[] dimensions, int start) {
+            int[] offsets = new int[]{start};
+
+            for (int d : dimensions) {
+                final int length = Ints.checkedCast(shape[d]);
+                final int[] expanded = new int[offsets.length * length];
+
+                for (int i = 0, position = 0; i < offsets.length; i++) {
+                    for (int j = 0; j < length; j++) {
+                        expanded[position++] = offsets[i] + Ints.checkedCast(j * stride[d]);
+                    }
+                }
+                offsets = expanded;
+            }
+
+            return offsets;
+        }
+    }
+}
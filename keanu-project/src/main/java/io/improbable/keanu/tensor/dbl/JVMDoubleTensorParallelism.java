@@ -0,0 +1,162 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BinaryOperator;
+
+/**
+ * Runs the loops of JVMDoubleTensor kernels over chunks of a buffer on a ForkJoinPool.
+ * <p>
+ * Buffers shorter than the parallel threshold are processed on the calling thread as a single chunk so
+ * small tensors don't pay for task scheduling. Larger buffers are split into chunks of around chunk size
+ * elements, which by default fit comfortably in a per core cache. Reductions always use chunks of exactly chunk size
+ * elements combined in order, so their results don't depend on the number of threads.
+ */
+public final class JVMDoubleTensorParallelism {
+
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 65536;
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private static volatile ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private static volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private JVMDoubleTensorParallelism() {
+    }
+
+    /**
+     * @param pool the pool that large tensor operations are run on. Defaults to the common pool.
+     */
+    public static void setForkJoinPool(ForkJoinPool pool) {
+        forkJoinPool = Preconditions.checkNotNull(pool);
+    }
+
+    public static ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    /**
+     * @param threshold the buffer length at or above which operations are run in parallel.
+     *                  Use Integer.MAX_VALUE to always run on the calling thread.
+     */
+    public static void setParallelThreshold(int threshold) {
+        Preconditions.checkArgument(threshold > 0, "Parallel threshold must be positive but was " + threshold);
+        parallelThreshold = threshold;
+    }
+
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * @param size the number of elements below which a chunk is not split any further
+     */
+    public static void setChunkSize(int size) {
+        Preconditions.checkArgument(size > 0, "Chunk size must be positive but was " + size);
+        chunkSize = size;
+    }
+
+    public static int getChunkSize() {
+        return chunkSize;
+    }
+
+    @FunctionalInterface
+    interface ChunkConsumer {
+        void accept(int from, int to);
+    }
+
+    @FunctionalInterface
+    interface ChunkFunction<T> {
+        T apply(int from, int to);
+    }
+
+    /**
+     * Calls chunk for disjoint ranges [from, to) that together cover [0, length). Chunks may run concurrently
+     * so must only write to the positions in their own range.
+     */
+    static void forEachChunk(int length, ChunkConsumer chunk) {
+        final ForkJoinPool pool = forkJoinPool;
+
+        if (isParallel(pool, length)) {
+            pool.invoke(new ChunkAction(0, length, chunkSize, chunk));
+        } else {
+            chunk.accept(0, length);
+        }
+    }
+
+    /**
+     * Like forEachChunk but for loops over count items that each cover itemLength elements of a buffer, such as
+     * the matrices of a batch. The parallel threshold and chunk size are compared to the number of elements.
+     */
+    static void forEachChunk(int count, int itemLength, ChunkConsumer chunk) {
+        final ForkJoinPool pool = forkJoinPool;
+        final int length = Math.max(itemLength, 1);
+
+        if (isParallel(pool, (int) Math.min((long) count * length, Integer.MAX_VALUE)) && count > 1) {
+            pool.invoke(new ChunkAction(0, count, Math.max(chunkSize / length, 1), chunk));
+        } else {
+            chunk.accept(0, count);
+        }
+    }
+
+    /**
+     * Like forEachChunk but combines the result of each chunk. The range is always split into chunks of chunk size
+     * elements, whose results are combined from left to right on the calling thread, so a floating point reduction
+     * gives the same result whether or not it runs in parallel and whatever the parallelism of the pool.
+     */
+    static <T> T reduceChunks(int length, ChunkFunction<T> chunk, BinaryOperator<T> combine) {
+        final int size = chunkSize;
+        final int chunkCount = (int) Math.max(1, ((long) length + size - 1) / size);
+        if (chunkCount == 1) {
+            return chunk.apply(0, length);
+        }
+
+        final Object[] results = new Object[chunkCount];
+        forEachChunk(chunkCount, size, (fromChunk, toChunk) -> {
+            for (int c = fromChunk; c < toChunk; c++) {
+                final int from = c * size;
+                results[c] = chunk.apply(from, Math.min(length, from + size));
+            }
+        });
+
+        T result = (T) results[0];
+        for (int c = 1; c < chunkCount; c++) {
+            result = combine.apply(result, (T) results[c]);
+        }
+        return result;
+    }
+
+    private static boolean isParallel(ForkJoinPool pool, int length) {
+        return length >= parallelThreshold && pool.getParallelism() > 1;
+    }
+
+    private static class ChunkAction extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final ChunkConsumer chunk;
+
+        ChunkAction(int from, int to, int chunkSize, ChunkConsumer chunk) {
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                chunk.accept(from, to);
+            } else {
+                final int middle = (from + to) >>> 1;
+                invokeAll(
+                    new ChunkAction(from, middle, chunkSize, chunk),
+                    new ChunkAction(middle, to, chunkSize, chunk)
+                );
+            }
+        }
+    }
+}
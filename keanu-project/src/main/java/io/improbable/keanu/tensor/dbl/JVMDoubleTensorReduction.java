@@ -0,0 +1,430 @@
+package io.improbable.keanu.tensor.dbl;
+
+import java.util.Arrays;
+
+import static io.improbable.keanu.tensor.dbl.JVMDoubleTensorParallelism.forEachChunk;
+
+/**
+ * Reductions and scans along dimensions of a row first buffer that read the buffer in order.
+ * <p>
+ * Length one dimensions are dropped and neighbouring dimensions that are both reduced or both kept are merged,
+ * so any reduction is over alternating groups of kept and reduced dimensions. When the innermost group is
+ * reduced, each result is accumulated from contiguous runs of the buffer, e.g. the sum of each row of a matrix.
+ * When it is kept, contiguous rows of the buffer are accumulated into a row of results a block of columns at a
+ * time so that the block stays in cache, e.g. the sum of each column of a matrix. Neither looks up the index of
+ * each element.
+ * <p>
+ * Operations along a single dimension, such as argMax and cumSum, see the buffer as [outer, n, inner] and work
+ * in the same way.
+ */
+final class JVMDoubleTensorReduction {
+
+    /**
+     * The number of columns of a row of results that are accumulated together.
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    private enum Operation {
+        SUM(0.0), MAX(Double.NEGATIVE_INFINITY), SUM_EXP(0.0);
+
+        private final double identity;
+
+        Operation(double identity) {
+            this.identity = identity;
+        }
+    }
+
+    private JVMDoubleTensorReduction() {
+    }
+
+    /**
+     * @param buffer     row first buffer of a tensor
+     * @param shape      shape of the tensor
+     * @param dimensions absolute dimensions to sum over
+     * @param result     buffer of the kept dimensions in row first order
+     */
+    static void sum(double[] buffer, long[] shape, int[] dimensions, double[] result) {
+        reduce(Operation.SUM, buffer, new Layout(shape, dimensions), null, result);
+    }
+
+    /**
+     * Like {@link #sum(double[], long[], int[], double[])} but for log(sum(exp(x))). The maximum along the
+     * dimensions is subtracted before taking exp so that it doesn't overflow.
+     */
+    static void logSumExp(double[] buffer, long[] shape, int[] dimensions, double[] result) {
+        final Layout layout = new Layout(shape, dimensions);
+        final double[] shift = new double[result.length];
+
+        reduce(Operation.MAX, buffer, layout, null, shift);
+
+        forEachChunk(shift.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                if (Double.isInfinite(shift[i])) {
+                    shift[i] = 0.0;
+                }
+            }
+        });
+
+        reduce(Operation.SUM_EXP, buffer, layout, shift, result);
+
+        forEachChunk(result.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = shift[i] + MathKernels.log(result[i]);
+            }
+        });
+    }
+
+    /**
+     * @param buffer row first buffer of a tensor
+     * @param shape  shape of the tensor
+     * @param axis   absolute dimension to take the arg max along
+     * @param result index along axis of the first maximum, in row first order of the other dimensions
+     */
+    static void argMax(double[] buffer, long[] shape, int axis, int[] result) {
+        final int n = (int) shape[axis];
+        final int inner = (int) innerLength(shape, axis);
+
+        if (n == 0 || result.length == 0) {
+            return;
+        }
+
+        if (inner == 1) {
+            forEachChunk(result.length, n, (from, to) -> {
+                for (int row = from; row < to; row++) {
+                    final int start = row * n;
+                    double max = buffer[start];
+                    int argMax = 0;
+                    for (int a = 1; a < n; a++) {
+                        if (buffer[start + a] > max) {
+                            max = buffer[start + a];
+                            argMax = a;
+                        }
+                    }
+                    result[row] = argMax;
+                }
+            });
+            return;
+        }
+
+        final int blocks = blockCount(inner);
+        forEachChunk(result.length / inner * blocks, Math.min(inner, BLOCK_SIZE) * n, (from, to) -> {
+            final double[] max = new double[Math.min(inner, BLOCK_SIZE)];
+
+            for (int item = from; item < to; item++) {
+                final int outer = item / blocks;
+                final int columnFrom = (item % blocks) * BLOCK_SIZE;
+                final int length = Math.min(inner - columnFrom, BLOCK_SIZE);
+                final int at = outer * inner + columnFrom;
+                final int start = outer * n * inner + columnFrom;
+
+                System.arraycopy(buffer, start, max, 0, length);
+                Arrays.fill(result, at, at + length, 0);
+
+                for (int a = 1; a < n; a++) {
+                    final int row = start + a * inner;
+                    for (int c = 0; c < length; c++) {
+                        if (buffer[row + c] > max[c]) {
+                            max[c] = buffer[row + c];
+                            result[at + c] = a;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @param buffer row first buffer of a tensor
+     * @param shape  shape of the tensor
+     * @param axis   absolute dimension to take the cumulative sum along
+     * @param result row first buffer of the same shape
+     */
+    static void cumSum(double[] buffer, long[] shape, int axis, double[] result) {
+        final int n = (int) shape[axis];
+        final int inner = (int) innerLength(shape, axis);
+
+        if (result.length == 0) {
+            return;
+        }
+
+        if (inner == 1) {
+            forEachChunk(result.length / n, n, (from, to) -> {
+                for (int row = from; row < to; row++) {
+                    double sum = 0.0;
+                    for (int i = row * n; i < (row + 1) * n; i++) {
+                        sum += buffer[i];
+                        result[i] = sum;
+                    }
+                }
+            });
+            return;
+        }
+
+        final int blocks = blockCount(inner);
+        forEachChunk(result.length / (n * inner) * blocks, Math.min(inner, BLOCK_SIZE) * n, (from, to) -> {
+            for (int item = from; item < to; item++) {
+                final int outer = item / blocks;
+                final int columnFrom = (item % blocks) * BLOCK_SIZE;
+                final int length = Math.min(inner - columnFrom, BLOCK_SIZE);
+                final int start = outer * n * inner + columnFrom;
+
+                System.arraycopy(buffer, start, result, start, length);
+
+                for (int a = 1; a < n; a++) {
+                    final int row = start + a * inner;
+                    for (int c = 0; c < length; c++) {
+                        result[row + c] = result[row - inner + c] + buffer[row + c];
+                    }
+                }
+            }
+        });
+    }
+
+    private static long innerLength(long[] shape, int axis) {
+        long length = 1;
+        for (int d = axis + 1; d < shape.length; d++) {
+            length *= shape[d];
+        }
+        return length;
+    }
+
+    private static int blockCount(int length) {
+        return (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    private static void reduce(Operation operation, double[] buffer, Layout layout, double[] shift, double[] result) {
+        if (buffer.length == 0) {
+            Arrays.fill(result, operation.identity);
+        } else if (layout.isInnerReduced) {
+            reduceRuns(operation, buffer, layout, shift, result);
+        } else {
+            reduceRows(operation, buffer, layout, shift, result);
+        }
+    }
+
+    /**
+     * Accumulates each result from runs of the innermost group.
+     */
+    private static void reduceRuns(Operation operation, double[] buffer, Layout layout, double[] shift, double[] result) {
+        final int run = layout.inner;
+
+        forEachChunk(result.length, layout.reducedLength, (from, to) -> {
+            final long[] index = new long[layout.reducedShape.length];
+
+            for (int i = from; i < to; i++) {
+                final int base = layout.keptOffset(i);
+                double accumulated = operation.identity;
+                long offset = 0;
+
+                for (long r = 0; r < layout.outerReducedLength; r++) {
+                    final int start = base + (int) offset;
+
+                    switch (operation) {
+                        case SUM:
+                            accumulated += sumRun(buffer, start, start + run);
+                            break;
+                        case MAX:
+                            accumulated = Math.max(accumulated, maxRun(buffer, start, start + run));
+                            break;
+                        case SUM_EXP:
+                            accumulated += sumExpRun(buffer, start, start + run, shift[i]);
+                            break;
+                    }
+
+                    offset = layout.nextReducedOffset(index, offset);
+                }
+
+                result[i] = accumulated;
+            }
+        });
+    }
+
+    /**
+     * Accumulates the rows of the innermost group into rows of results a block at a time.
+     */
+    private static void reduceRows(Operation operation, double[] buffer, Layout layout, double[] shift, double[] result) {
+        final int width = layout.inner;
+        final int blocks = blockCount(width);
+
+        forEachChunk(result.length / width * blocks, Math.min(width, BLOCK_SIZE) * layout.reducedLength, (from, to) -> {
+            final long[] index = new long[layout.reducedShape.length];
+
+            for (int item = from; item < to; item++) {
+                final int row = item / blocks;
+                final int columnFrom = (item % blocks) * BLOCK_SIZE;
+                final int length = Math.min(width - columnFrom, BLOCK_SIZE);
+                final int at = row * width + columnFrom;
+                final int base = layout.keptOffset(row) + columnFrom;
+
+                Arrays.fill(result, at, at + length, operation.identity);
+                long offset = 0;
+
+                for (long r = 0; r < layout.outerReducedLength; r++) {
+                    final int start = base + (int) offset;
+
+                    switch (operation) {
+                        case SUM:
+                            for (int c = 0; c < length; c++) {
+                                result[at + c] += buffer[start + c];
+                            }
+                            break;
+                        case MAX:
+                            for (int c = 0; c < length; c++) {
+                                result[at + c] = Math.max(result[at + c], buffer[start + c]);
+                            }
+                            break;
+                        case SUM_EXP:
+                            for (int c = 0; c < length; c++) {
+                                result[at + c] += MathKernels.exp(buffer[start + c] - shift[at + c]);
+                            }
+                            break;
+                    }
+
+                    offset = layout.nextReducedOffset(index, offset);
+                }
+            }
+        });
+    }
+
+    private static double sumRun(double[] buffer, int from, int to) {
+        double sum = 0.0;
+        for (int i = from; i < to; i++) {
+            sum += buffer[i];
+        }
+        return sum;
+    }
+
+    private static double maxRun(double[] buffer, int from, int to) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, buffer[i]);
+        }
+        return max;
+    }
+
+    private static double sumExpRun(double[] buffer, int from, int to, double shift) {
+        double sum = 0.0;
+        for (int i = from; i < to; i++) {
+            sum += MathKernels.exp(buffer[i] - shift);
+        }
+        return sum;
+    }
+
+    /**
+     * The groups of merged dimensions of a reduction. The innermost group is held apart from the others as it
+     * is contiguous in the buffer.
+     */
+    private static final class Layout {
+
+        private final boolean isInnerReduced;
+        private final int inner;
+
+        private final long[] keptShape;
+        private final long[] keptStride;
+
+        private final long[] reducedShape;
+        private final long[] reducedStride;
+        private final long outerReducedLength;
+
+        /**
+         * The number of elements that are reduced into each result.
+         */
+        private final int reducedLength;
+
+        Layout(long[] shape, int[] dimensions) {
+            final boolean[] isReduced = new boolean[shape.length];
+            for (int dimension : dimensions) {
+                isReduced[dimension] = true;
+            }
+
+            final long[] groupShape = new long[Math.max(shape.length, 1)];
+            final boolean[] isGroupReduced = new boolean[groupShape.length];
+            int groups = 0;
+            for (int d = 0; d < shape.length; d++) {
+                if (shape[d] == 1) {
+                    continue;
+                }
+                if (groups > 0 && isGroupReduced[groups - 1] == isReduced[d]) {
+                    groupShape[groups - 1] *= shape[d];
+                } else {
+                    groupShape[groups] = shape[d];
+                    isGroupReduced[groups] = isReduced[d];
+                    groups++;
+                }
+            }
+
+            if (groups == 0) {
+                groupShape[0] = 1;
+                groups = 1;
+            }
+
+            this.isInnerReduced = isGroupReduced[groups - 1];
+            this.inner = (int) groupShape[groups - 1];
+
+            int keptGroups = 0;
+            int reducedGroups = 0;
+            for (int g = 0; g < groups - 1; g++) {
+                if (isGroupReduced[g]) {
+                    reducedGroups++;
+                } else {
+                    keptGroups++;
+                }
+            }
+
+            this.keptShape = new long[keptGroups];
+            this.keptStride = new long[keptGroups];
+            this.reducedShape = new long[reducedGroups];
+            this.reducedStride = new long[reducedGroups];
+
+            long stride = inner;
+            long outerReducedLength = 1;
+            for (int g = groups - 2; g >= 0; g--) {
+                if (isGroupReduced[g]) {
+                    reducedShape[--reducedGroups] = groupShape[g];
+                    reducedStride[reducedGroups] = stride;
+                    outerReducedLength *= groupShape[g];
+                } else {
+                    keptShape[--keptGroups] = groupShape[g];
+                    keptStride[keptGroups] = stride;
+                }
+                stride *= groupShape[g];
+            }
+
+            this.outerReducedLength = outerReducedLength;
+            this.reducedLength = (int) Math.min(outerReducedLength * (isInnerReduced ? inner : 1), Integer.MAX_VALUE);
+        }
+
+        /**
+         * @return the position in the buffer of the first element reduced into the given result, or into the
+         * first column of the given row of results if the innermost group is kept
+         */
+        int keptOffset(int position) {
+            long offset = 0;
+            for (int d = keptShape.length - 1; d >= 0; d--) {
+                offset += (position % keptShape[d]) * keptStride[d];
+                position /= keptShape[d];
+            }
+            return (int) offset;
+        }
+
+        /**
+         * Moves index to the next combination of the outer reduced groups.
+         *
+         * @return the offset of the new index
+         */
+        long nextReducedOffset(long[] index, long offset) {
+            for (int d = index.length - 1; d >= 0; d--) {
+                index[d]++;
+                offset += reducedStride[d];
+
+                if (index[d] < reducedShape[d]) {
+                    return offset;
+                }
+
+                offset -= reducedStride[d] * index[d];
+                index[d] = 0;
+            }
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,1289 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.bool.BooleanTensor;
+import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import io.improbable.keanu.tensor.validate.TensorValidator;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.LongToDoubleFunction;
+
+import static io.improbable.keanu.tensor.TensorShape.getAbsoluteDimension;
+import static io.improbable.keanu.tensor.TensorShapeValidation.checkShapesMatch;
+
+/**
+ * A DoubleTensor whose elements are kept in row first order in storage that is addressed with a long index,
+ * so it isn't limited to Integer.MAX_VALUE elements. Subclasses provide the storage and all operations are
+ * implemented in terms of it.
+ * <p>
+ * Operations that need a heap copy of the values, such as those returning a BooleanTensor or the LAPACK
+ * decompositions, are limited to Integer.MAX_VALUE elements.
+ */
+abstract class LongIndexedDoubleTensor extends DoubleTensor {
+
+    protected long[] shape;
+    protected long[] stride;
+    protected long length;
+
+    protected LongIndexedDoubleTensor(long[] shape) {
+        setShape(shape);
+    }
+
+    /**
+     * @param index position in row first order
+     * @return the value at index
+     */
+    protected abstract double getFlat(long index);
+
+    protected abstract void setFlat(long index, double value);
+
+    /**
+     * @param shape shape of the new tensor
+     * @return a tensor with the same storage type as this, filled with zeros
+     */
+    protected abstract LongIndexedDoubleTensor createZeros(long[] shape);
+
+    /**
+     * @param shape shape of the copy, which must have the same length as this
+     * @return a tensor with the same storage type and values as this
+     */
+    protected abstract LongIndexedDoubleTensor copyWithShape(long[] shape);
+
+    /**
+     * Replaces the storage of this tensor with the storage of other, which has the same storage type. Used when
+     * an in place operation changes the shape of this tensor.
+     *
+     * @param other the tensor whose storage this tensor takes
+     */
+    protected abstract void takeStorage(LongIndexedDoubleTensor other);
+
+    private void setShape(long[] shape) {
+        this.shape = shape;
+        this.stride = TensorShape.getRowFirstStride(shape);
+        this.length = TensorShape.getLength(shape);
+    }
+
+    private long[] shapeCopy() {
+        return Arrays.copyOf(shape, shape.length);
+    }
+
+    protected LongIndexedDoubleTensor fromArray(double[] values, long[] shape) {
+        LongIndexedDoubleTensor result = createZeros(shape);
+        for (int i = 0; i < values.length; i++) {
+            result.setFlat(i, values[i]);
+        }
+        return result;
+    }
+
+    private static LongToDoubleFunction elementsOf(DoubleTensor tensor) {
+        if (tensor instanceof LongIndexedDoubleTensor) {
+            return ((LongIndexedDoubleTensor) tensor)::getFlat;
+        }
+
+        final double[] values = tensor.asFlatDoubleArray();
+        return i -> values[(int) i];
+    }
+
+    /**
+     * Applies op to every element of this tensor in place.
+     *
+     * @param op the operation to apply to each element
+     * @return this tensor
+     */
+    protected LongIndexedDoubleTensor unaryOpInPlace(DoubleUnaryOperator op) {
+        for (long i = 0; i < length; i++) {
+            setFlat(i, op.applyAsDouble(getFlat(i)));
+        }
+        return this;
+    }
+
+    /**
+     * Applies op to every pair of elements of this tensor and that, where one of them is broadcast up to the
+     * shape of the other.
+     *
+     * @param that    the right operand
+     * @param op      the operation to apply to each pair of elements
+     * @param inPlace whether to write the result into this tensor if it has the result's shape
+     * @return the result of the operation, which is this tensor if it was done in place
+     */
+    protected LongIndexedDoubleTensor binaryOp(DoubleTensor that, DoubleBinaryOperator op, boolean inPlace) {
+        final long[] thatShape = that.getShape();
+        final LongToDoubleFunction right = elementsOf(that);
+
+        if (Arrays.equals(shape, thatShape)) {
+            final LongIndexedDoubleTensor result = inPlace ? this : createZeros(shapeCopy());
+            for (long i = 0; i < length; i++) {
+                result.setFlat(i, op.applyAsDouble(getFlat(i), right.applyAsDouble(i)));
+            }
+            return result;
+        }
+
+        final long[] resultShape = TensorShape.getBroadcastResultShape(shape, thatShape);
+        checkResultIsOperandShape(resultShape, thatShape);
+        final boolean resultIsThis = inPlace && Arrays.equals(resultShape, shape);
+        final LongIndexedDoubleTensor result = resultIsThis ? this : createZeros(resultShape);
+
+        broadcast(this::getFlat, shape, right, thatShape, resultShape, result, op);
+
+        if (inPlace && !resultIsThis) {
+            takeStorage(result);
+            setShape(resultShape);
+            return this;
+        }
+
+        return result;
+    }
+
+    /**
+     * Like the other DoubleTensors, only one operand can be broadcast up to the shape of the other. E.g. [2, 2, 1]
+     * and [2, 2] cannot be broadcast together even though both could be broadcast to [2, 2, 2].
+     */
+    private void checkResultIsOperandShape(long[] resultShape, long[] thatShape) {
+        long[] paddedShape = TensorShape.shapeToDesiredRankByPrependingOnes(shape, resultShape.length);
+        long[] paddedThatShape = TensorShape.shapeToDesiredRankByPrependingOnes(thatShape, resultShape.length);
+
+        if (!Arrays.equals(resultShape, paddedShape) && !Arrays.equals(resultShape, paddedThatShape)) {
+            throw new IllegalArgumentException(
+                "Broadcasting of shape " + Arrays.toString(shape) + " and " + Arrays.toString(thatShape) + " not supported."
+            );
+        }
+    }
+
+    /**
+     * Applies op to every element of the result shape, reading the left and right operands with broadcast
+     * semantics. The result may be the left operand if the left shape is the result shape.
+     */
+    private static void broadcast(LongToDoubleFunction left, long[] leftShape,
+                                  LongToDoubleFunction right, long[] rightShape,
+                                  long[] resultShape, LongIndexedDoubleTensor result,
+                                  DoubleBinaryOperator op) {
+
+        final int rank = resultShape.length;
+        final long[] leftStride = getBroadcastStride(leftShape, resultShape);
+        final long[] rightStride = getBroadcastStride(rightShape, resultShape);
+        final long[] index = new long[rank];
+
+        long leftPosition = 0;
+        long rightPosition = 0;
+
+        for (long i = 0; i < result.length; i++) {
+
+            result.setFlat(i, op.applyAsDouble(left.applyAsDouble(leftPosition), right.applyAsDouble(rightPosition)));
+
+            for (int d = rank - 1; d >= 0; d--) {
+                index[d]++;
+                leftPosition += leftStride[d];
+                rightPosition += rightStride[d];
+
+                if (index[d] < resultShape[d]) {
+                    break;
+                }
+
+                leftPosition -= leftStride[d] * index[d];
+                rightPosition -= rightStride[d] * index[d];
+                index[d] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the row first stride of shape padded to the rank of the result shape, with a zero stride
+     * in dimensions that are broadcast.
+     */
+    private static long[] getBroadcastStride(long[] shape, long[] resultShape) {
+        long[] paddedShape = TensorShape.shapeToDesiredRankByPrependingOnes(shape, resultShape.length);
+        long[] stride = TensorShape.getRowFirstStride(paddedShape);
+
+        for (int i = 0; i < stride.length; i++) {
+            if (paddedShape[i] != resultShape[i]) {
+                stride[i] = 0;
+            }
+        }
+        return stride;
+    }
+
+    /**
+     * Copies the elements of this tensor at position plus every combination of indices into fromShape
+     * multiplied by fromStride into result, in row first order of fromShape.
+     */
+    private LongIndexedDoubleTensor gather(long position, long[] fromShape, long[] fromStride, LongIndexedDoubleTensor result) {
+        final int rank = fromShape.length;
+        final long[] index = new long[rank];
+
+        for (long i = 0; i < result.length; i++) {
+
+            result.setFlat(i, getFlat(position));
+
+            for (int d = rank - 1; d >= 0; d--) {
+                index[d]++;
+                position += fromStride[d];
+
+                if (index[d] < fromShape[d]) {
+                    break;
+                }
+
+                position -= fromStride[d] * index[d];
+                index[d] = 0;
+            }
+        }
+
+        return result;
+    }
+
+    private BooleanTensor toBooleanTensor(DoubleToBoolean predicate) {
+        boolean[] newBuffer = new boolean[Ints.checkedCast(length)];
+        for (int i = 0; i < newBuffer.length; i++) {
+            newBuffer[i] = predicate.test(getFlat(i));
+        }
+        return BooleanTensor.create(newBuffer, shapeCopy());
+    }
+
+    private interface DoubleToBoolean {
+        boolean test(double value);
+    }
+
+    private static BooleanTensor maskToBooleanTensor(DoubleTensor mask) {
+        return ((LongIndexedDoubleTensor) mask).toBooleanTensor(value -> value == 1.0);
+    }
+
+    @Override
+    public int getRank() {
+        return shape.length;
+    }
+
+    @Override
+    public long[] getShape() {
+        return shapeCopy();
+    }
+
+    @Override
+    public long[] getStride() {
+        return Arrays.copyOf(stride, stride.length);
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public Double getValue(long... index) {
+        return getFlat(getFlatIndex(index));
+    }
+
+    @Override
+    public double getDouble(long... index) {
+        return getFlat(getFlatIndex(index));
+    }
+
+    @Override
+    public DoubleTensor setValue(Double value, long... index) {
+        setFlat(getFlatIndex(index), value);
+        return this;
+    }
+
+    private long getFlatIndex(long... index) {
+        if (index.length == 1) {
+            return index[0];
+        }
+
+        if (index.length != shape.length) {
+            throw new IllegalArgumentException("Cannot get index " + Arrays.toString(index) + " for shape " + Arrays.toString(shape));
+        }
+        return TensorShape.getFlatIndex(shape, stride, index);
+    }
+
+    @Override
+    public Double scalar() {
+        return getFlat(0);
+    }
+
+    @Override
+    public DoubleTensor reshape(long... newShape) {
+        long[] newShapeCopy = Arrays.copyOf(newShape, newShape.length);
+
+        long knownLength = 1;
+        int negativeDimension = -1;
+        for (int i = 0; i < newShapeCopy.length; i++) {
+            if (newShapeCopy[i] < 0) {
+                if (negativeDimension >= 0) {
+                    throw new IllegalArgumentException("Cannot reshape " + Arrays.toString(shape) + " to " + Arrays.toString(newShape));
+                }
+                negativeDimension = i;
+            } else {
+                knownLength *= newShapeCopy[i];
+            }
+        }
+
+        if (negativeDimension >= 0 && knownLength != 0) {
+            newShapeCopy[negativeDimension] = length / knownLength;
+        }
+
+        if (TensorShape.getLength(newShapeCopy) != length) {
+            throw new IllegalArgumentException("Cannot reshape " + Arrays.toString(shape) + " to " + Arrays.toString(newShape));
+        }
+
+        return copyWithShape(newShapeCopy);
+    }
+
+    @Override
+    public BooleanTensor elementwiseEquals(Tensor that) {
+        if (that instanceof DoubleTensor) {
+            if (isScalar()) {
+                return that.elementwiseEquals(this.scalar());
+            } else if (that.isScalar()) {
+                return elementwiseEquals(((DoubleTensor) that).scalar());
+            } else {
+                return maskToBooleanTensor(binaryOp((DoubleTensor) that, (l, r) -> l == r ? 1.0 : 0.0, false));
+            }
+        } else {
+            return Tensor.elementwiseEquals(this, that);
+        }
+    }
+
+    @Override
+    public BooleanTensor elementwiseEquals(Double value) {
+        return toBooleanTensor(v -> v == value);
+    }
+
+    @Override
+    public DoubleTensor permute(int... rearrange) {
+        Preconditions.checkArgument(rearrange.length == shape.length);
+        long[] resultShape = TensorShape.getPermutedResultShape(shape, rearrange);
+        long[] permutedStride = TensorShape.getPermutedResultShape(stride, rearrange);
+
+        return gather(0, resultShape, permutedStride, createZeros(resultShape));
+    }
+
+    @Override
+    public DoubleTensor duplicate() {
+        return copyWithShape(shapeCopy());
+    }
+
+    @Override
+    public DoubleTensor toDouble() {
+        return duplicate();
+    }
+
+    @Override
+    public IntegerTensor toInteger() {
+        return IntegerTensor.create(asFlatIntegerArray(), shapeCopy());
+    }
+
+    @Override
+    public DoubleTensor diag() {
+        LongIndexedDoubleTensor result = createZeros(new long[]{length, length});
+        for (long i = 0; i < length; i++) {
+            result.setFlat(i * length + i, getFlat(i));
+        }
+        return result;
+    }
+
+    @Override
+    public DoubleTensor transpose() {
+        if (shape.length < 2) {
+            throw new IllegalArgumentException("Cannot transpose rank " + shape.length);
+        }
+        return permute(1, 0);
+    }
+
+    @Override
+    public Double sum() {
+        double result = 0;
+        for (long i = 0; i < length; i++) {
+            result += getFlat(i);
+        }
+        return result;
+    }
+
+    @Override
+    public DoubleTensor sum(int... overDimensions) {
+        overDimensions = TensorShape.getAbsoluteDimensions(this.shape.length, overDimensions);
+
+        final long[] resultShape = TensorShape.getSummationResultShape(shape, overDimensions);
+        final long[] resultBufferStride = ArrayUtils.removeAll(stride, overDimensions);
+        final LongIndexedDoubleTensor result = createZeros(resultShape);
+
+        final boolean[] isSummed = new boolean[shape.length];
+        for (int dimension : overDimensions) {
+            isSummed[dimension] = true;
+        }
+
+        final long[] summedShape = new long[shape.length - resultShape.length];
+        final long[] summedStride = new long[summedShape.length];
+        for (int d = 0, s = 0; d < shape.length; d++) {
+            if (isSummed[d]) {
+                summedShape[s] = shape[d];
+                summedStride[s] = stride[d];
+                s++;
+            }
+        }
+
+        for (long j = 0; j < result.length; j++) {
+
+            long remainder = j;
+            long position = 0;
+            for (int d = resultShape.length - 1; d >= 0; d--) {
+                position += (remainder % resultShape[d]) * resultBufferStride[d];
+                remainder /= resultShape[d];
+            }
+
+            result.setFlat(j, sumOver(position, summedShape, summedStride));
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the sum of the elements at position plus every combination of indices into
+     * summedShape multiplied by summedStride
+     */
+    private double sumOver(long position, long[] summedShape, long[] summedStride) {
+        final int rank = summedShape.length;
+        final long summedLength = TensorShape.getLength(summedShape);
+        final long[] index = new long[rank];
+
+        double result = 0;
+        for (long n = 0; n < summedLength; n++) {
+
+            result += getFlat(position);
+
+            for (int d = rank - 1; d >= 0; d--) {
+                index[d]++;
+                position += summedStride[d];
+
+                if (index[d] < summedShape[d]) {
+                    break;
+                }
+
+                position -= summedStride[d] * index[d];
+                index[d] = 0;
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public DoubleTensor reciprocal() {
+        return duplicate().reciprocalInPlace();
+    }
+
+    private JVMDoubleTensor toJVMDoubleTensor() {
+        return JVMDoubleTensor.create(asFlatDoubleArray(), shapeCopy());
+    }
+
+    @Override
+    public DoubleTensor choleskyDecomposition() {
+        return fromArray(toJVMDoubleTensor().choleskyDecomposition().asFlatDoubleArray(), shapeCopy());
+    }
+
+    @Override
+    public double determinant() {
+        return toJVMDoubleTensor().determinant();
+    }
+
+    @Override
+    public DoubleTensor matrixDeterminant() {
+        DoubleTensor result = toJVMDoubleTensor().matrixDeterminant();
+        return fromArray(result.asFlatDoubleArray(), result.getShape());
+    }
+
+    @Override
+    public DoubleTensor matrixInverse() {
+        return fromArray(toJVMDoubleTensor().matrixInverse().asFlatDoubleArray(), shapeCopy());
+    }
+
+    @Override
+    public DoubleTensor matrixMultiply(DoubleTensor that) {
+        DoubleTensor result = toJVMDoubleTensor().matrixMultiply(that);
+        return fromArray(result.asFlatDoubleArray(), result.getShape());
+    }
+
+    @Override
+    public DoubleTensor tensorMultiply(DoubleTensor that, int[] dimsLeft, int[] dimsRight) {
+        DoubleTensor result = toJVMDoubleTensor().tensorMultiply(that, dimsLeft, dimsRight);
+        return fromArray(result.asFlatDoubleArray(), result.getShape());
+    }
+
+    @Override
+    public DoubleTensor abs() {
+        return duplicate().absInPlace();
+    }
+
+    @Override
+    public int argMax() {
+        double max = -Double.MAX_VALUE;
+        long argMax = 0;
+        for (long i = 0; i < length; i++) {
+            final double value = getFlat(i);
+            if (value > max) {
+                max = value;
+                argMax = i;
+            }
+        }
+        return Ints.checkedCast(argMax);
+    }
+
+    @Override
+    public IntegerTensor argMax(int axis) {
+        if (axis >= shape.length) {
+            throw new IllegalArgumentException("Cannot take arg max of axis " + axis + " on a " + shape.length + " rank tensor.");
+        }
+
+        final long[] resultShape = ArrayUtils.remove(shape, axis);
+        final long[] resultBufferStride = ArrayUtils.remove(stride, axis);
+        final int[] maxIndex = new int[Ints.checkedCast(TensorShape.getLength(resultShape))];
+
+        for (int j = 0; j < maxIndex.length; j++) {
+
+            long remainder = j;
+            long position = 0;
+            for (int d = resultShape.length - 1; d >= 0; d--) {
+                position += (remainder % resultShape[d]) * resultBufferStride[d];
+                remainder /= resultShape[d];
+            }
+
+            double max = getFlat(position);
+            for (int a = 1; a < shape[axis]; a++) {
+                final double value = getFlat(position + a * stride[axis]);
+                if (value > max) {
+                    max = value;
+                    maxIndex[j] = a;
+                }
+            }
+        }
+
+        return IntegerTensor.create(maxIndex, resultShape);
+    }
+
+    @Override
+    public DoubleTensor apply(Function<Double, Double> function) {
+        return duplicate().applyInPlace(function);
+    }
+
+    @Override
+    public DoubleTensor applyInPlace(Function<Double, Double> function) {
+        return unaryOpInPlace(function::apply);
+    }
+
+    @Override
+    public DoubleTensor applyDoubleInPlace(DoubleUnaryOperator function) {
+        return unaryOpInPlace(function);
+    }
+
+    @Override
+    public DoubleTensor applyDouble(DoubleTensor that, DoubleBinaryOperator function) {
+        return binaryOp(that, function, false);
+    }
+
+    @Override
+    public DoubleTensor unaryMinus() {
+        return duplicate().unaryMinusInPlace();
+    }
+
+    @Override
+    public DoubleTensor unaryMinusInPlace() {
+        return unaryOpInPlace(v -> -v);
+    }
+
+    @Override
+    public DoubleTensor absInPlace() {
+        return unaryOpInPlace(Math::abs);
+    }
+
+    @Override
+    public DoubleTensor getGreaterThanMask(DoubleTensor greaterThanThis) {
+        return binaryOp(greaterThanThis, (l, r) -> l > r ? 1.0 : 0.0, false);
+    }
+
+    @Override
+    public DoubleTensor getGreaterThanOrEqualToMask(DoubleTensor greaterThanThis) {
+        return binaryOp(greaterThanThis, (l, r) -> l >= r ? 1.0 : 0.0, false);
+    }
+
+    @Override
+    public DoubleTensor getLessThanMask(DoubleTensor lessThanThis) {
+        return binaryOp(lessThanThis, (l, r) -> l < r ? 1.0 : 0.0, false);
+    }
+
+    @Override
+    public DoubleTensor getLessThanOrEqualToMask(DoubleTensor lessThanThis) {
+        return binaryOp(lessThanThis, (l, r) -> l <= r ? 1.0 : 0.0, false);
+    }
+
+    @Override
+    public DoubleTensor setWithMaskInPlace(DoubleTensor mask, Double value) {
+        if (length != mask.getLength()) {
+            throw new IllegalArgumentException(
+                "The lengths of the tensor and mask must match, but got tensor length: " + length
+                    + ", mask length: " + mask.getLength()
+            );
+        }
+
+        final LongToDoubleFunction maskValues = elementsOf(mask);
+        for (long i = 0; i < length; i++) {
+            if (maskValues.applyAsDouble(i) == 1.0) {
+                setFlat(i, value);
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public DoubleTensor setWithMask(DoubleTensor mask, Double value) {
+        checkShapesMatch(shape, mask.getShape());
+        return duplicate().setWithMaskInPlace(mask, value);
+    }
+
+    @Override
+    public BooleanTensor lessThan(DoubleTensor that) {
+        return maskToBooleanTensor(getLessThanMask(that));
+    }
+
+    @Override
+    public BooleanTensor lessThanOrEqual(DoubleTensor that) {
+        return maskToBooleanTensor(getLessThanOrEqualToMask(that));
+    }
+
+    @Override
+    public BooleanTensor greaterThan(DoubleTensor that) {
+        return maskToBooleanTensor(getGreaterThanMask(that));
+    }
+
+    @Override
+    public BooleanTensor greaterThanOrEqual(DoubleTensor that) {
+        return maskToBooleanTensor(getGreaterThanOrEqualToMask(that));
+    }
+
+    @Override
+    public BooleanTensor lessThan(double value) {
+        return toBooleanTensor(v -> v < value);
+    }
+
+    @Override
+    public BooleanTensor lessThanOrEqual(double value) {
+        return toBooleanTensor(v -> v <= value);
+    }
+
+    @Override
+    public BooleanTensor greaterThan(double value) {
+        return toBooleanTensor(v -> v > value);
+    }
+
+    @Override
+    public BooleanTensor greaterThanOrEqual(double value) {
+        return toBooleanTensor(v -> v >= value);
+    }
+
+    @Override
+    public DoubleTensor powInPlace(DoubleTensor exponent) {
+        return binaryOp(exponent, FastMath::pow, true);
+    }
+
+    @Override
+    public DoubleTensor pow(DoubleTensor exponent) {
+        return duplicate().powInPlace(exponent);
+    }
+
+    @Override
+    public DoubleTensor powInPlace(double exponent) {
+        return unaryOpInPlace(v -> FastMath.pow(v, exponent));
+    }
+
+    @Override
+    public DoubleTensor pow(double exponent) {
+        return duplicate().powInPlace(exponent);
+    }
+
+    @Override
+    public DoubleTensor sqrt() {
+        return duplicate().sqrtInPlace();
+    }
+
+    @Override
+    public DoubleTensor log() {
+        return duplicate().logInPlace();
+    }
+
+    @Override
+    public DoubleTensor safeLogTimes(DoubleTensor y) {
+        return duplicate().safeLogTimesInPlace(y);
+    }
+
+    @Override
+    public DoubleTensor logGamma() {
+        return duplicate().logGammaInPlace();
+    }
+
+    @Override
+    public DoubleTensor digamma() {
+        return duplicate().digammaInPlace();
+    }
+
+    @Override
+    public DoubleTensor sin() {
+        return duplicate().sinInPlace();
+    }
+
+    @Override
+    public DoubleTensor cos() {
+        return duplicate().cosInPlace();
+    }
+
+    @Override
+    public DoubleTensor tan() {
+        return duplicate().tanInPlace();
+    }
+
+    @Override
+    public DoubleTensor atan() {
+        return duplicate().atanInPlace();
+    }
+
+    @Override
+    public DoubleTensor atan2(double y) {
+        return duplicate().atan2InPlace(y);
+    }
+
+    @Override
+    public DoubleTensor atan2(DoubleTensor y) {
+        return duplicate().atan2InPlace(y);
+    }
+
+    @Override
+    public DoubleTensor asin() {
+        return duplicate().asinInPlace();
+    }
+
+    @Override
+    public DoubleTensor acos() {
+        return duplicate().acosInPlace();
+    }
+
+    @Override
+    public DoubleTensor exp() {
+        return duplicate().expInPlace();
+    }
+
+    @Override
+    public double max() {
+        double result = -Double.MAX_VALUE;
+        for (long i = 0; i < length; i++) {
+            result = Math.max(result, getFlat(i));
+        }
+        return result;
+    }
+
+    @Override
+    public double min() {
+        double result = Double.MAX_VALUE;
+        for (long i = 0; i < length; i++) {
+            result = Math.min(result, getFlat(i));
+        }
+        return result;
+    }
+
+    @Override
+    public double average() {
+        return sum() / length;
+    }
+
+    @Override
+    public double standardDeviation() {
+        SummaryStatistics stats = new SummaryStatistics();
+        for (long i = 0; i < length; i++) {
+            stats.addValue(getFlat(i));
+        }
+        return stats.getStandardDeviation();
+    }
+
+    @Override
+    public boolean equalsWithinEpsilon(DoubleTensor other, double epsilon) {
+        if (!Arrays.equals(shape, other.getShape())) {
+            return false;
+        }
+
+        final LongToDoubleFunction otherValues = elementsOf(other);
+        for (long i = 0; i < length; i++) {
+            if (Math.abs(getFlat(i) - otherValues.applyAsDouble(i)) > epsilon) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public DoubleTensor standardize() {
+        return duplicate().standardizeInPlace();
+    }
+
+    @Override
+    public DoubleTensor replaceNaN(double value) {
+        return duplicate().replaceNaNInPlace(value);
+    }
+
+    @Override
+    public DoubleTensor clamp(DoubleTensor min, DoubleTensor max) {
+        return duplicate().clampInPlace(min, max);
+    }
+
+    @Override
+    public DoubleTensor ceil() {
+        return duplicate().ceilInPlace();
+    }
+
+    @Override
+    public DoubleTensor floor() {
+        return duplicate().floorInPlace();
+    }
+
+    /**
+     * Round half up as used in ND4j
+     */
+    @Override
+    public DoubleTensor round() {
+        return duplicate().roundInPlace();
+    }
+
+    @Override
+    public DoubleTensor sigmoid() {
+        return duplicate().sigmoidInPlace();
+    }
+
+    @Override
+    public double product() {
+        double result = 1.0;
+        for (long i = 0; i < length; i++) {
+            result *= getFlat(i);
+        }
+        return result;
+    }
+
+    @Override
+    public DoubleTensor slice(int dimension, long index) {
+        Preconditions.checkArgument(dimension < shape.length && index < shape[dimension]);
+        long[] resultShape = ArrayUtils.remove(shape, dimension);
+        long[] resultStride = ArrayUtils.remove(stride, dimension);
+
+        return gather(index * stride[dimension], resultShape, resultStride, createZeros(resultShape));
+    }
+
+    /**
+     * @param dimension      the dimension to split on
+     * @param splitAtIndices the indices that the dimension to split on should be split on
+     * @return pieces of the tensor split in the order specified by splitAtIndices. To get
+     * pieces that encompasses the entire tensor, the last index in the splitAtIndices must
+     * be the length of the dimension being split on.
+     */
+    @Override
+    public List<DoubleTensor> split(int dimension, long... splitAtIndices) {
+        dimension = getAbsoluteDimension(dimension, getRank());
+
+        if (dimension < 0 || dimension >= shape.length) {
+            throw new IllegalArgumentException("Invalid dimension to split on " + dimension);
+        }
+
+        List<DoubleTensor> splitTensor = new ArrayList<>();
+
+        long previousSplitAtIndex = 0;
+        for (long splitAtIndex : splitAtIndices) {
+
+            long[] subTensorShape = shapeCopy();
+            long subTensorLengthInDimension = splitAtIndex - previousSplitAtIndex;
+
+            if (splitAtIndex > shape[dimension] || subTensorLengthInDimension <= 0) {
+                throw new IllegalArgumentException("Invalid index to split on " + splitAtIndex + " at " + dimension + " for tensor of shape " + Arrays.toString(shape));
+            }
+
+            subTensorShape[dimension] = subTensorLengthInDimension;
+            long subTensorOffset = previousSplitAtIndex * stride[dimension];
+
+            splitTensor.add(gather(subTensorOffset, subTensorShape, stride, createZeros(subTensorShape)));
+
+            previousSplitAtIndex = splitAtIndex;
+        }
+
+        return splitTensor;
+    }
+
+    /**
+     * Joins toConcat along dimension into a zeroed tensor created by target.
+     *
+     * @param target    creates the result tensor from its shape
+     * @param dimension the dimension to join along
+     * @param toConcat  the tensors to join
+     * @return a tensor created by target holding toConcat joined along dimension
+     */
+    static <T extends LongIndexedDoubleTensor> T concat(Function<long[], T> target, int dimension, DoubleTensor... toConcat) {
+        Preconditions.checkArgument(toConcat.length > 0);
+
+        long[] concatShape = toConcat[0].isScalar() ? new long[]{1} : toConcat[0].getShape();
+        if (toConcat[0].isScalar() && dimension != 0) {
+            throw new IllegalArgumentException("Cannot concat scalars on dimension " + dimension);
+        }
+        concatShape[dimension] = 0;
+
+        for (DoubleTensor tensor : toConcat) {
+            long[] tensorShape = tensor.isScalar() ? new long[]{1} : tensor.getShape();
+            for (int d = 0; d < concatShape.length; d++) {
+                if (d != dimension && tensorShape[d] != concatShape[d]) {
+                    throw new IllegalArgumentException("Cannot concat shape " + Arrays.toString(tensorShape));
+                }
+            }
+            concatShape[dimension] += tensorShape[dimension];
+        }
+
+        final T result = target.apply(concatShape);
+
+        //Each tensor fills blocks of its own length in dimension and beyond, one block per index above dimension.
+        final long outerLength = TensorShape.getLength(Arrays.copyOf(concatShape, dimension));
+        final long resultBlockLength = result.length / Math.max(outerLength, 1);
+
+        long blockOffset = 0;
+        for (DoubleTensor tensor : toConcat) {
+            final LongToDoubleFunction values = elementsOf(tensor);
+            final long blockLength = tensor.getLength() / Math.max(outerLength, 1);
+
+            for (long outer = 0; outer < outerLength; outer++) {
+                for (long i = 0; i < blockLength; i++) {
+                    result.setFlat(outer * resultBlockLength + blockOffset + i, values.applyAsDouble(outer * blockLength + i));
+                }
+            }
+
+            blockOffset += blockLength;
+        }
+
+        return result;
+    }
+
+    @Override
+    public double[] asFlatDoubleArray() {
+        double[] values = new double[Ints.checkedCast(length)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getFlat(i);
+        }
+        return values;
+    }
+
+    @Override
+    public int[] asFlatIntegerArray() {
+        int[] values = new int[Ints.checkedCast(length)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (int) getFlat(i);
+        }
+        return values;
+    }
+
+    @Override
+    public Double[] asFlatArray() {
+        Double[] values = new Double[Ints.checkedCast(length)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getFlat(i);
+        }
+        return values;
+    }
+
+    @Override
+    public DoubleTensor reciprocalInPlace() {
+        return unaryOpInPlace(v -> 1.0 / v);
+    }
+
+    @Override
+    public DoubleTensor sqrtInPlace() {
+        return unaryOpInPlace(FastMath::sqrt);
+    }
+
+    @Override
+    public DoubleTensor logInPlace() {
+        return unaryOpInPlace(MathKernels::log);
+    }
+
+    @Override
+    public DoubleTensor safeLogTimesInPlace(DoubleTensor y) {
+        TensorValidator.NAN_CATCHER.validate(this);
+        TensorValidator.NAN_CATCHER.validate(y);
+        DoubleTensor result = this.logInPlace().timesInPlace(y);
+        return TensorValidator.NAN_FIXER.validate(result);
+    }
+
+    @Override
+    public DoubleTensor logGammaInPlace() {
+        return unaryOpInPlace(MathKernels::logGamma);
+    }
+
+    @Override
+    public DoubleTensor digammaInPlace() {
+        return unaryOpInPlace(MathKernels::digamma);
+    }
+
+    @Override
+    public DoubleTensor sinInPlace() {
+        return unaryOpInPlace(FastMath::sin);
+    }
+
+    @Override
+    public DoubleTensor cosInPlace() {
+        return unaryOpInPlace(FastMath::cos);
+    }
+
+    @Override
+    public DoubleTensor tanInPlace() {
+        return unaryOpInPlace(FastMath::tan);
+    }
+
+    @Override
+    public DoubleTensor atanInPlace() {
+        return unaryOpInPlace(FastMath::atan);
+    }
+
+    @Override
+    public DoubleTensor atan2InPlace(double y) {
+        return unaryOpInPlace(v -> FastMath.atan2(y, v));
+    }
+
+    @Override
+    public DoubleTensor atan2InPlace(DoubleTensor y) {
+        return binaryOp(y, (left, right) -> FastMath.atan2(right, left), true);
+    }
+
+    @Override
+    public DoubleTensor asinInPlace() {
+        return unaryOpInPlace(FastMath::asin);
+    }
+
+    @Override
+    public DoubleTensor acosInPlace() {
+        return unaryOpInPlace(FastMath::acos);
+    }
+
+    @Override
+    public DoubleTensor expInPlace() {
+        return unaryOpInPlace(MathKernels::exp);
+    }
+
+    @Override
+    public DoubleTensor minInPlace(DoubleTensor that) {
+        return binaryOp(that, Math::min, true);
+    }
+
+    @Override
+    public DoubleTensor maxInPlace(DoubleTensor that) {
+        return binaryOp(that, Math::max, true);
+    }
+
+    @Override
+    public DoubleTensor clampInPlace(DoubleTensor min, DoubleTensor max) {
+        maxInPlace(min);
+        minInPlace(max);
+        return this;
+    }
+
+    @Override
+    public DoubleTensor ceilInPlace() {
+        return unaryOpInPlace(FastMath::ceil);
+    }
+
+    @Override
+    public DoubleTensor floorInPlace() {
+        return unaryOpInPlace(FastMath::floor);
+    }
+
+    @Override
+    public DoubleTensor roundInPlace() {
+        return unaryOpInPlace(v -> v >= 0.0 ? FastMath.floor(v + 0.5) : FastMath.ceil(v - 0.5));
+    }
+
+    @Override
+    public DoubleTensor sigmoidInPlace() {
+        return unaryOpInPlace(MathKernels::sigmoid);
+    }
+
+    @Override
+    public DoubleTensor standardizeInPlace() {
+        return this.minusInPlace(average()).divInPlace(standardDeviation());
+    }
+
+    @Override
+    public DoubleTensor replaceNaNInPlace(double value) {
+        return unaryOpInPlace(v -> Double.isNaN(v) ? value : v);
+    }
+
+    @Override
+    public DoubleTensor setAllInPlace(double value) {
+        for (long i = 0; i < length; i++) {
+            setFlat(i, value);
+        }
+        return this;
+    }
+
+    @Override
+    public BooleanTensor notNaN() {
+        return toBooleanTensor(v -> !Double.isNaN(v));
+    }
+
+    @Override
+    public DoubleTensor minus(double value) {
+        return duplicate().minusInPlace(value);
+    }
+
+    @Override
+    public DoubleTensor minus(DoubleTensor that) {
+        return binaryOp(that, (l, r) -> l - r, false);
+    }
+
+    @Override
+    public DoubleTensor minusInPlace(double value) {
+        return unaryOpInPlace(v -> v - value);
+    }
+
+    @Override
+    public DoubleTensor minusInPlace(DoubleTensor that) {
+        return binaryOp(that, (l, r) -> l - r, true);
+    }
+
+    @Override
+    public DoubleTensor plus(double value) {
+        return duplicate().plusInPlace(value);
+    }
+
+    @Override
+    public DoubleTensor plus(DoubleTensor that) {
+        return binaryOp(that, Double::sum, false);
+    }
+
+    @Override
+    public DoubleTensor plusInPlace(double value) {
+        return unaryOpInPlace(v -> v + value);
+    }
+
+    @Override
+    public DoubleTensor plusInPlace(DoubleTensor that) {
+        return binaryOp(that, Double::sum, true);
+    }
+
+    @Override
+    public DoubleTensor times(double value) {
+        return duplicate().timesInPlace(value);
+    }
+
+    @Override
+    public DoubleTensor times(DoubleTensor that) {
+        return binaryOp(that, (l, r) -> l * r, false);
+    }
+
+    @Override
+    public DoubleTensor timesInPlace(double value) {
+        return unaryOpInPlace(v -> v * value);
+    }
+
+    @Override
+    public DoubleTensor timesInPlace(DoubleTensor that) {
+        return binaryOp(that, (l, r) -> l * r, true);
+    }
+
+    @Override
+    public DoubleTensor div(double value) {
+        return duplicate().divInPlace(value);
+    }
+
+    @Override
+    public DoubleTensor div(DoubleTensor that) {
+        return binaryOp(that, (l, r) -> l / r, false);
+    }
+
+    @Override
+    public DoubleTensor divInPlace(double value) {
+        return unaryOpInPlace(v -> v / value);
+    }
+
+    @Override
+    public DoubleTensor divInPlace(DoubleTensor that) {
+        return binaryOp(that, (l, r) -> l / r, true);
+    }
+
+    @Override
+    public DoubleFlattenedView getFlattenedView() {
+        return new LongIndexedFlattenedView();
+    }
+
+    private class LongIndexedFlattenedView implements DoubleFlattenedView {
+
+        @Override
+        public long size() {
+            return length;
+        }
+
+        @Override
+        public double getDouble(long index) {
+            return getFlat(index);
+        }
+
+        @Override
+        public double getDoubleOrScalar(long index) {
+            return length == 1 ? getFlat(0) : getFlat(index);
+        }
+
+        @Override
+        public void setDouble(long index, double value) {
+            setFlat(index, value);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LongIndexedDoubleTensor that = (LongIndexedDoubleTensor) o;
+        if (!Arrays.equals(shape, that.shape)) {
+            return false;
+        }
+
+        for (long i = 0; i < length; i++) {
+            if (Double.doubleToLongBits(getFlat(i)) != Double.doubleToLongBits(that.getFlat(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(shape);
+        for (long i = 0; i < length; i++) {
+            long bits = Double.doubleToLongBits(getFlat(i));
+            result = 31 * result + (int) (bits ^ (bits >>> 32));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder values = new StringBuilder();
+        long shown = Math.min(length, 1000);
+        for (long i = 0; i < shown; i++) {
+            values.append(i == 0 ? "" : ", ").append(getFlat(i));
+        }
+        if (shown < length) {
+            values.append(", ...");
+        }
+
+        return getClass().getSimpleName() + "{" +
+            "shape=" + Arrays.toString(shape) +
+            ", buffer=[" + values + "]" +
+            '}';
+    }
+}
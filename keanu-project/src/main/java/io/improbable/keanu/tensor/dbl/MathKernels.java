@@ -0,0 +1,247 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.math3.special.Gamma;
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * The transcendental functions behind {@link DoubleTensor#exp()}, {@link DoubleTensor#log()},
+ * {@link DoubleTensor#sigmoid()}, {@link DoubleTensor#logGamma()} and {@link DoubleTensor#digamma()}, for single
+ * values and for ranges of a buffer.
+ * <p>
+ * In the default {@link Accuracy#ACCURATE} mode these are the Apache Commons Math functions. The opt in
+ * {@link Accuracy#FAST} mode trades a little accuracy for speed:
+ * <ul>
+ * <li>exp, log and sigmoid use the JDK's Math.exp and Math.log, which the JIT compiles to intrinsics that are
+ * within 1 ulp. Polynomial versions of these measured slower than the intrinsics.</li>
+ * <li>logGamma shifts its argument up to at least 10 and then uses Stirling's series. It is within 4 ulp for
+ * arguments of 10 and over. Below 10 its error is within 1e-14 times the larger of one and the magnitude of the
+ * result, as the result is close to zero around 1 and 2.</li>
+ * <li>digamma shifts its argument up to at least 10 and then uses its asymptotic series. It is within 2 ulp for
+ * arguments of 10 and over. Below 10 its error is within 1e-14 times the larger of one and the magnitude of
+ * the result, as it crosses zero at around 1.46.</li>
+ * </ul>
+ * The fast logGamma and digamma are polynomials without table lookups that only branch to shift small
+ * arguments, so loops over a buffer pipeline well. Arguments that are not positive, at least 1e17, NaN or
+ * infinite fall back to the accurate functions. The errors were measured against a high precision reference.
+ * <p>
+ * Nd4jDoubleTensor keeps using ND4J's native exp, log and sigmoid in both modes.
+ */
+public final class MathKernels {
+
+    public enum Accuracy {
+        ACCURATE, FAST
+    }
+
+    private static volatile Accuracy accuracy = Accuracy.ACCURATE;
+
+    private static final double HALF_LOG_2_PI = 0.9189385332046728;
+
+    /**
+     * Arguments at or above this are shifted up to it before the asymptotic series of logGamma and digamma are
+     * used.
+     */
+    private static final double ASYMPTOTIC_THRESHOLD = 10.0;
+    private static final double LARGEST_FAST_GAMMA_ARGUMENT = 1e17;
+
+    private MathKernels() {
+    }
+
+    /**
+     * @param accuracy the accuracy of the functions used by all DoubleTensors from now on
+     */
+    public static void setAccuracy(Accuracy accuracy) {
+        MathKernels.accuracy = Preconditions.checkNotNull(accuracy);
+    }
+
+    public static Accuracy getAccuracy() {
+        return accuracy;
+    }
+
+    public static double exp(double x) {
+        return accuracy == Accuracy.FAST ? Math.exp(x) : FastMath.exp(x);
+    }
+
+    public static double log(double x) {
+        return accuracy == Accuracy.FAST ? Math.log(x) : FastMath.log(x);
+    }
+
+    public static double sigmoid(double x) {
+        return accuracy == Accuracy.FAST ? fastSigmoid(x) : accurateSigmoid(x);
+    }
+
+    public static double logGamma(double x) {
+        return accuracy == Accuracy.FAST ? fastLogGamma(x) : Gamma.logGamma(x);
+    }
+
+    public static double digamma(double x) {
+        return accuracy == Accuracy.FAST ? fastDigamma(x) : Gamma.digamma(x);
+    }
+
+    /**
+     * Replaces buffer[from, to) with the exp of each value.
+     *
+     * @param buffer the values to replace
+     * @param from   the index of the first value to replace
+     * @param to     the index after the last value to replace
+     */
+    public static void exp(double[] buffer, int from, int to) {
+        if (accuracy == Accuracy.FAST) {
+            for (int i = from; i < to; i++) {
+                buffer[i] = Math.exp(buffer[i]);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.exp(buffer[i]);
+            }
+        }
+    }
+
+    /**
+     * Replaces buffer[from, to) with the log of each value.
+     *
+     * @param buffer the values to replace
+     * @param from   the index of the first value to replace
+     * @param to     the index after the last value to replace
+     */
+    public static void log(double[] buffer, int from, int to) {
+        if (accuracy == Accuracy.FAST) {
+            for (int i = from; i < to; i++) {
+                buffer[i] = Math.log(buffer[i]);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                buffer[i] = FastMath.log(buffer[i]);
+            }
+        }
+    }
+
+    /**
+     * Replaces buffer[from, to) with the sigmoid of each value.
+     *
+     * @param buffer the values to replace
+     * @param from   the index of the first value to replace
+     * @param to     the index after the last value to replace
+     */
+    public static void sigmoid(double[] buffer, int from, int to) {
+        if (accuracy == Accuracy.FAST) {
+            for (int i = from; i < to; i++) {
+                buffer[i] = fastSigmoid(buffer[i]);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                buffer[i] = accurateSigmoid(buffer[i]);
+            }
+        }
+    }
+
+    /**
+     * Replaces buffer[from, to) with the logGamma of each value.
+     *
+     * @param buffer the values to replace
+     * @param from   the index of the first value to replace
+     * @param to     the index after the last value to replace
+     */
+    public static void logGamma(double[] buffer, int from, int to) {
+        if (accuracy == Accuracy.FAST) {
+            for (int i = from; i < to; i++) {
+                buffer[i] = fastLogGamma(buffer[i]);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                buffer[i] = Gamma.logGamma(buffer[i]);
+            }
+        }
+    }
+
+    /**
+     * Replaces buffer[from, to) with the digamma of each value.
+     *
+     * @param buffer the values to replace
+     * @param from   the index of the first value to replace
+     * @param to     the index after the last value to replace
+     */
+    public static void digamma(double[] buffer, int from, int to) {
+        if (accuracy == Accuracy.FAST) {
+            for (int i = from; i < to; i++) {
+                buffer[i] = fastDigamma(buffer[i]);
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                buffer[i] = Gamma.digamma(buffer[i]);
+            }
+        }
+    }
+
+    private static double accurateSigmoid(double x) {
+        return 1.0 / (1.0 + FastMath.exp(-x));
+    }
+
+    private static double fastSigmoid(double x) {
+        return 1.0 / (1.0 + Math.exp(-x));
+    }
+
+    /**
+     * Shifts x up to at least 10 with logGamma(x) = logGamma(x + n) - log(x (x + 1) ... (x + n - 1)) and then
+     * uses Stirling's series up to its 13th power.
+     */
+    static double fastLogGamma(double x) {
+        if (!(x > 0.0 && x < LARGEST_FAST_GAMMA_ARGUMENT)) {
+            return Gamma.logGamma(x);
+        }
+
+        double z = x;
+        double product = 1.0;
+        while (z < ASYMPTOTIC_THRESHOLD) {
+            product *= z;
+            z += 1.0;
+        }
+
+        final double inverse = 1.0 / z;
+        final double inverse2 = inverse * inverse;
+
+        double series = 1.0 / 156.0;
+        series = series * inverse2 - 691.0 / 360360.0;
+        series = series * inverse2 + 1.0 / 1188.0;
+        series = series * inverse2 - 1.0 / 1680.0;
+        series = series * inverse2 + 1.0 / 1260.0;
+        series = series * inverse2 - 1.0 / 360.0;
+        series = series * inverse2 + 1.0 / 12.0;
+
+        final double stirling = (z - 0.5) * Math.log(z) - z + HALF_LOG_2_PI + series * inverse;
+        return product == 1.0 ? stirling : stirling - Math.log(product);
+    }
+
+    /**
+     * Shifts x up to at least 10 with digamma(x) = digamma(x + n) - (1 / x + ... + 1 / (x + n - 1)), where the
+     * sum is kept as a single fraction, and then uses the asymptotic series up to its 14th power.
+     */
+    static double fastDigamma(double x) {
+        if (!(x > 0.0 && x < LARGEST_FAST_GAMMA_ARGUMENT)) {
+            return Gamma.digamma(x);
+        }
+
+        double z = x;
+        double numerator = 0.0;
+        double denominator = 1.0;
+        while (z < ASYMPTOTIC_THRESHOLD) {
+            numerator = numerator * z + denominator;
+            denominator *= z;
+            z += 1.0;
+        }
+
+        final double inverse = 1.0 / z;
+        final double inverse2 = inverse * inverse;
+
+        double series = -1.0 / 12.0;
+        series = series * inverse2 + 691.0 / 32760.0;
+        series = series * inverse2 - 1.0 / 132.0;
+        series = series * inverse2 + 1.0 / 240.0;
+        series = series * inverse2 - 1.0 / 252.0;
+        series = series * inverse2 + 1.0 / 120.0;
+        series = series * inverse2 - 1.0 / 12.0;
+
+        final double asymptotic = Math.log(z) - 0.5 * inverse + series * inverse2;
+        return numerator == 0.0 ? asymptotic : asymptotic - numerator / denominator;
+    }
+}
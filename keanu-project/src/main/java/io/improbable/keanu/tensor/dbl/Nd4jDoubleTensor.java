@@ -7,7 +7,6 @@ import io.improbable.keanu.tensor.TensorShape;
 import io.improbable.keanu.tensor.TensorShapeValidation;
 import io.improbable.keanu.tensor.TypedINDArrayFactory;
 import io.improbable.keanu.tensor.bool.BooleanTensor;
-import io.improbable.keanu.tensor.bool.SimpleBooleanTensor;
 import io.improbable.keanu.tensor.intgr.IntegerTensor;
 import io.improbable.keanu.tensor.intgr.Nd4jIntegerTensor;
 import io.improbable.keanu.tensor.validate.TensorValidator;
@@ -15,7 +14,6 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.LUDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.special.Gamma;
 import org.nd4j.linalg.api.buffer.DataBuffer;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.api.ops.impl.transforms.ReplaceNans;
@@ -148,6 +146,15 @@ public class Nd4jDoubleTensor extends DoubleTensor {
         }
     }
 
+    @Override
+    public double getDouble(long... index) {
+        if (index.length == 1) {
+            return tensor.getDouble(index[0]);
+        } else {
+            return tensor.getDouble(index);
+        }
+    }
+
     public DoubleTensor setValue(Double value, long... index) {
 
         tensor.putScalar(index, value);
@@ -189,6 +196,19 @@ public class Nd4jDoubleTensor extends DoubleTensor {
         return tensor.sumNumber().doubleValue();
     }
 
+    /**
+     * Moves the values of this tensor out of the ND4J workspace they were created in, if any, so that they
+     * can still be used once the workspace is closed.
+     *
+     * @return this
+     */
+    public Nd4jDoubleTensor detach() {
+        if (tensor.isAttached()) {
+            tensor = tensor.detach();
+        }
+        return this;
+    }
+
     @Override
     public DoubleTensor duplicate() {
         return new Nd4jDoubleTensor(tensor.dup());
@@ -558,12 +578,12 @@ public class Nd4jDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor logGammaInPlace() {
-        return applyInPlace(Gamma::logGamma);
+        return applyInPlace(MathKernels::logGamma);
     }
 
     @Override
     public DoubleTensor digammaInPlace() {
-        return applyInPlace(Gamma::digamma);
+        return applyInPlace(MathKernels::digamma);
     }
 
     @Override
@@ -1088,7 +1108,7 @@ public class Nd4jDoubleTensor extends DoubleTensor {
     }
 
     @Override
-    public FlattenedView<Double> getFlattenedView() {
+    public DoubleFlattenedView getFlattenedView() {
         return new Nd4jDoubleFlattenedView(tensor);
     }
 
@@ -1137,7 +1157,7 @@ public class Nd4jDoubleTensor extends DoubleTensor {
         for (int i = 0; i < boolsFromMask.length; i++) {
             boolsFromMask[i] = data.getDouble(i) != 0.0;
         }
-        return new SimpleBooleanTensor(boolsFromMask, shape);
+        return BooleanTensor.create(boolsFromMask, shape);
     }
 
     @Override
@@ -1155,7 +1175,7 @@ public class Nd4jDoubleTensor extends DoubleTensor {
         return ArrayUtils.toObject(asFlatDoubleArray());
     }
 
-    private static class Nd4jDoubleFlattenedView implements FlattenedView<Double> {
+    private static class Nd4jDoubleFlattenedView implements DoubleFlattenedView {
 
         INDArray tensor;
 
@@ -1169,21 +1189,21 @@ public class Nd4jDoubleTensor extends DoubleTensor {
         }
 
         @Override
-        public Double get(long index) {
+        public double getDouble(long index) {
             return tensor.data().getDouble(index);
         }
 
         @Override
-        public Double getOrScalar(long index) {
+        public double getDoubleOrScalar(long index) {
             if (tensor.length() == 1) {
-                return get(0);
+                return getDouble(0);
             } else {
-                return get(index);
+                return getDouble(index);
             }
         }
 
         @Override
-        public void set(long index, Double value) {
+        public void setDouble(long index, double value) {
             tensor.data().put(index, value);
         }
     }
@@ -0,0 +1,289 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import io.improbable.keanu.tensor.TensorShape;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.bytedeco.javacpp.openblas.CblasNoTrans;
+import static org.bytedeco.javacpp.openblas.CblasRowMajor;
+import static org.bytedeco.javacpp.openblas.cblas_dgemm;
+
+/**
+ * A DoubleTensor whose values live outside of the Java heap in direct or memory mapped DoubleBuffers. This keeps
+ * very large tensors, such as observed data, out of the way of the garbage collector and allows more than
+ * Integer.MAX_VALUE elements.
+ * <p>
+ * Values are held in row first order in segments of up to 2^27 elements (1GB) each, which are addressed with a
+ * long index. Matrices that fit in a single segment are passed to cblas_dgemm without being copied.
+ */
+public class OffHeapDoubleTensor extends LongIndexedDoubleTensor {
+
+    static final int DEFAULT_SEGMENT_BITS = 27;
+
+    private final int segmentBits;
+    private final long segmentMask;
+    private DoubleBuffer[] segments;
+
+    private OffHeapDoubleTensor(int segmentBits, DoubleBuffer[] segments, long[] shape) {
+        super(shape);
+        this.segmentBits = segmentBits;
+        this.segmentMask = (1L << segmentBits) - 1;
+        this.segments = segments;
+    }
+
+    public static OffHeapDoubleTensor scalar(double scalarValue) {
+        return create(scalarValue, new long[0]);
+    }
+
+    public static OffHeapDoubleTensor create(double[] values, long... shape) {
+        if (values.length != TensorShape.getLength(shape)) {
+            throw new IllegalArgumentException("Shape " + Arrays.toString(shape) + " does not match buffer size " + values.length);
+        }
+
+        OffHeapDoubleTensor tensor = zeros(shape);
+        for (int i = 0; i < values.length; i++) {
+            tensor.setFlat(i, values[i]);
+        }
+        return tensor;
+    }
+
+    public static OffHeapDoubleTensor create(double value, long... shape) {
+        OffHeapDoubleTensor tensor = zeros(shape);
+        if (value != 0) {
+            tensor.setAllInPlace(value);
+        }
+        return tensor;
+    }
+
+    public static OffHeapDoubleTensor zeros(long... shape) {
+        return zeros(DEFAULT_SEGMENT_BITS, shape);
+    }
+
+    static OffHeapDoubleTensor zeros(int segmentBits, long... shape) {
+        return new OffHeapDoubleTensor(segmentBits, allocate(segmentBits, TensorShape.getLength(shape)), shape);
+    }
+
+    public static OffHeapDoubleTensor ones(long... shape) {
+        return create(1.0, shape);
+    }
+
+    public static OffHeapDoubleTensor eye(long n) {
+        OffHeapDoubleTensor tensor = zeros(n, n);
+        for (long i = 0; i < n; i++) {
+            tensor.setFlat(i * n + i, 1.0);
+        }
+        return tensor;
+    }
+
+    public static OffHeapDoubleTensor arange(double start, double end) {
+        return arange(start, end, 1.0);
+    }
+
+    public static OffHeapDoubleTensor arange(double start, double end, double stepSize) {
+        Preconditions.checkArgument(stepSize != 0);
+        long steps = (long) Math.ceil((end - start) / stepSize);
+
+        return linearBufferCreate(start, steps, stepSize);
+    }
+
+    public static OffHeapDoubleTensor linspace(double start, double end, int numberOfPoints) {
+        Preconditions.checkArgument(numberOfPoints > 0);
+        double stepSize = (end - start) / (numberOfPoints - 1);
+
+        return linearBufferCreate(start, numberOfPoints, stepSize);
+    }
+
+    private static OffHeapDoubleTensor linearBufferCreate(double start, long numberOfPoints, double stepSize) {
+        Preconditions.checkArgument(numberOfPoints > 0);
+        OffHeapDoubleTensor tensor = zeros(numberOfPoints);
+
+        double currentValue = start;
+        for (long i = 0; i < numberOfPoints; i++, currentValue += stepSize) {
+            tensor.setFlat(i, currentValue);
+        }
+
+        return tensor;
+    }
+
+    public static OffHeapDoubleTensor concat(int dimension, DoubleTensor... toConcat) {
+        return LongIndexedDoubleTensor.concat(OffHeapDoubleTensor::zeros, dimension, toConcat);
+    }
+
+    /**
+     * Memory maps a file of doubles in native byte order, such as one written by {@link #writeTo(Path)}. Pages are
+     * only read from disk as they are used and writes to the tensor are private to it, so the file is never changed.
+     * It is opened for writing because the operating system requires that for a private mapping.
+     *
+     * @param file  file holding the values of the tensor in row first order
+     * @param shape shape of the tensor
+     * @return a tensor backed by the file
+     * @throws IOException if the file cannot be mapped
+     */
+    public static OffHeapDoubleTensor map(Path file, long... shape) throws IOException {
+        final long length = TensorShape.getLength(shape);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            if (channel.size() != length * Double.BYTES) {
+                throw new IllegalArgumentException(
+                    "Shape " + Arrays.toString(shape) + " does not match file size of " + channel.size() + " bytes"
+                );
+            }
+
+            DoubleBuffer[] segments = new DoubleBuffer[segmentCount(DEFAULT_SEGMENT_BITS, length)];
+            for (int s = 0; s < segments.length; s++) {
+                long segmentStart = (long) s << DEFAULT_SEGMENT_BITS;
+                long segmentLength = Math.min(length - segmentStart, 1L << DEFAULT_SEGMENT_BITS);
+
+                segments[s] = channel
+                    .map(FileChannel.MapMode.PRIVATE, segmentStart * Double.BYTES, segmentLength * Double.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asDoubleBuffer();
+            }
+
+            return new OffHeapDoubleTensor(DEFAULT_SEGMENT_BITS, segments, Arrays.copyOf(shape, shape.length));
+        }
+    }
+
+    /**
+     * Writes the values of this tensor in row first order as doubles in native byte order.
+     *
+     * @param file the file to write to, which is replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void writeTo(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.nativeOrder());
+            DoubleBuffer chunkAsDoubles = chunk.asDoubleBuffer();
+
+            for (DoubleBuffer segment : segments) {
+                DoubleBuffer source = segment.duplicate();
+                source.clear();
+
+                while (source.hasRemaining()) {
+                    int count = Math.min(source.remaining(), chunkAsDoubles.capacity());
+                    DoubleBuffer part = source.duplicate();
+                    part.limit(part.position() + count);
+
+                    chunkAsDoubles.clear();
+                    chunkAsDoubles.put(part);
+                    source.position(source.position() + count);
+
+                    chunk.clear();
+                    chunk.limit(count * Double.BYTES);
+                    while (chunk.hasRemaining()) {
+                        channel.write(chunk);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int segmentCount(int segmentBits, long length) {
+        return Ints.checkedCast((length + (1L << segmentBits) - 1) >>> segmentBits);
+    }
+
+    private static DoubleBuffer[] allocate(int segmentBits, long length) {
+        DoubleBuffer[] segments = new DoubleBuffer[segmentCount(segmentBits, length)];
+
+        for (int s = 0; s < segments.length; s++) {
+            long segmentLength = Math.min(length - ((long) s << segmentBits), 1L << segmentBits);
+            segments[s] = ByteBuffer
+                .allocateDirect(Ints.checkedCast(segmentLength * Double.BYTES))
+                .order(ByteOrder.nativeOrder())
+                .asDoubleBuffer();
+        }
+
+        return segments;
+    }
+
+    @Override
+    protected double getFlat(long index) {
+        return segments[(int) (index >>> segmentBits)].get((int) (index & segmentMask));
+    }
+
+    @Override
+    protected void setFlat(long index, double value) {
+        segments[(int) (index >>> segmentBits)].put((int) (index & segmentMask), value);
+    }
+
+    @Override
+    protected LongIndexedDoubleTensor createZeros(long[] shape) {
+        return zeros(segmentBits, shape);
+    }
+
+    @Override
+    protected LongIndexedDoubleTensor copyWithShape(long[] shape) {
+        Preconditions.checkArgument(TensorShape.getLength(shape) == length);
+        DoubleBuffer[] copies = allocate(segmentBits, length);
+
+        for (int s = 0; s < segments.length; s++) {
+            DoubleBuffer source = segments[s].duplicate();
+            source.clear();
+            DoubleBuffer destination = copies[s].duplicate();
+            destination.clear();
+            destination.put(source);
+        }
+
+        return new OffHeapDoubleTensor(segmentBits, copies, shape);
+    }
+
+    @Override
+    protected void takeStorage(LongIndexedDoubleTensor other) {
+        this.segments = ((OffHeapDoubleTensor) other).segments;
+    }
+
+    @Override
+    public DoubleTensor matrixMultiply(DoubleTensor that) {
+
+        final long[] thatShape = that.getShape();
+        if (shape.length > 2 || thatShape.length > 2) {
+            return super.matrixMultiply(that);
+        }
+
+        if (shape.length != 2 || thatShape.length != 2 || shape[1] != thatShape[0]) {
+            throw new IllegalArgumentException("Cannot matrix multiply shape " + Arrays.toString(shape) + " shape " + Arrays.toString(thatShape));
+        }
+
+        if (segments.length != 1 || segmentCount(segmentBits, shape[0] * thatShape[1]) != 1 || that.getLength() >= segmentMask) {
+            return super.matrixMultiply(that);
+        }
+
+        final OffHeapDoubleTensor result = zeros(segmentBits, shape[0], thatShape[1]);
+
+        final int N = Ints.checkedCast(thatShape[1]);
+        final int M = Ints.checkedCast(this.shape[0]);
+        final int K = Ints.checkedCast(this.shape[1]);
+
+        //C = alpha*A*B + beta*C
+        //(M,N) = (M,k)(k,N) + (M,N)
+        cblas_dgemm(CblasRowMajor, CblasNoTrans, CblasNoTrans, M, N, K, 1, segments[0], K, asDirectBuffer(that), N, 0, result.segments[0], N);
+
+        return result;
+    }
+
+    private static DoubleBuffer asDirectBuffer(DoubleTensor tensor) {
+        if (tensor instanceof OffHeapDoubleTensor && ((OffHeapDoubleTensor) tensor).segments.length == 1) {
+            return ((OffHeapDoubleTensor) tensor).segments[0];
+        }
+
+        double[] values = tensor.asFlatDoubleArray();
+        DoubleBuffer buffer = ByteBuffer
+            .allocateDirect(values.length * Double.BYTES)
+            .order(ByteOrder.nativeOrder())
+            .asDoubleBuffer();
+        buffer.put(values);
+        return buffer;
+    }
+}
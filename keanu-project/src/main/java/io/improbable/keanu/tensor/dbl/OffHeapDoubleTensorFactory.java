@@ -0,0 +1,59 @@
+package io.improbable.keanu.tensor.dbl;
+
+public class OffHeapDoubleTensorFactory implements DoubleTensorFactory {
+
+    @Override
+    public DoubleTensor create(double value, long[] shape) {
+        return OffHeapDoubleTensor.create(value, shape);
+    }
+
+    @Override
+    public DoubleTensor create(double[] values, long[] shape) {
+        return OffHeapDoubleTensor.create(values, shape);
+    }
+
+    @Override
+    public DoubleTensor create(double[] values) {
+        return OffHeapDoubleTensor.create(values, values.length);
+    }
+
+    @Override
+    public DoubleTensor ones(long[] shape) {
+        return OffHeapDoubleTensor.ones(shape);
+    }
+
+    @Override
+    public DoubleTensor zeros(long[] shape) {
+        return OffHeapDoubleTensor.zeros(shape);
+    }
+
+    @Override
+    public DoubleTensor eye(long n) {
+        return OffHeapDoubleTensor.eye(n);
+    }
+
+    @Override
+    public DoubleTensor linspace(double start, double end, int numberOfPoints) {
+        return OffHeapDoubleTensor.linspace(start, end, numberOfPoints);
+    }
+
+    @Override
+    public DoubleTensor arange(double start, double end) {
+        return OffHeapDoubleTensor.arange(start, end);
+    }
+
+    @Override
+    public DoubleTensor arange(double start, double end, double stepSize) {
+        return OffHeapDoubleTensor.arange(start, end, stepSize);
+    }
+
+    @Override
+    public DoubleTensor scalar(double scalarValue) {
+        return OffHeapDoubleTensor.scalar(scalarValue);
+    }
+
+    @Override
+    public DoubleTensor concat(int dimension, DoubleTensor... toConcat) {
+        return OffHeapDoubleTensor.concat(dimension, toConcat);
+    }
+}
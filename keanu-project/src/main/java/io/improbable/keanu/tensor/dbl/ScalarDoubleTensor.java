@@ -8,8 +8,6 @@ import io.improbable.keanu.tensor.bool.BooleanTensor;
 import io.improbable.keanu.tensor.intgr.IntegerTensor;
 import io.improbable.keanu.tensor.validate.TensorValidator;
 import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.math3.special.Gamma;
-import org.apache.commons.math3.util.FastMath;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -512,7 +510,7 @@ public class ScalarDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor logInPlace() {
-        value = Math.log(value);
+        value = MathKernels.log(value);
         return this;
     }
 
@@ -534,13 +532,13 @@ public class ScalarDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor logGammaInPlace() {
-        value = Gamma.logGamma(value);
+        value = MathKernels.logGamma(value);
         return this;
     }
 
     @Override
     public DoubleTensor digammaInPlace() {
-        value = Gamma.digamma(value);
+        value = MathKernels.digamma(value);
         return this;
     }
 
@@ -599,7 +597,7 @@ public class ScalarDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor expInPlace() {
-        value = Math.exp(value);
+        value = MathKernels.exp(value);
         return this;
     }
 
@@ -723,7 +721,7 @@ public class ScalarDoubleTensor extends DoubleTensor {
 
     @Override
     public DoubleTensor sigmoidInPlace() {
-        value = 1.0D / (1.0D + FastMath.exp(-value));
+        value = MathKernels.sigmoid(value);
         return this;
     }
 
@@ -812,7 +810,7 @@ public class ScalarDoubleTensor extends DoubleTensor {
     }
 
     @Override
-    public FlattenedView<Double> getFlattenedView() {
+    public DoubleFlattenedView getFlattenedView() {
         return new SimpleDoubleFlattenedView();
     }
 
@@ -878,7 +876,7 @@ public class ScalarDoubleTensor extends DoubleTensor {
             "\n}";
     }
 
-    private class SimpleDoubleFlattenedView implements FlattenedView<Double> {
+    private class SimpleDoubleFlattenedView implements DoubleFlattenedView {
 
         @Override
         public long size() {
@@ -886,7 +884,7 @@ public class ScalarDoubleTensor extends DoubleTensor {
         }
 
         @Override
-        public Double get(long index) {
+        public double getDouble(long index) {
             if (index != 0) {
                 throw new IndexOutOfBoundsException();
             }
@@ -894,12 +892,12 @@ public class ScalarDoubleTensor extends DoubleTensor {
         }
 
         @Override
-        public Double getOrScalar(long index) {
+        public double getDoubleOrScalar(long index) {
             return value;
         }
 
         @Override
-        public void set(long index, Double value) {
+        public void setDouble(long index, double value) {
             if (index != 0) {
                 throw new IndexOutOfBoundsException();
             }
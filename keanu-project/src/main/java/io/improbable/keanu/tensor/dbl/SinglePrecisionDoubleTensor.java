@@ -0,0 +1,189 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import io.improbable.keanu.tensor.TensorShape;
+
+import java.util.Arrays;
+
+import static org.bytedeco.javacpp.openblas.CblasNoTrans;
+import static org.bytedeco.javacpp.openblas.CblasRowMajor;
+import static org.bytedeco.javacpp.openblas.cblas_sgemm;
+
+/**
+ * A DoubleTensor that stores its values as floats in a float[] in row first order, which halves the memory and
+ * bandwidth used compared to a JVMDoubleTensor at the cost of precision.
+ * <p>
+ * Elementwise operations are calculated in double precision and rounded to float when stored. Matrix products are
+ * calculated in single precision with cblas_sgemm. Operations with another DoubleTensor on the left hand side
+ * follow that tensor's precision.
+ */
+public class SinglePrecisionDoubleTensor extends LongIndexedDoubleTensor {
+
+    private float[] buffer;
+
+    private SinglePrecisionDoubleTensor(float[] buffer, long[] shape) {
+        super(shape);
+        Preconditions.checkArgument(
+            buffer.length == length,
+            "Shape " + Arrays.toString(shape) + " does not match buffer size " + buffer.length
+        );
+        this.buffer = buffer;
+    }
+
+    public static SinglePrecisionDoubleTensor scalar(double scalarValue) {
+        return create(scalarValue, new long[0]);
+    }
+
+    public static SinglePrecisionDoubleTensor create(double[] values, long... shape) {
+        if (values.length != TensorShape.getLength(shape)) {
+            throw new IllegalArgumentException("Shape " + Arrays.toString(shape) + " does not match buffer size " + values.length);
+        }
+
+        float[] buffer = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            buffer[i] = (float) values[i];
+        }
+        return new SinglePrecisionDoubleTensor(buffer, shape);
+    }
+
+    public static SinglePrecisionDoubleTensor create(float[] values, long... shape) {
+        return new SinglePrecisionDoubleTensor(values, shape);
+    }
+
+    public static SinglePrecisionDoubleTensor create(double value, long... shape) {
+        float[] buffer = new float[TensorShape.getLengthAsInt(shape)];
+        if (value != 0) {
+            Arrays.fill(buffer, (float) value);
+        }
+        return new SinglePrecisionDoubleTensor(buffer, shape);
+    }
+
+    public static SinglePrecisionDoubleTensor zeros(long... shape) {
+        return create(0.0, shape);
+    }
+
+    public static SinglePrecisionDoubleTensor ones(long... shape) {
+        return create(1.0, shape);
+    }
+
+    public static SinglePrecisionDoubleTensor eye(long n) {
+        SinglePrecisionDoubleTensor tensor = zeros(n, n);
+        for (long i = 0; i < n; i++) {
+            tensor.setFlat(i * n + i, 1.0);
+        }
+        return tensor;
+    }
+
+    public static SinglePrecisionDoubleTensor arange(double start, double end) {
+        return arange(start, end, 1.0);
+    }
+
+    public static SinglePrecisionDoubleTensor arange(double start, double end, double stepSize) {
+        Preconditions.checkArgument(stepSize != 0);
+        int steps = (int) Math.ceil((end - start) / stepSize);
+
+        return linearBufferCreate(start, steps, stepSize);
+    }
+
+    public static SinglePrecisionDoubleTensor linspace(double start, double end, int numberOfPoints) {
+        Preconditions.checkArgument(numberOfPoints > 0);
+        double stepSize = (end - start) / (numberOfPoints - 1);
+
+        return linearBufferCreate(start, numberOfPoints, stepSize);
+    }
+
+    private static SinglePrecisionDoubleTensor linearBufferCreate(double start, int numberOfPoints, double stepSize) {
+        Preconditions.checkArgument(numberOfPoints > 0);
+        float[] buffer = new float[numberOfPoints];
+
+        double currentValue = start;
+        for (int i = 0; i < buffer.length; i++, currentValue += stepSize) {
+            buffer[i] = (float) currentValue;
+        }
+
+        return new SinglePrecisionDoubleTensor(buffer, new long[]{buffer.length});
+    }
+
+    public static SinglePrecisionDoubleTensor concat(int dimension, DoubleTensor... toConcat) {
+        return LongIndexedDoubleTensor.concat(SinglePrecisionDoubleTensor::zeros, dimension, toConcat);
+    }
+
+    /**
+     * @return a copy of the values of this tensor in row first order without widening them to double
+     */
+    public float[] asFlatFloatArray() {
+        return Arrays.copyOf(buffer, buffer.length);
+    }
+
+    @Override
+    protected double getFlat(long index) {
+        return buffer[(int) index];
+    }
+
+    @Override
+    protected void setFlat(long index, double value) {
+        buffer[(int) index] = (float) value;
+    }
+
+    @Override
+    protected LongIndexedDoubleTensor createZeros(long[] shape) {
+        return zeros(shape);
+    }
+
+    @Override
+    protected LongIndexedDoubleTensor copyWithShape(long[] shape) {
+        return new SinglePrecisionDoubleTensor(Arrays.copyOf(buffer, buffer.length), shape);
+    }
+
+    @Override
+    protected void takeStorage(LongIndexedDoubleTensor other) {
+        this.buffer = ((SinglePrecisionDoubleTensor) other).buffer;
+    }
+
+    @Override
+    public double[] asFlatDoubleArray() {
+        double[] values = new double[buffer.length];
+        for (int i = 0; i < buffer.length; i++) {
+            values[i] = buffer[i];
+        }
+        return values;
+    }
+
+    @Override
+    public DoubleTensor matrixMultiply(DoubleTensor that) {
+
+        final long[] thatShape = that.getShape();
+        if (shape.length > 2 || thatShape.length > 2) {
+            return super.matrixMultiply(that);
+        }
+
+        if (shape.length != 2 || thatShape.length != 2 || shape[1] != thatShape[0]) {
+            throw new IllegalArgumentException("Cannot matrix multiply shape " + Arrays.toString(shape) + " shape " + Arrays.toString(thatShape));
+        }
+
+        final int N = Ints.checkedCast(thatShape[1]);
+        final int M = Ints.checkedCast(this.shape[0]);
+        final int K = Ints.checkedCast(this.shape[1]);
+        final float[] C = new float[Ints.checkedCast((long) M * N)];
+
+        //C = alpha*A*B + beta*C
+        //(M,N) = (M,k)(k,N) + (M,N)
+        cblas_sgemm(CblasRowMajor, CblasNoTrans, CblasNoTrans, M, N, K, 1, buffer, K, asFloatBuffer(that), N, 0, C, N);
+
+        return new SinglePrecisionDoubleTensor(C, new long[]{M, N});
+    }
+
+    private static float[] asFloatBuffer(DoubleTensor tensor) {
+        if (tensor instanceof SinglePrecisionDoubleTensor) {
+            return ((SinglePrecisionDoubleTensor) tensor).buffer;
+        }
+
+        double[] values = tensor.asFlatDoubleArray();
+        float[] buffer = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            buffer[i] = (float) values[i];
+        }
+        return buffer;
+    }
+}
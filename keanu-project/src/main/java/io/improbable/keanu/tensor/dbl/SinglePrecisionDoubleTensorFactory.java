@@ -0,0 +1,59 @@
+package io.improbable.keanu.tensor.dbl;
+
+public class SinglePrecisionDoubleTensorFactory implements DoubleTensorFactory {
+
+    @Override
+    public DoubleTensor create(double value, long[] shape) {
+        return SinglePrecisionDoubleTensor.create(value, shape);
+    }
+
+    @Override
+    public DoubleTensor create(double[] values, long[] shape) {
+        return SinglePrecisionDoubleTensor.create(values, shape);
+    }
+
+    @Override
+    public DoubleTensor create(double[] values) {
+        return SinglePrecisionDoubleTensor.create(values, values.length);
+    }
+
+    @Override
+    public DoubleTensor ones(long[] shape) {
+        return SinglePrecisionDoubleTensor.ones(shape);
+    }
+
+    @Override
+    public DoubleTensor zeros(long[] shape) {
+        return SinglePrecisionDoubleTensor.zeros(shape);
+    }
+
+    @Override
+    public DoubleTensor eye(long n) {
+        return SinglePrecisionDoubleTensor.eye(n);
+    }
+
+    @Override
+    public DoubleTensor linspace(double start, double end, int numberOfPoints) {
+        return SinglePrecisionDoubleTensor.linspace(start, end, numberOfPoints);
+    }
+
+    @Override
+    public DoubleTensor arange(double start, double end) {
+        return SinglePrecisionDoubleTensor.arange(start, end);
+    }
+
+    @Override
+    public DoubleTensor arange(double start, double end, double stepSize) {
+        return SinglePrecisionDoubleTensor.arange(start, end, stepSize);
+    }
+
+    @Override
+    public DoubleTensor scalar(double scalarValue) {
+        return SinglePrecisionDoubleTensor.scalar(scalarValue);
+    }
+
+    @Override
+    public DoubleTensor concat(int dimension, DoubleTensor... toConcat) {
+        return SinglePrecisionDoubleTensor.concat(dimension, toConcat);
+    }
+}
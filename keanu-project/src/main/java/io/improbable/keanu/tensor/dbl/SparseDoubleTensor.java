@@ -0,0 +1,711 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.TensorShapeValidation;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.LongToDoubleFunction;
+import java.util.stream.IntStream;
+
+import static io.improbable.keanu.tensor.TensorShape.getAbsoluteDimension;
+import static io.improbable.keanu.tensor.dbl.JVMDoubleTensorParallelism.forEachChunk;
+
+/**
+ * A DoubleTensor that only stores its non zero values, for tensors such as one hot encoded design matrices that
+ * are almost entirely zeros.
+ * <p>
+ * Values are stored in coordinate (COO) form as their row first flat index, in increasing order, next to the
+ * value. For a matrix this is compressed sparse row (CSR) form without the row pointers, which are counted when a
+ * product needs them. Operations that map zero to zero, such as multiplying by a scalar, unaryMinus, abs or sqrt,
+ * and adding, subtracting or multiplying another sparse tensor of the same shape, only touch the stored values.
+ * Anything else, such as adding a scalar or exp, switches the tensor to a dense buffer first, as does storing more
+ * than half of its elements.
+ * <p>
+ * Matrix products and single dimension tensor products of a sparse matrix with a dense tensor, on either side,
+ * loop over the stored values only and return a dense tensor, so the gradient of a MatrixMultiplicationVertex with
+ * respect to its dense operand never densifies the sparse one. Multiplying elementwise treats the zeros that aren't
+ * stored as exact zeros, even where the other operand is infinite or NaN.
+ */
+public class SparseDoubleTensor extends LongIndexedDoubleTensor {
+
+    private static final long MAX_DENSE_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * Flat indices of the stored values in increasing order, or null once the tensor is dense.
+     */
+    private long[] indices;
+
+    /**
+     * The stored values, or every value in row first order once the tensor is dense.
+     */
+    private double[] values;
+
+    /**
+     * The number of stored values while the tensor is sparse.
+     */
+    private int size;
+
+    private SparseDoubleTensor(long[] shape, long[] indices, double[] values, int size) {
+        super(shape);
+        this.indices = indices;
+        this.values = values;
+        this.size = size;
+    }
+
+    public static SparseDoubleTensor zeros(long... shape) {
+        return new SparseDoubleTensor(shape, new long[0], new double[0], 0);
+    }
+
+    /**
+     * @param shape       shape of the tensor
+     * @param flatIndices the row first flat index of each value, in any order. Values with the same index are added.
+     * @param values      the values at each index
+     * @return a tensor of the given shape that is zero everywhere else
+     */
+    public static SparseDoubleTensor create(long[] shape, long[] flatIndices, double[] values) {
+        Preconditions.checkArgument(
+            flatIndices.length == values.length,
+            "Number of indices " + flatIndices.length + " does not match number of values " + values.length
+        );
+
+        final long length = TensorShape.getLength(shape);
+        final int[] order = sortedOrder(flatIndices);
+
+        final long[] storedIndices = new long[flatIndices.length];
+        final double[] storedValues = new double[flatIndices.length];
+        int size = 0;
+        for (int i : order) {
+            final long index = flatIndices[i];
+            if (index < 0 || index >= length) {
+                throw new IllegalArgumentException("Index " + index + " is out of bounds for shape " + Arrays.toString(shape));
+            }
+
+            if (size > 0 && storedIndices[size - 1] == index) {
+                storedValues[size - 1] += values[i];
+            } else {
+                storedIndices[size] = index;
+                storedValues[size] = values[i];
+                size++;
+            }
+        }
+
+        final SparseDoubleTensor tensor = new SparseDoubleTensor(shape, storedIndices, storedValues, size);
+        tensor.densifyIfMostlyNonZero();
+        return tensor;
+    }
+
+    private static int[] sortedOrder(long[] flatIndices) {
+        boolean isSorted = true;
+        for (int i = 1; i < flatIndices.length && isSorted; i++) {
+            isSorted = flatIndices[i - 1] <= flatIndices[i];
+        }
+
+        if (isSorted) {
+            return IntStream.range(0, flatIndices.length).toArray();
+        }
+
+        return IntStream.range(0, flatIndices.length)
+            .boxed()
+            .sorted(Comparator.comparingLong(i -> flatIndices[i]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+
+    /**
+     * @param rows          number of rows of the matrix
+     * @param columns       number of columns of the matrix
+     * @param rowPointers   the position in columnIndices and values of the first value of each row, followed by the
+     *                      total number of values
+     * @param columnIndices the column of each value, in increasing order within each row
+     * @param values        the values
+     * @return a matrix of shape [rows, columns] from its compressed sparse row (CSR) form
+     */
+    public static SparseDoubleTensor createCsr(long rows, long columns, int[] rowPointers, int[] columnIndices, double[] values) {
+        Preconditions.checkArgument(
+            rowPointers.length == rows + 1,
+            "Expected " + (rows + 1) + " row pointers but got " + rowPointers.length
+        );
+        Preconditions.checkArgument(
+            columnIndices.length == values.length && rowPointers[rowPointers.length - 1] == values.length,
+            "Row pointers, column indices and values do not describe the same number of values"
+        );
+
+        final long[] indices = new long[values.length];
+        for (int row = 0; row < rows; row++) {
+            Preconditions.checkArgument(rowPointers[row] <= rowPointers[row + 1], "Row pointers must not decrease");
+
+            for (int p = rowPointers[row]; p < rowPointers[row + 1]; p++) {
+                final int column = columnIndices[p];
+                if (column < 0 || column >= columns || (p > rowPointers[row] && column <= columnIndices[p - 1])) {
+                    throw new IllegalArgumentException("Column indices of row " + row + " must be increasing and less than " + columns);
+                }
+                indices[p] = row * columns + column;
+            }
+        }
+
+        final SparseDoubleTensor tensor = new SparseDoubleTensor(new long[]{rows, columns}, indices, values.clone(), values.length);
+        tensor.densifyIfMostlyNonZero();
+        return tensor;
+    }
+
+    /**
+     * @param tensor any DoubleTensor
+     * @return a sparse copy of tensor that stores its non zero values
+     */
+    public static SparseDoubleTensor fromDense(DoubleTensor tensor) {
+        return fromDense(tensor.asFlatDoubleArray(), tensor.getShape());
+    }
+
+    private static SparseDoubleTensor fromDense(double[] dense, long[] shape) {
+        int size = 0;
+        for (double value : dense) {
+            if (value != 0.0) {
+                size++;
+            }
+        }
+
+        if (size > dense.length / 2) {
+            return new SparseDoubleTensor(shape, null, dense, 0);
+        }
+
+        final long[] indices = new long[size];
+        final double[] values = new double[size];
+        for (int i = 0, p = 0; i < dense.length; i++) {
+            if (dense[i] != 0.0) {
+                indices[p] = i;
+                values[p] = dense[i];
+                p++;
+            }
+        }
+
+        return new SparseDoubleTensor(shape, indices, values, size);
+    }
+
+    /**
+     * @return true if this tensor only stores its non zero values, or false if it has switched to a dense buffer
+     */
+    public boolean isSparse() {
+        return indices != null;
+    }
+
+    /**
+     * @return the number of values held in memory, which is the length of the tensor once it's dense
+     */
+    public long getNumberOfStoredValues() {
+        return isSparse() ? size : values.length;
+    }
+
+    private void densify() {
+        if (!isSparse()) {
+            return;
+        }
+
+        final double[] dense = new double[Ints.checkedCast(length)];
+        for (int i = 0; i < size; i++) {
+            dense[(int) indices[i]] = values[i];
+        }
+
+        this.indices = null;
+        this.values = dense;
+        this.size = 0;
+    }
+
+    private void densifyIfMostlyNonZero() {
+        if (isSparse() && size > length / 2 && length <= MAX_DENSE_LENGTH) {
+            densify();
+        }
+    }
+
+    @Override
+    protected double getFlat(long index) {
+        if (!isSparse()) {
+            return values[(int) index];
+        }
+
+        final int position = Arrays.binarySearch(indices, 0, size, index);
+        return position >= 0 ? values[position] : 0.0;
+    }
+
+    @Override
+    protected void setFlat(long index, double value) {
+        if (!isSparse()) {
+            values[(int) index] = value;
+            return;
+        }
+
+        final int position = Arrays.binarySearch(indices, 0, size, index);
+        if (position >= 0) {
+            values[position] = value;
+        } else if (value != 0.0) {
+            insert(-position - 1, index, value);
+        }
+    }
+
+    private void insert(int position, long index, double value) {
+        if (size == indices.length) {
+            final int capacity = Math.max(8, size + (size >> 1));
+            indices = Arrays.copyOf(indices, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        System.arraycopy(indices, position, indices, position + 1, size - position);
+        System.arraycopy(values, position, values, position + 1, size - position);
+        indices[position] = index;
+        values[position] = value;
+        size++;
+
+        densifyIfMostlyNonZero();
+    }
+
+    @Override
+    protected LongIndexedDoubleTensor createZeros(long[] shape) {
+        return zeros(shape);
+    }
+
+    @Override
+    protected LongIndexedDoubleTensor copyWithShape(long[] shape) {
+        if (!isSparse()) {
+            return new SparseDoubleTensor(shape, null, values.clone(), 0);
+        }
+        return new SparseDoubleTensor(shape, Arrays.copyOf(indices, size), Arrays.copyOf(values, size), size);
+    }
+
+    @Override
+    protected void takeStorage(LongIndexedDoubleTensor other) {
+        final SparseDoubleTensor sparse = (SparseDoubleTensor) other;
+        this.indices = sparse.indices;
+        this.values = sparse.values;
+        this.size = sparse.size;
+    }
+
+    /**
+     * Only the stored values are mapped if op maps zero to zero.
+     */
+    @Override
+    protected LongIndexedDoubleTensor unaryOpInPlace(DoubleUnaryOperator op) {
+        if (isSparse() && op.applyAsDouble(0.0) == 0.0) {
+            for (int i = 0; i < size; i++) {
+                values[i] = op.applyAsDouble(values[i]);
+            }
+            return this;
+        }
+
+        densify();
+        return super.unaryOpInPlace(op);
+    }
+
+    /**
+     * Two sparse tensors of the same shape are merged if op maps a pair of zeros to zero. Otherwise an in place
+     * operation densifies this tensor rather than inserting into the middle of its stored values.
+     */
+    @Override
+    protected LongIndexedDoubleTensor binaryOp(DoubleTensor that, DoubleBinaryOperator op, boolean inPlace) {
+        if (isSparse()) {
+            if (that instanceof SparseDoubleTensor && ((SparseDoubleTensor) that).isSparse() &&
+                Arrays.equals(shape, that.getShape()) && op.applyAsDouble(0.0, 0.0) == 0.0) {
+                return merge((SparseDoubleTensor) that, op, inPlace);
+            }
+
+            if (inPlace) {
+                densify();
+            }
+        }
+
+        return super.binaryOp(that, op, inPlace);
+    }
+
+    private SparseDoubleTensor merge(SparseDoubleTensor that, DoubleBinaryOperator op, boolean inPlace) {
+        final long[] mergedIndices = new long[size + that.size];
+        final double[] mergedValues = new double[size + that.size];
+
+        int mergedSize = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < that.size) {
+            final long index;
+            final double value;
+            if (j == that.size || (i < size && indices[i] < that.indices[j])) {
+                index = indices[i];
+                value = op.applyAsDouble(values[i++], 0.0);
+            } else if (i == size || that.indices[j] < indices[i]) {
+                index = that.indices[j];
+                value = op.applyAsDouble(0.0, that.values[j++]);
+            } else {
+                index = indices[i];
+                value = op.applyAsDouble(values[i++], that.values[j++]);
+            }
+
+            if (value != 0.0) {
+                mergedIndices[mergedSize] = index;
+                mergedValues[mergedSize] = value;
+                mergedSize++;
+            }
+        }
+
+        final SparseDoubleTensor result = inPlace ? this : zeros(getShape());
+        result.indices = mergedIndices;
+        result.values = mergedValues;
+        result.size = mergedSize;
+        result.densifyIfMostlyNonZero();
+        return result;
+    }
+
+    @Override
+    public DoubleTensor setAllInPlace(double value) {
+        if (value == 0.0 && isSparse()) {
+            size = 0;
+            return this;
+        }
+
+        densify();
+        return super.setAllInPlace(value);
+    }
+
+    @Override
+    public DoubleTensor times(DoubleTensor that) {
+        if (isSparse() && isBroadcastToThisShape(that.getShape())) {
+            return duplicate().timesInPlace(that);
+        }
+        return super.times(that);
+    }
+
+    /**
+     * Keeps this tensor sparse when that is the same shape or is broadcast up to it, by only multiplying the stored
+     * values.
+     */
+    @Override
+    public DoubleTensor timesInPlace(DoubleTensor that) {
+        final long[] thatShape = that.getShape();
+        if (!isSparse() || !isBroadcastToThisShape(thatShape) ||
+            (that instanceof SparseDoubleTensor && Arrays.equals(shape, thatShape))) {
+            return super.timesInPlace(that);
+        }
+
+        final LongToDoubleFunction right = elementsOf(that);
+        final long[] thatStride = broadcastStride(thatShape);
+        for (int i = 0; i < size; i++) {
+            values[i] *= right.applyAsDouble(positionIn(indices[i], thatStride));
+        }
+
+        return this;
+    }
+
+    private static LongToDoubleFunction elementsOf(DoubleTensor tensor) {
+        if (tensor instanceof LongIndexedDoubleTensor) {
+            return ((LongIndexedDoubleTensor) tensor)::getFlat;
+        }
+
+        final double[] values = tensor.asFlatDoubleArray();
+        return i -> values[(int) i];
+    }
+
+    private boolean isBroadcastToThisShape(long[] thatShape) {
+        if (thatShape.length > shape.length) {
+            return false;
+        }
+
+        final long[] paddedShape = TensorShape.shapeToDesiredRankByPrependingOnes(thatShape, shape.length);
+        for (int d = 0; d < shape.length; d++) {
+            if (paddedShape[d] != shape[d] && paddedShape[d] != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the stride of each dimension of this tensor in a tensor of thatShape that is broadcast up to it,
+     * which is zero for the broadcast dimensions
+     */
+    private long[] broadcastStride(long[] thatShape) {
+        final long[] paddedShape = TensorShape.shapeToDesiredRankByPrependingOnes(thatShape, shape.length);
+        final long[] paddedStride = TensorShape.getRowFirstStride(paddedShape);
+        for (int d = 0; d < shape.length; d++) {
+            if (paddedShape[d] != shape[d]) {
+                paddedStride[d] = 0;
+            }
+        }
+        return paddedStride;
+    }
+
+    /**
+     * @return the flat index in a tensor with otherStride of the element at flat index in this tensor
+     */
+    private long positionIn(long index, long[] otherStride) {
+        long position = 0;
+        for (int d = shape.length - 1; d >= 0; d--) {
+            position += (index % shape[d]) * otherStride[d];
+            index /= shape[d];
+        }
+        return position;
+    }
+
+    @Override
+    public Double sum() {
+        if (!isSparse()) {
+            return super.sum();
+        }
+
+        double result = 0;
+        for (int i = 0; i < size; i++) {
+            result += values[i];
+        }
+        return result;
+    }
+
+    @Override
+    public DoubleTensor sum(int... overDimensions) {
+        if (!isSparse()) {
+            return super.sum(overDimensions);
+        }
+
+        overDimensions = TensorShape.getAbsoluteDimensions(this.shape.length, overDimensions);
+        final long[] resultShape = TensorShape.getSummationResultShape(shape, overDimensions);
+        final long[] resultStride = TensorShape.getRowFirstStride(resultShape);
+
+        final boolean[] isSummed = new boolean[shape.length];
+        for (int dimension : overDimensions) {
+            isSummed[dimension] = true;
+        }
+
+        final long[] strideInResult = new long[shape.length];
+        for (int d = 0, r = 0; d < shape.length; d++) {
+            if (!isSummed[d]) {
+                strideInResult[d] = resultStride[r++];
+            }
+        }
+
+        final double[] result = new double[TensorShape.getLengthAsInt(resultShape)];
+        for (int i = 0; i < size; i++) {
+            result[(int) positionIn(indices[i], strideInResult)] += values[i];
+        }
+
+        return fromDense(result, resultShape);
+    }
+
+    @Override
+    public double max() {
+        if (!isSparse()) {
+            return super.max();
+        }
+
+        double result = size < length ? 0.0 : -Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            result = Math.max(result, values[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public double min() {
+        if (!isSparse()) {
+            return super.min();
+        }
+
+        double result = size < length ? 0.0 : Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            result = Math.min(result, values[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public double[] asFlatDoubleArray() {
+        if (!isSparse()) {
+            return values.clone();
+        }
+
+        final double[] dense = new double[Ints.checkedCast(length)];
+        for (int i = 0; i < size; i++) {
+            dense[(int) indices[i]] = values[i];
+        }
+        return dense;
+    }
+
+    @Override
+    public DoubleTensor permute(int... rearrange) {
+        if (isSparse() && shape.length == 2 && rearrange.length == 2 && rearrange[0] == 1 && rearrange[1] == 0) {
+            return transposeMatrix();
+        }
+        return super.permute(rearrange);
+    }
+
+    /**
+     * Counting sort of the stored values by column.
+     */
+    private SparseDoubleTensor transposeMatrix() {
+        final long rows = shape[0];
+        final int columns = Ints.checkedCast(shape[1]);
+
+        final int[] columnPointers = new int[columns + 1];
+        for (int i = 0; i < size; i++) {
+            columnPointers[(int) (indices[i] % columns) + 1]++;
+        }
+        for (int c = 0; c < columns; c++) {
+            columnPointers[c + 1] += columnPointers[c];
+        }
+
+        final long[] transposedIndices = new long[size];
+        final double[] transposedValues = new double[size];
+        for (int i = 0; i < size; i++) {
+            final long row = indices[i] / columns;
+            final int column = (int) (indices[i] % columns);
+            final int position = columnPointers[column]++;
+            transposedIndices[position] = column * rows + row;
+            transposedValues[position] = values[i];
+        }
+
+        return new SparseDoubleTensor(new long[]{shape[1], shape[0]}, transposedIndices, transposedValues, size);
+    }
+
+    /**
+     * @return the position of the first stored value of each row of this matrix, followed by the number of values
+     */
+    private int[] rowPointers(int rows, long columns) {
+        final int[] rowPointers = new int[rows + 1];
+        for (int i = 0; i < size; i++) {
+            rowPointers[(int) (indices[i] / columns) + 1]++;
+        }
+        for (int r = 0; r < rows; r++) {
+            rowPointers[r + 1] += rowPointers[r];
+        }
+        return rowPointers;
+    }
+
+    @Override
+    public DoubleTensor matrixMultiply(DoubleTensor that) {
+        final long[] thatShape = that.getShape();
+        if (!isSparse() || shape.length != 2 || thatShape.length != 2) {
+            return super.matrixMultiply(that);
+        }
+
+        if (shape[1] != thatShape[0]) {
+            throw new IllegalArgumentException("Cannot matrix multiply shape " + Arrays.toString(shape) + " shape " + Arrays.toString(thatShape));
+        }
+
+        final int M = Ints.checkedCast(shape[0]);
+        final long K = shape[1];
+        final int N = Ints.checkedCast(thatShape[1]);
+        final double[] B = that.asFlatDoubleArray();
+        final double[] C = new double[Ints.checkedCast((long) M * N)];
+        final int[] rowPointers = rowPointers(M, K);
+        final long[] indices = this.indices;
+        final double[] values = this.values;
+
+        forEachChunk(M, Math.max(1, size / Math.max(M, 1)) * N, (from, to) -> {
+            for (int m = from; m < to; m++) {
+                final int row = m * N;
+                for (int p = rowPointers[m]; p < rowPointers[m + 1]; p++) {
+                    final int column = (int) (indices[p] - m * K) * N;
+                    final double a = values[p];
+                    for (int n = 0; n < N; n++) {
+                        C[row + n] += a * B[column + n];
+                    }
+                }
+            }
+        });
+
+        return DoubleTensor.create(C, new long[]{M, N});
+    }
+
+    /**
+     * @return left matrix multiplied by this tensor, for a dense left that can't see the stored values
+     */
+    DoubleTensor leftMatrixMultiply(DoubleTensor left) {
+        final long[] leftShape = left.getShape();
+        if (!isSparse() || shape.length != 2 || leftShape.length != 2) {
+            return left.matrixMultiply(JVMDoubleTensor.create(asFlatDoubleArray(), getShape()));
+        }
+
+        if (leftShape[1] != shape[0]) {
+            throw new IllegalArgumentException("Cannot matrix multiply shape " + Arrays.toString(leftShape) + " shape " + Arrays.toString(shape));
+        }
+
+        final int M = Ints.checkedCast(leftShape[0]);
+        final int K = Ints.checkedCast(shape[0]);
+        final int N = Ints.checkedCast(shape[1]);
+        final double[] A = left.asFlatDoubleArray();
+        final double[] C = new double[Ints.checkedCast((long) M * N)];
+        final int[] rowPointers = rowPointers(K, N);
+        final long[] indices = this.indices;
+        final double[] values = this.values;
+
+        forEachChunk(M, Math.max(1, size), (from, to) -> {
+            for (int m = from; m < to; m++) {
+                final int row = m * N;
+                for (int k = 0; k < K; k++) {
+                    final double a = A[m * K + k];
+                    final long rowStart = (long) k * N;
+                    for (int p = rowPointers[k]; p < rowPointers[k + 1]; p++) {
+                        C[row + (int) (indices[p] - rowStart)] += a * values[p];
+                    }
+                }
+            }
+        });
+
+        return DoubleTensor.create(C, new long[]{M, N});
+    }
+
+    /**
+     * Contracting a single dimension of a sparse matrix is a matrix product with the other operand flattened to a
+     * matrix.
+     */
+    @Override
+    public DoubleTensor tensorMultiply(DoubleTensor that, int[] dimsLeft, int[] dimsRight) {
+        if (!isSparse() || shape.length != 2 || dimsLeft.length != 1 || dimsRight.length != 1) {
+            return super.tensorMultiply(that, dimsLeft, dimsRight);
+        }
+
+        final long[] thatShape = that.getShape();
+        final int contracted = getAbsoluteDimension(dimsLeft[0], shape.length);
+        final int thatContracted = getAbsoluteDimension(dimsRight[0], thatShape.length);
+        final long[] resultShape = TensorShapeValidation.getTensorMultiplyResultShape(
+            shape, thatShape, new int[]{contracted}, new int[]{thatContracted}
+        );
+
+        final SparseDoubleTensor matrix = contracted == 1 ? this : transposeMatrix();
+        final DoubleTensor thatMatrix = that
+            .permute(TensorShape.slideDimension(thatContracted, 0, thatShape.length))
+            .reshape(thatShape[thatContracted], lengthWithout(thatShape, thatContracted));
+
+        return matrix.matrixMultiply(thatMatrix).reshape(resultShape);
+    }
+
+    /**
+     * @return left tensor multiplied by this tensor, for a dense left that can't see the stored values
+     */
+    DoubleTensor tensorMultiplyFromLeft(DoubleTensor left, int[] dimsLeft, int[] dimsRight) {
+        if (!isSparse() || shape.length != 2 || dimsLeft.length != 1 || dimsRight.length != 1) {
+            return left.tensorMultiply(JVMDoubleTensor.create(asFlatDoubleArray(), getShape()), dimsLeft, dimsRight);
+        }
+
+        final long[] leftShape = left.getShape();
+        final int leftContracted = getAbsoluteDimension(dimsLeft[0], leftShape.length);
+        final int contracted = getAbsoluteDimension(dimsRight[0], shape.length);
+        final long[] resultShape = TensorShapeValidation.getTensorMultiplyResultShape(
+            leftShape, shape, new int[]{leftContracted}, new int[]{contracted}
+        );
+
+        final SparseDoubleTensor matrix = contracted == 0 ? this : transposeMatrix();
+        final DoubleTensor leftMatrix = left
+            .permute(TensorShape.slideDimension(leftContracted, leftShape.length - 1, leftShape.length))
+            .reshape(lengthWithout(leftShape, leftContracted), leftShape[leftContracted]);
+
+        return matrix.leftMatrixMultiply(leftMatrix).reshape(resultShape);
+    }
+
+    private static long lengthWithout(long[] shape, int dimension) {
+        long length = 1;
+        for (int d = 0; d < shape.length; d++) {
+            if (d != dimension) {
+                length *= shape[d];
+            }
+        }
+        return length;
+    }
+}
@@ -3,13 +3,14 @@ package io.improbable.keanu.tensor.intgr;
 import io.improbable.keanu.kotlin.IntegerOperators;
 import io.improbable.keanu.tensor.NumberTensor;
 import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.TensorShape;
 import io.improbable.keanu.tensor.bool.BooleanTensor;
 import org.apache.commons.lang3.ArrayUtils;
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
 
 import java.util.Arrays;
 import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
 
 import static io.improbable.keanu.tensor.TensorShape.getAbsoluteDimension;
 
@@ -21,11 +22,15 @@ public interface IntegerTensor extends NumberTensor<Integer, IntegerTensor>, Int
 
     IntegerTensor TWO_SCALAR = scalar(2);
 
+    static void setFactory(IntegerTensorFactory factory) {
+        IntegerTensorFactoryHolder.factory = factory;
+    }
+
     static IntegerTensor create(int value, long[] shape) {
         if (Arrays.equals(shape, Tensor.SCALAR_SHAPE)) {
             return new ScalarIntegerTensor(value);
         } else {
-            return Nd4jIntegerTensor.create(value, shape);
+            return IntegerTensorFactoryHolder.factory.create(value, shape);
         }
     }
 
@@ -33,7 +38,7 @@ public interface IntegerTensor extends NumberTensor<Integer, IntegerTensor>, Int
         if (Arrays.equals(shape, Tensor.SCALAR_SHAPE) && values.length == 1) {
             return new ScalarIntegerTensor(values[0]);
         } else {
-            return Nd4jIntegerTensor.create(values, shape);
+            return IntegerTensorFactoryHolder.factory.create(values, shape);
         }
     }
 
@@ -45,7 +50,7 @@ public interface IntegerTensor extends NumberTensor<Integer, IntegerTensor>, Int
         if (Arrays.equals(shape, Tensor.SCALAR_SHAPE)) {
             return new ScalarIntegerTensor(1);
         } else {
-            return Nd4jIntegerTensor.ones(shape);
+            return IntegerTensorFactoryHolder.factory.ones(shape);
         }
     }
 
@@ -53,7 +58,7 @@ public interface IntegerTensor extends NumberTensor<Integer, IntegerTensor>, Int
         if (n == 1) {
             return new ScalarIntegerTensor(1);
         } else {
-            return Nd4jIntegerTensor.eye(n);
+            return IntegerTensorFactoryHolder.factory.eye(n);
         }
     }
 
@@ -61,7 +66,7 @@ public interface IntegerTensor extends NumberTensor<Integer, IntegerTensor>, Int
         if (Arrays.equals(shape, Tensor.SCALAR_SHAPE)) {
             return new ScalarIntegerTensor(0);
         } else {
-            return Nd4jIntegerTensor.zeros(shape);
+            return IntegerTensorFactoryHolder.factory.zeros(shape);
         }
     }
 
@@ -115,15 +120,7 @@ public interface IntegerTensor extends NumberTensor<Integer, IntegerTensor>, Int
      * IntegerTensor.concat(0, A, B, C) gives IntegerTensor.ones(12, 2)
      */
     static IntegerTensor concat(int dimension, IntegerTensor... toConcat) {
-        INDArray[] concatAsINDArray = new INDArray[toConcat.length];
-        for (int i = 0; i < toConcat.length; i++) {
-            concatAsINDArray[i] = Nd4jIntegerTensor.unsafeGetNd4J(toConcat[i]).dup();
-            if (concatAsINDArray[i].shape().length == 0) {
-                concatAsINDArray[i] = concatAsINDArray[i].reshape(1);
-            }
-        }
-        INDArray concat = Nd4j.concat(dimension, concatAsINDArray);
-        return new Nd4jIntegerTensor(concat);
+        return IntegerTensorFactoryHolder.factory.concat(dimension, toConcat);
     }
 
     static IntegerTensor min(IntegerTensor a, IntegerTensor b) {
@@ -137,6 +134,46 @@ public interface IntegerTensor extends NumberTensor<Integer, IntegerTensor>, Int
     @Override
     IntegerTensor setValue(Integer value, long... index);
 
+    /**
+     * Like {@link #getValue(long...)} but without boxing the value.
+     *
+     * @param index the index of the element, or its flat index if a single index is given
+     * @return the value of the element
+     */
+    default int getInt(long... index) {
+        return getValue(index);
+    }
+
+    @Override
+    IntegerFlattenedView getFlattenedView();
+
+    /**
+     * A {@link FlattenedView} that reads and writes elements as primitive ints.
+     */
+    interface IntegerFlattenedView extends FlattenedView<Integer> {
+
+        int getInt(long index);
+
+        int getIntOrScalar(long index);
+
+        void setInt(long index, int value);
+
+        @Override
+        default Integer get(long index) {
+            return getInt(index);
+        }
+
+        @Override
+        default Integer getOrScalar(long index) {
+            return getIntOrScalar(index);
+        }
+
+        @Override
+        default void set(long index, Integer value) {
+            setInt(index, value);
+        }
+    }
+
     @Override
     IntegerTensor reshape(long... newShape);
 
@@ -199,6 +236,56 @@ public interface IntegerTensor extends NumberTensor<Integer, IntegerTensor>, Int
 
     IntegerTensor apply(Function<Integer, Integer> function);
 
+    /**
+     * Like {@link #apply(Function)} but without boxing each element. This isn't an overload of apply as a
+     * lambda such as x -&gt; x * 2 would then be ambiguous.
+     *
+     * @param function the function to apply to each element
+     * @return a new tensor of the function applied to each element of this tensor
+     */
+    default IntegerTensor applyInt(IntUnaryOperator function) {
+        return duplicate().applyIntInPlace(function);
+    }
+
+    default IntegerTensor applyIntInPlace(IntUnaryOperator function) {
+        final IntegerFlattenedView values = getFlattenedView();
+        final long length = values.size();
+
+        for (long i = 0; i < length; i++) {
+            values.setInt(i, function.applyAsInt(values.getInt(i)));
+        }
+
+        return this;
+    }
+
+    /**
+     * Applies a function to each pair of elements of this tensor and that, where the tensors are broadcast
+     * together in the same way as for {@link #times(IntegerTensor)}.
+     *
+     * @param that     the right operand
+     * @param function the function to apply, which is passed the element of this tensor first
+     * @return a new tensor of the broadcast shape
+     */
+    default IntegerTensor applyInt(IntegerTensor that, IntBinaryOperator function) {
+        final long[] resultShape = TensorShape.getBroadcastResultShape(getShape(), that.getShape());
+        final IntegerTensor result = Arrays.equals(getShape(), resultShape) ?
+            duplicate() :
+            IntegerTensor.ones(resultShape).times(this);
+        final IntegerTensor right = Arrays.equals(that.getShape(), resultShape) ?
+            that :
+            IntegerTensor.ones(resultShape).times(that);
+
+        final IntegerFlattenedView resultValues = result.getFlattenedView();
+        final IntegerFlattenedView rightValues = right.getFlattenedView();
+        final long length = resultValues.size();
+
+        for (long i = 0; i < length; i++) {
+            resultValues.setInt(i, function.applyAsInt(resultValues.getInt(i), rightValues.getInt(i)));
+        }
+
+        return result;
+    }
+
     @Override
     IntegerTensor slice(int dimension, long index);
 
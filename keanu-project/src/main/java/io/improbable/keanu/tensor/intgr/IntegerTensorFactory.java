@@ -0,0 +1,20 @@
+package io.improbable.keanu.tensor.intgr;
+
+public interface IntegerTensorFactory {
+
+    IntegerTensor create(int value, long[] shape);
+
+    IntegerTensor create(int[] values, long[] shape);
+
+    IntegerTensor create(int[] values);
+
+    IntegerTensor ones(long[] shape);
+
+    IntegerTensor zeros(long[] shape);
+
+    IntegerTensor eye(long n);
+
+    IntegerTensor scalar(int scalarValue);
+
+    IntegerTensor concat(int dimension, IntegerTensor... toConcat);
+}
@@ -0,0 +1,13 @@
+package io.improbable.keanu.tensor.intgr;
+
+/**
+ * Holds the factory used by the static creation methods on IntegerTensor. Interfaces
+ * can't have mutable static fields so it lives here rather than on IntegerTensor itself.
+ */
+class IntegerTensorFactoryHolder {
+
+    static IntegerTensorFactory factory = new JVMIntegerTensorFactory();
+
+    private IntegerTensorFactoryHolder() {
+    }
+}
@@ -0,0 +1,933 @@
+package io.improbable.keanu.tensor.intgr;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.TensorShapeValidation;
+import io.improbable.keanu.tensor.bool.BooleanTensor;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import org.apache.commons.lang3.ArrayUtils;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+
+import static io.improbable.keanu.tensor.TensorShapeValidation.checkShapesMatch;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.ADD;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.DIV;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.EQ_MASK;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.GTE_MASK;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.GT_MASK;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.LTE_MASK;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.LT_MASK;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.MAX;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.MIN;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.MUL;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.POW;
+import static io.improbable.keanu.tensor.intgr.JVMIntegerTensorBroadcast.BroadcastableIntegerOperation.SUB;
+import static java.util.Arrays.copyOf;
+
+/**
+ * Class for representing n-dimensional arrays of integers. This is
+ * backed by a plain int[] in row first order so that small and medium
+ * sized tensors avoid the native call and off-heap allocation overhead of Nd4j.
+ */
+public class JVMIntegerTensor implements IntegerTensor {
+
+    private long[] shape;
+    private long[] stride;
+    private int[] buffer;
+
+    private JVMIntegerTensor(int value) {
+        this.shape = new long[0];
+        this.stride = new long[0];
+        this.buffer = new int[]{value};
+    }
+
+    private JVMIntegerTensor(int[] data, long[] shape) {
+
+        if (data.length != TensorShape.getLength(shape)) {
+            throw new IllegalArgumentException("Shape " + Arrays.toString(shape) + " does not match buffer size " + data.length);
+        }
+
+        this.shape = shape;
+        this.stride = TensorShape.getRowFirstStride(shape);
+        this.buffer = data;
+    }
+
+    public static JVMIntegerTensor scalar(int scalarValue) {
+        return new JVMIntegerTensor(scalarValue);
+    }
+
+    public static JVMIntegerTensor create(int[] values, long... shape) {
+        return new JVMIntegerTensor(values, shape);
+    }
+
+    public static JVMIntegerTensor create(int value, long... shape) {
+        long length = TensorShape.getLength(shape);
+        int[] buffer = new int[Ints.checkedCast(length)];
+
+        if (value != 0) {
+            Arrays.fill(buffer, value);
+        }
+
+        return new JVMIntegerTensor(buffer, shape);
+    }
+
+    public static JVMIntegerTensor ones(long... shape) {
+        return create(1, shape);
+    }
+
+    public static JVMIntegerTensor zeros(long... shape) {
+        return create(0, shape);
+    }
+
+    public static JVMIntegerTensor eye(long n) {
+
+        int[] buffer = new int[Ints.checkedCast(n * n)];
+        int nInt = Ints.checkedCast(n);
+        for (int i = 0; i < n; i++) {
+            buffer[i * nInt + i] = 1;
+        }
+        return new JVMIntegerTensor(buffer, new long[]{n, n});
+    }
+
+    /**
+     * Concatenates by copying contiguous blocks from each tensor rather than permuting the
+     * concat dimension to dimension zero.
+     *
+     * @param dimension the dimension along which the tensors will be joined
+     * @param toConcat  an array of IntegerTensor
+     * @return an IntegerTensor with toConcat joined along an existing dimension
+     */
+    public static JVMIntegerTensor concat(int dimension, IntegerTensor... toConcat) {
+        Preconditions.checkArgument(toConcat.length > 0);
+
+        long[][] shapes = new long[toConcat.length][];
+        for (int i = 0; i < toConcat.length; i++) {
+            long[] shape = toConcat[i].getShape();
+            shapes[i] = shape.length == 0 ? new long[]{1} : shape;
+        }
+
+        long[] concatShape = getConcatResultShape(dimension, shapes);
+
+        int outerLength = 1;
+        for (int i = 0; i < dimension; i++) {
+            outerLength *= concatShape[i];
+        }
+
+        int innerLength = 1;
+        for (int i = dimension + 1; i < concatShape.length; i++) {
+            innerLength *= concatShape[i];
+        }
+
+        int[] concatBuffer = new int[TensorShape.getLengthAsInt(concatShape)];
+        int bufferPosition = 0;
+
+        int[][] buffers = new int[toConcat.length][];
+        for (int i = 0; i < toConcat.length; i++) {
+            buffers[i] = getRawBufferIfJVMTensor(toConcat[i]);
+        }
+
+        for (int outer = 0; outer < outerLength; outer++) {
+            for (int i = 0; i < toConcat.length; i++) {
+                int blockLength = Ints.checkedCast(shapes[i][dimension] * innerLength);
+                System.arraycopy(buffers[i], outer * blockLength, concatBuffer, bufferPosition, blockLength);
+                bufferPosition += blockLength;
+            }
+        }
+
+        return new JVMIntegerTensor(concatBuffer, concatShape);
+    }
+
+    private static long[] getConcatResultShape(int dimension, long[][] shapes) {
+
+        long[] firstShape = shapes[0];
+
+        if (dimension < 0 || dimension >= firstShape.length) {
+            throw new IllegalArgumentException("Cannot concat shape " + Arrays.toString(firstShape) + " on dimension " + dimension);
+        }
+
+        long[] concatShape = copyOf(firstShape, firstShape.length);
+
+        for (int i = 1; i < shapes.length; i++) {
+            long[] cShape = shapes[i];
+
+            if (cShape.length != concatShape.length) {
+                throw new IllegalArgumentException("Cannot concat shape " + Arrays.toString(cShape));
+            }
+
+            for (int dim = 0; dim < concatShape.length; dim++) {
+                if (dim == dimension) {
+                    concatShape[dimension] += cShape[dimension];
+                } else if (cShape[dim] != concatShape[dim]) {
+                    throw new IllegalArgumentException("Cannot concat shape " + Arrays.toString(cShape));
+                }
+            }
+        }
+
+        return concatShape;
+    }
+
+    private int[] newBufferOfSameLength() {
+        return new int[buffer.length];
+    }
+
+    private int[] bufferCopy() {
+        return copyOf(buffer, buffer.length);
+    }
+
+    private long[] shapeCopy() {
+        return copyOf(shape, shape.length);
+    }
+
+    private static int[] getRawBufferIfJVMTensor(IntegerTensor tensor) {
+        if (tensor instanceof JVMIntegerTensor) {
+            return ((JVMIntegerTensor) tensor).buffer;
+        } else {
+            return tensor.asFlatIntegerArray();
+        }
+    }
+
+    @Override
+    public int getRank() {
+        return shape.length;
+    }
+
+    @Override
+    public long[] getShape() {
+        return shapeCopy();
+    }
+
+    @Override
+    public long[] getStride() {
+        return copyOf(stride, stride.length);
+    }
+
+    @Override
+    public long getLength() {
+        return buffer.length;
+    }
+
+    @Override
+    public Integer getValue(long... index) {
+        return buffer[Ints.checkedCast(getFlatIndex(index))];
+    }
+
+    @Override
+    public int getInt(long... index) {
+        return buffer[Ints.checkedCast(getFlatIndex(index))];
+    }
+
+    @Override
+    public IntegerTensor setValue(Integer value, long... index) {
+        buffer[Ints.checkedCast(getFlatIndex(index))] = value;
+        return this;
+    }
+
+    private long getFlatIndex(long... index) {
+        if (index.length == 1) {
+            return index[0];
+        } else {
+            if (index.length != shape.length) {
+                throw new IllegalArgumentException("Cannot get index " + Arrays.toString(index) + " for shape " + Arrays.toString(shape));
+            }
+            return TensorShape.getFlatIndex(shape, stride, index);
+        }
+    }
+
+    @Override
+    public Integer scalar() {
+        if (buffer.length > 1) {
+            throw new IllegalArgumentException("Not a scalar");
+        }
+        return buffer[0];
+    }
+
+    @Override
+    public IntegerTensor duplicate() {
+        return new JVMIntegerTensor(bufferCopy(), shapeCopy());
+    }
+
+    @Override
+    public IntegerTensor reshape(long... newShape) {
+
+        long newLength = 1;
+        int negativeDimension = -1;
+        long[] newShapeCopy = copyOf(newShape, newShape.length);
+
+        for (int i = 0; i < newShapeCopy.length; i++) {
+
+            long dimILength = newShapeCopy[i];
+            if (dimILength > 0) {
+                newLength *= dimILength;
+            } else if (dimILength < 0) {
+                if (negativeDimension >= 0) {
+                    throw new IllegalArgumentException("Cannot reshape " + Arrays.toString(shape) + " to " + Arrays.toString(newShapeCopy));
+                }
+                negativeDimension = i;
+            }
+        }
+
+        if (newLength != buffer.length || negativeDimension >= 0) {
+            if (negativeDimension < 0) {
+                throw new IllegalArgumentException("Cannot reshape " + Arrays.toString(shape) + " to " + Arrays.toString(newShapeCopy));
+            } else {
+                newShapeCopy[negativeDimension] = buffer.length / newLength;
+            }
+        }
+
+        return new JVMIntegerTensor(bufferCopy(), newShapeCopy);
+    }
+
+    public IntegerTensor permute(int... rearrange) {
+        Preconditions.checkArgument(rearrange.length == shape.length);
+        long[] resultShape = TensorShape.getPermutedResultShape(shape, rearrange);
+        long[] resultStride = TensorShape.getRowFirstStride(resultShape);
+        int[] newBuffer = newBufferOfSameLength();
+
+        for (int i = 0; i < buffer.length; i++) {
+            long[] shapeIndices = TensorShape.getShapeIndices(shape, stride, i);
+            long[] permutedIndex = new long[shapeIndices.length];
+
+            for (int p = 0; p < permutedIndex.length; p++) {
+                permutedIndex[p] = shapeIndices[rearrange[p]];
+            }
+
+            int j = Ints.checkedCast(TensorShape.getFlatIndex(resultShape, resultStride, permutedIndex));
+
+            newBuffer[j] = buffer[i];
+        }
+
+        return new JVMIntegerTensor(newBuffer, resultShape);
+    }
+
+    @Override
+    public IntegerTensor diag() {
+        int n = buffer.length;
+        int[] newBuffer = new int[Ints.checkedCast((long) n * n)];
+        for (int i = 0; i < n; i++) {
+            newBuffer[i * n + i] = buffer[i];
+        }
+
+        return new JVMIntegerTensor(newBuffer, new long[]{n, n});
+    }
+
+    @Override
+    public IntegerTensor transpose() {
+        if (shape.length != 2) {
+            throw new IllegalArgumentException("Cannot transpose rank " + shape.length);
+        }
+        return permute(1, 0);
+    }
+
+    @Override
+    public Integer sum() {
+        int result = 0;
+        for (int i = 0; i < buffer.length; i++) {
+            result += buffer[i];
+        }
+        return result;
+    }
+
+    @Override
+    public IntegerTensor sum(int... overDimensions) {
+
+        overDimensions = TensorShape.getAbsoluteDimensions(this.shape.length, overDimensions);
+
+        long[] resultShape = TensorShape.getSummationResultShape(shape, overDimensions);
+        long[] resultStride = TensorShape.getRowFirstStride(resultShape);
+        int[] newBuffer = new int[TensorShape.getLengthAsInt(resultShape)];
+
+        for (int i = 0; i < buffer.length; i++) {
+
+            long[] shapeIndices = ArrayUtils.removeAll(TensorShape.getShapeIndices(shape, stride, i), overDimensions);
+
+            int j = Ints.checkedCast(TensorShape.getFlatIndex(resultShape, resultStride, shapeIndices));
+
+            newBuffer[j] += buffer[i];
+        }
+
+        return new JVMIntegerTensor(newBuffer, resultShape);
+    }
+
+    @Override
+    public DoubleTensor toDouble() {
+        return DoubleTensor.create(asFlatDoubleArray(), shapeCopy());
+    }
+
+    @Override
+    public IntegerTensor toInteger() {
+        return duplicate();
+    }
+
+    @Override
+    public IntegerTensor minus(int value) {
+        return duplicate().minusInPlace(value);
+    }
+
+    @Override
+    public IntegerTensor plus(int value) {
+        return duplicate().plusInPlace(value);
+    }
+
+    @Override
+    public IntegerTensor times(int value) {
+        return duplicate().timesInPlace(value);
+    }
+
+    @Override
+    public IntegerTensor div(int value) {
+        return duplicate().divInPlace(value);
+    }
+
+    @Override
+    public IntegerTensor pow(int exponent) {
+        return duplicate().powInPlace(exponent);
+    }
+
+    @Override
+    public IntegerTensor pow(IntegerTensor exponent) {
+        return duplicate().powInPlace(exponent);
+    }
+
+    @Override
+    public IntegerTensor minus(IntegerTensor that) {
+        return duplicate().minusInPlace(that);
+    }
+
+    @Override
+    public IntegerTensor plus(IntegerTensor that) {
+        return duplicate().plusInPlace(that);
+    }
+
+    @Override
+    public IntegerTensor times(IntegerTensor that) {
+        return duplicate().timesInPlace(that);
+    }
+
+    @Override
+    public IntegerTensor div(IntegerTensor that) {
+        return duplicate().divInPlace(that);
+    }
+
+    @Override
+    public IntegerTensor matrixMultiply(IntegerTensor that) {
+
+        final long[] thatShape = that.getShape();
+        if (shape.length != 2 || thatShape.length != 2 || shape[1] != thatShape[0]) {
+            throw new IllegalArgumentException("Cannot matrix multiply shape " + Arrays.toString(shape) + " shape " + Arrays.toString(thatShape));
+        }
+
+        final int M = Ints.checkedCast(shape[0]);
+        final int K = Ints.checkedCast(shape[1]);
+        final int N = Ints.checkedCast(thatShape[1]);
+
+        final int[] A = buffer;
+        final int[] B = getRawBufferIfJVMTensor(that);
+        final int[] C = new int[Ints.checkedCast((long) M * N)];
+
+        for (int i = 0; i < M; i++) {
+            for (int k = 0; k < K; k++) {
+                final int a = A[i * K + k];
+                if (a != 0) {
+                    for (int j = 0; j < N; j++) {
+                        C[i * N + j] += a * B[k * N + j];
+                    }
+                }
+            }
+        }
+
+        return new JVMIntegerTensor(C, new long[]{M, N});
+    }
+
+    @Override
+    public IntegerTensor tensorMultiply(IntegerTensor value, int[] dimLeft, int[] dimsRight) {
+        return toDouble().tensorMultiply(value.toDouble(), dimLeft, dimsRight).toInteger();
+    }
+
+    @Override
+    public IntegerTensor unaryMinus() {
+        return duplicate().unaryMinusInPlace();
+    }
+
+    @Override
+    public IntegerTensor abs() {
+        return duplicate().absInPlace();
+    }
+
+    @Override
+    public int argMax() {
+        int max = Integer.MIN_VALUE;
+        int argMax = 0;
+        for (int i = 0; i < buffer.length; i++) {
+            if (buffer[i] > max) {
+                max = buffer[i];
+                argMax = i;
+            }
+        }
+        return argMax;
+    }
+
+    @Override
+    public IntegerTensor argMax(int axis) {
+        TensorShapeValidation.checkDimensionExistsInShape(axis, shape);
+
+        int outerLength = 1;
+        for (int i = 0; i < axis; i++) {
+            outerLength *= shape[i];
+        }
+
+        final int axisLength = Ints.checkedCast(shape[axis]);
+        final int innerLength = buffer.length / (outerLength * axisLength);
+
+        int[] maxIndex = new int[outerLength * innerLength];
+
+        for (int outer = 0; outer < outerLength; outer++) {
+            for (int inner = 0; inner < innerLength; inner++) {
+
+                int offset = outer * axisLength * innerLength + inner;
+                int max = buffer[offset];
+                int argMax = 0;
+
+                for (int k = 1; k < axisLength; k++) {
+                    int value = buffer[offset + k * innerLength];
+                    if (value > max) {
+                        max = value;
+                        argMax = k;
+                    }
+                }
+
+                maxIndex[outer * innerLength + inner] = argMax;
+            }
+        }
+
+        return new JVMIntegerTensor(maxIndex, TensorShape.removeDimension(axis, shape));
+    }
+
+    @Override
+    public IntegerTensor getGreaterThanMask(IntegerTensor greaterThanThis) {
+        return broadcastableBinaryOp(GT_MASK, greaterThanThis, false);
+    }
+
+    @Override
+    public IntegerTensor getGreaterThanOrEqualToMask(IntegerTensor greaterThanOrEqualToThis) {
+        return broadcastableBinaryOp(GTE_MASK, greaterThanOrEqualToThis, false);
+    }
+
+    @Override
+    public IntegerTensor getLessThanMask(IntegerTensor lessThanThis) {
+        return broadcastableBinaryOp(LT_MASK, lessThanThis, false);
+    }
+
+    @Override
+    public IntegerTensor getLessThanOrEqualToMask(IntegerTensor lessThanOrEqualToThis) {
+        return broadcastableBinaryOp(LTE_MASK, lessThanOrEqualToThis, false);
+    }
+
+    @Override
+    public IntegerTensor setWithMaskInPlace(IntegerTensor mask, Integer value) {
+        if (getLength() != mask.getLength()) {
+            throw new IllegalArgumentException(
+                "The lengths of the tensor and mask must match, but got tensor length: " + getLength()
+                    + ", mask length: " + mask.getLength()
+            );
+        }
+
+        int[] maskBuffer = getRawBufferIfJVMTensor(mask);
+
+        for (int i = 0; i < buffer.length; i++) {
+            if (maskBuffer[i] == 1) {
+                buffer[i] = value;
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public IntegerTensor setWithMask(IntegerTensor mask, Integer value) {
+        checkShapesMatch(shape, mask.getShape());
+        return duplicate().setWithMaskInPlace(mask, value);
+    }
+
+    @Override
+    public IntegerTensor apply(Function<Integer, Integer> function) {
+        return duplicate().applyInPlace(function);
+    }
+
+    @Override
+    public IntegerTensor slice(int dimension, long index) {
+        Preconditions.checkArgument(dimension < shape.length && index < shape[dimension]);
+        long[] resultShape = ArrayUtils.remove(shape, dimension);
+        long[] resultStride = TensorShape.getRowFirstStride(resultShape);
+        int[] newBuffer = new int[TensorShape.getLengthAsInt(resultShape)];
+
+        for (int i = 0; i < newBuffer.length; i++) {
+
+            long[] shapeIndices = ArrayUtils.insert(dimension, TensorShape.getShapeIndices(resultShape, resultStride, i), index);
+
+            int j = Ints.checkedCast(TensorShape.getFlatIndex(shape, stride, shapeIndices));
+
+            newBuffer[i] = buffer[j];
+        }
+
+        return new JVMIntegerTensor(newBuffer, resultShape);
+    }
+
+    // In Place
+
+    @Override
+    public IntegerTensor minusInPlace(int value) {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] -= value;
+        }
+        return this;
+    }
+
+    @Override
+    public IntegerTensor plusInPlace(int value) {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] += value;
+        }
+        return this;
+    }
+
+    @Override
+    public IntegerTensor timesInPlace(int value) {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] *= value;
+        }
+        return this;
+    }
+
+    @Override
+    public IntegerTensor divInPlace(int value) {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = JVMIntegerTensorBroadcast.div(buffer[i], value);
+        }
+        return this;
+    }
+
+    @Override
+    public IntegerTensor powInPlace(int exponent) {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = JVMIntegerTensorBroadcast.pow(buffer[i], exponent);
+        }
+        return this;
+    }
+
+    @Override
+    public IntegerTensor minusInPlace(IntegerTensor that) {
+        return broadcastableBinaryOp(SUB, that, true);
+    }
+
+    @Override
+    public IntegerTensor plusInPlace(IntegerTensor that) {
+        return broadcastableBinaryOp(ADD, that, true);
+    }
+
+    @Override
+    public IntegerTensor timesInPlace(IntegerTensor that) {
+        return broadcastableBinaryOp(MUL, that, true);
+    }
+
+    @Override
+    public IntegerTensor divInPlace(IntegerTensor that) {
+        return broadcastableBinaryOp(DIV, that, true);
+    }
+
+    @Override
+    public IntegerTensor powInPlace(IntegerTensor exponent) {
+        return broadcastableBinaryOp(POW, exponent, true);
+    }
+
+    @Override
+    public IntegerTensor unaryMinusInPlace() {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = -buffer[i];
+        }
+        return this;
+    }
+
+    @Override
+    public IntegerTensor absInPlace() {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = Math.abs(buffer[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public IntegerTensor applyInPlace(Function<Integer, Integer> function) {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = function.apply(buffer[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public IntegerTensor applyIntInPlace(IntUnaryOperator function) {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = function.applyAsInt(buffer[i]);
+        }
+        return this;
+    }
+
+    @Override
+    public IntegerTensor applyInt(IntegerTensor that, IntBinaryOperator function) {
+        return broadcastableBinaryOp(function, that, false);
+    }
+
+    @Override
+    public IntegerTensor minInPlace(IntegerTensor min) {
+        return broadcastableBinaryOp(MIN, min, true);
+    }
+
+    @Override
+    public IntegerTensor maxInPlace(IntegerTensor max) {
+        return broadcastableBinaryOp(MAX, max, true);
+    }
+
+    @Override
+    public int min() {
+        int result = Integer.MAX_VALUE;
+        for (int i = 0; i < buffer.length; i++) {
+            result = Math.min(result, buffer[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public int max() {
+        int result = Integer.MIN_VALUE;
+        for (int i = 0; i < buffer.length; i++) {
+            result = Math.max(result, buffer[i]);
+        }
+        return result;
+    }
+
+    // Comparisons
+
+    @Override
+    public BooleanTensor lessThan(int value) {
+        boolean[] newBuffer = new boolean[buffer.length];
+        for (int i = 0; i < buffer.length; i++) {
+            newBuffer[i] = buffer[i] < value;
+        }
+        return BooleanTensor.create(newBuffer, shapeCopy());
+    }
+
+    @Override
+    public BooleanTensor lessThanOrEqual(int value) {
+        boolean[] newBuffer = new boolean[buffer.length];
+        for (int i = 0; i < buffer.length; i++) {
+            newBuffer[i] = buffer[i] <= value;
+        }
+        return BooleanTensor.create(newBuffer, shapeCopy());
+    }
+
+    @Override
+    public BooleanTensor greaterThan(int value) {
+        boolean[] newBuffer = new boolean[buffer.length];
+        for (int i = 0; i < buffer.length; i++) {
+            newBuffer[i] = buffer[i] > value;
+        }
+        return BooleanTensor.create(newBuffer, shapeCopy());
+    }
+
+    @Override
+    public BooleanTensor greaterThanOrEqual(int value) {
+        boolean[] newBuffer = new boolean[buffer.length];
+        for (int i = 0; i < buffer.length; i++) {
+            newBuffer[i] = buffer[i] >= value;
+        }
+        return BooleanTensor.create(newBuffer, shapeCopy());
+    }
+
+    @Override
+    public BooleanTensor lessThan(IntegerTensor value) {
+        return maskToBooleanTensor(getLessThanMask(value));
+    }
+
+    @Override
+    public BooleanTensor lessThanOrEqual(IntegerTensor value) {
+        return maskToBooleanTensor(getLessThanOrEqualToMask(value));
+    }
+
+    @Override
+    public BooleanTensor greaterThan(IntegerTensor value) {
+        return maskToBooleanTensor(getGreaterThanMask(value));
+    }
+
+    @Override
+    public BooleanTensor greaterThanOrEqual(IntegerTensor value) {
+        return maskToBooleanTensor(getGreaterThanOrEqualToMask(value));
+    }
+
+    @Override
+    public BooleanTensor elementwiseEquals(Tensor that) {
+        if (that instanceof IntegerTensor) {
+            return maskToBooleanTensor(broadcastableBinaryOp(EQ_MASK, (IntegerTensor) that, false));
+        } else {
+            return Tensor.elementwiseEquals(this, that);
+        }
+    }
+
+    @Override
+    public BooleanTensor elementwiseEquals(Integer value) {
+        final int intValue = value;
+        boolean[] newBuffer = new boolean[buffer.length];
+        for (int i = 0; i < buffer.length; i++) {
+            newBuffer[i] = buffer[i] == intValue;
+        }
+        return BooleanTensor.create(newBuffer, shapeCopy());
+    }
+
+    private static BooleanTensor maskToBooleanTensor(IntegerTensor mask) {
+        int[] maskBuffer = getRawBufferIfJVMTensor(mask);
+        boolean[] boolBuffer = new boolean[maskBuffer.length];
+
+        for (int i = 0; i < maskBuffer.length; i++) {
+            boolBuffer[i] = maskBuffer[i] == 1;
+        }
+
+        return BooleanTensor.create(boolBuffer, mask.getShape());
+    }
+
+    private JVMIntegerTensor broadcastableBinaryOp(IntBinaryOperator op, IntegerTensor right, boolean inPlace) {
+        final int[] rightBuffer = getRawBufferIfJVMTensor(right);
+        final long[] rightShape = right.getShape();
+
+        final int[] outputBuffer;
+        final long[] resultShape;
+
+        if (Arrays.equals(shape, rightShape)) {
+
+            resultShape = shape;
+            outputBuffer = inPlace ? buffer : newBufferOfSameLength();
+
+            for (int i = 0; i < outputBuffer.length; i++) {
+                outputBuffer[i] = op.applyAsInt(buffer[i], rightBuffer[i]);
+            }
+
+        } else if (rightShape.length == 0) {
+
+            //Short circuit for broadcast with scalars
+            resultShape = shape;
+            outputBuffer = inPlace ? buffer : newBufferOfSameLength();
+            final int rightValue = rightBuffer[0];
+
+            for (int i = 0; i < outputBuffer.length; i++) {
+                outputBuffer[i] = op.applyAsInt(buffer[i], rightValue);
+            }
+
+        } else {
+
+            resultShape = TensorShape.getBroadcastResultShape(shape, rightShape);
+            boolean resultIsLeftShape = Arrays.equals(resultShape, shape);
+            outputBuffer = inPlace && resultIsLeftShape ? buffer : new int[TensorShape.getLengthAsInt(resultShape)];
+
+            JVMIntegerTensorBroadcast.broadcast(buffer, shape, rightBuffer, rightShape, resultShape, outputBuffer, op);
+        }
+
+        if (inPlace) {
+            buffer = outputBuffer;
+            if (resultShape != shape) {
+                shape = resultShape;
+                stride = TensorShape.getRowFirstStride(resultShape);
+            }
+            return this;
+        } else {
+            return new JVMIntegerTensor(outputBuffer, copyOf(resultShape, resultShape.length));
+        }
+    }
+
+    @Override
+    public IntegerFlattenedView getFlattenedView() {
+        return new JVMIntegerFlattenedView();
+    }
+
+    private class JVMIntegerFlattenedView implements IntegerFlattenedView {
+
+        @Override
+        public long size() {
+            return buffer.length;
+        }
+
+        @Override
+        public int getInt(long index) {
+            return buffer[Ints.checkedCast(index)];
+        }
+
+        @Override
+        public int getIntOrScalar(long index) {
+            if (buffer.length == 1) {
+                return buffer[0];
+            } else {
+                return getInt(index);
+            }
+        }
+
+        @Override
+        public void setInt(long index, int value) {
+            buffer[Ints.checkedCast(index)] = value;
+        }
+    }
+
+    @Override
+    public double[] asFlatDoubleArray() {
+        double[] doubles = new double[buffer.length];
+        for (int i = 0; i < buffer.length; i++) {
+            doubles[i] = buffer[i];
+        }
+        return doubles;
+    }
+
+    @Override
+    public int[] asFlatIntegerArray() {
+        return bufferCopy();
+    }
+
+    @Override
+    public Integer[] asFlatArray() {
+        return ArrayUtils.toObject(buffer);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (o instanceof JVMIntegerTensor) {
+            JVMIntegerTensor that = (JVMIntegerTensor) o;
+            return Arrays.equals(shape, that.shape) && Arrays.equals(buffer, that.buffer);
+        } else if (o instanceof Tensor) {
+            Tensor that = (Tensor) o;
+            if (!Arrays.equals(that.getShape(), shape)) return false;
+            return Arrays.equals(
+                that.asFlatArray(),
+                this.asFlatArray()
+            );
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Arrays.hashCode(shape);
+        result = 31 * result + Arrays.hashCode(buffer);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "JVMIntegerTensor{" +
+            "shape=" + Arrays.toString(shape) +
+            ", buffer=" + Arrays.toString(buffer) +
+            '}';
+    }
+
+}
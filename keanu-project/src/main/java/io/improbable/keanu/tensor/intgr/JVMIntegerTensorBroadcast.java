@@ -0,0 +1,199 @@
+package io.improbable.keanu.tensor.intgr;
+
+import com.google.common.math.IntMath;
+import io.improbable.keanu.tensor.TensorShape;
+
+import java.util.function.IntBinaryOperator;
+
+public class JVMIntegerTensorBroadcast {
+
+    public enum BroadcastableIntegerOperation implements IntBinaryOperator {
+
+        ADD {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return left + right;
+            }
+        },
+
+        SUB {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return left - right;
+            }
+        },
+
+        MUL {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return left * right;
+            }
+        },
+
+        DIV {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return div(left, right);
+            }
+        },
+
+        POW {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return pow(left, right);
+            }
+        },
+
+        MIN {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return Math.min(left, right);
+            }
+        },
+
+        MAX {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return Math.max(left, right);
+            }
+        },
+
+        GT_MASK {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return left > right ? 1 : 0;
+            }
+        },
+
+        GTE_MASK {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return left >= right ? 1 : 0;
+            }
+        },
+
+        LT_MASK {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return left < right ? 1 : 0;
+            }
+        },
+
+        LTE_MASK {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return left <= right ? 1 : 0;
+            }
+        },
+
+        EQ_MASK {
+            @Override
+            public int applyAsInt(int left, int right) {
+                return left == right ? 1 : 0;
+            }
+        }
+
+    }
+
+    /**
+     * Divides rounding towards zero. Dividing by zero doesn't throw but gives the result the ND4J backed tensor gave,
+     * which held the quotient as a double and cast it to an int: {@link Integer#MAX_VALUE} for a positive dividend,
+     * {@link Integer#MIN_VALUE} for a negative one and 0 for 0.
+     *
+     * @param dividend the left operand
+     * @param divisor  the right operand
+     * @return the quotient rounded towards zero
+     */
+    static int div(int dividend, int divisor) {
+        if (divisor == 0) {
+            return dividend > 0 ? Integer.MAX_VALUE : dividend < 0 ? Integer.MIN_VALUE : 0;
+        }
+        return dividend / divisor;
+    }
+
+    /**
+     * Raises base to exponent. A negative exponent gives the fractional result rounded towards zero, as the ND4J
+     * backed tensor did: 1 for a base of 1, 1 or -1 for a base of -1 depending on whether the exponent is even, 0 for
+     * any other base and {@link Integer#MAX_VALUE} for a base of 0, whose result is infinite.
+     *
+     * @param base     the left operand
+     * @param exponent the right operand
+     * @return base to the power of exponent rounded towards zero
+     */
+    static int pow(int base, int exponent) {
+        if (exponent >= 0) {
+            return IntMath.pow(base, exponent);
+        }
+        switch (base) {
+            case 0:
+                return Integer.MAX_VALUE;
+            case 1:
+                return 1;
+            case -1:
+                return (exponent & 1) == 0 ? 1 : -1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Applies op to every element of the result shape, reading from the left and right buffers with broadcast
+     * semantics. The output buffer may be the left buffer if the left shape is the result shape.
+     *
+     * @param leftBuffer   left operand in row first order
+     * @param leftShape    shape of left operand
+     * @param rightBuffer  right operand in row first order
+     * @param rightShape   shape of right operand
+     * @param resultShape  shape found by TensorShape.getBroadcastResultShape
+     * @param outputBuffer buffer with length of the result shape
+     * @param op           the operation to apply
+     */
+    static void broadcast(int[] leftBuffer, long[] leftShape,
+                          int[] rightBuffer, long[] rightShape,
+                          long[] resultShape, int[] outputBuffer,
+                          IntBinaryOperator op) {
+
+        final int rank = resultShape.length;
+        final int[] leftStride = getBroadcastStride(leftShape, resultShape);
+        final int[] rightStride = getBroadcastStride(rightShape, resultShape);
+        final int[] index = new int[rank];
+
+        int leftPosition = 0;
+        int rightPosition = 0;
+
+        for (int i = 0; i < outputBuffer.length; i++) {
+
+            outputBuffer[i] = op.applyAsInt(leftBuffer[leftPosition], rightBuffer[rightPosition]);
+
+            for (int d = rank - 1; d >= 0; d--) {
+                index[d]++;
+                leftPosition += leftStride[d];
+                rightPosition += rightStride[d];
+
+                if (index[d] < resultShape[d]) {
+                    break;
+                }
+
+                leftPosition -= leftStride[d] * index[d];
+                rightPosition -= rightStride[d] * index[d];
+                index[d] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the row first stride of shape padded to the rank of the result shape, with a zero stride
+     * in dimensions that are broadcast.
+     */
+    private static int[] getBroadcastStride(long[] shape, long[] resultShape) {
+        long[] paddedShape = TensorShape.shapeToDesiredRankByPrependingOnes(shape, resultShape.length);
+        long[] stride = TensorShape.getRowFirstStride(paddedShape);
+
+        int[] broadcastStride = new int[stride.length];
+        for (int i = 0; i < stride.length; i++) {
+            broadcastStride[i] = paddedShape[i] == resultShape[i] ? (int) stride[i] : 0;
+        }
+        return broadcastStride;
+    }
+
+}
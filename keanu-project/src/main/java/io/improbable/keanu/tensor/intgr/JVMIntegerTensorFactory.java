@@ -0,0 +1,44 @@
+package io.improbable.keanu.tensor.intgr;
+
+public class JVMIntegerTensorFactory implements IntegerTensorFactory {
+
+    @Override
+    public IntegerTensor create(int value, long[] shape) {
+        return JVMIntegerTensor.create(value, shape);
+    }
+
+    @Override
+    public IntegerTensor create(int[] values, long[] shape) {
+        return JVMIntegerTensor.create(values, shape);
+    }
+
+    @Override
+    public IntegerTensor create(int[] values) {
+        return JVMIntegerTensor.create(values, values.length);
+    }
+
+    @Override
+    public IntegerTensor ones(long[] shape) {
+        return JVMIntegerTensor.ones(shape);
+    }
+
+    @Override
+    public IntegerTensor zeros(long[] shape) {
+        return JVMIntegerTensor.zeros(shape);
+    }
+
+    @Override
+    public IntegerTensor eye(long n) {
+        return JVMIntegerTensor.eye(n);
+    }
+
+    @Override
+    public IntegerTensor scalar(int scalarValue) {
+        return JVMIntegerTensor.scalar(scalarValue);
+    }
+
+    @Override
+    public IntegerTensor concat(int dimension, IntegerTensor... toConcat) {
+        return JVMIntegerTensor.concat(dimension, toConcat);
+    }
+}
@@ -7,7 +7,6 @@ import io.improbable.keanu.tensor.TensorShape;
 import io.improbable.keanu.tensor.TensorShapeValidation;
 import io.improbable.keanu.tensor.TypedINDArrayFactory;
 import io.improbable.keanu.tensor.bool.BooleanTensor;
-import io.improbable.keanu.tensor.bool.SimpleBooleanTensor;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 import io.improbable.keanu.tensor.dbl.Nd4jDoubleTensor;
 import org.apache.commons.lang3.ArrayUtils;
@@ -89,7 +88,12 @@ public class Nd4jIntegerTensor implements IntegerTensor {
         if (that.isLengthOne()) {
             return TypedINDArrayFactory.scalar(that.scalar(), BUFFER_TYPE).reshape(that.getShape());
         }
-        return ((Nd4jIntegerTensor) that).tensor;
+
+        if (that instanceof Nd4jIntegerTensor) {
+            return ((Nd4jIntegerTensor) that).tensor;
+        } else {
+            return TypedINDArrayFactory.create(that.asFlatDoubleArray(), that.getShape(), BUFFER_TYPE);
+        }
     }
 
     @Override
@@ -592,13 +596,26 @@ public class Nd4jIntegerTensor implements IntegerTensor {
         return (int) tensor.getDouble(0);
     }
 
+    /**
+     * Moves the values of this tensor out of the ND4J workspace they were created in, if any, so that they
+     * can still be used once the workspace is closed.
+     *
+     * @return this
+     */
+    public Nd4jIntegerTensor detach() {
+        if (tensor.isAttached()) {
+            tensor = tensor.detach();
+        }
+        return this;
+    }
+
     @Override
     public IntegerTensor duplicate() {
         return new Nd4jIntegerTensor(tensor.dup());
     }
 
     @Override
-    public FlattenedView<Integer> getFlattenedView() {
+    public IntegerFlattenedView getFlattenedView() {
         return new Nd4jIntegerFlattenedView(tensor);
     }
 
@@ -666,7 +683,7 @@ public class Nd4jIntegerTensor implements IntegerTensor {
         for (int i = 0; i < boolsFromMask.length; i++) {
             boolsFromMask[i] = data.getInt(i) != 0;
         }
-        return new SimpleBooleanTensor(boolsFromMask, shape);
+        return BooleanTensor.create(boolsFromMask, shape);
     }
 
     @Override
@@ -684,7 +701,7 @@ public class Nd4jIntegerTensor implements IntegerTensor {
         return ArrayUtils.toObject(asFlatIntegerArray());
     }
 
-    private static class Nd4jIntegerFlattenedView implements FlattenedView<Integer> {
+    private static class Nd4jIntegerFlattenedView implements IntegerFlattenedView {
 
         INDArray tensor;
 
@@ -698,21 +715,21 @@ public class Nd4jIntegerTensor implements IntegerTensor {
         }
 
         @Override
-        public Integer get(long index) {
+        public int getInt(long index) {
             return tensor.data().getInt(index);
         }
 
         @Override
-        public Integer getOrScalar(long index) {
+        public int getIntOrScalar(long index) {
             if (tensor.length() == 1) {
-                return get(0);
+                return getInt(0);
             } else {
-                return get(index);
+                return getInt(index);
             }
         }
 
         @Override
-        public void set(long index, Integer value) {
+        public void setInt(long index, int value) {
             tensor.data().put(index, value);
         }
 
@@ -495,7 +495,7 @@ public class ScalarIntegerTensor implements IntegerTensor {
     }
 
     @Override
-    public FlattenedView<Integer> getFlattenedView() {
+    public IntegerFlattenedView getFlattenedView() {
         return new SimpleIntegerFlattenedView();
     }
 
@@ -541,7 +541,7 @@ public class ScalarIntegerTensor implements IntegerTensor {
             '}';
     }
 
-    private class SimpleIntegerFlattenedView implements FlattenedView<Integer> {
+    private class SimpleIntegerFlattenedView implements IntegerFlattenedView {
 
         @Override
         public long size() {
@@ -549,7 +549,7 @@ public class ScalarIntegerTensor implements IntegerTensor {
         }
 
         @Override
-        public Integer get(long index) {
+        public int getInt(long index) {
             if (index != 0) {
                 throw new IndexOutOfBoundsException();
             }
@@ -557,12 +557,12 @@ public class ScalarIntegerTensor implements IntegerTensor {
         }
 
         @Override
-        public Integer getOrScalar(long index) {
+        public int getIntOrScalar(long index) {
             return value;
         }
 
         @Override
-        public void set(long index, Integer value) {
+        public void setInt(long index, int value) {
             if (index != 0) {
                 throw new IndexOutOfBoundsException();
             }
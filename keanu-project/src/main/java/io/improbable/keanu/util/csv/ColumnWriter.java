@@ -31,11 +31,15 @@ public class ColumnWriter extends Writer {
         try (CSVWriter writer = prepareWriter(file)) {
             int maxSize = findLongestTensor(vertices);
 
+            List<List<String>> flatLists = new ArrayList<>();
+            for (Vertex<? extends Tensor> vertex : vertices) {
+                flatLists.add(flattenToStrings(vertex.getValue()));
+            }
+
             for (int i = 0; i < maxSize; i++) {
                 List<String> row = new ArrayList<>();
-                for (Vertex<? extends Tensor> vertex : vertices) {
-                    List<Object> flatList = vertex.getValue().asFlatList();
-                    row.add(i < flatList.size() ? flatList.get(i).toString() : getEmptyValue());
+                for (List<String> flatList : flatLists) {
+                    row.add(i < flatList.size() ? flatList.get(i) : getEmptyValue());
                 }
                 String[] rowArray = new String[row.size()];
                 writer.writeNext(row.toArray(rowArray), false);
@@ -33,9 +33,9 @@ public class RowWriter extends Writer {
 
             for (Vertex<? extends Tensor> vertex : vertices) {
                 List<String> row = new ArrayList<>();
-                List<Object> flatList = vertex.getValue().asFlatList();
+                List<String> flatList = flattenToStrings(vertex.getValue());
                 for (int i = 0; i < maxSize; i++) {
-                    row.add(i < flatList.size() ? flatList.get(i).toString() : getEmptyValue());
+                    row.add(i < flatList.size() ? flatList.get(i) : getEmptyValue());
                 }
                 String[] rowArray = new String[row.size()];
                 writer.writeNext(row.toArray(rowArray), false);
@@ -30,10 +30,7 @@ public class SampleWriter extends Writer {
                 List<String> row = new ArrayList<>();
                 for (Vertex<? extends Tensor> vertex : vertices) {
                     Tensor sample = samples.get(vertex).asList().get(i);
-                    List<Object> flatList = sample.asFlatList();
-                    for (int j = 0; j < flatList.size(); j++) {
-                        row.add(flatList.get(j).toString());
-                    }
+                    row.addAll(flattenToStrings(sample));
                 }
                 String[] rowArray = new String[row.size()];
                 writer.writeNext(row.toArray(rowArray), false);
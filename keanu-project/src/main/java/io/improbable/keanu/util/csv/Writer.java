@@ -2,11 +2,17 @@ package io.improbable.keanu.util.csv;
 
 import com.opencsv.CSVWriter;
 import com.opencsv.ICSVWriter;
+import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.bool.BooleanTensor;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.intgr.IntegerTensor;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.function.Function;
 
 public abstract class Writer {
@@ -103,6 +109,37 @@ public abstract class Writer {
         return header;
     }
 
+    /**
+     * @return the elements of tensor in flat order as strings. Double, integer and boolean tensors are read through
+     * their primitive flattened views so that their elements aren't boxed.
+     */
+    static List<String> flattenToStrings(Tensor tensor) {
+        final List<String> values = new ArrayList<>();
+
+        if (tensor instanceof DoubleTensor) {
+            DoubleTensor.DoubleFlattenedView flattened = ((DoubleTensor) tensor).getFlattenedView();
+            for (long i = 0; i < flattened.size(); i++) {
+                values.add(Double.toString(flattened.getDouble(i)));
+            }
+        } else if (tensor instanceof IntegerTensor) {
+            IntegerTensor.IntegerFlattenedView flattened = ((IntegerTensor) tensor).getFlattenedView();
+            for (long i = 0; i < flattened.size(); i++) {
+                values.add(Integer.toString(flattened.getInt(i)));
+            }
+        } else if (tensor instanceof BooleanTensor) {
+            BooleanTensor.BooleanFlattenedView flattened = ((BooleanTensor) tensor).getFlattenedView();
+            for (long i = 0; i < flattened.size(); i++) {
+                values.add(Boolean.toString(flattened.getBoolean(i)));
+            }
+        } else {
+            for (Object value : tensor.asFlatList()) {
+                values.add(value.toString());
+            }
+        }
+
+        return values;
+    }
+
     public Writer withHeader(String... h) {
         header = Arrays.copyOf(h, h.length);
         withHeaderEnabled(true);
@@ -0,0 +1,18 @@
+package io.improbable.keanu.vertices;
+
+/**
+ * A non probabilistic vertex whose value often stays the same when the values of its parents change, such as a
+ * rounding, an if or a conditional probability table.
+ * <p>
+ * A cascade stops at a vertex like this when its recalculated value equals its previous value, so the vertices
+ * downstream of it are not recalculated and the log probs of its probabilistic children are not recalculated by
+ * {@link io.improbable.keanu.network.KeanuProbabilisticModel#logProbAfter}. Comparing the values costs a pass over
+ * them, so only vertex types that are likely to be unchanged implement this.
+ * <p>
+ * The comparison is made with equals on every cascade that reaches the vertex. A large JVMDoubleTensor whose
+ * elementwise operations are deferred calculates its pending operations when compared, so a cutoff vertex with a
+ * value like that gives up the fusion of the operations after it as well as paying for the pass.
+ */
+public interface CascadeCutoffVertex {
+
+}
@@ -5,9 +5,11 @@ import io.improbable.keanu.algorithms.Variable;
 import io.improbable.keanu.algorithms.VariableReference;
 import io.improbable.keanu.algorithms.graphtraversal.DiscoverGraph;
 import io.improbable.keanu.algorithms.graphtraversal.VertexValuePropagation;
+import io.improbable.keanu.network.AdjacencyIndex;
 import io.improbable.keanu.network.NetworkLoader;
 import io.improbable.keanu.network.NetworkSaver;
 import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensorArena;
 import io.improbable.keanu.vertices.dbl.Differentiable;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
 import io.improbable.keanu.vertices.generic.nonprobabilistic.PrintVertex;
@@ -30,6 +32,7 @@ public abstract class Vertex<T> implements Observable<T>, Variable<T, VertexStat
     private Set<Vertex> parents = Collections.emptySet();
     private VertexState<T> state;
     private VertexLabel label = null;
+    private long structureVersion;
 
     public Vertex() {
         this(Tensor.SCALAR_SHAPE);
@@ -109,38 +112,64 @@ public abstract class Vertex<T> implements Observable<T>, Variable<T, VertexStat
     }
 
     /**
-     * Sets the value if the vertex isn't already observed.
+     * Sets the value if the vertex isn't already observed. The value is escaped from any open
+     * {@link JVMDoubleTensorArena.Scope} as the vertex keeps it.
      *
      * @param value the observed value
      */
     public void setValue(T value) {
-        if (!state.isObserved()) {
-            state = new VertexState<>(value, false);
+        if (!currentState().isObserved()) {
+            putState(new VertexState<>(JVMDoubleTensorArena.escape(value), false));
         }
     }
 
     @Override
     public T getValue() {
-        return hasValue() ? state.getValue() : lazyEval();
+        final T value = currentState().getValue();
+        return value != null ? value : lazyEval();
     }
 
     @Override
     public VertexState<T> getState() {
-        return state;
+        return currentState();
     }
 
     public void setState(VertexState<T> newState) {
-        state = newState;
+        JVMDoubleTensorArena.escape(newState.getValue());
+        putState(newState);
+    }
+
+    /**
+     * @return the state in the {@link VertexStateStore} bound to this thread if it holds this vertex, otherwise the
+     * state held by this vertex
+     */
+    private VertexState<T> currentState() {
+        final VertexStateStore store = VertexStateBinding.current();
+        if (store != null) {
+            final VertexState<T> stored = store.getState(this);
+            if (stored != null) {
+                return stored;
+            }
+        }
+        return state;
+    }
+
+    private void putState(VertexState<T> newState) {
+        final VertexStateStore store = VertexStateBinding.current();
+        if (store == null || !store.setState(this, newState)) {
+            state = newState;
+        }
     }
 
     public boolean hasValue() {
-        return state.getValue() != null;
+        return currentState().getValue() != null;
     }
 
     @Override
     public long[] getShape() {
-        if (state.getValue() instanceof Tensor) {
-            return ((Tensor) state.getValue()).getShape();
+        final T value = currentState().getValue();
+        if (value instanceof Tensor) {
+            return ((Tensor) value).getShape();
         } else {
             return initialShape;
         }
@@ -187,7 +216,7 @@ public abstract class Vertex<T> implements Observable<T>, Variable<T, VertexStat
         if (!isObservable(this.getClass())) {
             throw new UnsupportedOperationException("This type of vertex does not support being observed");
         }
-        state = new VertexState<>(value, true);
+        putState(new VertexState<>(JVMDoubleTensorArena.escape(value), true));
     }
 
     private static boolean isObservable(Class<? extends Vertex> v) {
@@ -206,17 +235,17 @@ public abstract class Vertex<T> implements Observable<T>, Variable<T, VertexStat
 
     @Override
     public void unobserve() {
-        state = new VertexState<>(state.getValue(), false);
+        putState(new VertexState<>(currentState().getValue(), false));
     }
 
     @Override
     public boolean isObserved() {
-        return state.isObserved();
+        return currentState().isObserved();
     }
 
     @Override
     public Optional<T> getObservedValue() {
-        return state.getObservedValue();
+        return currentState().getObservedValue();
     }
 
     @Override
@@ -238,10 +267,26 @@ public abstract class Vertex<T> implements Observable<T>, Variable<T, VertexStat
 
     public void addChild(Vertex<?> v) {
         children.add(v);
+        structureVersion++;
+    }
+
+    public void removeChild(Vertex<?> v) {
+        children.remove(v);
+        structureVersion++;
+    }
+
+    /**
+     * Used by {@link AdjacencyIndex} to tell if the vertices it holds have changed since it was built.
+     *
+     * @return a number that increases whenever the parents or children of this vertex change
+     */
+    public long getStructureVersion() {
+        return structureVersion;
     }
 
     public void setParents(Collection<? extends Vertex> parents) {
         this.parents = Collections.emptySet();
+        structureVersion++;
         addParents(parents);
     }
 
@@ -251,6 +296,7 @@ public abstract class Vertex<T> implements Observable<T>, Variable<T, VertexStat
 
     public void addParents(Collection<? extends Vertex> parents) {
         this.parents = ImmutableSet.<Vertex>builder().addAll(this.getParents()).addAll(parents).build();
+        structureVersion++;
         parents.forEach(p -> p.addChild(this));
     }
 
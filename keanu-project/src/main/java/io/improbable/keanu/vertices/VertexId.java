@@ -85,6 +85,17 @@ public class VertexId implements Comparable<VertexId>, VariableReference {
         return Arrays.copyOf(idValues, idValues.length);
     }
 
+    /**
+     * Gives this id the value of another, e.g. for a vertex that takes the place of another vertex in a graph and so
+     * must keep its position in the topological ordering. The vertex with this id must not be in any hash based
+     * collection while its id changes.
+     *
+     * @param value the value of the id as returned by {@link #getValue()}
+     */
+    public void setValue(long[] value) {
+        idValues = Arrays.copyOf(value, value.length);
+    }
+
     public static void resetIdGenerator() {
         ID_GENERATOR.set(0);
     }
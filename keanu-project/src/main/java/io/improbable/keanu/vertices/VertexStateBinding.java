@@ -0,0 +1,56 @@
+package io.improbable.keanu.vertices;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Binds a {@link VertexStateStore} to the current thread, which {@link Vertex} then reads and writes its state in.
+ * <p>
+ * Each thread can have its own store bound, so different threads can evaluate the same vertices against different
+ * values at the same time. Vertices that the bound store doesn't hold, and all vertices on threads without a bound
+ * store, use the state held in the vertex.
+ */
+public final class VertexStateBinding {
+
+    private static final ThreadLocal<VertexStateStore> BOUND = new ThreadLocal<>();
+
+    /**
+     * The number of bindings in progress on any thread, so that looking up the bound store can be skipped when
+     * nothing is bound.
+     */
+    private static final AtomicInteger BINDINGS = new AtomicInteger();
+
+    private VertexStateBinding() {
+    }
+
+    /**
+     * Runs work with the store bound to the current thread, and then restores whatever was bound before.
+     *
+     * @param store the store that vertices read and write their state in while the work runs
+     * @param work  the work to run
+     * @param <R>   the result type of the work
+     * @return the result of the work
+     */
+    public static <R> R bind(VertexStateStore store, Supplier<R> work) {
+        final VertexStateStore previous = BOUND.get();
+        BOUND.set(store);
+        BINDINGS.incrementAndGet();
+        try {
+            return work.get();
+        } finally {
+            BINDINGS.decrementAndGet();
+            if (previous == null) {
+                BOUND.remove();
+            } else {
+                BOUND.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the store bound to the current thread or null if there isn't one
+     */
+    public static VertexStateStore current() {
+        return BINDINGS.get() == 0 ? null : BOUND.get();
+    }
+}
@@ -0,0 +1,25 @@
+package io.improbable.keanu.vertices;
+
+/**
+ * Holds the states of vertices apart from the vertices themselves, so that the same vertices can be evaluated
+ * against more than one set of values. While a store is bound to a thread with
+ * {@link VertexStateBinding#bind(VertexStateStore, java.util.function.Supplier)}, the vertices it holds read and
+ * write their state in the store instead of in the vertex.
+ */
+public interface VertexStateStore {
+
+    /**
+     * @param vertex the vertex to get the state of
+     * @param <T>    the value type of the vertex
+     * @return the state of the vertex in this store or null if this store doesn't hold the vertex
+     */
+    <T> VertexState<T> getState(Vertex<T> vertex);
+
+    /**
+     * @param vertex the vertex to set the state of
+     * @param state  the new state of the vertex
+     * @param <T>    the value type of the vertex
+     * @return false if this store doesn't hold the vertex, in which case nothing was set
+     */
+    <T> boolean setState(Vertex<T> vertex, VertexState<T> state);
+}
@@ -3,12 +3,13 @@ package io.improbable.keanu.vertices.bool.nonprobabilistic;
 import io.improbable.keanu.annotation.ExportVertexToPythonBindings;
 import io.improbable.keanu.tensor.TensorShapeValidation;
 import io.improbable.keanu.tensor.bool.BooleanTensor;
+import io.improbable.keanu.vertices.CascadeCutoffVertex;
 import io.improbable.keanu.vertices.LoadVertexParam;
 import io.improbable.keanu.vertices.NonProbabilistic;
 import io.improbable.keanu.vertices.SaveVertexParam;
 import io.improbable.keanu.vertices.bool.BooleanVertex;
 
-public class BooleanIfVertex extends BooleanVertex implements NonProbabilistic<BooleanTensor> {
+public class BooleanIfVertex extends BooleanVertex implements CascadeCutoffVertex, NonProbabilistic<BooleanTensor> {
 
     private final BooleanVertex predicate;
     private final BooleanVertex thn;
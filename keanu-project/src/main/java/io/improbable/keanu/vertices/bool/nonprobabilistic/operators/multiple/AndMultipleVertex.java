@@ -12,6 +12,6 @@ public class AndMultipleVertex extends BooleanReduceVertex {
     public AndMultipleVertex(Collection<? extends Vertex<BooleanTensor>> input) {
         super(checkAllShapesMatch(
             input.stream().map(Vertex::getShape).collect(Collectors.toList())
-        ), input, BooleanTensor::and);
+        ), input, BooleanTensor::andInPlace);
     }
 }
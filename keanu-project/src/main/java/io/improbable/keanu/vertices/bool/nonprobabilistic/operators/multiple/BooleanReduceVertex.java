@@ -40,10 +40,14 @@ public class BooleanReduceVertex extends BooleanVertex implements NonProbabilist
         return applyReduce(Vertex::getValue);
     }
 
+    /**
+     * The reduce starts from a copy of the first input so that reduceFunction may safely be
+     * an in place operation, e.g. BooleanTensor::andInPlace.
+     */
     private BooleanTensor applyReduce(Function<Vertex<BooleanTensor>, BooleanTensor> mapper) {
         Iterator<? extends Vertex<BooleanTensor>> vertices = inputs.iterator();
 
-        BooleanTensor c = mapper.apply(vertices.next());
+        BooleanTensor c = mapper.apply(vertices.next()).duplicate();
         while (vertices.hasNext()) {
             c = reduceFunction.apply(c, mapper.apply(vertices.next()));
         }
@@ -14,6 +14,6 @@ public class OrMultipleVertex extends BooleanReduceVertex {
         super(checkAllShapesMatch(
             input.stream().map(Vertex::getShape).collect(Collectors.toList())
             ),
-            input, BooleanTensor::or);
+            input, BooleanTensor::orInPlace);
     }
 }
@@ -21,6 +21,7 @@ import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.Additi
 import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.ArcTan2Vertex;
 import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DifferenceVertex;
 import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DivisionVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DoubleBinaryOpLambda;
 import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DoubleGreaterThanMaskVertex;
 import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DoubleGreaterThanOrEqualToMaskVertex;
 import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DoubleLessThanMaskVertex;
@@ -56,10 +57,15 @@ import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.TakeVer
 import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.TanVertex;
 import io.improbable.keanu.vertices.intgr.IntegerVertex;
 import io.improbable.keanu.vertices.intgr.nonprobabilistic.CastToIntegerVertex;
+import org.apache.commons.lang3.ArrayUtils;
 
 import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 
+import static io.improbable.keanu.tensor.TensorShapeValidation.checkIsBroadcastable;
+
 public abstract class DoubleVertex extends Vertex<DoubleTensor> implements DoubleOperators<DoubleVertex> {
 
     public DoubleVertex(long[] initialShape) {
@@ -104,10 +110,11 @@ public abstract class DoubleVertex extends Vertex<DoubleTensor> implements Doubl
      * - If both left and right operands are rank 1, they are promoted to a matrix by prepending a 1 to its dimensions.
      * After matrix multiplication, it is reshaped to be a scalar. This is essentially a dot product.
      * This returns a ReshapeVertex.
-     * - If only one of the operands is rank 1 (and the other operand is rank 2), it is promoted to a matrix by prepending a 1 to its dimensions.
+     * - If only one of the operands is rank 1, it is promoted to a matrix by prepending a 1 to its dimensions.
      * After matrix multiplication, the appended 1 is removed. This is essentially a matrix-vector product.
      * This returns a ReshapeVertex.
-     * - Otherwise, they are multiplied like conventional matrices.
+     * - Otherwise, they are multiplied like conventional matrices. Operands of rank 3 or more are batches of
+     * matrices in their last two dimensions, and their leading dimensions are broadcast against each other.
      * This returns a MatrixMultiplicationVertex.
      */
     public DoubleVertex matrixMultiply(DoubleVertex that) {
@@ -125,10 +132,10 @@ public abstract class DoubleVertex extends Vertex<DoubleTensor> implements Doubl
 
         if (leftRank == 1 && rightRank == 1) {
             return result.reshape(new long[0]);
-        } else if (leftRank == 1 && rightRank == 2) {
-            return result.reshape(result.getShape()[1]);
-        } else if (leftRank == 2 && rightRank == 1) {
-            return result.reshape(result.getShape()[0]);
+        } else if (leftRank == 1) {
+            return result.reshape(ArrayUtils.remove(result.getShape(), result.getRank() - 2));
+        } else if (rightRank == 1) {
+            return result.reshape(ArrayUtils.remove(result.getShape(), result.getRank() - 1));
         } else {
             return result;
         }
@@ -286,6 +293,26 @@ public abstract class DoubleVertex extends Vertex<DoubleTensor> implements Doubl
         return new DoubleUnaryOpLambda<>(this, op, forwardModeAutoDiffLambda, reverseModeAutoDiffLambda);
     }
 
+    /**
+     * @param op the function to apply to each element of the value of this vertex, which is done without boxing
+     * @return a vertex of the result, which can't be differentiated
+     */
+    public DoubleUnaryOpLambda<DoubleTensor> elementwiseLambda(DoubleUnaryOperator op) {
+        return new DoubleUnaryOpLambda<>(this, value -> value.applyDouble(op));
+    }
+
+    /**
+     * @param that the right operand, which is broadcast against this vertex
+     * @param op   the function to apply to each pair of elements of the values of this vertex and that, which is
+     *             done without boxing
+     * @return a vertex of the result, which can't be differentiated
+     */
+    public DoubleBinaryOpLambda<DoubleTensor, DoubleTensor> elementwiseLambda(DoubleVertex that, DoubleBinaryOperator op) {
+        return new DoubleBinaryOpLambda<>(
+            checkIsBroadcastable(getShape(), that.getShape()), this, that, (left, right) -> left.applyDouble(right, op)
+        );
+    }
+
     // 'times' and 'div' are required to enable operator overloading in Kotlin (through the DoubleOperators interface)
     @Override
     public MultiplicationVertex times(DoubleVertex that) {
@@ -2,6 +2,7 @@ package io.improbable.keanu.vertices.dbl.nonprobabilistic;
 
 import io.improbable.keanu.tensor.Tensor;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.CascadeCutoffVertex;
 import io.improbable.keanu.vertices.NonProbabilistic;
 import io.improbable.keanu.vertices.NonSaveableVertex;
 import io.improbable.keanu.vertices.Vertex;
@@ -14,7 +15,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class DoubleCPTVertex extends DoubleVertex implements Differentiable, NonProbabilistic<DoubleTensor>, NonSaveableVertex {
+public class DoubleCPTVertex extends DoubleVertex implements CascadeCutoffVertex, Differentiable, NonProbabilistic<DoubleTensor>, NonSaveableVertex {
 
     private final List<Vertex<? extends Tensor<Boolean>>> inputs;
     private final Map<CPTCondition, DoubleVertex> conditions;
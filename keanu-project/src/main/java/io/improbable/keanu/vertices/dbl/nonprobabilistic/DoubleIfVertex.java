@@ -4,6 +4,7 @@ import io.improbable.keanu.annotation.ExportVertexToPythonBindings;
 import io.improbable.keanu.tensor.TensorShapeValidation;
 import io.improbable.keanu.tensor.bool.BooleanTensor;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.CascadeCutoffVertex;
 import io.improbable.keanu.vertices.LoadVertexParam;
 import io.improbable.keanu.vertices.NonProbabilistic;
 import io.improbable.keanu.vertices.SaveVertexParam;
@@ -17,7 +18,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 
-public class DoubleIfVertex extends DoubleVertex implements Differentiable, NonProbabilistic<DoubleTensor> {
+public class DoubleIfVertex extends DoubleVertex implements CascadeCutoffVertex, Differentiable, NonProbabilistic<DoubleTensor> {
 
     private final BooleanVertex predicate;
     private final DoubleVertex thn;
@@ -4,6 +4,7 @@ import io.improbable.keanu.tensor.TensorShape;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
 
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
 public class PartialDerivative {
 
@@ -177,6 +178,114 @@ public class PartialDerivative {
         return new PartialDerivative(result);
     }
 
+    /**
+     * Like matrixMultiplyAlongOfDimensions but for a batched matrix multiply, where the dimensions before the
+     * last two of either operand index a batch of matrices and are broadcast against the other operand.
+     *
+     * @param partial       the partial of one operand, which has its of dimensions first
+     * @param multiplier    the value of the other operand
+     * @param partialIsLeft true if the partial is of the left operand
+     * @param partialOfRank the rank of the operand that the partial is of
+     * @param resultRank    the rank of the matrix multiply result
+     * @return the partial of the result
+     */
+    public static PartialDerivative batchMatrixMultiplyAlongOfDimensions(PartialDerivative partial,
+                                                                         DoubleTensor multiplier,
+                                                                         boolean partialIsLeft,
+                                                                         int partialOfRank,
+                                                                         int resultRank) {
+
+        if (!partial.isPresent()) {
+            return partial;
+        }
+
+        final long[] partialShape = partial.get().getShape();
+        final int wrtRank = partialShape.length - partialOfRank;
+
+        //pad the of dimensions to the result rank so the batch dimensions line up once wrt is moved to the front
+        final long[] paddedShape = TensorShape.concat(
+            TensorShape.shapeToDesiredRankByPrependingOnes(Arrays.copyOf(partialShape, partialOfRank), resultRank),
+            Arrays.copyOfRange(partialShape, partialOfRank, partialShape.length)
+        );
+
+        final DoubleTensor wrtFirst = partial.get()
+            .reshape(paddedShape)
+            .permute(moveDimensionsToFront(resultRank, wrtRank));
+
+        final DoubleTensor result = partialIsLeft ?
+            wrtFirst.matrixMultiply(multiplier) :
+            multiplier.matrixMultiply(wrtFirst);
+
+        return new PartialDerivative(result.permute(moveDimensionsToFront(wrtRank, resultRank)));
+    }
+
+    /**
+     * Like matrixMultiplyAlongWrtDimensions but for a batched matrix multiply, where the dimensions before the
+     * last two of either operand index a batch of matrices and are broadcast against the other operand.
+     *
+     * @param partial       the partial with respect to the result, which has its wrt dimensions last
+     * @param multiplier    the value of the other operand
+     * @param partialIsLeft true if the partial is to be with respect to the left operand
+     * @param wrtShape      the shape of the operand the partial is to be with respect to
+     * @param resultRank    the rank of the matrix multiply result
+     * @return the partial with respect to the operand
+     */
+    public static PartialDerivative batchMatrixMultiplyAlongWrtDimensions(PartialDerivative partial,
+                                                                          DoubleTensor multiplier,
+                                                                          boolean partialIsLeft,
+                                                                          long[] wrtShape,
+                                                                          int resultRank) {
+
+        if (!partial.isPresent()) {
+            return partial;
+        }
+
+        final DoubleTensor multiplierTransposed = multiplier.permute(transposeLastTwoDimensions(multiplier.getRank()));
+
+        DoubleTensor result = partialIsLeft ?
+            partial.get().matrixMultiply(multiplierTransposed) :
+            multiplierTransposed.matrixMultiply(partial.get());
+
+        final long[] resultShape = result.getShape();
+        final int ofRank = resultShape.length - resultRank;
+        final long[] paddedWrtShape = TensorShape.shapeToDesiredRankByPrependingOnes(wrtShape, resultRank);
+
+        //sum over the batch dimensions that the operand was broadcast along
+        final int[] broadcastDimensions = IntStream.range(0, resultRank - 2)
+            .filter(i -> paddedWrtShape[i] == 1 && resultShape[ofRank + i] != 1)
+            .map(i -> ofRank + i)
+            .toArray();
+
+        if (broadcastDimensions.length > 0) {
+            result = result.sum(broadcastDimensions);
+        }
+
+        return new PartialDerivative(
+            result.reshape(TensorShape.concat(Arrays.copyOf(resultShape, ofRank), wrtShape))
+        );
+    }
+
+    /**
+     * @return a permutation of a tensor of rank first + count that moves its last count dimensions to the front
+     */
+    private static int[] moveDimensionsToFront(int first, int count) {
+        final int[] rearrange = new int[first + count];
+        for (int i = 0; i < count; i++) {
+            rearrange[i] = first + i;
+        }
+        for (int i = 0; i < first; i++) {
+            rearrange[count + i] = i;
+        }
+        return rearrange;
+    }
+
+    private static int[] transposeLastTwoDimensions(int rank) {
+        final int[] rearrange = TensorShape.dimensionRange(0, rank);
+        rearrange[rank - 1] = rank - 2;
+        rearrange[rank - 2] = rank - 1;
+        return rearrange;
+    }
+
     /**
      * This is important for the case where the partial 'of' and the tensor are different ranks but are
      * still broadcastable.
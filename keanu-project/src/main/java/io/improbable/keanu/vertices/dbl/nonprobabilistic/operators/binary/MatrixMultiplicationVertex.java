@@ -2,6 +2,8 @@ package io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary;
 
 import io.improbable.keanu.annotation.ExportVertexToPythonBindings;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.SparseDoubleTensor;
+import io.improbable.keanu.vertices.ConstantVertex;
 import io.improbable.keanu.vertices.LoadVertexParam;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.dbl.Differentiable;
@@ -16,6 +18,9 @@ import static io.improbable.keanu.tensor.TensorShapeValidation.getMatrixMultipli
 public class MatrixMultiplicationVertex extends DoubleBinaryOpVertex implements Differentiable {
     /**
      * Matrix multiplies one vertex by another. C = AB
+     * <p>
+     * Vertices of rank greater than two are batches of matrices in their last two dimensions, which are
+     * multiplied pairwise with the leading dimensions broadcast, e.g. [G, M, K] X [K, N] is [G, M, N].
      *
      * @param left  vertex A
      * @param right vertex B
@@ -36,23 +41,41 @@ public class MatrixMultiplicationVertex extends DoubleBinaryOpVertex implements
     @Override
     public Map<Vertex, PartialDerivative> reverseModeAutoDifferentiation(PartialDerivative derivativeOfOutputWithRespectToSelf) {
 
-        PartialDerivative dOutputsWrtLeft = PartialDerivative
-            .matrixMultiplyAlongWrtDimensions(
-                derivativeOfOutputWithRespectToSelf,
-                right.getValue(),
-                true
-            );
+        Map<Vertex, PartialDerivative> partials = new HashMap<>();
 
-        PartialDerivative dOutputsWrtRight = PartialDerivative
-            .matrixMultiplyAlongWrtDimensions(
-                derivativeOfOutputWithRespectToSelf,
-                left.getValue(),
-                false
+        if (!isSparseConstant(left)) {
+            partials.put(left, isBatched() ?
+                PartialDerivative.batchMatrixMultiplyAlongWrtDimensions(
+                    derivativeOfOutputWithRespectToSelf,
+                    right.getValue(),
+                    true,
+                    left.getShape(),
+                    getRank()
+                ) :
+                PartialDerivative.matrixMultiplyAlongWrtDimensions(
+                    derivativeOfOutputWithRespectToSelf,
+                    right.getValue(),
+                    true
+                )
             );
+        }
 
-        Map<Vertex, PartialDerivative> partials = new HashMap<>();
-        partials.put(left, dOutputsWrtLeft);
-        partials.put(right, dOutputsWrtRight);
+        if (!isSparseConstant(right)) {
+            partials.put(right, isBatched() ?
+                PartialDerivative.batchMatrixMultiplyAlongWrtDimensions(
+                    derivativeOfOutputWithRespectToSelf,
+                    left.getValue(),
+                    false,
+                    right.getShape(),
+                    getRank()
+                ) :
+                PartialDerivative.matrixMultiplyAlongWrtDimensions(
+                    derivativeOfOutputWithRespectToSelf,
+                    left.getValue(),
+                    false
+                )
+            );
+        }
 
         return partials;
     }
@@ -62,6 +85,26 @@ public class MatrixMultiplicationVertex extends DoubleBinaryOpVertex implements
         PartialDerivative dLeftWrtInput = derivativeOfParentsWithRespectToInput.getOrDefault(left, PartialDerivative.EMPTY);
         PartialDerivative dRightWrtInput = derivativeOfParentsWithRespectToInput.getOrDefault(right, PartialDerivative.EMPTY);
 
+        if (isBatched()) {
+            PartialDerivative partialsFromLeft = PartialDerivative.batchMatrixMultiplyAlongOfDimensions(
+                dLeftWrtInput,
+                right.getValue(),
+                true,
+                left.getRank(),
+                getRank()
+            );
+
+            PartialDerivative partialsFromRight = PartialDerivative.batchMatrixMultiplyAlongOfDimensions(
+                dRightWrtInput,
+                left.getValue(),
+                false,
+                right.getRank(),
+                getRank()
+            );
+
+            return partialsFromLeft.add(partialsFromRight);
+        }
+
         // dc = A * db + da * B;
         PartialDerivative partialsFromLeft = PartialDerivative.matrixMultiplyAlongOfDimensions(
             dLeftWrtInput,
@@ -77,4 +120,19 @@ public class MatrixMultiplicationVertex extends DoubleBinaryOpVertex implements
 
         return partialsFromLeft.add(partialsFromRight);
     }
+
+    /**
+     * @return true if either operand is a batch of matrices indexed by the dimensions before its last two
+     */
+    private boolean isBatched() {
+        return left.getRank() > 2 || right.getRank() > 2;
+    }
+
+    /**
+     * The partial with respect to a sparse constant, such as a design matrix, is dense and never used, so it isn't
+     * calculated.
+     */
+    private static boolean isSparseConstant(Vertex<?> operand) {
+        return operand instanceof ConstantVertex && operand.getValue() instanceof SparseDoubleTensor;
+    }
 }
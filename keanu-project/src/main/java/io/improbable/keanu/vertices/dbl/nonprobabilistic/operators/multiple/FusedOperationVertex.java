@@ -0,0 +1,589 @@
+package io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.multiple;
+
+import com.google.common.base.Preconditions;
+import io.improbable.keanu.tensor.TensorShape;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.MathKernels;
+import io.improbable.keanu.vertices.LoadVertexParam;
+import io.improbable.keanu.vertices.NonProbabilistic;
+import io.improbable.keanu.vertices.SaveVertexParam;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.Differentiable;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.diff.AutoDiffBroadcast;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.diff.PartialDerivative;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.AdditionVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.ArcTan2Vertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DifferenceVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DivisionVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.DoubleBinaryOpVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.MultiplicationVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.binary.PowerVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.ArcCosVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.ArcSinVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.ArcTanVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.CosVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.DoubleUnaryOpVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.ExpVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.LogGammaVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.LogVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.SigmoidVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.SinVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.TanVertex;
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static io.improbable.keanu.tensor.TensorShapeValidation.checkIsBroadcastable;
+
+/**
+ * A chain of elementwise operations done by one vertex, as made by
+ * {@link io.improbable.keanu.network.BayesianNetwork#fuseOperatorChains()}.
+ * <p>
+ * Each {@link Step} is an {@link Operation} on inputs of this vertex or on the result of the step before it. The value
+ * is calculated into one buffer, one pass per step, without the intermediate tensors of the chain. For autodiff the
+ * derivative of each element of the value with respect to the same element of each input is calculated in the same
+ * way, so the chain adds one partial derivative per input rather than one per operation.
+ * <p>
+ * Every input must have the shape of this vertex or have a length of one.
+ */
+public class FusedOperationVertex extends DoubleVertex implements Differentiable, NonProbabilistic<DoubleTensor> {
+
+    private final static String INPUTS_NAME = "inputs";
+    private final static String STEPS_NAME = "steps";
+
+    /**
+     * The operand of a step that is the result of the step before it
+     */
+    public static final int PREVIOUS_RESULT = -1;
+
+    private final DoubleVertex[] inputs;
+    private final Step[] steps;
+
+    /**
+     * @param inputs the distinct inputs of the operations
+     * @param steps  the operations in the order they are done, whose operands are either the index of an input or
+     *               {@link #PREVIOUS_RESULT}
+     */
+    public FusedOperationVertex(DoubleVertex[] inputs, List<Step> steps) {
+        super(checkInputsAndSteps(inputs, steps));
+        this.inputs = inputs.clone();
+        this.steps = steps.toArray(new Step[0]);
+        setParents(inputs);
+    }
+
+    public FusedOperationVertex(@LoadVertexParam(INPUTS_NAME) Vertex[] inputs,
+                                @LoadVertexParam(STEPS_NAME) String steps) {
+        this(Arrays.stream(inputs).toArray(DoubleVertex[]::new), Step.parse(steps));
+    }
+
+    private static long[] checkInputsAndSteps(DoubleVertex[] inputs, List<Step> steps) {
+        Preconditions.checkArgument(!steps.isEmpty(), "A fused operation must have at least one step");
+        Preconditions.checkArgument(
+            new HashSet<>(Arrays.asList(inputs)).size() == inputs.length,
+            "The inputs of a fused operation must be distinct"
+        );
+
+        long[] shape = null;
+        for (int i = 0; i < steps.size(); i++) {
+            final int[] operands = steps.get(i).getOperands();
+            final long[][] operandShapes = new long[operands.length][];
+            for (int j = 0; j < operands.length; j++) {
+                if (operands[j] == PREVIOUS_RESULT) {
+                    Preconditions.checkArgument(i > 0, "The first step of a fused operation has no previous result");
+                    operandShapes[j] = shape;
+                } else {
+                    Preconditions.checkElementIndex(operands[j], inputs.length, "Operand");
+                    operandShapes[j] = inputs[operands[j]].getShape();
+                }
+            }
+            shape = operands.length == 1 ? operandShapes[0] : checkIsBroadcastable(operandShapes[0], operandShapes[1]);
+        }
+
+        for (DoubleVertex input : inputs) {
+            if (!Arrays.equals(input.getShape(), shape) && TensorShape.getLength(input.getShape()) != 1) {
+                throw new IllegalArgumentException(
+                    "Input of shape " + Arrays.toString(input.getShape()) +
+                        " must have length one or the result shape " + Arrays.toString(shape)
+                );
+            }
+        }
+        return shape;
+    }
+
+    @SaveVertexParam(INPUTS_NAME)
+    public DoubleVertex[] getInputs() {
+        return inputs;
+    }
+
+    /**
+     * @return the steps as saved, e.g. "MULTIPLICATION 0 1;EXP r" for the exp of the first input times the second
+     */
+    @SaveVertexParam(STEPS_NAME)
+    public String getSteps() {
+        return Arrays.stream(steps).map(Step::toString).collect(Collectors.joining(";"));
+    }
+
+    public List<Step> getStepList() {
+        return Arrays.asList(steps.clone());
+    }
+
+    @Override
+    public DoubleTensor calculate() {
+        final int length = TensorShape.getLengthAsInt(getShape());
+        final double[][] inputValues = getInputValues(length);
+        final double[] result = new double[length];
+
+        for (Step step : steps) {
+            final Operation operation = step.operation;
+            final double[] left = operandValues(step.operands[0], inputValues, result);
+            final int leftStride = left.length == 1 ? 0 : 1;
+
+            if (step.operands.length == 1) {
+                for (int i = 0; i < length; i++) {
+                    result[i] = operation.apply(left[i * leftStride], 0);
+                }
+            } else {
+                final double[] right = operandValues(step.operands[1], inputValues, result);
+                final int rightStride = right.length == 1 ? 0 : 1;
+                for (int i = 0; i < length; i++) {
+                    result[i] = operation.apply(left[i * leftStride], right[i * rightStride]);
+                }
+            }
+        }
+
+        return DoubleTensor.create(result, getShape());
+    }
+
+    @Override
+    public PartialDerivative forwardModeAutoDifferentiation(Map<Vertex, PartialDerivative> derivativeOfParentsWithRespectToInput) {
+        double[][] dSelfWrtInputs = null;
+        PartialDerivative result = PartialDerivative.EMPTY;
+
+        for (int k = 0; k < inputs.length; k++) {
+            final PartialDerivative dInputWrtInput = derivativeOfParentsWithRespectToInput.getOrDefault(inputs[k], PartialDerivative.EMPTY);
+            if (!dInputWrtInput.isPresent()) {
+                continue;
+            }
+
+            if (dSelfWrtInputs == null) {
+                dSelfWrtInputs = calculateElementwiseDerivatives();
+            }
+
+            final PartialDerivative fromInput = AutoDiffBroadcast.correctForBroadcastPartialForward(dInputWrtInput, inputs[k].getShape(), this.getShape());
+            result = result.add(fromInput.multiplyAlongOfDimensions(DoubleTensor.create(dSelfWrtInputs[k], getShape()), this.getRank()));
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<Vertex, PartialDerivative> reverseModeAutoDifferentiation(PartialDerivative derivativeOfOutputWithRespectToSelf) {
+        final double[][] dSelfWrtInputs = calculateElementwiseDerivatives();
+        final Map<Vertex, PartialDerivative> partials = new HashMap<>();
+
+        for (int k = 0; k < inputs.length; k++) {
+            final PartialDerivative dOutputWrtInput = derivativeOfOutputWithRespectToSelf.multiplyAlongWrtDimensions(
+                DoubleTensor.create(dSelfWrtInputs[k], getShape())
+            );
+            partials.put(inputs[k], AutoDiffBroadcast.correctForBroadcastPartialReverse(dOutputWrtInput, this.getShape(), inputs[k].getShape()));
+        }
+
+        return partials;
+    }
+
+    /**
+     * @return for each input, the derivative of each element of the value with respect to the same element of the
+     * input, which is all that is needed as every operation is elementwise
+     */
+    private double[][] calculateElementwiseDerivatives() {
+        final int length = TensorShape.getLengthAsInt(getShape());
+        final double[][] inputValues = getInputValues(length);
+        final double[] result = new double[length];
+        final double[][] derivatives = new double[inputs.length][length];
+
+        for (Step step : steps) {
+            final Operation operation = step.operation;
+            final boolean isBinary = step.operands.length == 2;
+            final int leftOperand = step.operands[0];
+            final int rightOperand = isBinary ? step.operands[1] : leftOperand;
+            final double[] left = operandValues(leftOperand, inputValues, result);
+            final double[] right = operandValues(rightOperand, inputValues, result);
+            final int leftStride = left.length == 1 ? 0 : 1;
+            final int rightStride = right.length == 1 ? 0 : 1;
+
+            for (int i = 0; i < length; i++) {
+                final double l = left[i * leftStride];
+                final double r = isBinary ? right[i * rightStride] : 0;
+                final double value = operation.apply(l, r);
+                final double dValueWrtLeft = operation.leftDerivative(l, r, value);
+                final double dValueWrtRight = isBinary ? operation.rightDerivative(l, r, value) : 0;
+
+                for (int k = 0; k < inputs.length; k++) {
+                    final double previous = derivatives[k][i];
+                    final double dLeftWrtInput = operandDerivative(leftOperand, k, previous);
+                    final double dRightWrtInput = isBinary ? operandDerivative(rightOperand, k, previous) : 0;
+
+                    //only terms of operands that depend on the input are added, so that an infinite derivative of
+                    //an operand doesn't make the derivative with respect to an unrelated input NaN
+                    double derivative = 0;
+                    if (dLeftWrtInput != 0) {
+                        derivative += dValueWrtLeft * dLeftWrtInput;
+                    }
+                    if (dRightWrtInput != 0) {
+                        derivative += dValueWrtRight * dRightWrtInput;
+                    }
+                    derivatives[k][i] = derivative;
+                }
+                result[i] = value;
+            }
+        }
+
+        return derivatives;
+    }
+
+    private static double operandDerivative(int operand, int input, double previousDerivative) {
+        if (operand == PREVIOUS_RESULT) {
+            return previousDerivative;
+        }
+        return operand == input ? 1 : 0;
+    }
+
+    private static double[] operandValues(int operand, double[][] inputValues, double[] previousResult) {
+        return operand == PREVIOUS_RESULT ? previousResult : inputValues[operand];
+    }
+
+    private double[][] getInputValues(int length) {
+        final double[][] values = new double[inputs.length][];
+        for (int k = 0; k < inputs.length; k++) {
+            values[k] = inputs[k].getValue().asFlatDoubleArray();
+            if (values[k].length != 1 && values[k].length != length) {
+                throw new IllegalArgumentException(
+                    "Input value of length " + values[k].length + " must have length one or " + length
+                );
+            }
+        }
+        return values;
+    }
+
+    /**
+     * An operation of a step, applied to one element of each operand
+     */
+    public static final class Step {
+
+        private final Operation operation;
+        private final int[] operands;
+
+        /**
+         * @param operation the operation
+         * @param operands  the index of an input or {@link #PREVIOUS_RESULT} for each operand of the operation
+         */
+        public Step(Operation operation, int... operands) {
+            Preconditions.checkArgument(
+                operands.length == operation.getArity(),
+                operation + " takes " + operation.getArity() + " operands but was given " + operands.length
+            );
+            this.operation = operation;
+            this.operands = operands.clone();
+        }
+
+        public Operation getOperation() {
+            return operation;
+        }
+
+        public int[] getOperands() {
+            return operands.clone();
+        }
+
+        static List<Step> parse(String steps) {
+            final List<Step> parsed = new ArrayList<>();
+            for (String step : steps.split(";")) {
+                final String[] parts = step.trim().split(" ");
+                final int[] operands = new int[parts.length - 1];
+                for (int i = 1; i < parts.length; i++) {
+                    operands[i - 1] = parts[i].equals("r") ? PREVIOUS_RESULT : Integer.parseInt(parts[i]);
+                }
+                parsed.add(new Step(Operation.valueOf(parts[0]), operands));
+            }
+            return parsed;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder(operation.name());
+            for (int operand : operands) {
+                builder.append(' ').append(operand == PREVIOUS_RESULT ? "r" : Integer.toString(operand));
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * The elementwise operations that can be fused, each of which is done by one operator vertex class. The values
+     * are calculated with the same functions as the tensor operations used by those vertices.
+     */
+    public enum Operation {
+
+        ADDITION(AdditionVertex.class, 2) {
+            @Override
+            double apply(double left, double right) {
+                return left + right;
+            }
+
+            @Override
+            double leftDerivative(double left, double right, double result) {
+                return 1;
+            }
+
+            @Override
+            double rightDerivative(double left, double right, double result) {
+                return 1;
+            }
+        },
+        DIFFERENCE(DifferenceVertex.class, 2) {
+            @Override
+            double apply(double left, double right) {
+                return left - right;
+            }
+
+            @Override
+            double leftDerivative(double left, double right, double result) {
+                return 1;
+            }
+
+            @Override
+            double rightDerivative(double left, double right, double result) {
+                return -1;
+            }
+        },
+        MULTIPLICATION(MultiplicationVertex.class, 2) {
+            @Override
+            double apply(double left, double right) {
+                return left * right;
+            }
+
+            @Override
+            double leftDerivative(double left, double right, double result) {
+                return right;
+            }
+
+            @Override
+            double rightDerivative(double left, double right, double result) {
+                return left;
+            }
+        },
+        DIVISION(DivisionVertex.class, 2) {
+            @Override
+            double apply(double left, double right) {
+                return left / right;
+            }
+
+            @Override
+            double leftDerivative(double left, double right, double result) {
+                return 1 / right;
+            }
+
+            @Override
+            double rightDerivative(double left, double right, double result) {
+                return -left / (right * right);
+            }
+        },
+        POWER(PowerVertex.class, 2) {
+            @Override
+            double apply(double base, double exponent) {
+                return FastMath.pow(base, exponent);
+            }
+
+            @Override
+            double leftDerivative(double base, double exponent, double result) {
+                return exponent * FastMath.pow(base, exponent - 1);
+            }
+
+            @Override
+            double rightDerivative(double base, double exponent, double result) {
+                return result * MathKernels.log(base);
+            }
+        },
+        ARC_TAN2(ArcTan2Vertex.class, 2) {
+            @Override
+            double apply(double x, double y) {
+                return FastMath.atan2(y, x);
+            }
+
+            @Override
+            double leftDerivative(double x, double y, double result) {
+                return -y / (x * x + y * y);
+            }
+
+            @Override
+            double rightDerivative(double x, double y, double result) {
+                return x / (x * x + y * y);
+            }
+        },
+        EXP(ExpVertex.class, 1) {
+            @Override
+            double apply(double value, double unused) {
+                return MathKernels.exp(value);
+            }
+
+            @Override
+            double leftDerivative(double value, double unused, double result) {
+                return result;
+            }
+        },
+        LOG(LogVertex.class, 1) {
+            @Override
+            double apply(double value, double unused) {
+                return MathKernels.log(value);
+            }
+
+            @Override
+            double leftDerivative(double value, double unused, double result) {
+                return 1 / value;
+            }
+        },
+        SIGMOID(SigmoidVertex.class, 1) {
+            @Override
+            double apply(double value, double unused) {
+                return MathKernels.sigmoid(value);
+            }
+
+            @Override
+            double leftDerivative(double value, double unused, double result) {
+                return result * (1 - result);
+            }
+        },
+        LOG_GAMMA(LogGammaVertex.class, 1) {
+            @Override
+            double apply(double value, double unused) {
+                return MathKernels.logGamma(value);
+            }
+
+            @Override
+            double leftDerivative(double value, double unused, double result) {
+                return MathKernels.digamma(value);
+            }
+        },
+        SIN(SinVertex.class, 1) {
+            @Override
+            double apply(double value, double unused) {
+                return FastMath.sin(value);
+            }
+
+            @Override
+            double leftDerivative(double value, double unused, double result) {
+                return FastMath.cos(value);
+            }
+        },
+        COS(CosVertex.class, 1) {
+            @Override
+            double apply(double value, double unused) {
+                return FastMath.cos(value);
+            }
+
+            @Override
+            double leftDerivative(double value, double unused, double result) {
+                return -FastMath.sin(value);
+            }
+        },
+        TAN(TanVertex.class, 1) {
+            @Override
+            double apply(double value, double unused) {
+                return FastMath.tan(value);
+            }
+
+            @Override
+            double leftDerivative(double value, double unused, double result) {
+                final double cos = FastMath.cos(value);
+                return 1 / (cos * cos);
+            }
+        },
+        ARC_SIN(ArcSinVertex.class, 1) {
+            @Override
+            double apply(double value, double unused) {
+                return FastMath.asin(value);
+            }
+
+            @Override
+            double leftDerivative(double value, double unused, double result) {
+                return 1 / FastMath.sqrt(1 - value * value);
+            }
+        },
+        ARC_COS(ArcCosVertex.class, 1) {
+            @Override
+            double apply(double value, double unused) {
+                return FastMath.acos(value);
+            }
+
+            @Override
+            double leftDerivative(double value, double unused, double result) {
+                return -1 / FastMath.sqrt(1 - value * value);
+            }
+        },
+        ARC_TAN(ArcTanVertex.class, 1) {
+            @Override
+            double apply(double value, double unused) {
+                return FastMath.atan(value);
+            }
+
+            @Override
+            double leftDerivative(double value, double unused, double result) {
+                return 1 / (1 + value * value);
+            }
+        };
+
+        private final Class<? extends DoubleVertex> vertexClass;
+        private final int arity;
+
+        Operation(Class<? extends DoubleVertex> vertexClass, int arity) {
+            this.vertexClass = vertexClass;
+            this.arity = arity;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        /**
+         * @param vertex a vertex
+         * @return the operation done by the vertex or null if it isn't one that can be fused. Subclasses of the
+         * operator vertices are not fused as they may do something else.
+         */
+        public static Operation of(Vertex<?> vertex) {
+            for (Operation operation : values()) {
+                if (vertex.getClass() == operation.vertexClass) {
+                    return operation;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param vertex a vertex that does this operation
+         * @return the operands of the vertex in the order the operation takes them
+         */
+        public DoubleVertex[] getOperands(Vertex<?> vertex) {
+            Preconditions.checkArgument(vertex.getClass() == vertexClass, "Vertex does not do " + this);
+            if (arity == 1) {
+                return new DoubleVertex[]{((DoubleUnaryOpVertex) vertex).getInputVertex()};
+            } else {
+                final DoubleBinaryOpVertex binaryOp = (DoubleBinaryOpVertex) vertex;
+                return new DoubleVertex[]{binaryOp.getLeft(), binaryOp.getRight()};
+            }
+        }
+
+        abstract double apply(double left, double right);
+
+        abstract double leftDerivative(double left, double right, double result);
+
+        double rightDerivative(double left, double right, double result) {
+            return 0;
+        }
+    }
+}
@@ -2,11 +2,12 @@ package io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary;
 
 import io.improbable.keanu.annotation.ExportVertexToPythonBindings;
 import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.CascadeCutoffVertex;
 import io.improbable.keanu.vertices.LoadVertexParam;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
 
 
-public class RoundVertex extends DoubleUnaryOpVertex {
+public class RoundVertex extends DoubleUnaryOpVertex implements CascadeCutoffVertex {
 
     /**
      * Applies the Rounding operator to a vertex.
@@ -1,6 +1,7 @@
 package io.improbable.keanu.vertices.generic.nonprobabilistic;
 
 import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.vertices.CascadeCutoffVertex;
 import io.improbable.keanu.vertices.NonProbabilistic;
 import io.improbable.keanu.vertices.NonSaveableVertex;
 import io.improbable.keanu.vertices.Vertex;
@@ -9,7 +10,7 @@ import io.improbable.keanu.vertices.generic.GenericTensorVertex;
 import java.util.List;
 import java.util.Map;
 
-public class CPTVertex<OUT extends Tensor> extends GenericTensorVertex<OUT> implements NonProbabilistic<OUT>, NonSaveableVertex {
+public class CPTVertex<OUT extends Tensor> extends GenericTensorVertex<OUT> implements CascadeCutoffVertex, NonProbabilistic<OUT>, NonSaveableVertex {
 
     private final List<Vertex<? extends Tensor<Boolean>>> inputs;
     private final Map<CPTCondition, ? extends Vertex<OUT>> conditions;
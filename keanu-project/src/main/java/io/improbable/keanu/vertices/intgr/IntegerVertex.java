@@ -19,6 +19,7 @@ import io.improbable.keanu.vertices.dbl.nonprobabilistic.CastToDoubleVertex;
 import io.improbable.keanu.vertices.intgr.nonprobabilistic.CastToIntegerVertex;
 import io.improbable.keanu.vertices.intgr.nonprobabilistic.ConstantIntegerVertex;
 import io.improbable.keanu.vertices.intgr.nonprobabilistic.operators.binary.IntegerAdditionVertex;
+import io.improbable.keanu.vertices.intgr.nonprobabilistic.operators.binary.IntegerBinaryOpLambda;
 import io.improbable.keanu.vertices.intgr.nonprobabilistic.operators.binary.IntegerDifferenceVertex;
 import io.improbable.keanu.vertices.intgr.nonprobabilistic.operators.binary.IntegerDivisionVertex;
 import io.improbable.keanu.vertices.intgr.nonprobabilistic.operators.binary.IntegerMaxVertex;
@@ -34,6 +35,10 @@ import io.improbable.keanu.vertices.intgr.nonprobabilistic.operators.unary.Integ
 import io.improbable.keanu.vertices.intgr.nonprobabilistic.operators.unary.IntegerUnaryOpLambda;
 
 import java.util.function.Function;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntUnaryOperator;
+
+import static io.improbable.keanu.tensor.TensorShapeValidation.checkIsBroadcastable;
 
 public abstract class IntegerVertex extends Vertex<IntegerTensor> implements IntegerOperators<IntegerVertex> {
 
@@ -140,6 +145,26 @@ public abstract class IntegerVertex extends Vertex<IntegerTensor> implements Int
         return new IntegerUnaryOpLambda<>(this, op);
     }
 
+    /**
+     * @param op the function to apply to each element of the value of this vertex, which is done without boxing
+     * @return a vertex of the result
+     */
+    public IntegerVertex elementwiseLambda(IntUnaryOperator op) {
+        return new IntegerUnaryOpLambda<>(this, value -> value.applyInt(op));
+    }
+
+    /**
+     * @param that the right operand, which is broadcast against this vertex
+     * @param op   the function to apply to each pair of elements of the values of this vertex and that, which is
+     *             done without boxing
+     * @return a vertex of the result
+     */
+    public IntegerVertex elementwiseLambda(IntegerVertex that, IntBinaryOperator op) {
+        return new IntegerBinaryOpLambda<>(
+            checkIsBroadcastable(getShape(), that.getShape()), this, that, (left, right) -> left.applyInt(right, op)
+        );
+    }
+
     // 'times' and 'div' are required to enable operator overloading in Kotlin (through the DoubleOperators interface)
     public IntegerVertex times(IntegerVertex that) {
         return multiply(that);
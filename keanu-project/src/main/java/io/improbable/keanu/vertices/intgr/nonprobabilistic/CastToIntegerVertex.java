@@ -3,13 +3,14 @@ package io.improbable.keanu.vertices.intgr.nonprobabilistic;
 import io.improbable.keanu.annotation.ExportVertexToPythonBindings;
 import io.improbable.keanu.tensor.NumberTensor;
 import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import io.improbable.keanu.vertices.CascadeCutoffVertex;
 import io.improbable.keanu.vertices.LoadVertexParam;
 import io.improbable.keanu.vertices.NonProbabilistic;
 import io.improbable.keanu.vertices.SaveVertexParam;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.intgr.IntegerVertex;
 
-public class CastToIntegerVertex extends IntegerVertex implements NonProbabilistic<IntegerTensor> {
+public class CastToIntegerVertex extends IntegerVertex implements CascadeCutoffVertex, NonProbabilistic<IntegerTensor> {
 
     private final Vertex<? extends NumberTensor> inputVertex;
     private static final String INPUT_NAME = "inputVertex";
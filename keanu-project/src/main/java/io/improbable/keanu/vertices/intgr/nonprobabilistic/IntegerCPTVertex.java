@@ -2,6 +2,7 @@ package io.improbable.keanu.vertices.intgr.nonprobabilistic;
 
 import io.improbable.keanu.tensor.Tensor;
 import io.improbable.keanu.tensor.intgr.IntegerTensor;
+import io.improbable.keanu.vertices.CascadeCutoffVertex;
 import io.improbable.keanu.vertices.NonProbabilistic;
 import io.improbable.keanu.vertices.NonSaveableVertex;
 import io.improbable.keanu.vertices.Vertex;
@@ -11,7 +12,7 @@ import io.improbable.keanu.vertices.intgr.IntegerVertex;
 import java.util.List;
 import java.util.Map;
 
-public class IntegerCPTVertex extends IntegerVertex implements NonProbabilistic<IntegerTensor>, NonSaveableVertex {
+public class IntegerCPTVertex extends IntegerVertex implements CascadeCutoffVertex, NonProbabilistic<IntegerTensor>, NonSaveableVertex {
 
     private final List<Vertex<? extends Tensor<Boolean>>> inputs;
     private final Map<CPTCondition, IntegerVertex> conditions;
@@ -0,0 +1,123 @@
+package io.improbable.keanu.network;
+
+import com.google.common.collect.ImmutableList;
+import io.improbable.keanu.algorithms.graphtraversal.DiscoverGraph;
+import io.improbable.keanu.algorithms.graphtraversal.TopologicalSort;
+import io.improbable.keanu.vertices.ConstantVertex;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AdjacencyIndexTest {
+
+    private DoubleVertex A;
+    private DoubleVertex B;
+    private DoubleVertex C;
+    private DoubleVertex D;
+    private DoubleVertex E;
+    private BayesianNetwork network;
+
+    @Before
+    public void setup() {
+        A = new GaussianVertex(0, 1);
+        B = ConstantVertex.of(2.0);
+        C = A.times(B);
+        D = new GaussianVertex(C, 1);
+        E = D.plus(A);
+        network = new BayesianNetwork(A.getConnectedGraph());
+    }
+
+    @Test
+    public void indexesParentsAndChildrenInTopologicalOrder() {
+        AdjacencyIndex index = network.getIndex();
+
+        assertTrue(index.isValid());
+        assertTrue(index.isClosed());
+        assertEquals(TopologicalSort.sort(network.getAllVertices()), index.getTopologicalOrder());
+        for (Vertex<?> vertex : index.getTopologicalOrder()) {
+            for (Vertex<?> parent : vertex.getParents()) {
+                assertTrue(index.indexOf(parent) < index.indexOf(vertex));
+            }
+        }
+        assertThat(index.sort(ImmutableList.of(E, C, A)), contains(A, C, E));
+    }
+
+    @Test
+    public void findsTheConnectedGraphFromAnyVertex() {
+        AdjacencyIndex index = network.getIndex();
+
+        for (Vertex<?> vertex : network.getAllVertices()) {
+            assertEquals(new HashSet<>(network.getAllVertices()), index.getConnectedGraph(vertex));
+        }
+        assertEquals(new HashSet<>(network.getAllVertices()), C.getConnectedGraph());
+    }
+
+    @Test
+    public void isInvalidatedWhenTheGraphChanges() {
+        AdjacencyIndex index = network.getIndex();
+
+        DoubleVertex F = E.exp();
+
+        assertFalse(index.isValid());
+        Set<Vertex> expected = new HashSet<>(network.getAllVertices());
+        expected.add(F);
+        assertEquals(expected, DiscoverGraph.getEntireGraph(A));
+
+        AdjacencyIndex rebuilt = network.getIndex();
+        assertTrue(rebuilt.isValid());
+        assertFalse(rebuilt.isClosed());
+        assertEquals(-1, rebuilt.indexOf(F));
+    }
+
+    @Test
+    public void staysValidWhenVerticesOfAnotherGraphChange() {
+        AdjacencyIndex index = network.getIndex();
+
+        GaussianVertex other = new GaussianVertex(0, 1);
+        other.plus(1.0).exp();
+        new BayesianNetwork(other.getConnectedGraph()).getIndex();
+
+        assertTrue(index.isValid());
+        assertSame(index, network.getIndex());
+    }
+
+    @Test
+    public void compilesTheSameNetworkFromTheIndex() {
+        CompiledNetwork compiled = network.compile();
+
+        A.setValue(3.0);
+        compiled.cascadeUpdate(A);
+
+        assertEquals(6.0, C.getValue().scalar(), 0.0);
+        assertEquals(D.getValue().scalar() + 3.0, E.getValue().scalar(), 0.0);
+        assertEquals(network.getVertexCount(), compiled.getVertexCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotSortVerticesThatAreNotInTheIndex() {
+        List<Vertex> notInIndex = ImmutableList.of(A, ConstantVertex.of(1.0));
+        network.getIndex().sort(notInIndex);
+    }
+
+    @Test
+    public void canDiscoverASubsetWithoutTheIndex() {
+        BayesianNetwork subset = new BayesianNetwork(ImmutableList.of(A, C));
+        AdjacencyIndex index = subset.getIndex();
+
+        assertFalse(index.isClosed());
+        assertEquals(new HashSet<>(network.getAllVertices()), A.getConnectedGraph());
+    }
+}
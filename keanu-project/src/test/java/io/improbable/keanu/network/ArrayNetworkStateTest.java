@@ -0,0 +1,164 @@
+package io.improbable.keanu.network;
+
+import com.google.common.collect.ImmutableMap;
+import io.improbable.keanu.algorithms.VariableReference;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ArrayNetworkStateTest {
+
+    private static final double DELTA = 1e-10;
+
+    private GaussianVertex A;
+    private GaussianVertex B;
+    private DoubleVertex C;
+    private GaussianVertex D;
+    private KeanuProbabilisticModel model;
+
+    @Before
+    public void setup() {
+        A = new GaussianVertex(new long[]{2}, 0.0, 1.0);
+        B = new GaussianVertex(0.0, 1.0);
+        C = A.times(B).plus(A.exp());
+        D = new GaussianVertex(C, 1.0);
+
+        A.setValue(DoubleTensor.create(0.5, -0.5));
+        B.setValue(2.0);
+        D.observe(DoubleTensor.create(1.0, 2.0));
+
+        model = new KeanuProbabilisticModel(D.getConnectedGraph());
+    }
+
+    @After
+    public void resetParallelism() {
+        CompiledNetworkParallelism.setEnabled(false);
+        CompiledNetworkParallelism.setForkJoinPool(ForkJoinPool.commonPool());
+        CompiledNetworkParallelism.setLevelCostThreshold(CompiledNetworkParallelism.DEFAULT_LEVEL_COST_THRESHOLD);
+    }
+
+    private Map<VariableReference, DoubleTensor> inputs(double a0, double a1, double b) {
+        return ImmutableMap.of(
+            A.getId(), DoubleTensor.create(a0, a1),
+            B.getId(), DoubleTensor.scalar(b)
+        );
+    }
+
+    @Test
+    public void calculatesAgainstTheStateAndLeavesTheVerticesAsTheyWere() {
+        double logProbBefore = model.logProb();
+        ArrayNetworkState state = model.newState();
+
+        double stateLogProb = model.logProb(state, inputs(0.1, 0.2, -1.0));
+
+        assertArrayEquals(new double[]{0.5, -0.5}, A.getValue().asFlatDoubleArray(), 0.0);
+        assertEquals(logProbBefore, model.logProb(), DELTA);
+
+        assertArrayEquals(new double[]{0.1, 0.2}, state.getValue(A).asFlatDoubleArray(), 0.0);
+        assertArrayEquals(
+            new double[]{0.1 * -1.0 + Math.exp(0.1), 0.2 * -1.0 + Math.exp(0.2)},
+            state.<DoubleTensor>get(C.getId()).asFlatDoubleArray(),
+            DELTA
+        );
+        assertEquals(model.logProb(inputs(0.1, 0.2, -1.0)), stateLogProb, DELTA);
+    }
+
+    @Test
+    public void statesAreIndependentOfEachOther() {
+        ArrayNetworkState first = model.newState();
+        model.logProb(first, inputs(0.1, 0.2, -1.0));
+        ArrayNetworkState second = first.copy();
+
+        double secondLogProb = model.logProb(second, inputs(1.0, 2.0, 3.0));
+
+        assertArrayEquals(new double[]{0.1, 0.2}, first.getValue(A).asFlatDoubleArray(), 0.0);
+        assertEquals(model.logProb(inputs(0.1, 0.2, -1.0)), model.logProb(first, ImmutableMap.of()), DELTA);
+        assertEquals(model.logProb(inputs(1.0, 2.0, 3.0)), secondLogProb, DELTA);
+    }
+
+    @Test
+    public void logProbAfterIsTheSameAsTheLogProb() {
+        ArrayNetworkState state = model.newState();
+        double logProbBefore = model.logProb(state, ImmutableMap.of());
+
+        double logProbAfter = model.logProbAfter(state, ImmutableMap.of(B.getId(), DoubleTensor.scalar(0.3)), logProbBefore);
+
+        assertEquals(model.logProb(ImmutableMap.of(B.getId(), DoubleTensor.scalar(0.3))), logProbAfter, DELTA);
+        assertEquals(model.logLikelihood(), model.logLikelihood(state, ImmutableMap.of()), DELTA);
+    }
+
+    @Test
+    public void canCalculateLogProbsOfDifferentStatesConcurrently() throws Exception {
+        int steps = 200;
+        double[] expected = new double[steps];
+        for (int i = 0; i < steps; i++) {
+            expected[i] = model.logProb(inputs(i * 0.01, -i * 0.02, 1.0 + i * 0.005));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<double[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                ArrayNetworkState state = model.newState();
+                results.add(executor.submit(() -> {
+                    double[] logProbs = new double[steps];
+                    for (int i = 0; i < steps; i++) {
+                        logProbs[i] = model.logProb(state, inputs(i * 0.01, -i * 0.02, 1.0 + i * 0.005));
+                    }
+                    return logProbs;
+                }));
+            }
+
+            for (Future<double[]> result : results) {
+                assertArrayEquals(expected, result.get(), DELTA);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void bindsTheStateOnThreadsThatUpdateLevelsInParallel() {
+        CompiledNetworkParallelism.setEnabled(true);
+        CompiledNetworkParallelism.setForkJoinPool(new ForkJoinPool(4));
+        CompiledNetworkParallelism.setLevelCostThreshold(1);
+
+        List<DoubleVertex> ends = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ends.add(A.times(i).plus(B).exp());
+        }
+        CompiledNetwork network = new BayesianNetwork(A.getConnectedGraph()).compile();
+        network.eval(ends);
+        ArrayNetworkState state = network.newState();
+
+        state.run(() -> {
+            A.setValue(DoubleTensor.create(0.1, 0.2));
+            state.getCompiledNetwork().cascadeUpdate(A);
+        });
+
+        for (int i = 0; i < ends.size(); i++) {
+            assertArrayEquals(new double[]{Math.exp(0.5 * i + 2.0), Math.exp(-0.5 * i + 2.0)}, ends.get(i).getValue().asFlatDoubleArray(), DELTA);
+            assertArrayEquals(new double[]{Math.exp(0.1 * i + 2.0), Math.exp(0.2 * i + 2.0)}, state.getValue(ends.get(i)).asFlatDoubleArray(), DELTA);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAStateOfAnotherNetwork() {
+        KeanuProbabilisticModel other = new KeanuProbabilisticModel(D.getConnectedGraph());
+        model.logProb(other.newState(), ImmutableMap.of());
+    }
+}
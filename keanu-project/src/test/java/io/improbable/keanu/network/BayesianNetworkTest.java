@@ -1,11 +1,15 @@
 package io.improbable.keanu.network;
 
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.SinglePrecisionDoubleTensor;
+import io.improbable.keanu.tensor.dbl.SinglePrecisionDoubleTensorFactory;
 import io.improbable.keanu.vertices.NonSaveableVertex;
 import io.improbable.keanu.vertices.Vertex;
 import io.improbable.keanu.vertices.VertexLabel;
 import io.improbable.keanu.vertices.bool.BooleanVertex;
 import io.improbable.keanu.vertices.bool.probabilistic.BernoulliVertex;
 import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -23,6 +27,7 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.mock;
 
@@ -174,4 +179,20 @@ public class BayesianNetworkTest {
 
         network.getVertexByLabel(new VertexLabel(LABEL_B));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void canConvertDoubleTensorValuesOfNetwork() {
+        DoubleVertex a = new GaussianVertex(new long[]{2, 2}, 0, 1);
+        a.observe(DoubleTensor.arange(0, 4).reshape(2, 2));
+        DoubleVertex b = a.times(2.0);
+        BayesianNetwork net = new BayesianNetwork(b.getConnectedGraph());
+
+        net.convertDoubleTensorValues(new SinglePrecisionDoubleTensorFactory());
+        b.eval();
+
+        assertTrue(a.isObserved());
+        assertThat(a.getValue(), instanceOf(SinglePrecisionDoubleTensor.class));
+        assertThat(b.getValue(), instanceOf(SinglePrecisionDoubleTensor.class));
+        assertThat(b.getValue().asFlatDoubleArray(), equalTo(new double[]{0, 2, 4, 6}));
+    }
+}
@@ -0,0 +1,209 @@
+package io.improbable.keanu.network;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.ConstantVertex;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.improbable.keanu.vertices.TestGraphGenerator.addLinks;
+import static io.improbable.keanu.vertices.TestGraphGenerator.passThroughVertex;
+import static io.improbable.keanu.vertices.TestGraphGenerator.sumVertex;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@Slf4j
+public class CompiledNetworkTest {
+
+    @After
+    public void resetParallelism() {
+        CompiledNetworkParallelism.setEnabled(false);
+        CompiledNetworkParallelism.setForkJoinPool(ForkJoinPool.commonPool());
+        CompiledNetworkParallelism.setLevelCostThreshold(CompiledNetworkParallelism.DEFAULT_LEVEL_COST_THRESHOLD);
+    }
+
+    @Test
+    public void doesNotDoUnnecessaryOperationsOnRepeatedCascades() {
+        AtomicInteger n = new AtomicInteger(0);
+        AtomicInteger m = new AtomicInteger(0);
+        DoubleVertex start = new GaussianVertex(0, 1);
+
+        int links = 20;
+        DoubleVertex end = addLinks(start, n, m, links);
+        CompiledNetwork network = new BayesianNetwork(start.getConnectedGraph()).compile();
+
+        start.setValue(2.0);
+        network.cascadeUpdate(start);
+        assertEquals(Math.pow(2, links + 1), end.getValue().scalar(), 0.0);
+        assertEquals(3 * links, n.get());
+
+        start.setValue(3.0);
+        network.cascadeUpdate(start);
+        assertEquals(3 * Math.pow(2, links), end.getValue().scalar(), 0.0);
+        assertEquals(6 * links, n.get());
+    }
+
+    @Test
+    public void cascadesAroundProbabilisticVerticesFromManyVertices() {
+        AtomicInteger n = new AtomicInteger(0);
+        AtomicInteger m = new AtomicInteger(0);
+        DoubleVertex firstLayerStart = new GaussianVertex(0, 1);
+        DoubleVertex firstLayerEnd = addLinks(firstLayerStart, n, m, 1);
+
+        DoubleVertex secondLayerStart = new GaussianVertex(firstLayerEnd, 1);
+        DoubleVertex secondLayerLeft = sumVertex(secondLayerStart, firstLayerEnd, n, m, id -> log.info("OP on id: " + id));
+        DoubleVertex secondLayerRight = passThroughVertex(secondLayerStart, n, m, id -> log.info("OP on id: " + id));
+        DoubleVertex secondLayerEnd = sumVertex(secondLayerLeft, secondLayerRight, n, m, id -> log.info("OP on id: " + id));
+
+        CompiledNetwork network = new BayesianNetwork(firstLayerStart.getConnectedGraph()).compile();
+
+        secondLayerStart.setValue(2.0);
+        firstLayerStart.setValue(3.0);
+        network.cascadeUpdate(ImmutableList.of(firstLayerStart, secondLayerStart));
+
+        assertEquals(6.0, firstLayerEnd.getValue().scalar(), 0.0);
+        assertEquals(10.0, secondLayerEnd.getValue().scalar(), 0.0);
+        assertEquals(6, n.get());
+    }
+
+    @Test
+    public void evaluatesOnlyWhatIsNeeded() {
+        AtomicInteger n = new AtomicInteger(0);
+        AtomicInteger m = new AtomicInteger(0);
+        DoubleVertex start = ConstantVertex.of(4.2).floor();
+
+        int links = 20;
+        DoubleVertex end = addLinks(start, n, m, links);
+        CompiledNetwork network = new BayesianNetwork(start.getConnectedGraph()).compile();
+
+        network.eval(ImmutableList.of(end));
+        assertEquals(4.0 * Math.pow(2, links), end.getValue().scalar(), 0.0);
+        assertEquals(3 * links, n.get());
+
+        network.lazyEval(ImmutableList.of(end));
+        assertEquals(3 * links + 1, n.get());
+    }
+
+    @Test
+    public void calculatesTheSameLogProbAsTheNetwork() {
+        DoubleVertex mu = new GaussianVertex(0, 1);
+        GaussianVertex x = new GaussianVertex(mu.times(2).plus(1), 1);
+        x.observe(0.5);
+
+        BayesianNetwork bayesianNetwork = new BayesianNetwork(mu.getConnectedGraph());
+        CompiledNetwork network = bayesianNetwork.compile();
+
+        mu.setValue(0.25);
+        network.cascadeUpdate(mu);
+
+        assertEquals(bayesianNetwork.getLogOfMasterP(), network.logProb(), 0.0);
+        assertEquals(x.logProbAtValue(), network.logLikelihood(), 0.0);
+    }
+
+    @Test
+    public void stopsCascadeAtCutoffVerticesWhoseValueIsUnchanged() {
+        AtomicInteger n = new AtomicInteger(0);
+        AtomicInteger m = new AtomicInteger(0);
+        DoubleVertex start = new GaussianVertex(0, 1);
+        DoubleVertex other = new GaussianVertex(0, 1);
+
+        int links = 5;
+        DoubleVertex end = addLinks(start.floor(), n, m, links);
+        GaussianVertex observation = new GaussianVertex(end, 1);
+        observation.observe(1.0);
+        GaussianVertex otherObservation = new GaussianVertex(other.plus(start), 1);
+        otherObservation.observe(1.0);
+
+        CompiledNetwork network = new BayesianNetwork(start.getConnectedGraph()).compile();
+        start.setValue(2.0);
+        network.cascadeUpdate(start);
+        n.set(0);
+
+        start.setValue(2.5);
+        network.cascadeUpdate(start);
+        assertEquals(2.0 * Math.pow(2, links), end.getValue().scalar(), 0.0);
+        assertEquals(0, n.get());
+        assertTrue(network.isAffectedByLastCascade(start));
+        assertTrue(network.isAffectedByLastCascade(otherObservation));
+        assertFalse(network.isAffectedByLastCascade(observation));
+        assertFalse(network.isAffectedByLastCascade(other));
+
+        start.setValue(3.5);
+        network.cascadeUpdate(ImmutableList.of(start, other));
+        assertEquals(3.0 * Math.pow(2, links), end.getValue().scalar(), 0.0);
+        assertEquals(3 * links, n.get());
+        assertTrue(network.isAffectedByLastCascade(observation));
+        assertTrue(network.isAffectedByLastCascade(other));
+    }
+
+    @Test
+    public void logProbAfterACutoffIsTheSameAsTheLogProb() {
+        GaussianVertex latent = new GaussianVertex(0, 1);
+        DoubleVertex rounded = latent.times(2).round();
+        GaussianVertex observation = new GaussianVertex(rounded.plus(latent), 1);
+        observation.observe(1.0);
+        GaussianVertex roundedObservation = new GaussianVertex(rounded, 1);
+        roundedObservation.observe(1.0);
+        latent.setValue(0.1);
+
+        KeanuProbabilisticModel model = new KeanuProbabilisticModel(latent.getConnectedGraph());
+        double logProb = model.logProb();
+        for (double value : new double[]{0.2, 0.6, 0.7, -0.4}) {
+            logProb = model.logProbAfter(ImmutableMap.of(latent.getId(), DoubleTensor.scalar(value)), logProb);
+            assertEquals(new BayesianNetwork(latent.getConnectedGraph()).getLogOfMasterP(), logProb, 1e-10);
+        }
+    }
+
+    @Test
+    public void canCascadeAndEvalIndependentVerticesInParallel() {
+        GaussianVertex hyper = new GaussianVertex(0, 1);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<DoubleVertex> groups = new ArrayList<>();
+        List<DoubleVertex> ends = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            GaussianVertex group = new GaussianVertex(new long[]{10}, hyper, 1);
+            DoubleVertex end = group.times(hyper).plus(i).exp().sum().lambda(
+                v -> {
+                    threads.add(Thread.currentThread().getName());
+                    return v.log();
+                },
+                null, null
+            );
+            new GaussianVertex(end, 1).observe(1.0);
+            groups.add(group);
+            ends.add(end);
+        }
+
+        CompiledNetworkParallelism.setEnabled(true);
+        CompiledNetworkParallelism.setForkJoinPool(new ForkJoinPool(4));
+        CompiledNetworkParallelism.setLevelCostThreshold(100);
+        CompiledNetwork network = new BayesianNetwork(hyper.getConnectedGraph()).compile();
+
+        hyper.setValue(0.5);
+        List<DoubleVertex> cascadeFrom = new ArrayList<>(groups);
+        cascadeFrom.add(hyper);
+        network.cascadeUpdate(cascadeFrom);
+        for (int i = 0; i < ends.size(); i++) {
+            assertEquals(Math.log(groups.get(i).getValue().times(0.5).plus(i).exp().sum()), ends.get(i).getValue().scalar(), 1e-12);
+        }
+        assertTrue(threads.stream().anyMatch(name -> !name.equals(Thread.currentThread().getName())));
+
+        hyper.setValue(-0.5);
+        network.eval(ends);
+        for (int i = 0; i < ends.size(); i++) {
+            assertEquals(Math.log(groups.get(i).getValue().times(-0.5).plus(i).exp().sum()), ends.get(i).getValue().scalar(), 1e-12);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package io.improbable.keanu.network;
+
+import com.google.common.collect.ImmutableSet;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.ConstantVertex;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexLabel;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.ConstantDoubleVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.DoubleUnaryOpLambda;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GraphOptimizerTest {
+
+    private static final double DELTA = 1e-10;
+
+    @Test
+    public void foldsVerticesWhoseParentsAreConstantsIntoConstants() {
+        DoubleVertex a = ConstantVertex.of(2.0);
+        DoubleVertex b = a.times(3.0).plus(1.0).setLabel("b");
+        GaussianVertex x = new GaussianVertex(b, 2.0).setLabel("x");
+        x.setValue(6.5);
+
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        double logProbBefore = network.getLogOfMasterP();
+        int vertexCountBefore = network.getVertexCount();
+
+        int removed = network.foldConstantsAndMergeDuplicates();
+
+        Vertex<?> folded = network.getVertexByLabel(new VertexLabel("b"));
+        GaussianVertex rebuiltX = (GaussianVertex) network.getVertexByLabel(new VertexLabel("x"));
+        assertThat(folded, instanceOf(ConstantDoubleVertex.class));
+        assertSame(folded, rebuiltX.getMu());
+        assertEquals(b.getId(), folded.getId());
+        assertEquals(x.getId(), rebuiltX.getId());
+        assertEquals(6.5, rebuiltX.getValue().scalar(), 0.0);
+        assertEquals(7.0, rebuiltX.getMu().getValue().scalar(), 0.0);
+        assertEquals(ImmutableSet.of(folded, rebuiltX.getSigma()), rebuiltX.getParents());
+        assertTrue(x.getParents().isEmpty());
+
+        assertEquals(4, removed);
+        assertEquals(vertexCountBefore - removed, network.getVertexCount());
+        assertEquals(ImmutableSet.copyOf(network.getAllVertices()), rebuiltX.getConnectedGraph());
+        assertEquals(logProbBefore, network.getLogOfMasterP(), DELTA);
+    }
+
+    @Test
+    public void mergesTheSameOperationOnTheSameParents() {
+        GaussianVertex x = new GaussianVertex(0.0, 1.0);
+        DoubleVertex first = x.times(2.0);
+        DoubleVertex second = x.times(2.0).setLabel("second");
+        DoubleVertex sum = first.plus(second).setLabel("sum");
+        GaussianVertex y = new GaussianVertex(sum, 1.0).setLabel("y");
+        y.observe(3.0);
+
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        int removed = network.foldConstantsAndMergeDuplicates();
+
+        DoubleVertex rebuiltSum = (DoubleVertex) network.getVertexByLabel(new VertexLabel("sum"));
+        Vertex<?> rebuiltY = network.getVertexByLabel(new VertexLabel("y"));
+        assertEquals(3, removed);
+        assertEquals(ImmutableSet.of(first), rebuiltSum.getParents());
+        assertTrue(second.getParents().isEmpty());
+        assertTrue(sum.getParents().isEmpty());
+        assertSame(first, network.getVertexByLabel(new VertexLabel("second")));
+        assertTrue(rebuiltY.isObserved());
+        assertEquals(3.0, ((DoubleVertex) rebuiltY).getValue().scalar(), 0.0);
+
+        x.setAndCascade(1.5);
+        assertEquals(6.0, rebuiltSum.getValue().scalar(), 0.0);
+
+        x.setValue(2.0);
+        network.compile().cascadeUpdate(x);
+        assertEquals(8.0, rebuiltSum.getValue().scalar(), 0.0);
+    }
+
+    @Test
+    public void keepsTheIdsOfTheVerticesInTopologicalOrder() {
+        DoubleVertex a = ConstantVertex.of(DoubleTensor.create(1.0, 2.0));
+        GaussianVertex x = new GaussianVertex(a.exp(), a.exp().plus(1.0)).setLabel("x");
+        DoubleVertex first = x.times(a.exp()).setLabel("first");
+        first.plus(x.times(a.exp())).setLabel("z");
+
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        network.foldConstantsAndMergeDuplicates();
+
+        for (Vertex<?> vertex : network.getAllVertices()) {
+            for (Vertex<?> parent : vertex.getParents()) {
+                assertTrue(parent.getId().compareTo(vertex.getId()) < 0);
+            }
+        }
+        GaussianVertex rebuiltX = (GaussianVertex) network.getVertexByLabel(new VertexLabel("x"));
+        Vertex<?> rebuiltFirst = network.getVertexByLabel(new VertexLabel("first"));
+        Vertex<?> rebuiltZ = network.getVertexByLabel(new VertexLabel("z"));
+        assertEquals(first.getId(), rebuiltFirst.getId());
+        assertEquals(ImmutableSet.of(rebuiltFirst), rebuiltZ.getParents());
+        assertEquals(ImmutableSet.of(rebuiltX, rebuiltX.getMu()), rebuiltFirst.getParents());
+    }
+
+    @Test
+    public void doesNotMergeProbabilisticOrLabelledVertices() {
+        GaussianVertex x = new GaussianVertex(0.0, 1.0);
+        GaussianVertex y = new GaussianVertex(0.0, 1.0).setLabel("y");
+        DoubleVertex first = x.times(2.0).setLabel("first");
+        DoubleVertex second = x.times(2.0).setLabel("second");
+        DoubleVertex sum = first.plus(second).plus(y);
+
+        BayesianNetwork network = new BayesianNetwork(sum.getConnectedGraph());
+        network.foldConstantsAndMergeDuplicates();
+
+        GaussianVertex rebuiltY = (GaussianVertex) network.getVertexByLabel(new VertexLabel("y"));
+        Vertex<?> rebuiltSecond = network.getVertexByLabel(new VertexLabel("second"));
+        assertEquals(y.getId(), rebuiltY.getId());
+        assertNotSame(first, rebuiltSecond);
+        assertFalse(rebuiltSecond.getParents().isEmpty());
+        assertNotSame(x, rebuiltY);
+        assertSame(x.getMu(), rebuiltY.getMu());
+        assertSame(x.getSigma(), rebuiltY.getSigma());
+    }
+
+    @Test
+    public void leavesVerticesWithDownstreamVerticesThatCannotBeRebuilt() {
+        DoubleVertex a = ConstantVertex.of(2.0);
+        DoubleVertex b = a.times(3.0);
+        DoubleVertex c = b.plus(1.0);
+        DoubleVertex lambda = new DoubleUnaryOpLambda<>(c, value -> value.times(2.0));
+        GaussianVertex x = new GaussianVertex(lambda, 1.0);
+
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        network.foldConstantsAndMergeDuplicates();
+
+        assertTrue(network.getAllVertices().contains(b));
+        assertTrue(network.getAllVertices().contains(c));
+        assertEquals(ImmutableSet.of(c), lambda.getParents());
+        assertTrue(c.getChildren().contains(lambda));
+        assertSame(lambda, x.getMu());
+    }
+}
@@ -0,0 +1,200 @@
+package io.improbable.keanu.network;
+
+import com.google.common.collect.ImmutableMap;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.UniformVertex;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.improbable.keanu.tensor.TensorMatchers.valuesWithinEpsilonAndShapesMatch;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IntermediateValueEvictorTest {
+
+    private static final double DELTA = 1e-12;
+
+    @Test
+    public void evictsNothingWithoutABudget() {
+        GaussianVertex x = new GaussianVertex(new long[]{4}, 0.0, 1.0);
+        DoubleVertex y = x.times(2.0).plus(1.0);
+        new GaussianVertex(y, 1.0).observe(DoubleTensor.ones(4));
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        y.eval();
+
+        assertEquals(BayesianNetwork.UNBOUNDED_INTERMEDIATE_VALUE_BUDGET, network.getIntermediateValueBudget());
+        assertEquals(0, network.evictIntermediateValues());
+        assertTrue(y.hasValue());
+    }
+
+    @Test
+    public void recalculatesEvictedValuesWhenTheyAreRead() {
+        GaussianVertex x = new GaussianVertex(new long[]{4}, 0.0, 1.0);
+        x.setValue(DoubleTensor.create(0.5, -0.25, 1.0, 2.0));
+        DoubleVertex product = x.times(2.0);
+        DoubleVertex sum = product.plus(1.0);
+        DoubleVertex y = sum.exp();
+        GaussianVertex z = new GaussianVertex(y, 1.0);
+        z.observe(DoubleTensor.ones(4));
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        DoubleTensor expected = y.getValue();
+
+        network.setIntermediateValueBudget(0);
+        long evicted = network.evictIntermediateValues();
+
+        assertEquals(3 * 4 * Double.BYTES, evicted);
+        assertFalse(product.hasValue());
+        assertFalse(sum.hasValue());
+        assertFalse(y.hasValue());
+        assertTrue(x.hasValue());
+        assertTrue(z.hasValue());
+
+        assertThat(y.getValue(), valuesWithinEpsilonAndShapesMatch(expected, DELTA));
+        assertTrue(sum.hasValue());
+    }
+
+    @Test
+    public void evictsTheValuesThatAreCheapestToRecalculatePerByteFirst() {
+        UniformVertex a = new UniformVertex(new long[]{20, 20}, 0.0, 1.0);
+        UniformVertex b = new UniformVertex(new long[]{20, 20}, 0.0, 1.0);
+        UniformVertex c = new UniformVertex(new long[]{400}, 0.0, 1.0);
+        DoubleVertex product = a.matrixMultiply(b);
+        DoubleVertex exponential = c.exp();
+        DoubleVertex total = product.sum().plus(exponential.sum());
+        new GaussianVertex(total, 1.0).observe(100.0);
+        BayesianNetwork network = new BayesianNetwork(a.getConnectedGraph());
+        total.eval();
+
+        long retained = 2 * 400 * Double.BYTES + 3 * Double.BYTES;
+        network.setIntermediateValueBudget(retained - 400 * Double.BYTES);
+        long evicted = network.evictIntermediateValues();
+
+        assertEquals(400 * Double.BYTES, evicted);
+        assertFalse(exponential.hasValue());
+        assertTrue(product.hasValue());
+        assertTrue(total.hasValue());
+    }
+
+    @Test
+    public void evictsTheParentsOfProbabilisticVerticesLast() {
+        GaussianVertex x = new GaussianVertex(new long[]{8}, 0.0, 1.0);
+        DoubleVertex exponential = x.exp();
+        DoubleVertex mu = exponential.plus(1.0);
+        new GaussianVertex(mu, 1.0).observe(DoubleTensor.ones(8));
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        mu.eval();
+
+        network.setIntermediateValueBudget(8 * Double.BYTES);
+        network.evictIntermediateValues();
+
+        assertFalse(exponential.hasValue());
+        assertTrue(mu.hasValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANegativeBudget() {
+        GaussianVertex x = new GaussianVertex(0.0, 1.0);
+        new BayesianNetwork(x.getConnectedGraph()).setIntermediateValueBudget(-1);
+    }
+
+    @Test
+    public void modelCalculatesTheSameLogProbWhileEvictingValues() {
+        GaussianVertex x = new GaussianVertex(new long[]{4}, 0.0, 1.0);
+        x.setValue(DoubleTensor.create(0.5, -0.25, 1.0, 2.0));
+        DoubleVertex intermediate = x.times(2.0).plus(1.0);
+        DoubleVertex y = intermediate.sin().exp();
+        GaussianVertex z = new GaussianVertex(y, 1.0);
+        z.observe(DoubleTensor.create(1.0, 2.0, 0.5, 1.5));
+
+        BayesianNetwork unbounded = new BayesianNetwork(x.getConnectedGraph());
+        KeanuProbabilisticModel expected = new KeanuProbabilisticModel(unbounded);
+        double expectedBefore = expected.logProb(ImmutableMap.of());
+        double expectedAfter = expected.logProb(ImmutableMap.of(x.getId(), DoubleTensor.create(0.1, 0.2, 0.3, 0.4)));
+        x.setAndCascade(DoubleTensor.create(0.5, -0.25, 1.0, 2.0));
+
+        BayesianNetwork bounded = new BayesianNetwork(x.getConnectedGraph());
+        bounded.setIntermediateValueBudget(0);
+        KeanuProbabilisticModel model = new KeanuProbabilisticModel(bounded);
+
+        double before = model.logProb(ImmutableMap.of());
+        assertFalse(intermediate.hasValue());
+        assertEquals(expectedBefore, before, DELTA);
+
+        double after = model.logProbAfter(ImmutableMap.of(x.getId(), DoubleTensor.create(0.1, 0.2, 0.3, 0.4)), before);
+        assertFalse(intermediate.hasValue());
+        assertEquals(expectedAfter, after, DELTA);
+        assertEquals(expectedAfter, model.logProb(ImmutableMap.of()), DELTA);
+    }
+
+    @Test
+    public void modelEvictsValuesOfAStateAndLeavesTheVerticesAsTheyWere() {
+        GaussianVertex x = new GaussianVertex(new long[]{4}, 0.0, 1.0);
+        x.setValue(DoubleTensor.create(0.5, -0.25, 1.0, 2.0));
+        DoubleVertex intermediate = x.times(2.0).plus(1.0);
+        new GaussianVertex(intermediate.exp(), 1.0).observe(DoubleTensor.ones(4));
+
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        network.setIntermediateValueBudget(0);
+        KeanuProbabilisticModel model = new KeanuProbabilisticModel(network);
+        double expected = model.logProb(ImmutableMap.of(x.getId(), DoubleTensor.create(0.1, 0.2, 0.3, 0.4)));
+        x.setAndCascade(DoubleTensor.create(0.5, -0.25, 1.0, 2.0));
+        DoubleTensor intermediateValue = intermediate.getValue();
+
+        ArrayNetworkState state = model.newState();
+        double logProb = model.logProb(state, ImmutableMap.of(x.getId(), DoubleTensor.create(0.1, 0.2, 0.3, 0.4)));
+
+        assertEquals(expected, logProb, DELTA);
+        assertFalse(state.apply(intermediate::hasValue));
+        assertTrue(intermediate.hasValue());
+        assertEquals(intermediateValue, intermediate.getValue());
+    }
+
+    @Test
+    public void modelEvictsValuesOfDifferentStatesConcurrently() throws Exception {
+        GaussianVertex x = new GaussianVertex(new long[]{4}, 0.0, 1.0);
+        x.setValue(DoubleTensor.create(0.5, -0.25, 1.0, 2.0));
+        DoubleVertex intermediate = x.times(2.0).plus(1.0);
+        new GaussianVertex(intermediate.sin().exp(), 1.0).observe(DoubleTensor.create(1.0, 2.0, 0.5, 1.5));
+
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        KeanuProbabilisticModel model = new KeanuProbabilisticModel(network);
+        int steps = 100;
+        double[] expected = new double[steps];
+        for (int i = 0; i < steps; i++) {
+            expected[i] = model.logProb(ImmutableMap.of(x.getId(), DoubleTensor.create(0.1, 0.2, 0.3, 0.4).times(i)));
+        }
+        network.setIntermediateValueBudget(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<double[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                ArrayNetworkState state = model.newState();
+                results.add(executor.submit(() -> {
+                    double[] logProbs = new double[steps];
+                    for (int i = 0; i < steps; i++) {
+                        logProbs[i] = model.logProb(state, ImmutableMap.of(x.getId(), DoubleTensor.create(0.1, 0.2, 0.3, 0.4).times(i)));
+                        assertFalse(state.apply(intermediate::hasValue));
+                    }
+                    return logProbs;
+                }));
+            }
+
+            for (Future<double[]> result : results) {
+                assertArrayEquals(expected, result.get(), DELTA);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.improbable.keanu.network;
+
+import com.google.common.collect.ImmutableSet;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class LambdaSectionSnapshotTest {
+
+    private static final double DELTA = 1e-10;
+
+    private GaussianVertex x;
+    private GaussianVertex y;
+    private Set<Vertex> variables;
+    private LambdaSectionSnapshot snapshot;
+
+    @Before
+    public void setup() {
+        x = new GaussianVertex(0.0, 1.0);
+        x.setValue(0.5);
+        y = new GaussianVertex(x, 1.0);
+        y.observe(1.0);
+        variables = ImmutableSet.of(x);
+        snapshot = new LambdaSectionSnapshot();
+    }
+
+    @Test
+    public void reusesTheLogProbsOfVerticesThatHaveNotChangedSinceTheLastBaseline() {
+        double before = snapshot.logProb(variables);
+        x.setAndCascade(2.0);
+
+        double reused = snapshot.logProb(variables, vertex -> false);
+
+        assertEquals(before, reused, DELTA);
+    }
+
+    @Test
+    public void calculatesEveryLogProbAgainAfterARejectedProposalIsRolledBack() {
+        double before = snapshot.logProb(variables);
+        NetworkSnapshot rollback = NetworkSnapshot.create(snapshot.getAllVerticesAffectedBy(variables));
+
+        x.setAndCascade(2.0);
+        double after = snapshot.logProb(variables, vertex -> true);
+        rollback.apply();
+
+        double afterRollback = snapshot.logProb(variables, vertex -> false);
+
+        assertNotEquals(before, after, DELTA);
+        assertEquals(before, afterRollback, DELTA);
+    }
+}
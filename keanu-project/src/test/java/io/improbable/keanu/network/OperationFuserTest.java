@@ -0,0 +1,152 @@
+package io.improbable.keanu.network;
+
+import com.google.common.collect.ImmutableSet;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.util.io.ProtobufLoader;
+import io.improbable.keanu.util.io.ProtobufSaver;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.VertexId;
+import io.improbable.keanu.vertices.VertexLabel;
+import io.improbable.keanu.vertices.dbl.Differentiator;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.multiple.FusedOperationVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.improbable.keanu.tensor.TensorMatchers.valuesWithinEpsilonAndShapesMatch;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OperationFuserTest {
+
+    private static final double DELTA = 1e-12;
+
+    @Test
+    public void fusesAChainOfOperationsIntoOneVertex() {
+        GaussianVertex x = new GaussianVertex(new long[]{2}, 0.0, 1.0);
+        x.setValue(DoubleTensor.create(0.5, -0.25));
+        DoubleVertex y = x.times(2.0).plus(1.0).exp().setLabel("y");
+        GaussianVertex z = new GaussianVertex(y, 1.0).setLabel("z");
+        z.observe(DoubleTensor.create(1.0, 2.0));
+
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        double logProbBefore = network.getLogOfMasterP();
+        DoubleTensor dYWrtX = Differentiator.reverseModeAutoDiff(y, x).withRespectTo(x);
+        VertexId yId = y.getId();
+
+        int removed = network.fuseOperatorChains();
+
+        Vertex<?> fused = network.getVertexByLabel(new VertexLabel("y"));
+        GaussianVertex rebuiltZ = (GaussianVertex) network.getVertexByLabel(new VertexLabel("z"));
+        assertThat(fused, instanceOf(FusedOperationVertex.class));
+        assertEquals(2, removed);
+        assertSame(fused, rebuiltZ.getMu());
+        assertEquals(yId, fused.getId());
+        assertEquals(z.getId(), rebuiltZ.getId());
+        assertTrue(rebuiltZ.isObserved());
+        assertEquals(ImmutableSet.copyOf(network.getAllVertices()), x.getConnectedGraph());
+        assertEquals("MULTIPLICATION 0 1;ADDITION r 2;EXP r", ((FusedOperationVertex) fused).getSteps());
+
+        assertEquals(logProbBefore, network.getLogOfMasterP(), DELTA);
+        assertThat(
+            Differentiator.reverseModeAutoDiff((DoubleVertex) fused, x).withRespectTo(x),
+            valuesWithinEpsilonAndShapesMatch(dYWrtX, DELTA)
+        );
+
+        x.setAndCascade(DoubleTensor.create(1.0, 0.0));
+        assertThat(rebuiltZ.getMu().getValue(), valuesWithinEpsilonAndShapesMatch(DoubleTensor.create(Math.exp(3.0), Math.exp(1.0)), DELTA));
+    }
+
+    @Test
+    public void stopsChainsAtLabelledAndSharedVerticesAndKeepsVerticesWithoutChildren() {
+        GaussianVertex x = new GaussianVertex(0.0, 1.0);
+        DoubleVertex shared = x.times(3.0);
+        DoubleVertex labelled = shared.plus(1.0).exp().setLabel("labelled");
+        DoubleVertex output = labelled.sin().cos().tan().setLabel("output");
+        DoubleVertex other = shared.minus(1.0);
+
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        int removed = network.fuseOperatorChains();
+
+        assertEquals(2, removed);
+        assertTrue(network.getAllVertices().contains(shared));
+        assertTrue(network.getAllVertices().contains(output));
+        assertTrue(network.getAllVertices().contains(other));
+
+        Vertex<?> fusedLabelled = network.getVertexByLabel(new VertexLabel("labelled"));
+        assertThat(fusedLabelled, instanceOf(FusedOperationVertex.class));
+        assertEquals("ADDITION 0 1;EXP r", ((FusedOperationVertex) fusedLabelled).getSteps());
+        assertTrue(fusedLabelled.getParents().contains(shared));
+
+        DoubleVertex rebuiltOutput = (DoubleVertex) network.getVertexByLabel(new VertexLabel("output"));
+        Vertex<?> fusedOutputInput = rebuiltOutput.getParents().iterator().next();
+        assertThat(fusedOutputInput, instanceOf(FusedOperationVertex.class));
+        assertEquals("SIN 0;COS r", ((FusedOperationVertex) fusedOutputInput).getSteps());
+        assertEquals(ImmutableSet.of(fusedLabelled), fusedOutputInput.getParents());
+
+        x.setAndCascade(0.5);
+        assertEquals(Math.tan(Math.cos(Math.sin(Math.exp(2.5)))), rebuiltOutput.getValue().scalar(), DELTA);
+        assertEquals(0.5, other.getValue().scalar(), DELTA);
+    }
+
+    @Test
+    public void keepsTheChildrenOfTheInputsOrderedById() {
+        GaussianVertex x = new GaussianVertex(new long[]{2}, 0.0, 1.0);
+        DoubleVertex y = x.times(2.0).plus(x);
+        new GaussianVertex(y, 1.0).setLabel("z");
+        DoubleVertex sibling = x.sin();
+        DoubleVertex otherSibling = x.cos();
+
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        network.fuseOperatorChains();
+
+        Vertex<?> fused = ((GaussianVertex) network.getVertexByLabel(new VertexLabel("z"))).getMu();
+        assertThat(fused, instanceOf(FusedOperationVertex.class));
+        assertTrue(x.getChildren().contains(fused));
+        assertTrue(x.getChildren().contains(sibling));
+        assertTrue(x.getChildren().contains(otherSibling));
+
+        List<Vertex> children = new ArrayList<>(x.getChildren());
+        assertEquals(3, children.size());
+        assertSame(fused, children.get(0));
+        assertSame(sibling, children.get(1));
+        assertSame(otherSibling, children.get(2));
+
+        x.removeChild(fused);
+        assertFalse(x.getChildren().contains(fused));
+        assertEquals(ImmutableSet.of(sibling, otherSibling), x.getChildren());
+    }
+
+    @Test
+    public void canSaveAndLoadAFusedNetwork() throws IOException {
+        GaussianVertex x = new GaussianVertex(new long[]{2}, 0.0, 1.0);
+        x.setValue(DoubleTensor.create(0.5, -0.25));
+        DoubleVertex y = x.times(2.0).plus(1.0).exp().setLabel("y");
+        GaussianVertex z = new GaussianVertex(y, 1.0);
+        z.setLabel("z");
+        DoubleTensor expected = y.getValue();
+
+        BayesianNetwork network = new BayesianNetwork(x.getConnectedGraph());
+        network.fuseOperatorChains();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ProtobufSaver(network).save(output, true);
+        BayesianNetwork loaded = new ProtobufLoader().loadNetwork(new ByteArrayInputStream(output.toByteArray()));
+
+        Vertex<?> loadedY = loaded.getVertexByLabel(new VertexLabel("y"));
+        assertThat(loadedY, instanceOf(FusedOperationVertex.class));
+        assertEquals(((FusedOperationVertex) network.getVertexByLabel(new VertexLabel("y"))).getSteps(),
+            ((FusedOperationVertex) loadedY).getSteps());
+        assertThat(((DoubleVertex) loadedY).eval(), valuesWithinEpsilonAndShapesMatch(expected, DELTA));
+    }
+}
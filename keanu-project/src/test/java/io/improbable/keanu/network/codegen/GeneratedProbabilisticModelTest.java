@@ -0,0 +1,167 @@
+package io.improbable.keanu.network.codegen;
+
+import com.google.common.collect.ImmutableMap;
+import io.improbable.keanu.algorithms.NetworkSamples;
+import io.improbable.keanu.algorithms.Variable;
+import io.improbable.keanu.algorithms.VariableReference;
+import io.improbable.keanu.algorithms.mcmc.nuts.NUTS;
+import io.improbable.keanu.network.BayesianNetwork;
+import io.improbable.keanu.network.KeanuProbabilisticModel;
+import io.improbable.keanu.network.KeanuProbabilisticModelWithGradient;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GammaVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeneratedProbabilisticModelTest {
+
+    private static final double DELTA = 1e-10;
+
+    private GaussianVertex x;
+    private GammaVertex sigma;
+
+    private void createNetwork(boolean withAbs) {
+        x = new GaussianVertex(new long[]{3}, 0, 1);
+        x.setValue(DoubleTensor.create(0.1, -0.4, 0.7));
+
+        sigma = new GammaVertex(1.0, 2.0);
+        sigma.setValue(1.5);
+
+        DoubleVertex scaled = x.times(2).plus(1).div(x.exp().plus(3));
+        DoubleVertex squashed = scaled.sigmoid().minus(x.sin().times(x.cos())).pow(2);
+        DoubleVertex mu = (withAbs ? squashed.abs() : squashed).plus(x.exp().sum().log().plus(x.times(x.plus(1)).sum()));
+
+        GaussianVertex observation = new GaussianVertex(mu, sigma);
+        observation.observe(DoubleTensor.create(1.0, 2.0, 0.5));
+    }
+
+    private Map<VariableReference, DoubleTensor> newValues() {
+        return ImmutableMap.of(
+            x.getId(), DoubleTensor.create(0.3, 0.2, -0.1),
+            sigma.getId(), DoubleTensor.scalar(0.8)
+        );
+    }
+
+    @Test
+    public void calculatesTheSameLogProbAndGradientsAsTheNetwork() {
+        createNetwork(false);
+        KeanuProbabilisticModelWithGradient expected = new KeanuProbabilisticModelWithGradient(new BayesianNetwork(x.getConnectedGraph()));
+        GeneratedProbabilisticModel actual = new GeneratedProbabilisticModel(new BayesianNetwork(x.getConnectedGraph()));
+
+        assertTrue(actual.hasGeneratedGradient());
+        assertMatches(expected, actual);
+    }
+
+    @Test
+    public void usesTheGradientOfVerticesThatAreNotWrittenOut() {
+        createNetwork(true);
+        KeanuProbabilisticModelWithGradient expected = new KeanuProbabilisticModelWithGradient(new BayesianNetwork(x.getConnectedGraph()));
+        GeneratedProbabilisticModel actual = new GeneratedProbabilisticModel(new BayesianNetwork(x.getConnectedGraph()));
+
+        assertFalse(actual.hasGeneratedGradient());
+        assertMatches(expected, actual);
+    }
+
+    private void assertMatches(KeanuProbabilisticModelWithGradient expected, GeneratedProbabilisticModel actual) {
+        assertEquals(expected.logProb(), actual.logProb(), DELTA);
+
+        assertEquals(expected.logProb(newValues()), actual.logProb(newValues()), DELTA);
+        assertEquals(expected.logLikelihood(), actual.logLikelihood(), DELTA);
+
+        assertGradientsMatch(expected.logProbGradients(), actual.logProbGradients());
+        assertGradientsMatch(expected.logLikelihoodGradients(), actual.logLikelihoodGradients());
+    }
+
+    private void assertGradientsMatch(Map<VariableReference, DoubleTensor> expected, Map<VariableReference, DoubleTensor> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (VariableReference reference : expected.keySet()) {
+            assertArrayEquals(expected.get(reference).asFlatDoubleArray(), actual.get(reference).asFlatDoubleArray(), DELTA);
+        }
+    }
+
+    @Test
+    public void calculatesTheSameLogProbAndGradientsForScalars() {
+        GaussianVertex a = new GaussianVertex(0.5, 2.0);
+        GaussianVertex b = new GaussianVertex(new long[]{2}, 0, 1);
+        a.setValue(0.3);
+        b.setValue(DoubleTensor.create(-0.2, 0.4));
+
+        DoubleVertex c = a.times(3).minus(a.exp().div(a.plus(2))).sigmoid().plus(b.sum().cos()).pow(2).plus(a.sin().log());
+        GaussianVertex observation = new GaussianVertex(c, a.plus(b.sum()).pow(2).plus(1));
+        observation.observe(0.7);
+        GaussianVertex vectorObservation = new GaussianVertex(b.times(c), 1.0);
+        vectorObservation.observe(DoubleTensor.create(0.1, -0.3));
+
+        KeanuProbabilisticModelWithGradient expected = new KeanuProbabilisticModelWithGradient(new BayesianNetwork(a.getConnectedGraph()));
+        GeneratedProbabilisticModel actual = new GeneratedProbabilisticModel(new BayesianNetwork(a.getConnectedGraph()));
+
+        assertTrue(actual.hasGeneratedGradient());
+        assertEquals(expected.logProb(), actual.logProb(), DELTA);
+        assertEquals(expected.logLikelihood(), actual.logLikelihood(), DELTA);
+        assertGradientsMatch(expected.logProbGradients(), actual.logProbGradients());
+        assertGradientsMatch(expected.logLikelihoodGradients(), actual.logLikelihoodGradients());
+    }
+
+    @Test
+    public void canUseFlatParameters() {
+        createNetwork(false);
+        GeneratedProbabilisticModel model = new GeneratedProbabilisticModel(new BayesianNetwork(x.getConnectedGraph()));
+
+        double[] parameters = flatten(model, newValues());
+        double[] gradient = new double[model.getParameterLength()];
+        double logProb = model.logProbGradient(parameters, gradient);
+
+        Map<VariableReference, DoubleTensor> gradients = model.logProbGradients(newValues());
+        assertEquals(model.logProb(), logProb, DELTA);
+        assertArrayEquals(flatten(model, gradients), gradient, DELTA);
+        assertEquals(logProb, model.logProb(parameters), DELTA);
+    }
+
+    /**
+     * @return the values one after the other in the order of the model's continuous latent variables
+     */
+    private static double[] flatten(GeneratedProbabilisticModel model, Map<VariableReference, DoubleTensor> values) {
+        double[] flat = new double[model.getParameterLength()];
+        int position = 0;
+        for (Variable<DoubleTensor, ?> variable : model.getContinuousLatentVariables()) {
+            double[] value = values.get(variable.getReference()).asFlatDoubleArray();
+            System.arraycopy(value, 0, flat, position, value.length);
+            position += value.length;
+        }
+        return flat;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInputsThatAreNotLatent() {
+        GaussianVertex latent = new GaussianVertex(0, 1);
+        GaussianVertex observed = new GaussianVertex(latent, 1);
+        observed.observe(1.0);
+
+        GeneratedProbabilisticModel model = GeneratedProbabilisticModel.generate(new KeanuProbabilisticModel(latent.getConnectedGraph()));
+        model.logProb(ImmutableMap.of(observed.getId(), DoubleTensor.scalar(2.0)));
+    }
+
+    @Test
+    public void canBeSampledFromWithNUTS() {
+        GaussianVertex A = new GaussianVertex(20.0, 1.0);
+        GaussianVertex B = new GaussianVertex(20.0, 1.0);
+        GaussianVertex C = new GaussianVertex(A.plus(B), 1.0);
+        C.observe(43.0);
+        A.setValue(20.0);
+        B.setValue(20.0);
+
+        GeneratedProbabilisticModel model = new GeneratedProbabilisticModel(new BayesianNetwork(C.getConnectedGraph()));
+        NetworkSamples samples = NUTS.builder().build().getPosteriorSamples(model, model.getLatentVariables(), 500);
+
+        assertEquals(21.0, samples.getDoubleTensorSamples(A).getAverages().scalar(), 0.3);
+        assertEquals(21.0, samples.getDoubleTensorSamples(B).getAverages().scalar(), 0.3);
+    }
+}
@@ -0,0 +1,57 @@
+package io.improbable.keanu.tensor;
+
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.tensor.dbl.JVMDoubleTensorArena;
+import io.improbable.keanu.tensor.dbl.Nd4jDoubleTensor;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class Nd4jWorkspacesTest {
+
+    @Before
+    public void enableWorkspaces() {
+        Nd4jWorkspaces.setEnabled(true);
+    }
+
+    @After
+    public void disableWorkspaces() {
+        Nd4jWorkspaces.setEnabled(false);
+    }
+
+    @Test
+    public void escapedTensorsKeepTheirValuesOnceTheWorkspaceIsReused() {
+        DoubleTensor escaped;
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            escaped = JVMDoubleTensorArena.escape(Nd4jDoubleTensor.create(new double[]{1, 2, 3}, 3).times(2.0));
+        }
+
+        for (int i = 0; i < 3; i++) {
+            try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+                Nd4jDoubleTensor.create(new double[]{7, 7, 7}, 3).times(5.0);
+            }
+        }
+
+        assertArrayEquals(new double[]{2, 4, 6}, escaped.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void vertexValuesAreDetachedFromTheWorkspace() {
+        GaussianVertex vertex = new GaussianVertex(new long[]{3}, 0, 1);
+
+        for (int i = 0; i < 3; i++) {
+            try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+                vertex.setValue(Nd4jDoubleTensor.create(new double[]{1, 2, 3}, 3).plus(i));
+            }
+        }
+
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            Nd4jDoubleTensor.create(new double[]{7, 7, 7}, 3).times(5.0);
+        }
+
+        assertArrayEquals(new double[]{3, 4, 5}, vertex.getValue().asFlatDoubleArray(), 0.0);
+    }
+}
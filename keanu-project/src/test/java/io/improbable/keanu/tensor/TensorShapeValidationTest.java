@@ -75,4 +75,16 @@ public class TensorShapeValidationTest {
     public void checkSquareMatrixFailsOnNonSquareMatrices() {
         TensorShapeValidation.checkShapeIsSquareMatrix(new long[]{3, 2});
     }
+
+    @Test
+    public void matrixMultiplicationBroadcastsBatchDimensions() {
+        assertArrayEquals(new long[]{2, 3}, TensorShapeValidation.getMatrixMultiplicationResultingShape(twoByThree, new long[]{3, 3}));
+        assertArrayEquals(new long[]{5, 2, 4}, TensorShapeValidation.getMatrixMultiplicationResultingShape(new long[]{5, 2, 3}, new long[]{3, 4}));
+        assertArrayEquals(new long[]{6, 5, 2, 4}, TensorShapeValidation.getMatrixMultiplicationResultingShape(new long[]{6, 1, 2, 3}, new long[]{5, 3, 4}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void matrixMultiplicationFailsOnMismatchedBatchDimensions() {
+        TensorShapeValidation.getMatrixMultiplicationResultingShape(new long[]{4, 2, 3}, new long[]{5, 3, 4});
+    }
 }
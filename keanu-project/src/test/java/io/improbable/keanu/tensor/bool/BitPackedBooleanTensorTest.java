@@ -0,0 +1,152 @@
+package io.improbable.keanu.tensor.bool;
+
+import org.junit.Test;
+
+import static io.improbable.keanu.tensor.TensorMatchers.valuesAndShapesMatch;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitPackedBooleanTensorTest {
+
+    private static boolean[] alternating(int length) {
+        boolean[] values = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = i % 2 == 0;
+        }
+        return values;
+    }
+
+    @Test
+    public void createsBitPackedTensorsByDefault() {
+        assertThat(BooleanTensor.create(true, false), instanceOf(BitPackedBooleanTensor.class));
+        assertThat(BooleanTensor.trues(2, 3), instanceOf(BitPackedBooleanTensor.class));
+    }
+
+    @Test
+    public void canReadAndWriteAcrossWordBoundaries() {
+        boolean[] values = alternating(130);
+        BooleanTensor tensor = BooleanTensor.create(values, 130);
+
+        assertArrayEquals(values, tensor.asFlatBooleanArray());
+
+        tensor.setValue(true, 63);
+        tensor.setValue(false, 64);
+        assertTrue(tensor.getValue(63));
+        assertFalse(tensor.getValue(64));
+    }
+
+    @Test
+    public void notDoesNotSetBitsBeyondLength() {
+        BooleanTensor tensor = BooleanTensor.falses(70);
+
+        BooleanTensor notTensor = tensor.not();
+
+        assertTrue(notTensor.allTrue());
+        assertEquals(70, notTensor.countTrue());
+    }
+
+    @Test
+    public void doesWordLevelLogicalOperations() {
+        boolean[] left = alternating(100);
+        boolean[] right = new boolean[100];
+        for (int i = 0; i < right.length; i++) {
+            right[i] = i % 3 == 0;
+        }
+
+        BooleanTensor a = BooleanTensor.create(left, 10, 10);
+        BooleanTensor b = BooleanTensor.create(right, 10, 10);
+
+        boolean[] and = a.and(b).asFlatBooleanArray();
+        boolean[] or = a.or(b).asFlatBooleanArray();
+        boolean[] xor = a.xor(b).asFlatBooleanArray();
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(left[i] && right[i], and[i]);
+            assertEquals(left[i] || right[i], or[i]);
+            assertEquals(left[i] ^ right[i], xor[i]);
+        }
+    }
+
+    @Test
+    public void canOperateWithScalars() {
+        BooleanTensor tensor = BooleanTensor.create(true, false, true);
+
+        assertThat(tensor.and(true), valuesAndShapesMatch(tensor));
+        assertTrue(tensor.and(false).allFalse());
+        assertTrue(tensor.or(true).allTrue());
+        assertThat(BooleanTensor.scalar(true).and(tensor), valuesAndShapesMatch(tensor));
+    }
+
+    @Test
+    public void canOperateWithSimpleBooleanTensors() {
+        BooleanTensor packed = BooleanTensor.create(true, true, false, false);
+        BooleanTensor simple = new SimpleBooleanTensor(new boolean[]{true, false, true, false}, new long[]{4});
+
+        assertArrayEquals(new boolean[]{true, false, false, false}, packed.and(simple).asFlatBooleanArray());
+        assertEquals(packed, new SimpleBooleanTensor(new boolean[]{true, true, false, false}, new long[]{4}));
+    }
+
+    @Test
+    public void hasTheSameHashCodeAsAnEqualSimpleBooleanTensor() {
+        boolean[] values = alternating(70);
+        BooleanTensor packed = BitPackedBooleanTensor.create(values, new long[]{7, 10});
+        BooleanTensor simple = new SimpleBooleanTensor(values, new long[]{7, 10});
+
+        assertEquals(simple, packed);
+        assertEquals(simple.hashCode(), packed.hashCode());
+        assertEquals(new SimpleBooleanTensor(true).hashCode(), BitPackedBooleanTensor.scalar(true).hashCode());
+    }
+
+    @Test
+    public void returnsACopyOfTheStride() {
+        BooleanTensor tensor = BooleanTensor.trues(2, 3);
+        tensor.getStride()[0] = 7;
+
+        assertArrayEquals(new long[]{3, 1}, tensor.getStride());
+    }
+
+    @Test
+    public void canCountTrue() {
+        BooleanTensor tensor = BooleanTensor.create(alternating(1001), 1001);
+
+        assertEquals(501, tensor.countTrue());
+        assertTrue(tensor.anyTrue());
+        assertFalse(BooleanTensor.falses(1001).anyTrue());
+    }
+
+    @Test
+    public void canSliceAndConcat() {
+        BooleanTensor matrix = BooleanTensor.create(new boolean[]{true, false, false, true, true, false}, 2, 3);
+
+        assertThat(matrix.slice(0, 1), valuesAndShapesMatch(BooleanTensor.create(true, true, false)));
+        assertThat(matrix.slice(1, 2), valuesAndShapesMatch(BooleanTensor.create(false, false)));
+
+        BooleanTensor concat = BooleanTensor.concat(1, new BooleanTensor[]{matrix, BooleanTensor.trues(2, 1)});
+        assertThat(concat, valuesAndShapesMatch(BooleanTensor.create(new boolean[]{
+            true, false, false, true,
+            true, true, false, true
+        }, 2, 4)));
+    }
+
+    @Test
+    public void canReadAndWriteElementsAsPrimitives() {
+        BooleanTensor matrix = BooleanTensor.create(new boolean[]{true, false, false, true}, 2, 2);
+        BooleanTensor.BooleanFlattenedView flattened = matrix.getFlattenedView();
+
+        flattened.setBoolean(1, true);
+
+        assertTrue(flattened.getBoolean(1));
+        assertTrue(matrix.getBoolean(0, 1));
+        assertFalse(matrix.getBoolean(1, 0));
+        assertTrue(BooleanTensor.scalar(true).getFlattenedView().getBooleanOrScalar(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotOperateOnDifferentLengths() {
+        BooleanTensor.create(true, false).and(BooleanTensor.create(true, false, true));
+    }
+}
@@ -0,0 +1,65 @@
+package io.improbable.keanu.tensor.dbl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static io.improbable.keanu.tensor.TensorMatchers.valuesAndShapesMatch;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveDoubleTensorFactoryTest {
+
+    @After
+    public void resetFactory() {
+        DoubleTensor.setFactory(new JVMDoubleTensorFactory());
+    }
+
+    @Test
+    public void picksBackendByLength() {
+        DoubleTensor.setFactory(new AdaptiveDoubleTensorFactory(10, 100));
+
+        assertThat(DoubleTensor.scalar(1.0), instanceOf(ScalarDoubleTensor.class));
+        assertThat(DoubleTensor.ones(3, 3), instanceOf(JVMDoubleTensor.class));
+        assertThat(DoubleTensor.zeros(2, 5), instanceOf(Nd4jDoubleTensor.class));
+        assertThat(DoubleTensor.eye(10), instanceOf(OffHeapDoubleTensor.class));
+        assertThat(DoubleTensor.arange(0, 9), instanceOf(JVMDoubleTensor.class));
+        assertThat(DoubleTensor.arange(0, 10, 0.5), instanceOf(Nd4jDoubleTensor.class));
+        assertThat(DoubleTensor.linspace(0, 1, 100), instanceOf(OffHeapDoubleTensor.class));
+    }
+
+    @Test
+    public void canMixBackends() {
+        DoubleTensor.setFactory(new AdaptiveDoubleTensorFactory(10, 100));
+
+        DoubleTensor small = DoubleTensor.create(new double[]{1, 2, 3, 4}, 4, 1);
+        DoubleTensor large = DoubleTensor.arange(0, 20).reshape(4, 5);
+        DoubleTensor expected = JVMDoubleTensor.create(new double[]{1, 2, 3, 4}, 4, 1)
+            .times(JVMDoubleTensor.arange(0, 20).reshape(4, 5));
+
+        assertThat(small.times(large), valuesAndShapesMatch(expected));
+        assertThat(large.times(small), valuesAndShapesMatch(expected));
+        assertThat(large.transpose().matrixMultiply(small), valuesAndShapesMatch(
+            JVMDoubleTensor.arange(0, 20).reshape(4, 5).transpose().matrixMultiply(JVMDoubleTensor.create(new double[]{1, 2, 3, 4}, 4, 1))
+        ));
+
+        DoubleTensor concatenated = DoubleTensor.concat(1, small, large);
+        assertThat(concatenated, instanceOf(Nd4jDoubleTensor.class));
+        assertThat(concatenated, valuesAndShapesMatch(JVMDoubleTensor.concat(1, small, large)));
+    }
+
+    @Test
+    public void canCalibrateNd4jThreshold() {
+        AdaptiveDoubleTensorFactory factory = AdaptiveDoubleTensorFactory.calibrate(tensor -> tensor.plus(1.0));
+
+        long threshold = factory.getNd4jThreshold();
+        assertTrue(threshold == AdaptiveDoubleTensorFactory.NEVER || Long.bitCount(threshold) == 1);
+        assertEquals(AdaptiveDoubleTensorFactory.DEFAULT_OFF_HEAP_THRESHOLD, factory.getOffHeapThreshold());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOffHeapThresholdBeyondArrayLength() {
+        new AdaptiveDoubleTensorFactory(0, Long.MAX_VALUE);
+    }
+}
@@ -26,6 +26,8 @@ public class DoubleTensorBroadcastTest {
         return Arrays.asList(new Object[][]{
             {new Nd4jDoubleTensorFactory(), "ND4J DoubleTensor"},
             {new JVMDoubleTensorFactory(), "JVM DoubleTensor"},
+            {new OffHeapDoubleTensorFactory(), "Off heap DoubleTensor"},
+            {new SinglePrecisionDoubleTensorFactory(), "Single precision DoubleTensor"},
         });
     }
 
@@ -45,6 +45,7 @@ public class DoubleTensorTest {
         return Arrays.asList(new Object[][]{
             {new Nd4jDoubleTensorFactory(), "ND4J DoubleTensor"},
             {new JVMDoubleTensorFactory(), "JVM DoubleTensor"},
+            {new OffHeapDoubleTensorFactory(), "Off heap DoubleTensor"},
         });
     }
 
@@ -83,6 +84,11 @@ public class DoubleTensorTest {
         TensorValidator.NAN_FIXER.disable();
     }
 
+    @After
+    public void resetFactory() {
+        DoubleTensor.setFactory(new JVMDoubleTensorFactory());
+    }
+
     @Test
     public void youCanCreateARankZeroTensor() {
         DoubleTensor scalar = DoubleTensor.create(new double[]{2.0}, new long[]{});
@@ -428,6 +434,39 @@ public class DoubleTensorTest {
         assertArrayEquals(new double[]{2, 4, 6, 8, 10, 12, 14, 16}, result.asFlatDoubleArray(), 0.0);
     }
 
+    @Test
+    public void canApplyPrimitiveUnaryFunction() {
+        DoubleTensor result = rankThreeTensor.applyDouble(a -> a * 2);
+        assertArrayEquals(new double[]{2, 4, 6, 8, 10, 12, 14, 16}, result.asFlatDoubleArray(), 0.0);
+        assertArrayEquals(new double[]{1, 2, 3, 4, 5, 6, 7, 8}, rankThreeTensor.asFlatDoubleArray(), 0.0);
+
+        rankThreeTensor.applyDoubleInPlace(a -> a - 1);
+        assertArrayEquals(new double[]{0, 1, 2, 3, 4, 5, 6, 7}, rankThreeTensor.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void canApplyPrimitiveBinaryFunctionWithBroadcast() {
+        DoubleTensor row = DoubleTensor.create(new double[]{5, 6}, new long[]{2});
+
+        DoubleTensor result = matrixA.applyDouble(row, (a, b) -> a * 10 + b);
+        DoubleTensor reversed = row.applyDouble(matrixA, (a, b) -> a * 10 + b);
+
+        assertThat(result, valuesAndShapesMatch(DoubleTensor.create(new double[]{15, 26, 35, 46}, new long[]{2, 2})));
+        assertThat(reversed, valuesAndShapesMatch(DoubleTensor.create(new double[]{51, 62, 53, 64}, new long[]{2, 2})));
+    }
+
+    @Test
+    public void canReadAndWriteElementsAsPrimitives() {
+        DoubleTensor.DoubleFlattenedView flattened = matrixA.getFlattenedView();
+
+        flattened.setDouble(3, 10);
+
+        assertEquals(10, flattened.getDouble(3), 0.0);
+        assertEquals(3, matrixA.getDouble(1, 0), 0.0);
+        assertEquals(10, matrixA.getDouble(1, 1), 0.0);
+        assertEquals(2.0, scalarA.getFlattenedView().getDoubleOrScalar(3), 0.0);
+    }
+
     @Test
     public void canApplySqrt() {
         DoubleTensor result = scalarA.sqrt();
@@ -1099,6 +1138,35 @@ public class DoubleTensorTest {
         assertThat(summation.getShape(), equalTo(expected.getShape()));
     }
 
+    @Test
+    public void canTakeMeanOverSpecifiedDimensions() {
+        DoubleTensor x = DoubleTensor.create(new double[]{1, 2, 3, 4, 5, 6, 7, 8}, new long[]{2, 2, 2});
+
+        assertThat(x.mean(0), valuesWithinEpsilonAndShapesMatch(DoubleTensor.create(new double[]{3, 4, 5, 6}, 2, 2), 1e-6));
+        assertThat(x.mean(-1, 0), valuesWithinEpsilonAndShapesMatch(DoubleTensor.create(3.5, 5.5), 1e-6));
+        assertThat(x.mean(0, 1, 2).asFlatDoubleArray(), equalTo(new double[]{4.5}));
+    }
+
+    @Test
+    public void canLogSumExpOverSpecifiedDimensions() {
+        DoubleTensor x = DoubleTensor.create(new double[]{1, 2, 3, 4, 500, 600}, new long[]{3, 2});
+
+        assertThat(x.logSumExp(1), valuesWithinEpsilonAndShapesMatch(DoubleTensor.create(
+            Math.log(Math.exp(1) + Math.exp(2)),
+            Math.log(Math.exp(3) + Math.exp(4)),
+            600 + Math.log(1 + Math.exp(-100))
+        ), 1e-4));
+        assertEquals(x.slice(0, 0).exp().sum().doubleValue(), Math.exp(x.slice(0, 0).logSumExp(0).scalar()), 1e-4);
+    }
+
+    @Test
+    public void canCumSumAlongSpecifiedDimension() {
+        DoubleTensor x = DoubleTensor.create(new double[]{1, 2, 3, 4, 5, 6}, new long[]{2, 3});
+
+        assertThat(x.cumSum(0), valuesAndShapesMatch(DoubleTensor.create(new double[]{1, 2, 3, 5, 7, 9}, 2, 3)));
+        assertThat(x.cumSum(-1), valuesAndShapesMatch(DoubleTensor.create(new double[]{1, 3, 6, 4, 9, 15}, 2, 3)));
+    }
+
     @Test
     public void canDuplicateRank1() {
         DoubleTensor x = DoubleTensor.create(1, 2);
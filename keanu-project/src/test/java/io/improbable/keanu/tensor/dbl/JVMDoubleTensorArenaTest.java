@@ -0,0 +1,148 @@
+package io.improbable.keanu.tensor.dbl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JVMDoubleTensorArenaTest {
+
+    private static final int LENGTH = 100;
+
+    @After
+    public void resetLazyEvaluationThreshold() {
+        JVMDoubleTensor.setLazyEvaluationThreshold(JVMDoubleTensor.DEFAULT_LAZY_EVALUATION_THRESHOLD);
+    }
+
+    private static double[] filled(double value) {
+        double[] values = new double[LENGTH];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    @Test
+    public void buffersAreReusedByTheNextScope() {
+        DoubleTensor x = JVMDoubleTensor.create(1.0, LENGTH);
+
+        DoubleTensor discarded;
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            discarded = x.times(2.0);
+        }
+
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            x.times(3.0);
+        }
+
+        assertArrayEquals(filled(3.0), discarded.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void escapedTensorsAreNotReused() {
+        DoubleTensor x = JVMDoubleTensor.create(1.0, LENGTH);
+
+        DoubleTensor kept;
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            kept = JVMDoubleTensorArena.escape(x.times(2.0).plusInPlace(x.times(4.0)));
+        }
+
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            x.times(3.0);
+            x.times(5.0);
+        }
+
+        assertArrayEquals(filled(6.0), kept.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void escapeEvaluatesLazyOperationsOnPooledBuffers() {
+        JVMDoubleTensor.setLazyEvaluationThreshold(1);
+        DoubleTensor x = JVMDoubleTensor.create(1.0, LENGTH);
+
+        DoubleTensor kept;
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            DoubleTensor temporary = x.times(2.0);
+            temporary.sum();
+            kept = JVMDoubleTensorArena.escape(x.plus(temporary));
+        }
+
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            x.times(7.0).sum();
+        }
+
+        assertArrayEquals(filled(3.0), kept.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void inPlaceOperationsOnTensorsFromOutsideTheScopeAreSafe() {
+        JVMDoubleTensor.setLazyEvaluationThreshold(1);
+        DoubleTensor x = JVMDoubleTensor.create(1.0, LENGTH);
+        DoubleTensor accumulator = JVMDoubleTensor.create(0.0, LENGTH);
+
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            DoubleTensor temporary = x.times(2.0);
+            temporary.sum();
+            accumulator.plusInPlace(temporary).timesInPlace(x.plus(1.0));
+        }
+
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            x.times(7.0).sum();
+            x.times(9.0).sum();
+        }
+
+        assertArrayEquals(filled(4.0), accumulator.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void flatArraysAreNotPooled() {
+        DoubleTensor x = JVMDoubleTensor.create(1.0, LENGTH);
+
+        double[] flat;
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            flat = x.times(2.0).asFlatDoubleArray();
+        }
+
+        try (JVMDoubleTensorArena.Scope scope = JVMDoubleTensorArena.open()) {
+            x.times(3.0);
+            x.times(5.0);
+        }
+
+        assertArrayEquals(filled(2.0), flat, 0.0);
+    }
+
+    @Test
+    public void canNestScopes() {
+        DoubleTensor x = JVMDoubleTensor.create(1.0, LENGTH);
+
+        DoubleTensor kept;
+        try (JVMDoubleTensorArena.Scope outer = JVMDoubleTensorArena.open()) {
+            DoubleTensor fromInner;
+            try (JVMDoubleTensorArena.Scope inner = JVMDoubleTensorArena.open()) {
+                fromInner = JVMDoubleTensorArena.escape(x.times(2.0));
+                x.times(3.0);
+            }
+            assertTrue(JVMDoubleTensorArena.isOpen());
+            kept = fromInner.plus(x.times(4.0));
+            kept = JVMDoubleTensorArena.escape(kept);
+        }
+
+        assertFalse(JVMDoubleTensorArena.isOpen());
+        assertArrayEquals(filled(6.0), kept.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotCloseOuterScopeFirst() {
+        JVMDoubleTensorArena.Scope outer = JVMDoubleTensorArena.open();
+        JVMDoubleTensorArena.Scope inner = JVMDoubleTensorArena.open();
+
+        try {
+            outer.close();
+        } finally {
+            inner.close();
+            outer.close();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.improbable.keanu.tensor.dbl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static io.improbable.keanu.tensor.TensorMatchers.valuesAndShapesMatch;
+import static io.improbable.keanu.tensor.TensorMatchers.valuesWithinEpsilonAndShapesMatch;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+
+public class JVMDoubleTensorParallelismTest {
+
+    private ForkJoinPool pool;
+    private DoubleTensor tensor;
+    private DoubleTensor expected;
+
+    @Before
+    public void setup() {
+        double[] values = new double[3 * 5 * 7];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.sin(i) * i;
+        }
+        tensor = JVMDoubleTensor.create(values, 3, 5, 7);
+        expected = tensor.duplicate();
+
+        pool = new ForkJoinPool(4);
+        JVMDoubleTensorParallelism.setForkJoinPool(pool);
+        JVMDoubleTensorParallelism.setParallelThreshold(1);
+        JVMDoubleTensorParallelism.setChunkSize(3);
+    }
+
+    @After
+    public void resetParallelism() {
+        JVMDoubleTensorParallelism.setForkJoinPool(ForkJoinPool.commonPool());
+        JVMDoubleTensorParallelism.setParallelThreshold(JVMDoubleTensorParallelism.DEFAULT_PARALLEL_THRESHOLD);
+        JVMDoubleTensorParallelism.setChunkSize(JVMDoubleTensorParallelism.DEFAULT_CHUNK_SIZE);
+        pool.shutdown();
+    }
+
+    private static void runSequentially(Runnable runnable) {
+        JVMDoubleTensorParallelism.setParallelThreshold(Integer.MAX_VALUE);
+        runnable.run();
+        JVMDoubleTensorParallelism.setParallelThreshold(1);
+    }
+
+    @Test
+    public void elementwiseOperationsMatchSequential() {
+        DoubleTensor[] sequential = new DoubleTensor[1];
+        runSequentially(() -> sequential[0] = expected.exp().timesInPlace(expected).minusInPlace(2.0));
+
+        DoubleTensor parallel = tensor.exp().timesInPlace(tensor).minusInPlace(2.0);
+
+        assertThat(parallel, valuesAndShapesMatch(sequential[0]));
+    }
+
+    @Test
+    public void broadcastOperationsMatchSequential() {
+        DoubleTensor row = JVMDoubleTensor.arange(0, 7);
+        DoubleTensor column = JVMDoubleTensor.arange(0, 5).reshape(5, 1);
+
+        DoubleTensor[] sequential = new DoubleTensor[2];
+        runSequentially(() -> {
+            sequential[0] = expected.plus(row);
+            sequential[1] = column.times(expected);
+        });
+
+        assertThat(tensor.plus(row), valuesAndShapesMatch(sequential[0]));
+        assertThat(column.times(tensor), valuesAndShapesMatch(sequential[1]));
+    }
+
+    @Test
+    public void reductionsMatchSequential() {
+        double[] sequential = new double[4];
+        runSequentially(() -> {
+            sequential[0] = expected.sum();
+            sequential[1] = expected.min();
+            sequential[2] = expected.max();
+            sequential[3] = expected.argMax();
+        });
+
+        assertEquals(sequential[0], tensor.sum(), 0.0);
+        assertEquals(sequential[1], tensor.min(), 0.0);
+        assertEquals(sequential[2], tensor.max(), 0.0);
+        assertEquals((int) sequential[3], tensor.argMax());
+    }
+
+    @Test
+    public void sumDoesNotDependOnTheParallelismOfThePool() {
+        double[] sequential = new double[1];
+        runSequentially(() -> sequential[0] = expected.sum());
+
+        ForkJoinPool singleThreadPool = new ForkJoinPool(1);
+        ForkJoinPool largerPool = new ForkJoinPool(7);
+        try {
+            JVMDoubleTensorParallelism.setForkJoinPool(singleThreadPool);
+            double singleThreadSum = tensor.sum();
+            JVMDoubleTensorParallelism.setForkJoinPool(largerPool);
+            double largerPoolSum = tensor.sum();
+
+            assertEquals(sequential[0], singleThreadSum, 0.0);
+            assertEquals(sequential[0], largerPoolSum, 0.0);
+            assertEquals(sequential[0], tensor.times(1.0).sum(), 0.0);
+        } finally {
+            singleThreadPool.shutdown();
+            largerPool.shutdown();
+        }
+    }
+
+    @Test
+    public void sumOverDimensionsMatchesSequential() {
+        DoubleTensor[] sequential = new DoubleTensor[3];
+        runSequentially(() -> {
+            sequential[0] = expected.sum(0, 2);
+            sequential[1] = expected.sum(1);
+            sequential[2] = expected.sum(0, 1, 2);
+        });
+
+        assertThat(tensor.sum(0, 2), valuesWithinEpsilonAndShapesMatch(sequential[0], 1e-9));
+        assertThat(tensor.sum(1), valuesWithinEpsilonAndShapesMatch(sequential[1], 1e-9));
+        assertThat(tensor.sum(0, 1, 2), valuesWithinEpsilonAndShapesMatch(sequential[2], 1e-9));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void doesNotAllowNonPositiveThreshold() {
+        JVMDoubleTensorParallelism.setParallelThreshold(0);
+    }
+}
@@ -0,0 +1,361 @@
+package io.improbable.keanu.tensor.dbl;
+
+import io.improbable.keanu.tensor.Tensor;
+import io.improbable.keanu.tensor.TensorShape;
+import org.apache.commons.math3.util.FastMath;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static io.improbable.keanu.tensor.TensorMatchers.valuesAndShapesMatch;
+import static io.improbable.keanu.tensor.TensorMatchers.valuesWithinEpsilonAndShapesMatch;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class JVMDoubleTensorTest {
+
+    @After
+    public void resetLazyEvaluationThreshold() {
+        JVMDoubleTensor.setLazyEvaluationThreshold(JVMDoubleTensor.DEFAULT_LAZY_EVALUATION_THRESHOLD);
+    }
+
+    private static DoubleTensor rankThree() {
+        return JVMDoubleTensor.arange(0, 24).reshape(2, 3, 4);
+    }
+
+    @Test
+    public void canReadThroughPermutedSliceView() {
+        DoubleTensor tensor = rankThree();
+
+        DoubleTensor view = tensor.permute(2, 0, 1).slice(2, 2);
+
+        assertThat(view, valuesAndShapesMatch(JVMDoubleTensor.create(new double[]{
+            8, 9, 10, 11,
+            20, 21, 22, 23
+        }, 2, 4).transpose()));
+    }
+
+    @Test
+    public void inPlaceOperationOnViewDoesNotChangeSource() {
+        DoubleTensor tensor = rankThree();
+        DoubleTensor expected = tensor.duplicate();
+
+        DoubleTensor slice = tensor.slice(0, 1);
+        slice.plusInPlace(100.0);
+        tensor.permute(2, 1, 0).reshape(24).timesInPlace(-1.0);
+        tensor.slice(2, 0).setValue(-1.0, 0, 0);
+
+        assertThat(tensor, valuesAndShapesMatch(expected));
+        assertEquals(112.0, slice.getValue(0, 0), 0.0);
+    }
+
+    @Test
+    public void inPlaceOperationOnSourceDoesNotChangeView() {
+        DoubleTensor tensor = rankThree();
+
+        DoubleTensor slice = tensor.slice(1, 2);
+        DoubleTensor expected = slice.duplicate();
+        tensor.expInPlace();
+
+        assertThat(slice, valuesAndShapesMatch(expected));
+    }
+
+    @Test
+    public void splitViewsAreIndependent() {
+        DoubleTensor tensor = rankThree();
+
+        List<DoubleTensor> splits = tensor.split(2, 1, 3, 4);
+        splits.get(1).setValue(-1.0, 0, 0, 0);
+
+        assertArrayEquals(new long[]{2, 3, 2}, splits.get(1).getShape());
+        assertArrayEquals(new double[]{-1, 2, 5, 6, 9, 10, 13, 14, 17, 18, 21, 22}, splits.get(1).asFlatDoubleArray(), 0.0);
+        assertArrayEquals(new double[]{0, 4, 8, 12, 16, 20}, splits.get(0).asFlatDoubleArray(), 0.0);
+        assertEquals(1.0, tensor.getValue(0, 0, 1), 0.0);
+    }
+
+    @Test
+    public void canMatrixMultiplyTransposedView() {
+        DoubleTensor matrix = JVMDoubleTensor.create(new double[]{1, 2, 3, 4, 5, 6}, 2, 3);
+
+        DoubleTensor result = matrix.transpose().matrixMultiply(matrix);
+
+        assertThat(result, valuesAndShapesMatch(JVMDoubleTensor.create(new double[]{
+            17, 22, 27,
+            22, 29, 36,
+            27, 36, 45
+        }, 3, 3)));
+    }
+
+    @Test
+    public void lazyElementwiseChainMatchesEagerEvaluation() {
+        DoubleTensor x = JVMDoubleTensor.linspace(-2, 2, 9);
+        DoubleTensor mu = JVMDoubleTensor.linspace(0, 1, 9);
+
+        DoubleTensor eager = x.minus(mu).powInPlace(2).timesInPlace(-0.5).expInPlace().plusInPlace(x);
+
+        JVMDoubleTensor.setLazyEvaluationThreshold(1);
+        DoubleTensor lazy = x.minus(mu).powInPlace(2).timesInPlace(-0.5).expInPlace().plusInPlace(x);
+
+        assertThat(lazy, valuesAndShapesMatch(eager));
+        assertEquals(eager.sum(), lazy.sum(), 1e-12);
+    }
+
+    @Test
+    public void lazyOperationsDoNotChangeOperands() {
+        JVMDoubleTensor.setLazyEvaluationThreshold(1);
+        DoubleTensor x = JVMDoubleTensor.create(new double[]{1, 2, 3, 4}, 2, 2);
+        DoubleTensor y = JVMDoubleTensor.create(new double[]{4, 3, 2, 1}, 2, 2);
+
+        DoubleTensor result = x.exp().timesInPlace(y);
+        y.plusInPlace(100.0).sum();
+        x.setValue(-1.0, 0, 0);
+
+        assertArrayEquals(new double[]{
+            FastMath.exp(1) * 4, FastMath.exp(2) * 3, FastMath.exp(3) * 2, FastMath.exp(4)
+        }, result.asFlatDoubleArray(), 1e-12);
+        assertArrayEquals(new double[]{104, 103, 102, 101}, y.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void pendingOperationsAreVisibleThroughViewsAndFlattenedView() {
+        JVMDoubleTensor.setLazyEvaluationThreshold(1);
+        DoubleTensor x = JVMDoubleTensor.arange(0, 6).reshape(2, 3);
+
+        Tensor.FlattenedView<Double> flattened = x.getFlattenedView();
+        x.timesInPlace(2.0);
+
+        assertEquals(10.0, flattened.get(5), 0.0);
+        assertThat(x.slice(0, 1), valuesAndShapesMatch(JVMDoubleTensor.create(new double[]{6, 8, 10}, 3)));
+        assertEquals(4.0, x.getValue(0, 2), 0.0);
+    }
+
+    @Test
+    public void canEvaluateLongChains() {
+        JVMDoubleTensor.setLazyEvaluationThreshold(1);
+        DoubleTensor x = JVMDoubleTensor.zeros(3);
+
+        for (int i = 0; i < 1000; i++) {
+            x.plusInPlace(1.0);
+        }
+
+        assertArrayEquals(new double[]{1000, 1000, 1000}, x.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void canFindArgMaxOfNegativeValuesOnAxis() {
+        DoubleTensor tensor = JVMDoubleTensor.create(new double[]{-5, -2, -3, -7, -1, -8}, 2, 3);
+
+        assertArrayEquals(new int[]{0, 1, 0}, tensor.argMax(0).asFlatIntegerArray());
+        assertArrayEquals(new int[]{1, 1}, tensor.argMax(1).asFlatIntegerArray());
+    }
+
+    private static DoubleTensor matrixOf(DoubleTensor batch, long index) {
+        return batch.slice(0, index);
+    }
+
+    @Test
+    public void canBatchMatrixMultiply() {
+        DoubleTensor left = JVMDoubleTensor.arange(0, 24).reshape(3, 2, 4);
+        DoubleTensor right = JVMDoubleTensor.arange(-30, 30).div(7.0).reshape(3, 4, 5);
+
+        DoubleTensor result = left.matrixMultiply(right);
+
+        assertArrayEquals(new long[]{3, 2, 5}, result.getShape());
+        for (int i = 0; i < 3; i++) {
+            assertThat(matrixOf(result, i), valuesWithinEpsilonAndShapesMatch(matrixOf(left, i).matrixMultiply(matrixOf(right, i)), 1e-10));
+        }
+    }
+
+    @Test
+    public void canBroadcastMatricesAcrossBatch() {
+        DoubleTensor left = JVMDoubleTensor.arange(0, 24).reshape(3, 2, 4);
+        DoubleTensor right = JVMDoubleTensor.arange(-10, 10).div(3.0).reshape(4, 5);
+
+        DoubleTensor result = left.matrixMultiply(right);
+        DoubleTensor resultWithBatchOfOne = left.matrixMultiply(right.reshape(1, 4, 5));
+        DoubleTensor resultOnLeft = right.transpose().matrixMultiply(left.permute(0, 2, 1));
+
+        for (int i = 0; i < 3; i++) {
+            DoubleTensor expected = matrixOf(left, i).matrixMultiply(right);
+            assertThat(matrixOf(result, i), valuesWithinEpsilonAndShapesMatch(expected, 1e-10));
+            assertThat(matrixOf(resultWithBatchOfOne, i), valuesWithinEpsilonAndShapesMatch(expected, 1e-10));
+            assertThat(matrixOf(resultOnLeft, i), valuesWithinEpsilonAndShapesMatch(expected.transpose(), 1e-10));
+        }
+    }
+
+    @Test
+    public void canBatchMatrixMultiplyLargeMatrices() {
+        DoubleTensor left = JVMDoubleTensor.arange(0, 2 * 40 * 50).div(1000.0).reshape(2, 40, 50);
+        DoubleTensor right = JVMDoubleTensor.arange(0, 50 * 30).div(-500.0).reshape(50, 30);
+
+        DoubleTensor result = left.matrixMultiply(right);
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(matrixOf(result, i), valuesWithinEpsilonAndShapesMatch(matrixOf(left, i).matrixMultiply(right), 1e-10));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotBatchMatrixMultiplyMismatchedBatches() {
+        JVMDoubleTensor.zeros(2, 2, 3).matrixMultiply(JVMDoubleTensor.zeros(3, 3, 4));
+    }
+
+    @Test
+    public void canBatchInvertDecomposeAndFindDeterminant() {
+        DoubleTensor matrices = JVMDoubleTensor.create(new double[]{
+            4, 2,
+            2, 3,
+
+            9, -3,
+            -3, 5,
+
+            1, 0.5,
+            0.5, 2
+        }, 3, 2, 2);
+
+        DoubleTensor inverses = matrices.matrixInverse();
+        DoubleTensor choleskys = matrices.choleskyDecomposition();
+        DoubleTensor determinants = matrices.matrixDeterminant();
+
+        assertArrayEquals(new long[]{3}, determinants.getShape());
+        for (int i = 0; i < 3; i++) {
+            DoubleTensor matrix = matrixOf(matrices, i);
+            assertThat(matrixOf(inverses, i), valuesWithinEpsilonAndShapesMatch(matrix.matrixInverse(), 1e-10));
+            assertThat(matrixOf(choleskys, i), valuesWithinEpsilonAndShapesMatch(matrix.choleskyDecomposition(), 1e-10));
+            assertEquals(matrix.determinant(), determinants.getValue(i), 1e-10);
+        }
+    }
+
+    private static void assertTensorMultiplyMatchesMatrixMultiply(DoubleTensor left, DoubleTensor right, int[] dimsLeft, int[] dimsRight) {
+        DoubleTensor expected = TensorMulByMatrixMul.tensorMmul(
+            left.duplicate(), right.duplicate(), dimsLeft.clone(), dimsRight.clone()
+        );
+
+        assertThat(left.tensorMultiply(right, dimsLeft, dimsRight), valuesWithinEpsilonAndShapesMatch(expected, 1e-9));
+    }
+
+    @Test
+    public void canTensorMultiplyAlongAnyDimensions() {
+        DoubleTensor a = JVMDoubleTensor.arange(0, 24).reshape(2, 3, 4);
+        DoubleTensor b = JVMDoubleTensor.arange(0, 60).div(7.0).reshape(4, 5, 3);
+
+        assertTensorMultiplyMatchesMatrixMultiply(a, b, new int[]{2}, new int[]{0});
+        assertTensorMultiplyMatchesMatrixMultiply(a, b, new int[]{1}, new int[]{2});
+        assertTensorMultiplyMatchesMatrixMultiply(a, b, new int[]{1, 2}, new int[]{2, 0});
+        assertTensorMultiplyMatchesMatrixMultiply(a, b, new int[0], new int[0]);
+        assertThat(
+            a.tensorMultiply(b, new int[]{-1}, new int[]{-3}),
+            valuesAndShapesMatch(a.tensorMultiply(b, new int[]{2}, new int[]{0}))
+        );
+    }
+
+    @Test
+    public void canTensorMultiplyViews() {
+        DoubleTensor a = JVMDoubleTensor.arange(0, 120).reshape(2, 3, 4, 5);
+        DoubleTensor b = JVMDoubleTensor.arange(0, 40).reshape(5, 2, 4);
+
+        assertTensorMultiplyMatchesMatrixMultiply(a.slice(1, 2), b.permute(2, 0, 1), new int[]{1, 2}, new int[]{0, 1});
+        assertTensorMultiplyMatchesMatrixMultiply(a.permute(3, 1, 0, 2), b.slice(1, 1), new int[]{0, 3}, new int[]{0, 1});
+    }
+
+    @Test
+    public void canTensorMultiplyLargeOperandsWithAnyLayout() {
+        DoubleTensor a = JVMDoubleTensor.arange(0, 40 * 6 * 50).div(1000.0).reshape(40, 6, 50);
+        DoubleTensor b = JVMDoubleTensor.arange(0, 50 * 6 * 30).div(-1000.0).reshape(50, 6, 30);
+
+        assertTensorMultiplyMatchesMatrixMultiply(a, b, new int[]{2, 1}, new int[]{0, 1});
+        assertTensorMultiplyMatchesMatrixMultiply(a, b, new int[]{1, 2}, new int[]{1, 0});
+        assertTensorMultiplyMatchesMatrixMultiply(a.reshape(240, 50), b.reshape(50, 180), new int[]{1}, new int[]{0});
+        assertTensorMultiplyMatchesMatrixMultiply(a.reshape(240, 50).transpose(), b.reshape(50, 180), new int[]{0}, new int[]{0});
+        assertTensorMultiplyMatchesMatrixMultiply(a.reshape(240, 50), b.reshape(50, 180).transpose(), new int[]{1}, new int[]{1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotTensorMultiplyMismatchedDimensions() {
+        JVMDoubleTensor.zeros(2, 3).tensorMultiply(JVMDoubleTensor.zeros(2, 3), new int[]{1}, new int[]{0});
+    }
+
+    private static DoubleTensor wideRankThree() {
+        return JVMDoubleTensor.arange(0, 3 * 5 * 1100).cos().times(10.0).reshape(3, 5, 1100);
+    }
+
+    private static DoubleTensor offHeapCopy(DoubleTensor tensor) {
+        return OffHeapDoubleTensor.create(tensor.asFlatDoubleArray(), tensor.getShape());
+    }
+
+    @Test
+    public void reductionsMatchOffHeapTensorForEveryCombinationOfDimensions() {
+        DoubleTensor tensor = wideRankThree();
+        DoubleTensor expected = offHeapCopy(tensor);
+
+        int[][] dimensions = {{}, {0}, {1}, {2}, {0, 1}, {0, 2}, {1, 2}, {0, 1, 2}, {-1}};
+        for (int[] over : dimensions) {
+            assertThat(tensor.sum(over), valuesWithinEpsilonAndShapesMatch(expected.sum(over), 1e-9));
+            assertThat(tensor.mean(over), valuesWithinEpsilonAndShapesMatch(expected.mean(over), 1e-12));
+            assertThat(tensor.logSumExp(over), valuesWithinEpsilonAndShapesMatch(expected.logSumExp(over), 1e-12));
+        }
+    }
+
+    @Test
+    public void reductionsIgnoreLengthOneDimensions() {
+        DoubleTensor tensor = wideRankThree().reshape(3, 1, 5, 1100, 1);
+        DoubleTensor expected = offHeapCopy(tensor);
+
+        assertThat(tensor.sum(0, 2), valuesWithinEpsilonAndShapesMatch(expected.sum(0, 2), 1e-9));
+        assertThat(tensor.sum(1, 3), valuesWithinEpsilonAndShapesMatch(expected.sum(1, 3), 1e-9));
+        assertThat(tensor.logSumExp(4), valuesWithinEpsilonAndShapesMatch(expected.logSumExp(4), 1e-12));
+    }
+
+    @Test
+    public void canReduceViews() {
+        DoubleTensor view = wideRankThree().permute(2, 0, 1).slice(2, 3);
+        DoubleTensor expected = offHeapCopy(view);
+
+        assertThat(view.sum(0), valuesWithinEpsilonAndShapesMatch(expected.sum(0), 1e-9));
+        assertThat(view.logSumExp(1), valuesWithinEpsilonAndShapesMatch(expected.logSumExp(1), 1e-12));
+        assertThat(view.cumSum(0), valuesWithinEpsilonAndShapesMatch(expected.cumSum(0), 1e-9));
+    }
+
+    @Test
+    public void argMaxAndCumSumMatchOffHeapTensorAlongEveryDimension() {
+        DoubleTensor tensor = wideRankThree();
+        DoubleTensor expected = offHeapCopy(tensor);
+
+        for (int axis = 0; axis < 3; axis++) {
+            assertThat(tensor.argMax(axis), valuesAndShapesMatch(expected.argMax(axis)));
+            assertThat(tensor.cumSum(axis), valuesWithinEpsilonAndShapesMatch(expected.cumSum(axis), 1e-9));
+        }
+    }
+
+    @Test
+    public void logSumExpDoesNotOverflow() {
+        DoubleTensor tensor = JVMDoubleTensor.create(new double[]{
+            1000, 1000,
+            -1000, Double.NEGATIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY
+        }, 3, 2);
+
+        assertArrayEquals(
+            new double[]{1000 + Math.log(2), -1000, Double.NEGATIVE_INFINITY},
+            tensor.logSumExp(1).asFlatDoubleArray(),
+            1e-12
+        );
+    }
+
+    @Test
+    public void broadcastsMatchOffHeapTensorWhateverDimensionsAreBroadcast() {
+        DoubleTensor tensor = wideRankThree();
+        DoubleTensor expected = offHeapCopy(tensor);
+
+        long[][] shapes = {{1, 5, 1100}, {3, 1, 1100}, {3, 5, 1}, {1, 1, 1100}, {3, 1, 1}, {5, 1100}, {1100}, {5, 1}};
+        for (long[] shape : shapes) {
+            DoubleTensor other = JVMDoubleTensor.arange(1, 1 + TensorShape.getLength(shape)).reshape(shape);
+            DoubleTensor otherOffHeap = offHeapCopy(other);
+
+            assertThat(tensor.minus(other), valuesAndShapesMatch(expected.minus(otherOffHeap)));
+            assertThat(other.div(tensor), valuesAndShapesMatch(otherOffHeap.div(expected)));
+        }
+    }
+}
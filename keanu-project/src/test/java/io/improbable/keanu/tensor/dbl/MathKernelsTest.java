@@ -0,0 +1,111 @@
+package io.improbable.keanu.tensor.dbl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MathKernelsTest {
+
+    private static final double EULER_MASCHERONI = 0.5772156649015329;
+
+    @After
+    public void resetAccuracy() {
+        MathKernels.setAccuracy(MathKernels.Accuracy.ACCURATE);
+    }
+
+    @Test
+    public void fastLogGammaMatchesKnownValues() {
+        MathKernels.setAccuracy(MathKernels.Accuracy.FAST);
+
+        assertEquals(0.5 * Math.log(Math.PI), MathKernels.logGamma(0.5), 1e-14);
+        assertEquals(0.0, MathKernels.logGamma(1.0), 1e-14);
+        assertEquals(0.0, MathKernels.logGamma(2.0), 1e-14);
+        assertEquals(Math.log(362880.0), MathKernels.logGamma(10.0), 1e-14);
+        assertEquals(Math.log(1.21645100408832e17), MathKernels.logGamma(20.0), 1e-13);
+    }
+
+    @Test
+    public void fastDigammaMatchesKnownValues() {
+        MathKernels.setAccuracy(MathKernels.Accuracy.FAST);
+
+        assertEquals(-EULER_MASCHERONI - 2 * Math.log(2), MathKernels.digamma(0.5), 1e-14);
+        assertEquals(-EULER_MASCHERONI, MathKernels.digamma(1.0), 1e-14);
+        assertEquals(1.0 - EULER_MASCHERONI, MathKernels.digamma(2.0), 1e-14);
+
+        double harmonic = 0;
+        for (int i = 1; i < 20; i++) {
+            harmonic += 1.0 / i;
+        }
+        assertEquals(harmonic - EULER_MASCHERONI, MathKernels.digamma(20.0), 1e-14);
+    }
+
+    @Test
+    public void fastLogGammaAndDigammaAreConsistent() {
+        MathKernels.setAccuracy(MathKernels.Accuracy.FAST);
+
+        for (double x = 0.05; x < 50; x *= 1.3) {
+            assertEquals(Math.log(x), MathKernels.logGamma(x + 1) - MathKernels.logGamma(x), 1e-12 * Math.max(1, Math.abs(MathKernels.logGamma(x))));
+            assertEquals(1.0 / x, MathKernels.digamma(x + 1) - MathKernels.digamma(x), 1e-12 * Math.max(1, 1.0 / x));
+        }
+    }
+
+    @Test
+    public void fastModeFallsBackOutsideOfItsRange() {
+        double[] values = {-1.5, 0.0, 1e18, Double.NaN};
+
+        for (double value : values) {
+            MathKernels.setAccuracy(MathKernels.Accuracy.ACCURATE);
+            double accurateLogGamma = MathKernels.logGamma(value);
+            double accurateDigamma = MathKernels.digamma(value);
+
+            MathKernels.setAccuracy(MathKernels.Accuracy.FAST);
+            assertEquals(accurateLogGamma, MathKernels.logGamma(value), 0.0);
+            assertEquals(accurateDigamma, MathKernels.digamma(value), 0.0);
+        }
+    }
+
+    @Test
+    public void bufferKernelsMatchScalarKernelsInBothModes() {
+        for (MathKernels.Accuracy accuracy : MathKernels.Accuracy.values()) {
+            MathKernels.setAccuracy(accuracy);
+
+            double[] values = {0.1, 0.5, 1.0, 2.5, 9.9, 10.0, 42.0};
+            double[] exp = values.clone();
+            double[] log = values.clone();
+            double[] sigmoid = values.clone();
+            double[] logGamma = values.clone();
+            double[] digamma = values.clone();
+
+            MathKernels.exp(exp, 0, values.length);
+            MathKernels.log(log, 0, values.length);
+            MathKernels.sigmoid(sigmoid, 0, values.length);
+            MathKernels.logGamma(logGamma, 0, values.length);
+            MathKernels.digamma(digamma, 1, values.length);
+
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(MathKernels.exp(values[i]), exp[i], 0.0);
+                assertEquals(MathKernels.log(values[i]), log[i], 0.0);
+                assertEquals(MathKernels.sigmoid(values[i]), sigmoid[i], 0.0);
+                assertEquals(MathKernels.logGamma(values[i]), logGamma[i], 0.0);
+                assertEquals(i == 0 ? values[i] : MathKernels.digamma(values[i]), digamma[i], 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void tensorsUseTheSelectedAccuracy() {
+        MathKernels.setAccuracy(MathKernels.Accuracy.FAST);
+
+        double[] values = {0.5, 1.5, 3.0, 12.0};
+        double[] expected = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            expected[i] = MathKernels.logGamma(values[i]);
+        }
+
+        assertArrayEquals(expected, JVMDoubleTensor.create(values).logGamma().asFlatDoubleArray(), 0.0);
+        assertArrayEquals(expected, OffHeapDoubleTensor.create(values, new long[]{values.length}).logGamma().asFlatDoubleArray(), 0.0);
+        assertEquals(expected[0], DoubleTensor.scalar(values[0]).logGamma().scalar(), 0.0);
+    }
+}
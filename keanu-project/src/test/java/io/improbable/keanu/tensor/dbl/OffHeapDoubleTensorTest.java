@@ -0,0 +1,90 @@
+package io.improbable.keanu.tensor.dbl;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static io.improbable.keanu.tensor.TensorMatchers.valuesAndShapesMatch;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class OffHeapDoubleTensorTest {
+
+    private static OffHeapDoubleTensor segmented(double[] values, long... shape) {
+        OffHeapDoubleTensor tensor = OffHeapDoubleTensor.zeros(2, shape);
+        for (int i = 0; i < values.length; i++) {
+            tensor.setFlat(i, values[i]);
+        }
+        return tensor;
+    }
+
+    @Test
+    public void canOperateAcrossSegmentBoundaries() {
+        double[] values = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+        DoubleTensor tensor = segmented(values, 3, 4);
+        DoubleTensor onHeap = JVMDoubleTensor.create(values, 3, 4);
+
+        assertThat(tensor.times(tensor).plusInPlace(1.0), valuesAndShapesMatch(onHeap.times(onHeap).plusInPlace(1.0)));
+        assertThat(tensor.slice(1, 2), valuesAndShapesMatch(onHeap.slice(1, 2)));
+        assertThat(tensor.transpose(), valuesAndShapesMatch(onHeap.transpose()));
+        assertThat(tensor.sum(0), valuesAndShapesMatch(onHeap.sum(0)));
+        assertEquals(78.0, tensor.sum(), 0.0);
+    }
+
+    @Test
+    public void canMatrixMultiplyAcrossSegmentsAndWithinOne() {
+        double[] left = {1, 2, 3, 4, 5, 6};
+        double[] right = {7, 8, 9, 10, 11, 12};
+        DoubleTensor expected = JVMDoubleTensor.create(left, 2, 3).matrixMultiply(JVMDoubleTensor.create(right, 3, 2));
+
+        DoubleTensor singleSegment = OffHeapDoubleTensor.create(left, 2, 3)
+            .matrixMultiply(OffHeapDoubleTensor.create(right, 3, 2));
+        DoubleTensor manySegments = segmented(left, 2, 3).matrixMultiply(segmented(right, 3, 2));
+        DoubleTensor mixed = OffHeapDoubleTensor.create(left, 2, 3).matrixMultiply(JVMDoubleTensor.create(right, 3, 2));
+
+        assertThat(singleSegment, valuesAndShapesMatch(expected));
+        assertThat(manySegments, valuesAndShapesMatch(expected));
+        assertThat(mixed, valuesAndShapesMatch(expected));
+    }
+
+    @Test
+    public void canMatrixMultiplyByAnOperandThatFillsASegment() {
+        double[] right = {1, 2, 3, 4};
+
+        DoubleTensor result = segmented(new double[]{2}, 1, 1).matrixMultiply(JVMDoubleTensor.create(right, 1, 4));
+
+        assertThat(result, valuesAndShapesMatch(JVMDoubleTensor.create(new double[]{2, 4, 6, 8}, 1, 4)));
+    }
+
+    @Test
+    public void canWriteAndMapFile() throws IOException {
+        Path file = File.createTempFile("tensor", ".bin").toPath();
+        OffHeapDoubleTensor written = OffHeapDoubleTensor.create(new double[]{0, 1, 2, 3, 4, 5}, 2, 3);
+
+        written.writeTo(file);
+        OffHeapDoubleTensor mapped = OffHeapDoubleTensor.map(file, 2, 3);
+
+        assertThat(mapped, valuesAndShapesMatch(written));
+    }
+
+    @Test
+    public void writesToMappedTensorDoNotChangeFile() throws IOException {
+        Path file = File.createTempFile("tensor", ".bin").toPath();
+        OffHeapDoubleTensor.create(new double[]{1, 2, 3, 4}, 4).writeTo(file);
+
+        OffHeapDoubleTensor.map(file, 4).timesInPlace(-1.0);
+
+        assertArrayEquals(new double[]{1, 2, 3, 4}, OffHeapDoubleTensor.map(file, 4).asFlatDoubleArray(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void doesNotMapFileOfWrongSize() throws IOException {
+        Path file = File.createTempFile("tensor", ".bin").toPath();
+        OffHeapDoubleTensor.create(new double[]{1, 2, 3, 4}, 4).writeTo(file);
+
+        OffHeapDoubleTensor.map(file, 5);
+    }
+}
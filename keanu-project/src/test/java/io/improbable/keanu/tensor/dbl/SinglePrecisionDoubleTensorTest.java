@@ -0,0 +1,129 @@
+package io.improbable.keanu.tensor.dbl;
+
+import io.improbable.keanu.tensor.bool.BooleanTensor;
+import io.improbable.keanu.tensor.validate.TensorValidator;
+import org.junit.Test;
+import org.junit.runners.Parameterized;
+
+import java.util.Collections;
+
+import static io.improbable.keanu.tensor.TensorMatchers.hasValue;
+import static io.improbable.keanu.tensor.TensorMatchers.valuesWithinEpsilonAndShapesMatch;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the tests of {@link DoubleTensorTest} against single precision tensors, with float tolerances and float
+ * extremes in the tests whose expected values aren't representable as floats.
+ */
+public class SinglePrecisionDoubleTensorTest extends DoubleTensorTest {
+
+    private static final double FLOAT_DELTA = 1e-6;
+
+    @Parameterized.Parameters(name = "{index}: Test with {1}")
+    public static Iterable<Object[]> data() {
+        return Collections.singletonList(
+            new Object[]{new SinglePrecisionDoubleTensorFactory(), "Single precision DoubleTensor"}
+        );
+    }
+
+    public SinglePrecisionDoubleTensorTest(DoubleTensorFactory factory, String name) {
+        super(factory, name);
+    }
+
+    @Override
+    @Test
+    public void canDivideScalarByMatrix() {
+        DoubleTensor result = DoubleTensor.scalar(2.0).div(DoubleTensor.create(new double[]{1, 2, 3, 4}, new long[]{2, 2}));
+        assertArrayEquals(new double[]{2.0 / 1.0, 2.0 / 2.0, 2.0 / 3.0, 2.0 / 4.0}, result.asFlatDoubleArray(), FLOAT_DELTA);
+    }
+
+    @Override
+    @Test
+    public void youCanCheckForZeros() {
+        DoubleTensor containsZero = DoubleTensor.create(new double[]{
+                0.0, -1.0, -Double.NEGATIVE_INFINITY, Double.NaN,
+                Double.POSITIVE_INFINITY, Float.MIN_VALUE, Float.MAX_VALUE, -0.0},
+            4, 2);
+
+        BooleanTensor expectedMask = BooleanTensor.create(new boolean[]{
+                false, true, true, true,
+                true, true, true, false},
+            4, 2);
+
+        assertThat(TensorValidator.ZERO_CATCHER.check(containsZero), equalTo(expectedMask));
+    }
+
+    @Override
+    @Test
+    public void youCanReplaceNaNs() {
+        double[] input = {
+            0.0, -1.0, -Double.NEGATIVE_INFINITY, Double.NaN,
+            Double.POSITIVE_INFINITY, Float.MIN_VALUE, Float.MAX_VALUE, -0.0};
+
+        Double[] expectedOutput = {
+            0.0, -1.0, -Double.NEGATIVE_INFINITY, 0.0,
+            Double.POSITIVE_INFINITY, (double) Float.MIN_VALUE, (double) Float.MAX_VALUE, -0.0};
+
+        DoubleTensor containsNan = DoubleTensor.create(input, 4, 2);
+
+        assertThat(containsNan.replaceNaN(0.), hasValue(expectedOutput));
+    }
+
+    @Override
+    @Test
+    public void youCanDoYLogXEvenWhenBothAreZero() {
+        DoubleTensor x = DoubleTensor.create(Float.MIN_VALUE, 1e-8, 1., 1e8);
+        DoubleTensor y = x.duplicate();
+        assertThat(x.safeLogTimes(y), valuesWithinEpsilonAndShapesMatch(x.log().times(y), FLOAT_DELTA));
+
+        DoubleTensor zeros = DoubleTensor.create(0., -0.);
+
+        assertThat(zeros.safeLogTimes(zeros), hasValue(0., 0.));
+        assertThat(zeros.log().times(zeros), hasValue(Double.NaN, Double.NaN));
+    }
+
+    @Test
+    public void valuesAreStoredAsFloats() {
+        DoubleTensor tensor = SinglePrecisionDoubleTensor.create(new double[]{0.1, 1.0 / 3.0, 1e-50}, 3);
+
+        assertArrayEquals(new double[]{(float) 0.1, (float) (1.0 / 3.0), 0.0}, tensor.asFlatDoubleArray(), 0.0);
+        assertArrayEquals(new float[]{0.1f, 1.0f / 3.0f, 0.0f}, ((SinglePrecisionDoubleTensor) tensor).asFlatFloatArray(), 0.0f);
+    }
+
+    @Test
+    public void operationsKeepSinglePrecision() {
+        DoubleTensor tensor = SinglePrecisionDoubleTensor.create(new double[]{1, 2, 3, 4}, 2, 2);
+        DoubleTensor onHeap = JVMDoubleTensor.create(new double[]{1, 2, 3, 4}, 2, 2);
+
+        assertThat(tensor.times(onHeap).plusInPlace(1.0), instanceOf(SinglePrecisionDoubleTensor.class));
+        assertThat(tensor.sum(0), instanceOf(SinglePrecisionDoubleTensor.class));
+        assertThat(tensor.transpose(), instanceOf(SinglePrecisionDoubleTensor.class));
+    }
+
+    @Test
+    public void canMatrixMultiply() {
+        double[] left = {1, 2, 3, 4, 5, 6};
+        double[] right = {0.5, 8, 9, 10, 11, 12.25};
+        DoubleTensor expected = JVMDoubleTensor.create(left, 2, 3).matrixMultiply(JVMDoubleTensor.create(right, 3, 2));
+
+        DoubleTensor result = SinglePrecisionDoubleTensor.create(left, 2, 3)
+            .matrixMultiply(SinglePrecisionDoubleTensor.create(right, 3, 2));
+        DoubleTensor mixed = SinglePrecisionDoubleTensor.create(left, 2, 3)
+            .matrixMultiply(JVMDoubleTensor.create(right, 3, 2));
+
+        assertThat(result, instanceOf(SinglePrecisionDoubleTensor.class));
+        assertThat(result, valuesWithinEpsilonAndShapesMatch(expected, 1e-5));
+        assertThat(mixed, valuesWithinEpsilonAndShapesMatch(expected, 1e-5));
+    }
+
+    @Test
+    public void sumIsAccumulatedInDoublePrecision() {
+        DoubleTensor tensor = SinglePrecisionDoubleTensor.create(0.1, 1000);
+
+        assertEquals(1000 * (double) 0.1f, tensor.sum(), 1e-9);
+    }
+}
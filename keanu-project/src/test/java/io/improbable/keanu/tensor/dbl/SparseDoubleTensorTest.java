@@ -0,0 +1,128 @@
+package io.improbable.keanu.tensor.dbl;
+
+import com.google.common.collect.ImmutableSet;
+import io.improbable.keanu.vertices.ConstantVertex;
+import io.improbable.keanu.vertices.dbl.Differentiator;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.diff.PartialsOf;
+import io.improbable.keanu.vertices.dbl.probabilistic.GaussianVertex;
+import org.junit.Test;
+
+import static io.improbable.keanu.tensor.TensorMatchers.valuesAndShapesMatch;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SparseDoubleTensorTest {
+
+    private static final double[] DENSE = {
+        0, 2, 0, 0, 1,
+        0, 0, 0, 0, 0,
+        3, 0, 0, 4, 0,
+        0, 0, 5, 0, 0
+    };
+
+    private static SparseDoubleTensor sparse() {
+        return SparseDoubleTensor.create(new long[]{4, 5}, new long[]{17, 1, 10, 4, 13}, new double[]{5, 2, 3, 1, 4});
+    }
+
+    private static DoubleTensor dense() {
+        return JVMDoubleTensor.create(DENSE, 4, 5);
+    }
+
+    @Test
+    public void canCreateFromCoordinatesAndCompressedRows() {
+        SparseDoubleTensor fromCoordinates = sparse();
+        SparseDoubleTensor fromRows = SparseDoubleTensor.createCsr(
+            4, 5, new int[]{0, 2, 2, 4, 5}, new int[]{1, 4, 0, 3, 2}, new double[]{2, 1, 3, 4, 5}
+        );
+
+        assertArrayEquals(DENSE, fromCoordinates.asFlatDoubleArray(), 0.0);
+        assertArrayEquals(DENSE, fromRows.asFlatDoubleArray(), 0.0);
+        assertArrayEquals(DENSE, SparseDoubleTensor.fromDense(dense()).asFlatDoubleArray(), 0.0);
+        assertEquals(5, fromCoordinates.getNumberOfStoredValues());
+        assertEquals(4.0, fromCoordinates.getValue(2L, 3L), 0.0);
+    }
+
+    @Test
+    public void addsValuesAtTheSameIndex() {
+        SparseDoubleTensor tensor = SparseDoubleTensor.create(new long[]{2, 2}, new long[]{3, 0, 3}, new double[]{1, 2, 3});
+
+        assertArrayEquals(new double[]{2, 0, 0, 4}, tensor.asFlatDoubleArray(), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsIndicesOutsideOfTheShape() {
+        SparseDoubleTensor.create(new long[]{2, 2}, new long[]{4}, new double[]{1});
+    }
+
+    @Test
+    public void canMatrixMultiplyWithDenseOnEitherSide() {
+        DoubleTensor right = DoubleTensor.arange(0, 15).reshape(5, 3);
+        DoubleTensor left = DoubleTensor.arange(0, 12).reshape(3, 4);
+
+        assertThat(sparse().matrixMultiply(right), valuesAndShapesMatch(dense().matrixMultiply(right)));
+        assertThat(left.matrixMultiply(sparse()), valuesAndShapesMatch(left.matrixMultiply(dense())));
+        assertThat(sparse().transpose().matrixMultiply(left.transpose()), valuesAndShapesMatch(dense().transpose().matrixMultiply(left.transpose())));
+    }
+
+    @Test
+    public void canTensorMultiplyWithDenseOnEitherSide() {
+        DoubleTensor other = DoubleTensor.arange(0, 40).reshape(2, 4, 5);
+
+        assertThat(
+            sparse().tensorMultiply(other, new int[]{1}, new int[]{2}),
+            valuesAndShapesMatch(dense().tensorMultiply(other, new int[]{1}, new int[]{2}))
+        );
+        assertThat(
+            other.tensorMultiply(sparse(), new int[]{1}, new int[]{0}),
+            valuesAndShapesMatch(other.tensorMultiply(dense(), new int[]{1}, new int[]{0}))
+        );
+    }
+
+    @Test
+    public void keepsZerosSparse() {
+        DoubleTensor scaled = sparse().times(2.0).unaryMinusInPlace().times(DoubleTensor.arange(0, 5));
+
+        DoubleTensor expected = dense().times(2.0).unaryMinusInPlace().times(DoubleTensor.arange(0, 5));
+        assertArrayEquals(expected.asFlatDoubleArray(), scaled.asFlatDoubleArray(), 0.0);
+        assertEquals(5, ((SparseDoubleTensor) scaled).getNumberOfStoredValues());
+        assertTrue(((SparseDoubleTensor) scaled.plus(sparse())).isSparse());
+    }
+
+    @Test
+    public void becomesDenseWhenZerosAreMapped() {
+        SparseDoubleTensor shifted = (SparseDoubleTensor) sparse().plus(1.0);
+
+        assertFalse(shifted.isSparse());
+        assertThat(shifted, valuesAndShapesMatch(dense().plus(1.0)));
+        assertThat(sparse().exp(), valuesAndShapesMatch(dense().exp()));
+    }
+
+    @Test
+    public void canSumOverDimensionsAndTranspose() {
+        assertThat(sparse().sum(0), valuesAndShapesMatch(dense().sum(0)));
+        assertThat(sparse().sum(1), valuesAndShapesMatch(dense().sum(1)));
+        assertEquals(15.0, sparse().sum(), 0.0);
+        assertEquals(5.0, sparse().max(), 0.0);
+        assertEquals(0.0, sparse().min(), 0.0);
+        assertThat(sparse().transpose(), valuesAndShapesMatch(dense().transpose()));
+    }
+
+    @Test
+    public void gradientWrtDenseOperandMatchesDenseConstant() {
+        DoubleVertex weights = new GaussianVertex(new long[]{5, 2}, 0, 1);
+
+        DoubleVertex sparseProduct = ConstantVertex.of(sparse()).matrixMultiply(weights);
+        DoubleVertex denseProduct = ConstantVertex.of(dense()).matrixMultiply(weights);
+        DoubleVertex sparseOutput = sparseProduct.times(sparseProduct).sum();
+        DoubleVertex denseOutput = denseProduct.times(denseProduct).sum();
+
+        PartialsOf sparsePartials = Differentiator.reverseModeAutoDiff(sparseOutput, ImmutableSet.of(weights));
+        PartialsOf densePartials = Differentiator.reverseModeAutoDiff(denseOutput, ImmutableSet.of(weights));
+
+        assertThat(sparsePartials.withRespectTo(weights), valuesAndShapesMatch(densePartials.withRespectTo(weights)));
+    }
+}
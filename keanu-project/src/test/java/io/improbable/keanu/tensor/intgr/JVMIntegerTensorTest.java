@@ -0,0 +1,158 @@
+package io.improbable.keanu.tensor.intgr;
+
+import io.improbable.keanu.tensor.bool.BooleanTensor;
+import org.junit.After;
+import org.junit.Test;
+
+import static io.improbable.keanu.tensor.TensorMatchers.hasValue;
+import static io.improbable.keanu.tensor.TensorMatchers.valuesAndShapesMatch;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class JVMIntegerTensorTest {
+
+    @After
+    public void resetFactory() {
+        IntegerTensor.setFactory(new JVMIntegerTensorFactory());
+    }
+
+    @Test
+    public void createsJVMTensorsByDefault() {
+        assertThat(IntegerTensor.create(1, 2, 3), instanceOf(JVMIntegerTensor.class));
+        assertThat(IntegerTensor.zeros(2, 2), instanceOf(JVMIntegerTensor.class));
+    }
+
+    @Test
+    public void canSwapFactory() {
+        IntegerTensor.setFactory(new Nd4jIntegerTensorFactory());
+        assertThat(IntegerTensor.create(1, 2, 3), instanceOf(Nd4jIntegerTensor.class));
+    }
+
+    @Test
+    public void canBroadcastInBothDirections() {
+        IntegerTensor column = JVMIntegerTensor.create(new int[]{1, 2, 3}, 3, 1);
+        IntegerTensor row = JVMIntegerTensor.create(new int[]{10, 20}, 2);
+
+        IntegerTensor result = column.plus(row);
+
+        assertThat(result, valuesAndShapesMatch(JVMIntegerTensor.create(new int[]{
+            11, 21,
+            12, 22,
+            13, 23
+        }, 3, 2)));
+    }
+
+    @Test
+    public void inPlaceBroadcastToLargerShapeTakesResultShape() {
+        IntegerTensor row = JVMIntegerTensor.create(new int[]{1, 2}, 2);
+        IntegerTensor matrix = JVMIntegerTensor.create(new int[]{1, 2, 3, 4}, 2, 2);
+
+        IntegerTensor result = row.timesInPlace(matrix);
+
+        assertArrayEquals(new long[]{2, 2}, result.getShape());
+        assertArrayEquals(new int[]{1, 4, 3, 8}, result.asFlatIntegerArray());
+    }
+
+    @Test
+    public void canFindArgMaxOfNegativeValues() {
+        IntegerTensor tensor = JVMIntegerTensor.create(new int[]{-5, -2, -3, -7, -1, -8}, 2, 3);
+
+        assertThat(tensor.argMax(0), valuesAndShapesMatch(IntegerTensor.create(0, 1, 0)));
+        assertThat(tensor.argMax(1), valuesAndShapesMatch(IntegerTensor.create(1, 1)));
+        assertEquals(4, tensor.argMax());
+    }
+
+    @Test
+    public void canConcatOnInnerDimension() {
+        IntegerTensor x = JVMIntegerTensor.create(new int[]{1, 2, 3, 4}, 2, 2);
+        IntegerTensor y = JVMIntegerTensor.create(new int[]{5, 6}, 2, 1);
+
+        IntegerTensor concat = IntegerTensor.concat(1, x, y);
+
+        assertThat(concat, valuesAndShapesMatch(JVMIntegerTensor.create(new int[]{1, 2, 5, 3, 4, 6}, 2, 3)));
+    }
+
+    @Test
+    public void canApplyPrimitiveFunctions() {
+        IntegerTensor matrix = JVMIntegerTensor.create(new int[]{1, 2, 3, 4}, 2, 2);
+        IntegerTensor row = JVMIntegerTensor.create(new int[]{5, 6}, 2);
+
+        assertThat(matrix.applyInt(v -> v * 2), valuesAndShapesMatch(JVMIntegerTensor.create(new int[]{2, 4, 6, 8}, 2, 2)));
+        assertThat(matrix.applyInt(row, (a, b) -> a * 10 + b), valuesAndShapesMatch(JVMIntegerTensor.create(new int[]{15, 26, 35, 46}, 2, 2)));
+
+        matrix.applyIntInPlace(v -> -v);
+        assertArrayEquals(new int[]{-1, -2, -3, -4}, matrix.asFlatIntegerArray());
+    }
+
+    @Test
+    public void canReadAndWriteElementsAsPrimitives() {
+        IntegerTensor matrix = JVMIntegerTensor.create(new int[]{1, 2, 3, 4}, 2, 2);
+        IntegerTensor.IntegerFlattenedView flattened = matrix.getFlattenedView();
+
+        flattened.setInt(2, 7);
+
+        assertEquals(7, flattened.getInt(2));
+        assertEquals(7, matrix.getInt(1, 0));
+        assertEquals(5, JVMIntegerTensor.scalar(5).getFlattenedView().getIntOrScalar(3));
+    }
+
+    @Test
+    public void canMatrixMultiply() {
+        IntegerTensor a = JVMIntegerTensor.create(new int[]{1, 2, 3, 4, 5, 6}, 2, 3);
+        IntegerTensor b = JVMIntegerTensor.create(new int[]{1, 0, 0, 1, 1, 1}, 3, 2);
+
+        IntegerTensor result = a.matrixMultiply(b);
+
+        assertThat(result, valuesAndShapesMatch(JVMIntegerTensor.create(new int[]{4, 5, 10, 11}, 2, 2)));
+    }
+
+    @Test
+    public void canOperateWithNd4jTensors() {
+        IntegerTensor jvm = JVMIntegerTensor.create(new int[]{1, 2, 3, 4}, 2, 2);
+        IntegerTensor nd4j = Nd4jIntegerTensor.create(new int[]{4, 3, 2, 1}, new long[]{2, 2});
+
+        assertArrayEquals(new int[]{5, 5, 5, 5}, jvm.plus(nd4j).asFlatIntegerArray());
+        assertArrayEquals(new int[]{5, 5, 5, 5}, nd4j.plus(jvm).asFlatIntegerArray());
+        assertEquals(jvm, Nd4jIntegerTensor.create(new int[]{1, 2, 3, 4}, new long[]{2, 2}));
+    }
+
+    @Test
+    public void canCompareWithBroadcast() {
+        IntegerTensor matrix = JVMIntegerTensor.create(new int[]{1, 2, 3, 4}, 2, 2);
+        IntegerTensor row = JVMIntegerTensor.create(new int[]{2, 3}, 2);
+
+        BooleanTensor result = matrix.greaterThanOrEqual(row);
+
+        assertThat(result, hasValue(false, false, true, true));
+    }
+
+    @Test
+    public void powTruncatesNegativeExponentsLikeNd4jTensors() {
+        int[] bases = new int[]{2, -2, 1, -1, -1, 0, 3, 5};
+        int[] exponents = new int[]{-1, -1, -3, -1, -2, -1, 2, 0};
+        IntegerTensor jvm = JVMIntegerTensor.create(bases, 8);
+        IntegerTensor nd4j = Nd4jIntegerTensor.create(bases, new long[]{8});
+
+        IntegerTensor result = jvm.pow(JVMIntegerTensor.create(exponents, 8));
+
+        assertArrayEquals(new int[]{0, 0, 1, -1, 1, Integer.MAX_VALUE, 9, 1}, result.asFlatIntegerArray());
+        assertArrayEquals(nd4j.pow(Nd4jIntegerTensor.create(exponents, new long[]{8})).asFlatIntegerArray(), result.asFlatIntegerArray());
+        assertArrayEquals(new int[]{0, 0, 1, -1, -1, Integer.MAX_VALUE, 0, 0}, jvm.pow(-1).asFlatIntegerArray());
+    }
+
+    @Test
+    public void divisionByZeroSaturatesLikeNd4jTensors() {
+        int[] dividends = new int[]{7, -7, 0, 7};
+        int[] divisors = new int[]{0, 0, 0, -2};
+        IntegerTensor jvm = JVMIntegerTensor.create(dividends, 4);
+        IntegerTensor nd4j = Nd4jIntegerTensor.create(dividends, new long[]{4});
+
+        IntegerTensor result = jvm.div(JVMIntegerTensor.create(divisors, 4));
+
+        assertArrayEquals(new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, 0, -3}, result.asFlatIntegerArray());
+        assertArrayEquals(nd4j.div(Nd4jIntegerTensor.create(divisors, new long[]{4})).asFlatIntegerArray(), result.asFlatIntegerArray());
+        assertArrayEquals(new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, 0, Integer.MAX_VALUE}, jvm.div(0).asFlatIntegerArray());
+    }
+}
@@ -35,6 +35,26 @@ public class VertexValuePropagationTest {
         assertEquals(3 * links, n.get());
     }
 
+    @Test
+    public void stopsCascadeAtCutoffVerticesWhoseValueIsUnchanged() {
+        AtomicInteger n = new AtomicInteger(0);
+        AtomicInteger m = new AtomicInteger(0);
+        DoubleVertex start = new GaussianVertex(0, 1);
+
+        int links = 5;
+        DoubleVertex end = addLinks(start.round(), n, m, links);
+        start.setAndCascade(2.0);
+        n.set(0);
+
+        start.setAndCascade(2.3);
+        assertEquals(2.0 * Math.pow(2, links), end.getValue().scalar(), 0.0);
+        assertEquals(0, n.get());
+
+        start.setAndCascade(2.7);
+        assertEquals(3.0 * Math.pow(2, links), end.getValue().scalar(), 0.0);
+        assertEquals(3 * links, n.get());
+    }
+
     @Test
     public void doesNotPropagateThroughProbabilisticVerticesOnCascade() {
         AtomicInteger n = new AtomicInteger(0);
@@ -25,4 +25,18 @@ public class DoubleBinaryOpLambdaTest {
         assertArrayEquals(new double[]{6, 6, 6, 6}, matrixLambda.getValue().asFlatDoubleArray(), 0.001);
     }
 
+    @Test
+    public void GIVEN_a_primitive_function_THEN_transform_each_pair_of_elements() {
+
+        UniformVertex matrix = new UniformVertex(new long[]{2, 2}, 0, 5);
+        matrix.setAndCascade(DoubleTensor.create(new double[]{1, 2, 3, 4}, new long[]{2, 2}));
+        UniformVertex vector = new UniformVertex(new long[]{2}, 0, 5);
+        vector.setAndCascade(DoubleTensor.create(new double[]{1.5, 0.5}, new long[]{2}));
+
+        DoubleVertex matrixLambda = matrix.elementwiseLambda(vector, Math::max);
+
+        assertArrayEquals(new long[]{2, 2}, matrixLambda.getShape());
+        assertArrayEquals(new double[]{1.5, 2, 3, 4}, matrixLambda.getValue().asFlatDoubleArray(), 0.001);
+    }
+
 }
@@ -14,6 +14,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 
 import static io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.TensorTestOperations.finiteDifferenceMatchesForwardAndReverseModeGradient;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 public class MatrixMultiplicationVertexTest {
@@ -301,4 +302,34 @@ public class MatrixMultiplicationVertexTest {
         finiteDifferenceMatchesForwardAndReverseModeGradient(ImmutableList.of(inputA, inputB), outputVertex, INCREMENT, DELTA);
     }
 
+    @Test
+    public void canBatchMatrixMultiply() {
+        DoubleTensor matrices = DoubleTensor.arange(0, 12).reshape(3, 2, 2);
+        DoubleTensor matrix = DoubleTensor.create(new double[]{2, 4, 6, 8}, 2, 2);
+
+        DoubleVertex mmul = ConstantVertex.of(matrices).matrixMultiply(ConstantVertex.of(matrix));
+
+        DoubleTensor mmulResult = mmul.lazyEval();
+
+        assertArrayEquals(new long[]{3, 2, 2}, mmul.getShape());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(matrices.slice(0, i).matrixMultiply(matrix), mmulResult.slice(0, i));
+        }
+    }
+
+    @Test
+    public void changesMatchGradientWhenBatched() {
+        UniformVertex inputA = new UniformVertex(new long[]{3, 2, 5}, -10.0, 10.0);
+        UniformVertex inputB = new UniformVertex(new long[]{5, 2}, -10.0, 10.0);
+        DoubleVertex mmultVertex = inputA.matrixMultiply(inputB);
+        MultiplicationVertex outputVertex = mmultVertex.times(
+            new ConstantDoubleVertex(new double[]{1., 2., 3., 4.}, new long[]{2, 2})
+        );
+
+        final double INCREMENT = 10;
+        final double DELTA = 1e-10;
+
+        finiteDifferenceMatchesForwardAndReverseModeGradient(ImmutableList.of(inputA, inputB), outputVertex, INCREMENT, DELTA);
+    }
+
 }
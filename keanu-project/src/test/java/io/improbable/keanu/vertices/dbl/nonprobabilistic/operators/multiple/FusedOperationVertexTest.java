@@ -0,0 +1,137 @@
+package io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.multiple;
+
+import com.google.common.collect.ImmutableList;
+import io.improbable.keanu.tensor.dbl.DoubleTensor;
+import io.improbable.keanu.vertices.Vertex;
+import io.improbable.keanu.vertices.dbl.Differentiator;
+import io.improbable.keanu.vertices.dbl.DoubleVertex;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.multiple.FusedOperationVertex.Operation;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.multiple.FusedOperationVertex.Step;
+import io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.unary.SigmoidVertex;
+import io.improbable.keanu.vertices.dbl.probabilistic.UniformVertex;
+import org.junit.Before;
+import org.junit.Test;
+
+import static io.improbable.keanu.tensor.TensorMatchers.valuesWithinEpsilonAndShapesMatch;
+import static io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.TensorTestOperations.finiteDifferenceMatchesForwardAndReverseModeGradient;
+import static io.improbable.keanu.vertices.dbl.nonprobabilistic.operators.multiple.FusedOperationVertex.PREVIOUS_RESULT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FusedOperationVertexTest {
+
+    private UniformVertex x;
+    private UniformVertex a;
+    private UniformVertex b;
+
+    @Before
+    public void setup() {
+        x = new UniformVertex(new long[]{2, 2}, 0.5, 1.5);
+        x.setValue(DoubleTensor.create(new double[]{0.6, 0.8, 1.1, 1.4}, 2, 2));
+        a = new UniformVertex(0.5, 1.5);
+        a.setValue(1.2);
+        b = new UniformVertex(new long[]{2, 2}, 0.5, 1.5);
+        b.setValue(DoubleTensor.create(new double[]{0.7, 0.9, 1.0, 1.3}, 2, 2));
+    }
+
+    private FusedOperationVertex fusedChain() {
+        return new FusedOperationVertex(
+            new DoubleVertex[]{x, a, b},
+            ImmutableList.of(
+                new Step(Operation.MULTIPLICATION, 0, 1),
+                new Step(Operation.ADDITION, PREVIOUS_RESULT, 2),
+                new Step(Operation.LOG, PREVIOUS_RESULT),
+                new Step(Operation.POWER, PREVIOUS_RESULT, 1),
+                new Step(Operation.DIVISION, 2, PREVIOUS_RESULT),
+                new Step(Operation.SIGMOID, PREVIOUS_RESULT)
+            )
+        );
+    }
+
+    private SigmoidVertex unfusedChain() {
+        return b.div(x.times(a).plus(b).log().pow(a)).sigmoid();
+    }
+
+    @Test
+    public void calculatesTheSameValueAsTheChainOfVertices() {
+        FusedOperationVertex fused = fusedChain();
+
+        assertArrayEquals(new long[]{2, 2}, fused.getShape());
+        assertThat(fused.eval(), valuesWithinEpsilonAndShapesMatch(unfusedChain().eval(), 1e-14));
+    }
+
+    @Test
+    public void hasTheSameDerivativesAsTheChainOfVertices() {
+        FusedOperationVertex fused = fusedChain();
+        SigmoidVertex unfused = unfusedChain();
+        fused.eval();
+        unfused.eval();
+
+        for (UniformVertex input : ImmutableList.of(x, a, b)) {
+            assertThat(
+                Differentiator.reverseModeAutoDiff(fused, input).withRespectTo(input),
+                valuesWithinEpsilonAndShapesMatch(Differentiator.reverseModeAutoDiff(unfused, input).withRespectTo(input), 1e-12)
+            );
+            assertThat(
+                Differentiator.forwardModeAutoDiff(input, fused).of(fused),
+                valuesWithinEpsilonAndShapesMatch(Differentiator.forwardModeAutoDiff(input, unfused).of(unfused), 1e-12)
+            );
+        }
+    }
+
+    @Test
+    public void changesInTheInputsMatchesGradient() {
+        UniformVertex y = new UniformVertex(new long[]{2, 2}, -0.9, 0.9);
+        FusedOperationVertex trigonometric = new FusedOperationVertex(
+            new DoubleVertex[]{y, a},
+            ImmutableList.of(
+                new Step(Operation.ARC_SIN, 0),
+                new Step(Operation.TAN, PREVIOUS_RESULT),
+                new Step(Operation.ARC_TAN2, PREVIOUS_RESULT, 1),
+                new Step(Operation.DIFFERENCE, PREVIOUS_RESULT, 1),
+                new Step(Operation.EXP, PREVIOUS_RESULT),
+                new Step(Operation.COS, PREVIOUS_RESULT)
+            )
+        );
+        FusedOperationVertex other = new FusedOperationVertex(
+            new DoubleVertex[]{y, a},
+            ImmutableList.of(
+                new Step(Operation.ARC_COS, 0),
+                new Step(Operation.LOG_GAMMA, PREVIOUS_RESULT),
+                new Step(Operation.ARC_TAN, PREVIOUS_RESULT),
+                new Step(Operation.SIN, PREVIOUS_RESULT),
+                new Step(Operation.MULTIPLICATION, PREVIOUS_RESULT, 1)
+            )
+        );
+
+        finiteDifferenceMatchesForwardAndReverseModeGradient(ImmutableList.of(y, a), trigonometric, 1e-6, 1e-6);
+        finiteDifferenceMatchesForwardAndReverseModeGradient(ImmutableList.of(y, a), other, 1e-6, 1e-6);
+    }
+
+    @Test
+    public void canBeRecreatedFromItsSavedSteps() {
+        FusedOperationVertex fused = fusedChain();
+        FusedOperationVertex loaded = new FusedOperationVertex(new Vertex[]{x, a, b}, fused.getSteps());
+
+        assertEquals("MULTIPLICATION 0 1;ADDITION r 2;LOG r;POWER r 1;DIVISION 2 r;SIGMOID r", loaded.getSteps());
+        assertEquals(fused.eval(), loaded.eval());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInputsThatAreNotTheResultShapeOrLengthOne() {
+        UniformVertex vector = new UniformVertex(new long[]{2}, 0, 1);
+        new FusedOperationVertex(
+            new DoubleVertex[]{x, vector},
+            ImmutableList.of(new Step(Operation.ADDITION, 0, 1))
+        );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAFirstStepThatUsesAPreviousResult() {
+        new FusedOperationVertex(
+            new DoubleVertex[]{x},
+            ImmutableList.of(new Step(Operation.EXP, PREVIOUS_RESULT))
+        );
+    }
+}
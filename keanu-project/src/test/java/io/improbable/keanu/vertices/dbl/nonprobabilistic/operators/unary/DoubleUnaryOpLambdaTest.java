@@ -19,4 +19,14 @@ public class DoubleUnaryOpLambdaTest {
         assertArrayEquals(new double[]{5, 5, 5, 5}, matrixLambda.getValue().asFlatDoubleArray(), 0.001);
     }
 
+    @Test
+    public void GIVEN_a_primitive_function_THEN_transform_each_element() {
+
+        UniformVertex matrix = new UniformVertex(new long[]{2, 2}, 0, 5);
+        matrix.setAndCascade(DoubleTensor.create(new double[]{1, 2, 3, 4}, new long[]{2, 2}));
+        DoubleVertex matrixLambda = matrix.elementwiseLambda(val -> val * val);
+
+        assertArrayEquals(new double[]{1, 4, 9, 16}, matrixLambda.getValue().asFlatDoubleArray(), 0.001);
+    }
+
 }
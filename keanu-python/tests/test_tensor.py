@@ -18,8 +18,8 @@ def generic():
                                                       (np.array([1])[0], "ScalarIntegerTensor"),
                                                       (1.3, "ScalarDoubleTensor"),
                                                       (np.array([1.3])[0], "ScalarDoubleTensor"),
-                                                      (True, "SimpleBooleanTensor"),
-                                                      (np.array([True])[0], "SimpleBooleanTensor")])
+                                                      (True, "BitPackedBooleanTensor"),
+                                                      (np.array([True])[0], "BitPackedBooleanTensor")])
 def test_num_passed_to_Tensor_creates_scalar_tensor(num: Union[primitive_types, numpy_types],
                                                     expected_java_class: str) -> None:
     t = Tensor(num)
@@ -28,9 +28,9 @@ def test_num_passed_to_Tensor_creates_scalar_tensor(num: Union[primitive_types,
     assert t.scalar() == num
 
 
-@pytest.mark.parametrize("data, expected_java_class", [([[1, 2], [3, 4]], "Nd4jIntegerTensor"),
+@pytest.mark.parametrize("data, expected_java_class", [([[1, 2], [3, 4]], "JVMIntegerTensor"),
                                                        ([[1., 2.], [3., 4.]], "Nd4jDoubleTensor"),
-                                                       ([[True, False], [True, False]], "SimpleBooleanTensor")])
+                                                       ([[True, False], [True, False]], "BitPackedBooleanTensor")])
 def test_dataframe_passed_to_Tensor_creates_tensor(data: List[List[primitive_types]], expected_java_class: str) -> None:
     dataframe = pd.DataFrame(columns=['A', 'B'], data=data)
     t = Tensor(dataframe)
@@ -41,10 +41,10 @@ def test_dataframe_passed_to_Tensor_creates_tensor(data: List[List[primitive_typ
     assert np.array_equal(tensor_value, dataframe_value)
 
 
-@pytest.mark.parametrize("data, expected_java_class", [([1, 2], "Nd4jIntegerTensor"), ([1], "Nd4jIntegerTensor"),
+@pytest.mark.parametrize("data, expected_java_class", [([1, 2], "JVMIntegerTensor"), ([1], "JVMIntegerTensor"),
                                                        ([1., 2.], "Nd4jDoubleTensor"), ([1.], "Nd4jDoubleTensor"),
-                                                       ([True, False], "SimpleBooleanTensor"),
-                                                       ([True], "SimpleBooleanTensor")])
+                                                       ([True, False], "BitPackedBooleanTensor"),
+                                                       ([True], "BitPackedBooleanTensor")])
 def test_series_passed_to_Tensor_creates_tensor(data: List[primitive_types], expected_java_class: str) -> None:
     series = pd.Series(data)
     t = Tensor(series)
@@ -66,8 +66,8 @@ def test_cannot_pass_generic_to_Tensor(generic) -> None:
         Tensor(generic)
 
 
-@pytest.mark.parametrize("arr, expected_java_class", [([1, 2], "Nd4jIntegerTensor"), ([3.4, 2.], "Nd4jDoubleTensor"),
-                                                      ([True, False], "SimpleBooleanTensor")])
+@pytest.mark.parametrize("arr, expected_java_class", [([1, 2], "JVMIntegerTensor"), ([3.4, 2.], "Nd4jDoubleTensor"),
+                                                      ([True, False], "BitPackedBooleanTensor")])
 def test_ndarray_passed_to_Tensor_creates_nonscalar_tensor(arr: primitive_types, expected_java_class: str) -> None:
     ndarray = np.array(arr)
     t = Tensor(ndarray)